@@ -0,0 +1,68 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * EventDispatcher — process-wide dispatch stage for foreground-service events.
+ *
+ * Building event Maps / packed records, routing (live stream, background
+ * engine, pending buffer, journal), background-handle lookups and ring-buffer
+ * writes all run on one dedicated HandlerThread instead of the main Looper.
+ * Only the final EventSink / MethodChannel calls hop to the main thread, and
+ * the plugin batches those so several ready events cost one main-thread post.
+ *
+ * Being a single thread, the dispatcher is also the single producer for the
+ * plugin's EventRingBuffers and the owner of the service's
+ * OrientationCoalescer.
+ */
+public final class EventDispatcher {
+
+    private static volatile EventDispatcher instance;
+
+    public static EventDispatcher getInstance() {
+        if (instance == null) {
+            synchronized (EventDispatcher.class) {
+                if (instance == null) {
+                    instance = new EventDispatcher();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final Looper looper;
+    private final Handler handler;
+
+    private EventDispatcher() {
+        HandlerThread thread = new HandlerThread("MapxusDispatch", Process.THREAD_PRIORITY_DEFAULT);
+        thread.start();
+        this.looper = thread.getLooper();
+        this.handler = new Handler(looper);
+    }
+
+    /** Handler bound to the dispatch thread (for timers such as the orientation coalescer). */
+    public Handler getHandler() {
+        return handler;
+    }
+
+    public boolean isDispatchThread() {
+        return Looper.myLooper() == looper;
+    }
+
+    /** Queues the task on the dispatch thread. */
+    public void post(Runnable task) {
+        handler.post(task);
+    }
+
+    /** Runs the task inline when already on the dispatch thread, otherwise queues it. */
+    public void execute(Runnable task) {
+        if (isDispatchThread()) {
+            task.run();
+        } else {
+            handler.post(task);
+        }
+    }
+}
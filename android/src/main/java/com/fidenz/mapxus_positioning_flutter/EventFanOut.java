@@ -0,0 +1,361 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * EventFanOut — one sink in front of the main stream and any number of named
+ * subscription streams.
+ *
+ * The plugin hands every event to this hub (it is the EventSink the plugin
+ * and the routing code write to). The main "mapxus_positioning_stream" gets
+ * every event unchanged; each named subscription gets its own EventChannel
+ * "mapxus_positioning_stream/&lt;name&gt;" and only the events that pass its
+ * options:
+ *
+ *  • typeMask    — location / orientation / state / error / geofence.
+ *                  Other types are dropped before they reach the channel; a
+ *                  backlog of buffered events passes if it holds any of them.
+ *  • throttleMs  — minimum interval between two delivered location events,
+ *                  and separately between two orientation events. State,
+ *                  error and geofence events are never throttled.
+ *  • buffer      — while the subscription's Dart stream is not listening,
+ *                  matching events are kept in a bounded queue (dropOldest or
+ *                  dropNewest on overflow) and delivered on listen.
+ *
+ * Main thread only, like every other EventSink.
+ */
+public class EventFanOut implements EventChannel.EventSink {
+
+    /** Notified when the hub goes from no receivers to at least one, and back. */
+    public interface Listener {
+        void onReceiversChanged(boolean hasReceivers);
+    }
+
+    public static final String CHANNEL_PREFIX = "mapxus_positioning_stream/";
+
+    public static final int TYPE_LOCATION    = 1;
+    public static final int TYPE_ORIENTATION = 1 << 1;
+    public static final int TYPE_STATE       = 1 << 2;
+    public static final int TYPE_ERROR       = 1 << 3;
+    public static final int TYPE_GEOFENCE    = 1 << 4;
+    public static final int TYPE_ALL         = TYPE_LOCATION | TYPE_ORIENTATION | TYPE_STATE | TYPE_ERROR
+                                             | TYPE_GEOFENCE;
+
+    /** Marks a backlog in typeOf so it never equals a single throttled type. */
+    private static final int BACKLOG = 1 << 5;
+
+    /** Throttle timestamp before the first delivery. */
+    private static final long NEVER = -1L;
+
+    /** Immutable subscription settings parsed from the "subscribe" call. */
+    public static final class Options {
+        public static final int DEFAULT_BUFFER_CAPACITY = 64;
+
+        public final int     typeMask;
+        public final long    throttleMs;
+        public final int     bufferCapacity;
+        public final boolean dropNewest;
+
+        public Options(int typeMask, long throttleMs, int bufferCapacity, boolean dropNewest) {
+            this.typeMask       = typeMask & TYPE_ALL;
+            this.throttleMs     = Math.max(0, throttleMs);
+            this.bufferCapacity = Math.max(0, Math.min(bufferCapacity, EventRingBuffer.MAX_CAPACITY));
+            this.dropNewest     = dropNewest;
+        }
+
+        /**
+         * Builds options from nullable channel values. types is a list of
+         * "location", "orientation", "state", "error", "geofence"; null means all.
+         */
+        public static Options from(List<?> types, Number throttleMs, Number bufferCapacity, Object overflow) {
+            int mask = TYPE_ALL;
+            if (types != null) {
+                mask = 0;
+                for (Object type : types) mask |= maskOf(String.valueOf(type));
+            }
+            return new Options(
+                    mask,
+                    throttleMs     != null ? throttleMs.longValue()    : 0,
+                    bufferCapacity != null ? bufferCapacity.intValue() : DEFAULT_BUFFER_CAPACITY,
+                    "dropNewest".equals(overflow));
+        }
+
+        private static int maskOf(String type) {
+            switch (type) {
+                case "location":    return TYPE_LOCATION;
+                case "orientation": return TYPE_ORIENTATION;
+                case "state":       return TYPE_STATE;
+                case "error":       return TYPE_ERROR;
+                case "geofence":    return TYPE_GEOFENCE;
+                default:            return 0;
+            }
+        }
+    }
+
+    private static final class Subscription {
+        final String name;
+        final EventChannel channel;
+        Options options;
+        EventChannel.EventSink sink;
+        final ArrayDeque<Object> buffer = new ArrayDeque<>();
+        long lastLocationMs    = NEVER;
+        long lastOrientationMs = NEVER;
+
+        long delivered;
+        long filtered;
+        long throttled;
+        long bufferDropped;
+
+        Subscription(String name, EventChannel channel, Options options) {
+            this.name = name;
+            this.channel = channel;
+            this.options = options;
+        }
+    }
+
+    private final BinaryMessenger messenger;
+    private final Listener listener;
+    private final Map<String, Subscription> subscriptions = new LinkedHashMap<>();
+    private EventChannel.EventSink primary;
+    private boolean hasReceivers = false;
+
+    public EventFanOut(BinaryMessenger messenger, Listener listener) {
+        this.messenger = messenger;
+        this.listener = listener;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Receivers
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Sink of the main stream; null when it is cancelled. */
+    public void setPrimary(EventChannel.EventSink sink) {
+        primary = sink;
+        updateReceivers();
+    }
+
+    public boolean hasReceivers() {
+        return hasReceivers;
+    }
+
+    /**
+     * Registers a named subscription, or updates the options of an existing
+     * one (its stream, buffer and throttle state are kept).
+     */
+    public void subscribe(String name, Options options) {
+        Subscription existing = subscriptions.get(name);
+        if (existing != null) {
+            existing.options = options;
+            trimBuffer(existing);
+            return;
+        }
+        EventChannel channel = new EventChannel(messenger, CHANNEL_PREFIX + name);
+        Subscription subscription = new Subscription(name, channel, options);
+        channel.setStreamHandler(new EventChannel.StreamHandler() {
+            @Override
+            public void onListen(Object arguments, EventChannel.EventSink events) {
+                subscription.sink = events;
+                while (!subscription.buffer.isEmpty()) {
+                    events.success(subscription.buffer.poll());
+                    subscription.delivered++;
+                }
+            }
+
+            @Override
+            public void onCancel(Object arguments) {
+                subscription.sink = null;
+            }
+        });
+        subscriptions.put(name, subscription);
+        updateReceivers();
+    }
+
+    /** @return false if no subscription with this name exists */
+    public boolean unsubscribe(String name) {
+        Subscription subscription = subscriptions.remove(name);
+        if (subscription == null) return false;
+        subscription.channel.setStreamHandler(null);
+        if (subscription.sink != null) subscription.sink.endOfStream();
+        subscription.sink = null;
+        subscription.buffer.clear();
+        updateReceivers();
+        return true;
+    }
+
+    /** Removes every named subscription, e.g. when the engine detaches. */
+    public void clear() {
+        for (Subscription subscription : subscriptions.values()) {
+            subscription.channel.setStreamHandler(null);
+            subscription.buffer.clear();
+        }
+        subscriptions.clear();
+        primary = null;
+        updateReceivers();
+    }
+
+    /**
+     * Registered subscriptions count as receivers even before their stream is
+     * listened to: their buffer holds the events until then.
+     */
+    private void updateReceivers() {
+        boolean now = primary != null || !subscriptions.isEmpty();
+        if (now == hasReceivers) return;
+        hasReceivers = now;
+        if (listener != null) listener.onReceiversChanged(now);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // EventSink
+    // ─────────────────────────────────────────────────────────────────────────
+
+    @Override
+    public void success(Object event) {
+        if (primary != null) primary.success(event);
+        if (subscriptions.isEmpty()) return;
+
+        int type = typeOf(event);
+        long now = SystemClock.elapsedRealtime();
+        for (Subscription subscription : subscriptions.values()) {
+            deliver(subscription, event, type, now);
+        }
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+        if (primary != null) primary.error(errorCode, errorMessage, errorDetails);
+        for (Subscription subscription : subscriptions.values()) {
+            if ((subscription.options.typeMask & TYPE_ERROR) != 0 && subscription.sink != null) {
+                subscription.sink.error(errorCode, errorMessage, errorDetails);
+            }
+        }
+    }
+
+    /** Ends the main stream only; named streams end through unsubscribe. */
+    @Override
+    public void endOfStream() {
+        if (primary != null) primary.endOfStream();
+    }
+
+    private static void deliver(Subscription subscription, Object event, int type, long now) {
+        Options options = subscription.options;
+        if ((options.typeMask & type) == 0) {
+            subscription.filtered++;
+            return;
+        }
+        if (options.throttleMs > 0) {
+            if (type == TYPE_LOCATION) {
+                if (subscription.lastLocationMs != NEVER
+                        && now - subscription.lastLocationMs < options.throttleMs) {
+                    subscription.throttled++;
+                    return;
+                }
+                subscription.lastLocationMs = now;
+            } else if (type == TYPE_ORIENTATION) {
+                if (subscription.lastOrientationMs != NEVER
+                        && now - subscription.lastOrientationMs < options.throttleMs) {
+                    subscription.throttled++;
+                    return;
+                }
+                subscription.lastOrientationMs = now;
+            }
+        }
+        if (subscription.sink != null) {
+            subscription.sink.success(event);
+            subscription.delivered++;
+            return;
+        }
+        if (options.bufferCapacity == 0) {
+            subscription.bufferDropped++;
+        } else if (subscription.buffer.size() < options.bufferCapacity) {
+            subscription.buffer.add(event);
+        } else if (options.dropNewest) {
+            subscription.bufferDropped++;
+        } else {
+            subscription.buffer.poll();
+            subscription.buffer.add(event);
+            subscription.bufferDropped++;
+        }
+    }
+
+    private static void trimBuffer(Subscription subscription) {
+        while (subscription.buffer.size() > subscription.options.bufferCapacity) {
+            subscription.buffer.poll();
+            subscription.bufferDropped++;
+        }
+    }
+
+    /** Event type bit of a Map event or a packed MapxusEventCodec record. */
+    static int typeOf(Object event) {
+        if (event instanceof byte[]) {
+            byte[] record = (byte[]) event;
+            if (record.length == 0) return 0;
+            switch (record[0]) {
+                case MapxusEventCodec.TYPE_LOCATION:          return TYPE_LOCATION;
+                case MapxusEventCodec.TYPE_ORIENTATION:
+                case MapxusEventCodec.TYPE_ORIENTATION_BATCH: return TYPE_ORIENTATION;
+                default:                                      return 0;
+            }
+        }
+        if (event instanceof Map) {
+            Object type = ((Map<?, ?>) event).get("type");
+            if (type == null) return 0;
+            switch (type.toString()) {
+                case "locationChange":      return TYPE_LOCATION;
+                case "onOrientationChange":
+                case "orientationBatch":    return TYPE_ORIENTATION;
+                case "stateChange":
+                case "dutyCycle":           return TYPE_STATE;
+                case "error":               return TYPE_ERROR;
+                case "geofence":            return TYPE_GEOFENCE;
+                case PendingReplay.TYPE_BACKLOG: return backlogTypeOf((Map<?, ?>) event);
+                default:                    return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * A backlog passes a subscription that accepts any of the types it
+     * holds. It is never throttled and is delivered whole, unfiltered.
+     */
+    private static int backlogTypeOf(Map<?, ?> backlog) {
+        Object events = backlog.get("events");
+        if (!(events instanceof List)) return 0;
+        int mask = 0;
+        for (Object event : (List<?>) events) mask |= typeOf(event);
+        return mask != 0 ? mask | BACKLOG : 0;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Stats
+    // ─────────────────────────────────────────────────────────────────────────
+
+    public Map<String, Object> stats() {
+        List<Object> list = new ArrayList<>();
+        for (Subscription subscription : subscriptions.values()) {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("name", subscription.name);
+            stats.put("listening", subscription.sink != null);
+            stats.put("delivered", subscription.delivered);
+            stats.put("filtered", subscription.filtered);
+            stats.put("throttled", subscription.throttled);
+            stats.put("buffered", subscription.buffer.size());
+            stats.put("bufferDropped", subscription.bufferDropped);
+            list.add(stats);
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("primaryListening", primary != null);
+        stats.put("subscriptions", list);
+        return stats;
+    }
+}
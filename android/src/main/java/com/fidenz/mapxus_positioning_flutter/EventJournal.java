@@ -0,0 +1,414 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * EventJournal — append-only, memory-mapped journal of location fixes for the
+ * closed-app / no-background-handler path.
+ *
+ * The in-memory ring buffer loses everything on process death and only holds
+ * a few minutes of fixes. When enabled (startForegroundService with
+ * persistEvents: true) fixes are written here instead and replayed to the
+ * Flutter stream on the next onListen.
+ *
+ * On-disk layout
+ * ──────────────
+ *   files/mapxus_journal/segment-00000042.log   fixed-size mapped segments
+ *   files/mapxus_journal/cursor                 8-byte mapped read cursor
+ *
+ * Each segment starts with an 8-byte header ("MXJ1" + reserved) followed by
+ * records of [int32 length][payload], where payload is a packed location
+ * record (see MapxusEventCodec). A zero length marks the end of written data;
+ * the payload is written before its length so a torn append is never read.
+ * The oldest segment is deleted once maxBytes is exceeded.
+ *
+ * The cursor is one little-endian int64: (segment << 32) | offset of the
+ * first record NOT yet acknowledged. Once the sink has accepted a replayed
+ * chunk on the main thread, the acknowledgement is posted back to the IO
+ * thread (the cursor's only writer), which advances the cursor past the chunk.
+ * Delivery is therefore at-least-once: events before the cursor are never
+ * delivered again after a restart, but a chunk delivered just before the
+ * process dies — before its acknowledgement ran — is replayed once more.
+ *
+ * Threading
+ * ─────────
+ * All file access runs on a dedicated background HandlerThread, so neither
+ * appends from the dispatch path nor replay reads touch the main thread.
+ * Replayed chunks are posted to the main thread one at a time; the next chunk
+ * is read only after the previous one was delivered, which keeps the main
+ * Looper free for first-frame rendering while history streams in.
+ */
+public final class EventJournal {
+
+    private static final String TAG = "MapxusEventJournal";
+
+    private static final String DIR_NAME       = "mapxus_journal";
+    private static final String CURSOR_FILE    = "cursor";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    static final int SEGMENT_SIZE   = 256 * 1024;
+    static final int SEGMENT_HEADER = 8;
+    private static final int MAGIC  = 0x314A584D; // "MXJ1" little-endian
+
+    public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+    private static final int REPLAY_CHUNK_SIZE = 64;
+
+    /** Receives replayed events on the main thread. */
+    public interface ChunkSink {
+        /**
+         * @return false to stop the replay (e.g. the stream was cancelled);
+         *         the chunk is then not acknowledged and will be replayed again
+         */
+        boolean onChunk(List<Object> events);
+    }
+
+    /** Immutable journal settings from startForegroundService. */
+    public static final class Config {
+        public final boolean enabled;
+        /** Disk budget; the oldest segments are dropped beyond it. */
+        public final long maxBytes;
+
+        public Config(boolean enabled, long maxBytes) {
+            this.enabled  = enabled;
+            this.maxBytes = maxBytes;
+        }
+    }
+
+    private static volatile EventJournal instance;
+
+    public static EventJournal getInstance(Context context) {
+        if (instance == null) {
+            synchronized (EventJournal.class) {
+                if (instance == null) {
+                    instance = new EventJournal(new File(
+                            context.getApplicationContext().getFilesDir(), DIR_NAME));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final File dir;
+    private final Handler ioHandler;
+
+    private volatile boolean enabled = false;
+    private volatile long maxBytes = DEFAULT_MAX_BYTES;
+
+    // ── IO-thread state ───────────────────────────────────────────────────────
+    private boolean opened = false;
+    private long firstSegment;
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private MappedByteBuffer cursorBuffer;
+    private long cursorSegment;
+    private int  cursorOffset;
+    /** Mapping of the older segment a replay is reading, kept across records and chunks. */
+    private MappedByteBuffer readBuffer;
+    private long readSegment = -1;
+    /** Incremented per replay request so a superseded replay chain stops. */
+    private int replayGeneration = 0;
+
+    private EventJournal(File dir) {
+        this.dir = dir;
+        HandlerThread thread = new HandlerThread("MapxusJournal", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        this.ioHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Enables or disables journaling of new fixes. Existing data is kept and
+     * still replayed when disabled.
+     */
+    public void configure(Config config) {
+        this.maxBytes = Math.max(SEGMENT_SIZE * 2L, config.maxBytes);
+        this.enabled = config.enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Append
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Journals a location event (Map or packed record). Encoding happens on
+     * the caller's thread; the write itself is posted to the journal thread.
+     *
+     * @return true if the event was journaled, false if journaling is off or
+     *         the event is not a location fix (the caller should buffer it)
+     */
+    public boolean append(Object event) {
+        if (!enabled) return false;
+        final byte[] record;
+        if (event instanceof byte[]) {
+            record = MapxusEventCodec.isLocationRecord((byte[]) event) ? (byte[]) event : null;
+        } else if (event instanceof Map) {
+            record = MapxusEventCodec.encodeLocationMap((Map<?, ?>) event);
+        } else {
+            record = null;
+        }
+        if (record == null) return false;
+
+        ioHandler.post(() -> write(record));
+        return true;
+    }
+
+    private void write(byte[] record) {
+        try {
+            ensureOpen();
+            int pos = writeBuffer.position();
+            if (pos + 4 + record.length > SEGMENT_SIZE) {
+                rotate();
+                pos = writeBuffer.position();
+            }
+            // Payload first, then the length that makes it visible to readers.
+            writeBuffer.position(pos + 4);
+            writeBuffer.put(record);
+            writeBuffer.putInt(pos, record.length);
+        } catch (IOException e) {
+            Log.e(TAG, "Journal append failed: " + e.getMessage());
+        }
+    }
+
+    private void rotate() throws IOException {
+        writeSegment++;
+        writeBuffer = mapSegment(writeSegment, true);
+        writeBuffer.position(SEGMENT_HEADER);
+
+        long maxSegments = Math.max(2, maxBytes / SEGMENT_SIZE);
+        while (writeSegment - firstSegment + 1 > maxSegments) {
+            Log.w(TAG, "Journal size cap reached — deleting segment " + firstSegment);
+            deleteSegment(firstSegment);
+            firstSegment++;
+            if (cursorSegment < firstSegment) {
+                storeCursor(firstSegment, SEGMENT_HEADER);
+            }
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Replay
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Streams every unacknowledged fix to the sink in chunks, oldest first.
+     * A new call supersedes a replay that is still running.
+     */
+    public void replay(Handler mainHandler, ChunkSink sink) {
+        ioHandler.post(() -> {
+            if (!dir.exists()) return;
+            int generation = ++replayGeneration;
+            replayFrom(generation, mainHandler, sink);
+        });
+    }
+
+    private void replayFrom(int generation, Handler mainHandler, ChunkSink sink) {
+        if (generation != replayGeneration) return;
+        try {
+            ensureOpen();
+        } catch (IOException e) {
+            Log.e(TAG, "Journal open failed: " + e.getMessage());
+            return;
+        }
+        if (cursorSegment < firstSegment) {
+            // The size cap deleted the segment the cursor pointed into.
+            storeCursor(firstSegment, SEGMENT_HEADER);
+        }
+
+        List<Object> chunk = new ArrayList<>(REPLAY_CHUNK_SIZE);
+        long[] position = { cursorSegment, cursorOffset };
+        readChunk(position, chunk);
+        if (chunk.isEmpty()) {
+            compact();
+            return;
+        }
+
+        final long nextSegment = position[0];
+        final int  nextOffset  = (int) position[1];
+        mainHandler.post(() -> {
+            if (!sink.onChunk(chunk)) return;
+            // Acknowledged on the IO thread, the cursor's only writer. A chunk
+            // delivered just before the process dies is replayed again.
+            ioHandler.post(() -> {
+                storeCursor(nextSegment, nextOffset);
+                replayFrom(generation, mainHandler, sink);
+            });
+        });
+    }
+
+    /** Reads up to REPLAY_CHUNK_SIZE records starting at position, advancing it. */
+    private void readChunk(long[] position, List<Object> out) {
+        boolean binary = MapxusEventUtil.isBinaryFormat();
+        while (out.size() < REPLAY_CHUNK_SIZE && position[0] <= writeSegment) {
+            MappedByteBuffer segment;
+            try {
+                segment = position[0] == writeSegment ? writeBuffer : readSegment(position[0]);
+            } catch (IOException e) {
+                Log.w(TAG, "Skipping unreadable segment " + position[0] + ": " + e.getMessage());
+                position[0]++;
+                position[1] = SEGMENT_HEADER;
+                continue;
+            }
+
+            int offset = (int) position[1];
+            int length = offset + 4 <= SEGMENT_SIZE ? segment.getInt(offset) : 0;
+            if (length <= 0 || offset + 4 + length > SEGMENT_SIZE) {
+                if (position[0] == writeSegment) return; // caught up with the writer
+                position[0]++;
+                position[1] = SEGMENT_HEADER;
+                continue;
+            }
+
+            byte[] record = new byte[length];
+            ByteBuffer view = segment.duplicate();
+            view.position(offset + 4);
+            view.get(record);
+            out.add(binary ? record : MapxusEventCodec.decodeLocationMap(record));
+            position[1] = offset + 4 + length;
+        }
+    }
+
+    /** Maps an older segment once; a replay reads it record by record. */
+    private MappedByteBuffer readSegment(long index) throws IOException {
+        if (index != readSegment) {
+            readBuffer  = null;
+            readSegment = -1;
+            readBuffer  = mapSegment(index, false);
+            readSegment = index;
+        }
+        return readBuffer;
+    }
+
+    /** Deletes segments that lie entirely before the cursor. */
+    private void compact() {
+        while (firstSegment < cursorSegment) {
+            deleteSegment(firstSegment);
+            firstSegment++;
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Files
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private void ensureOpen() throws IOException {
+        if (opened) return;
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        long[] segments = listSegments();
+        firstSegment = segments.length > 0 ? segments[0] : 0;
+        writeSegment = segments.length > 0 ? segments[segments.length - 1] : 0;
+        writeBuffer  = mapSegment(writeSegment, true);
+        writeBuffer.position(findEnd(writeBuffer));
+
+        cursorBuffer = map(new File(dir, CURSOR_FILE), 8, true);
+        long packed  = cursorBuffer.getLong(0);
+        cursorSegment = packed >>> 32;
+        cursorOffset  = (int) packed;
+        if (cursorSegment < firstSegment || cursorOffset < SEGMENT_HEADER) {
+            storeCursor(firstSegment, SEGMENT_HEADER);
+        }
+        opened = true;
+    }
+
+    private void storeCursor(long segment, int offset) {
+        cursorSegment = segment;
+        cursorOffset = offset;
+        cursorBuffer.putLong(0, packCursor(segment, offset));
+    }
+
+    private static long packCursor(long segment, int offset) {
+        return (segment << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private long[] listSegments() {
+        String[] names = dir.list();
+        if (names == null) return new long[0];
+        long[] indices = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    indices[count++] = Long.parseLong(name.substring(
+                            SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                } catch (NumberFormatException ignored) {
+                    // not one of ours
+                }
+            }
+        }
+        long[] result = Arrays.copyOf(indices, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private File segmentFile(long index) {
+        return new File(dir, String.format(Locale.US, "%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private MappedByteBuffer mapSegment(long index, boolean create) throws IOException {
+        File file = segmentFile(index);
+        boolean isNew = !file.exists();
+        if (isNew && !create) throw new IOException("Missing segment " + file.getName());
+        MappedByteBuffer buffer = map(file, SEGMENT_SIZE, create);
+        if (isNew) {
+            buffer.putInt(0, MAGIC);
+        }
+        return buffer;
+    }
+
+    private static MappedByteBuffer map(File file, int size, boolean writable) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r")) {
+            if (writable && raf.length() < size) {
+                raf.setLength(size);
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(
+                    writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    /** Offset just past the last complete record of a segment. */
+    private static int findEnd(MappedByteBuffer segment) {
+        int offset = SEGMENT_HEADER;
+        while (offset + 4 <= SEGMENT_SIZE) {
+            int length = segment.getInt(offset);
+            if (length <= 0 || offset + 4 + length > SEGMENT_SIZE) break;
+            offset += 4 + length;
+        }
+        return offset;
+    }
+
+    private void deleteSegment(long index) {
+        if (index == readSegment) {
+            readBuffer  = null;
+            readSegment = -1;
+        }
+        File file = segmentFile(index);
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Could not delete " + file.getName());
+        }
+    }
+}
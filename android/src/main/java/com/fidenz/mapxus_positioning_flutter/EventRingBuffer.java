@@ -0,0 +1,285 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EventRingBuffer — bounded, lock-free single-producer / single-consumer
+ * buffer with overwrite-oldest semantics.
+ *
+ * When the buffer is full the producer evicts the oldest entry, so the most
+ * recent positions are always kept (the previous ArrayList buffers did the
+ * opposite and silently dropped every new event once full).
+ *
+ * Storage
+ * ───────
+ * Location events are stored in parallel primitive arrays (lat / lon /
+ * accuracy / timestamp / elapsedRealtimeNanos, plus the smoothed lat / lon /
+ * accuracy — NaN when the fix was not smoothed) and String references for the ids, so buffering a
+ * fix does not retain — or copy — a HashMap. A LatencyTracer "trace" Map is
+ * kept by reference in the object slot and put back into the rebuilt Map
+ * event, so buffered fixes keep their listener / dispatch marks and get the
+ * sink mark when they are flushed. Every other event (state, error,
+ * orientation, packed byte[] records) is stored by reference; events are never
+ * mutated after they are built, so no defensive copy is needed.
+ *
+ * Concurrency
+ * ───────────
+ * tail is written by the producer only. head is advanced by the consumer
+ * and — when overwriting — by the producer, both via CAS. The consumer reads a
+ * slot and only delivers it if its CAS on head succeeds; the producer only
+ * writes a slot after its own CAS has moved head past it. A successful
+ * consumer CAS therefore happens-before any overwrite of the slot it read,
+ * and a failed CAS means the entry was evicted (counted as overwritten).
+ */
+public final class EventRingBuffer {
+
+    /** Receives drained events in FIFO order. */
+    public interface Consumer {
+        void accept(Object event);
+    }
+
+    /** Upper bound for a configured capacity (~1M events). */
+    public static final int MAX_CAPACITY = 1 << 20;
+
+    private static final byte KIND_OBJECT   = 0;
+    private static final byte KIND_LOCATION = 1;
+
+    private final int capacity;
+    private final int mask;
+
+    private final byte[]   kinds;
+    private final Object[] objects;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] accuracies;
+    private final long[]   timestamps;
+    private final long[]   elapsedNanos;
+    private final double[] smoothedLatitudes;
+    private final double[] smoothedLongitudes;
+    private final double[] smoothedAccuracies;
+    private final String[] venueIds;
+    private final String[] buildingIds;
+    private final String[] floors;
+
+    /** Next position to write. Producer-owned. */
+    private final AtomicLong tail = new AtomicLong();
+    /** Next position to read. Advanced by the consumer, or by the producer on overwrite. */
+    private final AtomicLong head = new AtomicLong();
+
+    private final AtomicLong overwritten = new AtomicLong();
+    private final AtomicLong dropped     = new AtomicLong();
+
+    /**
+     * @param requestedCapacity minimum number of events to keep; rounded up to a power of two
+     */
+    public EventRingBuffer(int requestedCapacity) {
+        this.capacity = roundUpToPowerOfTwo(Math.max(2, Math.min(requestedCapacity, MAX_CAPACITY)));
+        this.mask = capacity - 1;
+        kinds       = new byte[capacity];
+        objects     = new Object[capacity];
+        latitudes   = new double[capacity];
+        longitudes  = new double[capacity];
+        accuracies  = new double[capacity];
+        timestamps  = new long[capacity];
+        elapsedNanos = new long[capacity];
+        smoothedLatitudes  = new double[capacity];
+        smoothedLongitudes = new double[capacity];
+        smoothedAccuracies = new double[capacity];
+        venueIds    = new String[capacity];
+        buildingIds = new String[capacity];
+        floors      = new String[capacity];
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Producer side
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Buffers an event. Location Maps are unpacked into primitive storage;
+     * everything else is stored by reference.
+     */
+    public void offer(Object event) {
+        if (event instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) event;
+            if ("locationChange".equals(map.get("type")) && map.get("latitude") instanceof Number) {
+                boolean smoothed = map.get("smoothedAccuracy") instanceof Number;
+                Object elapsed = map.get("elapsedRealtimeNanos");
+                offerLocation(
+                        ((Number) map.get("latitude")).doubleValue(),
+                        ((Number) map.get("longitude")).doubleValue(),
+                        ((Number) map.get("accuracy")).doubleValue(),
+                        (String) map.get("venueId"),
+                        (String) map.get("buildingId"),
+                        (String) map.get("floor"),
+                        ((Number) map.get("timestamp")).longValue(),
+                        smoothed ? ((Number) map.get("smoothedLatitude")).doubleValue()  : Double.NaN,
+                        smoothed ? ((Number) map.get("smoothedLongitude")).doubleValue() : Double.NaN,
+                        smoothed ? ((Number) map.get("smoothedAccuracy")).doubleValue()  : Double.NaN,
+                        elapsed instanceof Number ? ((Number) elapsed).longValue() : 0L,
+                        map.get("trace") instanceof Map ? map.get("trace") : null);
+                return;
+            }
+        }
+        int i = claimSlot();
+        kinds[i]   = KIND_OBJECT;
+        objects[i] = event;
+        publish();
+    }
+
+    /**
+     * Smoothed values are NaN when the fix was not smoothed; trace is the
+     * event's LatencyTracer marks, or null.
+     */
+    private void offerLocation(double latitude, double longitude, double accuracy,
+                               String venueId, String buildingId, String floor, long timestamp,
+                               double smoothedLatitude, double smoothedLongitude, double smoothedAccuracy,
+                               long elapsedRealtimeNanos, Object trace) {
+        int i = claimSlot();
+        kinds[i]       = KIND_LOCATION;
+        objects[i]     = trace;
+        latitudes[i]   = latitude;
+        longitudes[i]  = longitude;
+        accuracies[i]  = accuracy;
+        timestamps[i]  = timestamp;
+        elapsedNanos[i] = elapsedRealtimeNanos;
+        smoothedLatitudes[i]  = smoothedLatitude;
+        smoothedLongitudes[i] = smoothedLongitude;
+        smoothedAccuracies[i] = smoothedAccuracy;
+        venueIds[i]    = venueId;
+        buildingIds[i] = buildingId;
+        floors[i]      = floor;
+        publish();
+    }
+
+    /** Makes room for one entry (evicting the oldest if full) and returns its slot index. */
+    private int claimSlot() {
+        long t = tail.get();
+        while (true) {
+            long h = head.get();
+            if (t - h < capacity) break;
+            if (head.compareAndSet(h, h + 1)) {
+                overwritten.incrementAndGet();
+                break;
+            }
+            // Lost the race against the consumer — there is room now; re-check.
+        }
+        return (int) (t & mask);
+    }
+
+    private void publish() {
+        tail.set(tail.get() + 1);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Consumer side
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Delivers up to {@code max} buffered events to the consumer, oldest first.
+     *
+     * @return number of events delivered
+     */
+    public int drain(Consumer consumer, int max) {
+        int delivered = 0;
+        while (delivered < max) {
+            long h = head.get();
+            if (h >= tail.get()) break;
+            Object event = read((int) (h & mask));
+            if (head.compareAndSet(h, h + 1)) {
+                consumer.accept(event);
+                delivered++;
+            }
+            // else: the producer evicted this entry while we were reading it.
+        }
+        return delivered;
+    }
+
+    public int drain(Consumer consumer) {
+        return drain(consumer, Integer.MAX_VALUE);
+    }
+
+    /** Discards all buffered events, counting them as dropped. */
+    public void clear() {
+        while (true) {
+            long h = head.get();
+            long t = tail.get();
+            if (h >= t) return;
+            if (head.compareAndSet(h, t)) {
+                dropped.addAndGet(t - h);
+                return;
+            }
+        }
+    }
+
+    private Object read(int i) {
+        if (kinds[i] == KIND_OBJECT) {
+            return objects[i];
+        }
+        if (MapxusEventUtil.isBinaryFormat()) {
+            return MapxusEventCodec.encodeLocation(
+                    latitudes[i], longitudes[i], accuracies[i],
+                    venueIds[i], buildingIds[i], floors[i], timestamps[i],
+                    smoothedLatitudes[i], smoothedLongitudes[i], smoothedAccuracies[i], elapsedNanos[i]);
+        }
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", "locationChange");
+        event.put("latitude", latitudes[i]);
+        event.put("longitude", longitudes[i]);
+        event.put("accuracy", accuracies[i]);
+        event.put("venueId", venueIds[i]);
+        event.put("buildingId", buildingIds[i]);
+        event.put("floor", floors[i]);
+        event.put("timestamp", timestamps[i]);
+        if (elapsedNanos[i] != 0) event.put("elapsedRealtimeNanos", elapsedNanos[i]);
+        if (!Double.isNaN(smoothedAccuracies[i])) {
+            event.put("smoothedLatitude", smoothedLatitudes[i]);
+            event.put("smoothedLongitude", smoothedLongitudes[i]);
+            event.put("smoothedAccuracy", smoothedAccuracies[i]);
+        }
+        if (objects[i] != null) event.put("trace", objects[i]);
+        return event;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Stats
+    // ─────────────────────────────────────────────────────────────────────────
+
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Oldest events evicted because the buffer was full. */
+    public long overwrittenCount() {
+        return overwritten.get();
+    }
+
+    /** Events discarded without delivery (e.g. the buffer was cleared). */
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("capacity", capacity);
+        stats.put("size", size());
+        stats.put("overwritten", overwrittenCount());
+        stats.put("dropped", droppedCount());
+        return stats;
+    }
+
+    private static int roundUpToPowerOfTwo(int value) {
+        int highest = Integer.highestOneBit(value);
+        return highest == value ? value : highest << 1;
+    }
+}
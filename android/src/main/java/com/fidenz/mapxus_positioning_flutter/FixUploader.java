@@ -0,0 +1,509 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.mapxus.positioning.positioning.api.MapxusLocation;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * FixUploader — ships the foreground service's fixes to an HTTP endpoint in
+ * compressed batches, natively, so uploads continue with the app closed and
+ * without a headless Flutter engine.
+ *
+ * Batching
+ * ────────
+ * Every raw SDK fix (like TrajectoryStore, before the location filter) is
+ * copied into a TrajectoryStore.Row on the dispatch thread and handed to the
+ * upload thread. A batch is sealed once batchSize fixes are pending or
+ * maxBatchDelayMs after the first one, whichever comes first, so the radio
+ * wakes once per batch rather than once per fix.
+ *
+ * Spool
+ * ─────
+ * A sealed batch is written straight to disk as one gzip-compressed JSON
+ * array (files/mapxus_upload/&lt;time&gt;-&lt;seq&gt;.json.gz, written to a
+ * temporary name and renamed) and uploaded from there, oldest first. Batches
+ * therefore survive process death and service restarts; only fixes not yet
+ * sealed are lost. When the spool exceeds maxSpoolBytes the oldest batches
+ * are deleted.
+ *
+ * Upload
+ * ──────
+ * Each file is POSTed as is (Content-Encoding: gzip) with the configured
+ * headers; headers that are not a valid name / value pair are dropped when
+ * parsed. 2xx deletes it. Other 4xx responses except 408 / 429 mean the
+ * server will never accept it, so it is deleted and counted as rejected.
+ * Everything else (5xx, 408, 429, I/O errors) is retried with exponential
+ * backoff from INITIAL_BACKOFF_MS up to MAX_BACKOFF_MS, plus up to 25 %
+ * jitter; a success resets it. A request that cannot even be built (the
+ * connection throws a RuntimeException) would fail the same way on every
+ * retry, so its batch is dropped and counted as rejected too.
+ *
+ * Conditions
+ * ──────────
+ * Uploads wait for a network with internet access and, if requested, an
+ * unmetered one and / or a charging device. While they do not hold, the
+ * spool is checked again every CONDITION_RECHECK_MS; sealing a batch also
+ * triggers a check.
+ *
+ * Threading
+ * ─────────
+ * Batching, disk and network I/O all run on one background HandlerThread.
+ */
+public final class FixUploader {
+
+    private static final String TAG = "MapxusFixUploader";
+
+    static final String SPOOL_DIR  = "mapxus_upload";
+    static final String SUFFIX     = ".json.gz";
+
+    public static final int  DEFAULT_BATCH_SIZE         = 100;
+    public static final long DEFAULT_MAX_BATCH_DELAY_MS = 60_000L;
+    public static final long DEFAULT_MAX_SPOOL_BYTES    = 4L * 1024 * 1024;
+    static final long INITIAL_BACKOFF_MS   = 5_000L;
+    static final long MAX_BACKOFF_MS       = 15L * 60 * 1000;
+    static final long CONDITION_RECHECK_MS = 60_000L;
+    static final int  TIMEOUT_MS           = 15_000;
+
+    /** Immutable uploader settings from startForegroundService. */
+    public static final class Config {
+        public static final Config DISABLED = new Config(null, Collections.emptyMap(), DEFAULT_BATCH_SIZE,
+                DEFAULT_MAX_BATCH_DELAY_MS, false, false, DEFAULT_MAX_SPOOL_BYTES);
+
+        /** Endpoint; null disables the uploader. */
+        @Nullable public final String url;
+        public final Map<String, String> headers;
+        public final int     batchSize;
+        public final long    maxBatchDelayMs;
+        public final boolean requireUnmetered;
+        public final boolean requireCharging;
+        public final long    maxSpoolBytes;
+
+        public Config(@Nullable String url, Map<String, String> headers, int batchSize, long maxBatchDelayMs,
+                      boolean requireUnmetered, boolean requireCharging, long maxSpoolBytes) {
+            this.url              = url != null && !url.isEmpty() ? url : null;
+            this.headers          = Collections.unmodifiableMap(headers);
+            this.batchSize        = Math.max(1, batchSize);
+            this.maxBatchDelayMs  = Math.max(0, maxBatchDelayMs);
+            this.requireUnmetered = requireUnmetered;
+            this.requireCharging  = requireCharging;
+            this.maxSpoolBytes    = Math.max(1, maxSpoolBytes);
+        }
+
+        public boolean isEnabled() {
+            return url != null;
+        }
+    }
+
+    /**
+     * Headers from a JSON object string; empty if json is null or invalid.
+     * Entries HttpURLConnection would refuse (a name that is not a token, a
+     * value with CR, LF, control or non-ASCII characters) are logged and skipped.
+     */
+    public static Map<String, String> parseHeaders(@Nullable String json) {
+        if (json == null || json.isEmpty()) return Collections.emptyMap();
+        Map<String, String> headers = new LinkedHashMap<>();
+        try {
+            JSONObject object = new JSONObject(json);
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                String value = object.getString(key);
+                if (!isHeaderName(key) || !isHeaderValue(value)) {
+                    Log.e(TAG, "Ignoring invalid upload header: " + JSONObject.quote(key));
+                    continue;
+                }
+                headers.put(key, value);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Invalid upload headers: " + e.getMessage());
+        }
+        return headers;
+    }
+
+    /** RFC 7230 token: visible ASCII except separators. */
+    static boolean isHeaderName(String name) {
+        if (name.isEmpty()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c <= 0x20 || c >= 0x7F || "()<>@,;:\\\"/[]?={}".indexOf(c) >= 0) return false;
+        }
+        return true;
+    }
+
+    /** Visible ASCII, space and tab only (what Android's OkHttp-backed connection accepts); no CR / LF. */
+    static boolean isHeaderValue(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < 0x20 && c != '\t') || c >= 0x7F) return false;
+        }
+        return true;
+    }
+
+    /** Whether the device currently allows an upload under config. */
+    interface Conditions {
+        boolean allowUpload(Config config);
+    }
+
+    /** Outcome of one upload attempt. */
+    enum Result { SENT, REJECTED, RETRY, EMPTY }
+
+    private static volatile FixUploader instance;
+
+    public static FixUploader getInstance(Context context) {
+        if (instance == null) {
+            synchronized (FixUploader.class) {
+                if (instance == null) {
+                    Context app = context.getApplicationContext();
+                    instance = new FixUploader(new File(app.getFilesDir(), SPOOL_DIR), new SystemConditions(app));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final File spoolDir;
+    private final Conditions conditions;
+    private final Handler ioHandler;
+
+    private volatile Config config = Config.DISABLED;
+
+    // ── Upload-thread state ───────────────────────────────────────────────────
+    private final ArrayList<TrajectoryStore.Row> pending = new ArrayList<>();
+    private int sequence;
+    private int failures;
+    /** elapsedRealtime before which no upload is attempted (backoff). */
+    private long retryAtMs;
+
+    private final Runnable sealTask  = this::seal;
+    private final Runnable drainTask = this::drain;
+
+    FixUploader(File spoolDir, Conditions conditions) {
+        this.spoolDir   = spoolDir;
+        this.conditions = conditions;
+        HandlerThread thread = new HandlerThread("MapxusUpload", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        this.ioHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Applies new settings. Disabling stops recording and uploading; batches
+     * already spooled are kept and sent once the uploader is enabled again.
+     */
+    public void configure(Config config) {
+        this.config = config;
+        ioHandler.post(() -> {
+            if (!config.isEnabled()) {
+                seal();
+                return;
+            }
+            retryAtMs = 0;
+            failures  = 0;
+            drain();
+        });
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Batching
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Adds one fix to the current batch; a no-op while disabled. Called on the dispatch thread. */
+    public void record(MapxusLocation location, long timestamp) {
+        if (!config.isEnabled() || location == null) return;
+        TrajectoryStore.Row row = TrajectoryStore.Row.of(location, timestamp);
+        ioHandler.post(() -> enqueue(row));
+    }
+
+    /** Seals the current batch now, e.g. when positioning stops. */
+    public void flushAsync() {
+        ioHandler.post(sealTask);
+    }
+
+    private void enqueue(TrajectoryStore.Row row) {
+        pending.add(row);
+        Config current = config;
+        if (pending.size() >= current.batchSize) {
+            seal();
+        } else if (pending.size() == 1) {
+            ioHandler.postDelayed(sealTask, current.maxBatchDelayMs);
+        }
+    }
+
+    private void seal() {
+        ioHandler.removeCallbacks(sealTask);
+        if (pending.isEmpty()) return;
+        try {
+            writeBatch(pending);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not spool " + pending.size() + " fixes: " + e.getMessage());
+            MapxusMetrics.add(MapxusMetrics.Counter.UPLOAD_FIXES_DROPPED, pending.size());
+        }
+        pending.clear();
+        drain();
+    }
+
+    /** Writes rows as one spool file and trims the spool; returns the file. */
+    File writeBatch(List<TrajectoryStore.Row> rows) throws IOException {
+        if (!spoolDir.isDirectory() && !spoolDir.mkdirs()) {
+            throw new IOException("Cannot create " + spoolDir);
+        }
+        String name = String.format(Locale.US, "%013d-%06d", System.currentTimeMillis(),
+                sequence++ % 1_000_000);
+        File temp = new File(spoolDir, name + ".tmp");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(temp)), StandardCharsets.UTF_8))) {
+            writeJson(out, rows);
+        }
+        File file = new File(spoolDir, name + SUFFIX);
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot rename " + temp);
+        }
+        MapxusMetrics.increment(MapxusMetrics.Counter.UPLOAD_BATCHES_SPOOLED);
+        MapxusMetrics.record(MapxusMetrics.Histogram.UPLOAD_BATCH_BYTES, file.length());
+        trimSpool(config.maxSpoolBytes);
+        return file;
+    }
+
+    /**
+     * [{"timestamp":…,"latitude":…,"longitude":…,"accuracy":…,"venueId":…,
+     * "buildingId":…,"floor":…}, …] — the field names of location events.
+     */
+    static void writeJson(Writer out, List<TrajectoryStore.Row> rows) throws IOException {
+        out.write('[');
+        for (int i = 0; i < rows.size(); i++) {
+            TrajectoryStore.Row row = rows.get(i);
+            if (i > 0) out.write(',');
+            out.write("{\"timestamp\":");
+            out.write(Long.toString(row.time));
+            out.write(",\"latitude\":");
+            writeNumber(out, row.latitude);
+            out.write(",\"longitude\":");
+            writeNumber(out, row.longitude);
+            out.write(",\"accuracy\":");
+            writeNumber(out, row.accuracy);
+            out.write(",\"venueId\":");
+            writeString(out, row.venueId);
+            out.write(",\"buildingId\":");
+            writeString(out, row.buildingId);
+            out.write(",\"floor\":");
+            writeString(out, row.floor);
+            out.write('}');
+        }
+        out.write(']');
+    }
+
+    private static void writeNumber(Writer out, double value) throws IOException {
+        out.write(Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+    }
+
+    private static void writeString(Writer out, @Nullable String value) throws IOException {
+        out.write(value != null ? JSONObject.quote(value) : "null");
+    }
+
+    /** Deletes the oldest batches until the spool fits in maxBytes. */
+    void trimSpool(long maxBytes) {
+        File[] files = spooled();
+        long total = 0;
+        for (File file : files) total += file.length();
+        for (int i = 0; i < files.length - 1 && total > maxBytes; i++) {
+            total -= files[i].length();
+            if (files[i].delete()) MapxusMetrics.increment(MapxusMetrics.Counter.UPLOAD_BATCHES_DROPPED);
+        }
+    }
+
+    /** Spooled batches, oldest first. */
+    File[] spooled() {
+        File[] files = spoolDir.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) return new File[0];
+        Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+        return files;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Upload
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Uploads spooled batches while conditions and backoff allow. Upload thread. */
+    private void drain() {
+        ioHandler.removeCallbacks(drainTask);
+        Config current = config;
+        if (!current.isEnabled()) return;
+        long now = SystemClock.elapsedRealtime();
+        if (now < retryAtMs) {
+            ioHandler.postDelayed(drainTask, retryAtMs - now);
+            return;
+        }
+        if (spooled().length == 0) return;
+        if (!conditions.allowUpload(current)) {
+            ioHandler.postDelayed(drainTask, CONDITION_RECHECK_MS);
+            return;
+        }
+        while (true) {
+            Result result = uploadNext(current);
+            if (result == Result.EMPTY) return;
+            if (result == Result.RETRY) {
+                long delay = backoffMs(failures);
+                delay += ThreadLocalRandom.current().nextLong(delay / 4 + 1);
+                retryAtMs = SystemClock.elapsedRealtime() + delay;
+                ioHandler.postDelayed(drainTask, delay);
+                return;
+            }
+        }
+    }
+
+    /** POSTs the oldest spooled batch and deletes it unless it should be retried. */
+    Result uploadNext(Config current) {
+        File[] files = spooled();
+        if (files.length == 0) return Result.EMPTY;
+        File file = files[0];
+        int status;
+        long start = SystemClock.elapsedRealtime();
+        try {
+            status = post(current, file);
+        } catch (IOException e) {
+            Log.w(TAG, "Upload failed: " + e.getMessage());
+            status = -1;
+        } catch (RuntimeException e) {
+            // E.g. IllegalArgumentException from setRequestProperty or an
+            // invalid URL; retrying cannot help, and must not kill this thread.
+            Log.e(TAG, "Cannot build upload request, dropping " + file.getName() + ": " + e);
+            file.delete();
+            MapxusMetrics.increment(MapxusMetrics.Counter.UPLOAD_BATCHES_REJECTED);
+            return Result.REJECTED;
+        }
+        MapxusMetrics.record(MapxusMetrics.Histogram.UPLOAD_REQUEST_MS, SystemClock.elapsedRealtime() - start);
+
+        if (status >= 200 && status < 300) {
+            file.delete();
+            failures = 0;
+            MapxusMetrics.increment(MapxusMetrics.Counter.UPLOAD_BATCHES_SENT);
+            return Result.SENT;
+        }
+        if (status >= 400 && status < 500 && status != 408 && status != 429) {
+            Log.e(TAG, "Batch rejected with HTTP " + status + ", dropping " + file.getName());
+            file.delete();
+            MapxusMetrics.increment(MapxusMetrics.Counter.UPLOAD_BATCHES_REJECTED);
+            return Result.REJECTED;
+        }
+        failures++;
+        MapxusMetrics.increment(MapxusMetrics.Counter.UPLOAD_FAILURES);
+        return Result.RETRY;
+    }
+
+    /** Returns the HTTP status. */
+    private static int post(Config config, File file) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(config.url).openConnection();
+        try {
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(file.length());
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            for (Map.Entry<String, String> header : config.headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            try (InputStream in = new FileInputStream(file); OutputStream out = connection.getOutputStream()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+            }
+            int status = connection.getResponseCode();
+            // Read the body so the connection can be reused.
+            InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (body != null) {
+                try (InputStream in = body) {
+                    byte[] buffer = new byte[1024];
+                    while (in.read(buffer) != -1) {
+                        // discard
+                    }
+                }
+            }
+            return status;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    static long backoffMs(int failures) {
+        int exponent = Math.min(Math.max(failures - 1, 0), 20);
+        return Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << exponent);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Conditions
+    // ─────────────────────────────────────────────────────────────────────────
+
+    static final class SystemConditions implements Conditions {
+        private final Context context;
+
+        SystemConditions(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public boolean allowUpload(Config config) {
+            ConnectivityManager connectivity =
+                    (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            NetworkCapabilities capabilities = connectivity != null
+                    ? connectivity.getNetworkCapabilities(connectivity.getActiveNetwork()) : null;
+            if (capabilities == null
+                    || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
+                return false;
+            }
+            if (config.requireUnmetered
+                    && !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)) {
+                return false;
+            }
+            if (config.requireCharging) {
+                // Sticky broadcast: no receiver is registered.
+                Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+                return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+            }
+            return true;
+        }
+    }
+}
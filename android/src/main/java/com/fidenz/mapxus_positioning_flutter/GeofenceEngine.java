@@ -0,0 +1,589 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.mapxus.positioning.positioning.api.MapxusLocation;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GeofenceEngine — native enter / exit / dwell evaluation for circle and
+ * polygon zones.
+ *
+ * Zones belong to exactly one venueId / buildingId / floor code. For each
+ * floor that has zones the engine builds a FloorIndex: zone geometry is
+ * projected once to a local east-north metre plane, and a uniform grid (at
+ * most GRID_CELLS × GRID_CELLS) maps every cell to the zones whose bounding
+ * box overlaps it. Evaluating a fix is then:
+ *
+ *  1. Find the fix's floor (cached until venue / building / floor changes).
+ *  2. Check zones the user is currently inside (usually 0–2). A zone is left
+ *     when the fix is on another floor or further than exitMarginMeters
+ *     outside it, so jitter on the boundary does not flap enter / exit.
+ *  3. Check the zones of the fix's grid cell that the user is not inside.
+ *  4. Fire dwell for zones entered at least dwellMs ago.
+ *
+ * All of this runs on preallocated arrays: evaluate() does not allocate
+ * unless a transition fires. Zones are replaced wholesale by setZones().
+ *
+ * Not thread-safe: every method except the counters must be called from the
+ * dispatch thread.
+ */
+public class GeofenceEngine {
+
+    /** Receives transitions; the engine itself never builds events. */
+    public interface Emitter {
+        void onTransition(String transition, Zone zone, double latitude, double longitude, long timeMs);
+    }
+
+    public static final String TRANSITION_ENTER = "enter";
+    public static final String TRANSITION_EXIT  = "exit";
+    public static final String TRANSITION_DWELL = "dwell";
+
+    public static final String PREFS_KEY_ZONES       = "geofence_zones";
+    public static final String PREFS_KEY_EXIT_MARGIN = "geofence_exit_margin_m";
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000.0;
+    private static final int    GRID_CELLS          = 64;
+    private static final double MIN_CELL_METERS     = 2.0;
+    private static final int[]  NO_ZONES            = new int[0];
+
+    private static final String TAG = "MapxusGeofence";
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Zones
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** One zone. Circle if vertices is null, otherwise a polygon. */
+    public static final class Zone {
+        public final String id;
+        public final String venueId;
+        public final String buildingId;
+        public final String floor;
+        public final long   dwellMs;
+
+        /** Circle centre / radius. */
+        final double latitude;
+        final double longitude;
+        final double radiusMeters;
+        /** Polygon as lat0, lon0, lat1, lon1, … (implicitly closed). */
+        final double[] vertices;
+
+        // Local-plane geometry, set by FloorIndex.
+        double cx, cy;
+        double[] xs, ys;
+        double minX, minY, maxX, maxY;
+
+        private Zone(String id, String venueId, String buildingId, String floor, long dwellMs,
+                     double latitude, double longitude, double radiusMeters, double[] vertices) {
+            this.id = id;
+            this.venueId = venueId;
+            this.buildingId = buildingId;
+            this.floor = floor;
+            this.dwellMs = Math.max(0, dwellMs);
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusMeters = radiusMeters;
+            this.vertices = vertices;
+        }
+
+        /**
+         * Parses a zone from the "setGeofences" argument map.
+         *
+         * @throws IllegalArgumentException if required fields are missing
+         */
+        public static Zone from(Map<?, ?> map) {
+            String id = (String) map.get("id");
+            if (id == null || id.isEmpty()) throw new IllegalArgumentException("Zone id is required");
+            String venueId    = (String) map.get("venueId");
+            String buildingId = (String) map.get("buildingId");
+            String floor      = (String) map.get("floor");
+            long dwellMs = map.get("dwellMs") instanceof Number ? ((Number) map.get("dwellMs")).longValue() : 0;
+
+            Object vertices = map.get("vertices");
+            if (vertices instanceof List) {
+                List<?> list = (List<?>) vertices;
+                if (list.size() < 6 || list.size() % 2 != 0) {
+                    throw new IllegalArgumentException("Polygon zone " + id + " needs at least 3 lat/lon pairs");
+                }
+                double[] coordinates = new double[list.size()];
+                for (int i = 0; i < coordinates.length; i++) {
+                    coordinates[i] = ((Number) list.get(i)).doubleValue();
+                }
+                return new Zone(id, venueId, buildingId, floor, dwellMs, 0, 0, 0, coordinates);
+            }
+
+            Object latitude  = map.get("latitude");
+            Object longitude = map.get("longitude");
+            Object radius    = map.get("radius");
+            if (!(latitude instanceof Number) || !(longitude instanceof Number) || !(radius instanceof Number)
+                    || ((Number) radius).doubleValue() <= 0) {
+                throw new IllegalArgumentException("Zone " + id + " needs vertices or latitude, longitude and radius > 0");
+            }
+            return new Zone(id, venueId, buildingId, floor, dwellMs,
+                    ((Number) latitude).doubleValue(), ((Number) longitude).doubleValue(),
+                    ((Number) radius).doubleValue(), null);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", id);
+            map.put("venueId", venueId);
+            map.put("buildingId", buildingId);
+            map.put("floor", floor);
+            map.put("dwellMs", dwellMs);
+            if (vertices != null) {
+                List<Object> list = new ArrayList<>(vertices.length);
+                for (double v : vertices) list.add(v);
+                map.put("vertices", list);
+            } else {
+                map.put("latitude", latitude);
+                map.put("longitude", longitude);
+                map.put("radius", radiusMeters);
+            }
+            return map;
+        }
+
+        boolean contains(double x, double y) {
+            if (xs == null) {
+                double dx = x - cx, dy = y - cy;
+                return dx * dx + dy * dy <= radiusMeters * radiusMeters;
+            }
+            return containsPoint(x, y);
+        }
+
+        /** Distance outside the zone in metres, 0 or less when inside. */
+        double outsideBy(double x, double y) {
+            if (xs == null) {
+                double dx = x - cx, dy = y - cy;
+                return Math.sqrt(dx * dx + dy * dy) - radiusMeters;
+            }
+            if (containsPoint(x, y)) return 0;
+            return distanceToEdges(x, y);
+        }
+
+        /** Even-odd ray cast. */
+        private boolean containsPoint(double x, double y) {
+            if (x < minX || x > maxX || y < minY || y > maxY) return false;
+            boolean inside = false;
+            for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+                if ((ys[i] > y) != (ys[j] > y)
+                        && x < (xs[j] - xs[i]) * (y - ys[i]) / (ys[j] - ys[i]) + xs[i]) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+
+        private double distanceToEdges(double x, double y) {
+            double best = Double.MAX_VALUE;
+            for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+                double ex = xs[i] - xs[j], ey = ys[i] - ys[j];
+                double lengthSq = ex * ex + ey * ey;
+                double t = lengthSq > 0 ? ((x - xs[j]) * ex + (y - ys[j]) * ey) / lengthSq : 0;
+                t = Math.max(0, Math.min(1, t));
+                double dx = x - (xs[j] + t * ex), dy = y - (ys[j] + t * ey);
+                best = Math.min(best, dx * dx + dy * dy);
+            }
+            return Math.sqrt(best);
+        }
+    }
+
+    /** Zones of one floor with their local projection and grid. */
+    private static final class FloorIndex {
+        final String venueId;
+        final String buildingId;
+        final String floor;
+        final double originLatitude;
+        final double originLongitude;
+        final double metersPerDegreeLat;
+        final double metersPerDegreeLon;
+        double gridMinX, gridMinY, cellSize;
+        int columns, rows;
+        int[][] cells;
+
+        FloorIndex(Zone first) {
+            venueId = first.venueId;
+            buildingId = first.buildingId;
+            floor = first.floor;
+            originLatitude  = first.vertices != null ? first.vertices[0] : first.latitude;
+            originLongitude = first.vertices != null ? first.vertices[1] : first.longitude;
+            metersPerDegreeLat = Math.toRadians(1) * EARTH_RADIUS_METERS;
+            metersPerDegreeLon = metersPerDegreeLat * Math.cos(Math.toRadians(originLatitude));
+        }
+
+        double x(double longitude) {
+            return (longitude - originLongitude) * metersPerDegreeLon;
+        }
+
+        double y(double latitude) {
+            return (latitude - originLatitude) * metersPerDegreeLat;
+        }
+
+        void project(Zone zone) {
+            if (zone.vertices == null) {
+                zone.cx = x(zone.longitude);
+                zone.cy = y(zone.latitude);
+                zone.minX = zone.cx - zone.radiusMeters;
+                zone.maxX = zone.cx + zone.radiusMeters;
+                zone.minY = zone.cy - zone.radiusMeters;
+                zone.maxY = zone.cy + zone.radiusMeters;
+                return;
+            }
+            int n = zone.vertices.length / 2;
+            zone.xs = new double[n];
+            zone.ys = new double[n];
+            zone.minX = zone.minY = Double.MAX_VALUE;
+            zone.maxX = zone.maxY = -Double.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                zone.ys[i] = y(zone.vertices[i * 2]);
+                zone.xs[i] = x(zone.vertices[i * 2 + 1]);
+                zone.minX = Math.min(zone.minX, zone.xs[i]);
+                zone.maxX = Math.max(zone.maxX, zone.xs[i]);
+                zone.minY = Math.min(zone.minY, zone.ys[i]);
+                zone.maxY = Math.max(zone.maxY, zone.ys[i]);
+            }
+        }
+
+        /** Builds the grid over the bounding box of the given zones (global indices). */
+        void buildGrid(Zone[] zones, List<Integer> members) {
+            double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+            double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            for (int index : members) {
+                Zone zone = zones[index];
+                minX = Math.min(minX, zone.minX);
+                minY = Math.min(minY, zone.minY);
+                maxX = Math.max(maxX, zone.maxX);
+                maxY = Math.max(maxY, zone.maxY);
+            }
+            gridMinX = minX;
+            gridMinY = minY;
+            cellSize = Math.max(MIN_CELL_METERS, Math.max(maxX - minX, maxY - minY) / GRID_CELLS);
+            columns  = Math.max(1, (int) Math.ceil((maxX - minX) / cellSize));
+            rows     = Math.max(1, (int) Math.ceil((maxY - minY) / cellSize));
+
+            List<List<Integer>> building = new ArrayList<>(columns * rows);
+            for (int i = 0; i < columns * rows; i++) building.add(null);
+            for (int index : members) {
+                Zone zone = zones[index];
+                int c0 = column(zone.minX), c1 = column(zone.maxX);
+                int r0 = row(zone.minY),    r1 = row(zone.maxY);
+                for (int r = r0; r <= r1; r++) {
+                    for (int c = c0; c <= c1; c++) {
+                        int cell = r * columns + c;
+                        if (building.get(cell) == null) building.set(cell, new ArrayList<>());
+                        building.get(cell).add(index);
+                    }
+                }
+            }
+            cells = new int[columns * rows][];
+            for (int i = 0; i < cells.length; i++) {
+                List<Integer> list = building.get(i);
+                if (list == null) {
+                    cells[i] = NO_ZONES;
+                    continue;
+                }
+                cells[i] = new int[list.size()];
+                for (int k = 0; k < list.size(); k++) cells[i][k] = list.get(k);
+            }
+        }
+
+        private int column(double x) {
+            return Math.max(0, Math.min(columns - 1, (int) ((x - gridMinX) / cellSize)));
+        }
+
+        private int row(double y) {
+            return Math.max(0, Math.min(rows - 1, (int) ((y - gridMinY) / cellSize)));
+        }
+
+        /** Candidate zones for a point, or NO_ZONES outside the grid. */
+        int[] candidates(double x, double y) {
+            if (x < gridMinX || y < gridMinY
+                    || x > gridMinX + columns * cellSize || y > gridMinY + rows * cellSize) {
+                return NO_ZONES;
+            }
+            return cells[row(y) * columns + column(x)];
+        }
+
+        boolean isFor(String venue, String building, String level) {
+            return Objects.equals(venueId, venue)
+                    && Objects.equals(buildingId, building)
+                    && Objects.equals(floor, level);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // State
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private Zone[] zones = new Zone[0];
+    private FloorIndex[] floors = new FloorIndex[0];
+    /** FloorIndex of each zone, by global index. */
+    private FloorIndex[] zoneFloors = new FloorIndex[0];
+    private double exitMarginMeters = 0;
+
+    private boolean[] inside     = new boolean[0];
+    private long[]    enteredAt  = new long[0];
+    private boolean[] dwellFired = new boolean[0];
+    /** Zones currently inside, compact; order is irrelevant. */
+    private int[] insideList = new int[0];
+    private int   insideCount = 0;
+
+    // Floor lookup cache.
+    private String cachedVenue;
+    private String cachedBuilding;
+    private String cachedFloor;
+    private FloorIndex cachedIndex;
+    private boolean cacheValid = false;
+
+    private final AtomicLong evaluated   = new AtomicLong();
+    private final AtomicLong enters      = new AtomicLong();
+    private final AtomicLong exits       = new AtomicLong();
+    private final AtomicLong dwells      = new AtomicLong();
+    private volatile int zoneCount = 0;
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Configuration
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Replaces every zone. Inside-state is kept for zones whose id survives,
+     * so updating the list does not fire spurious exit / enter pairs.
+     */
+    public void setZones(List<Zone> next, double exitMarginMeters) {
+        Map<String, Integer> previous = new HashMap<>();
+        for (int i = 0; i < zones.length; i++) previous.put(zones[i].id, i);
+
+        Zone[] nextZones = next.toArray(new Zone[0]);
+        List<FloorIndex> nextFloors = new ArrayList<>();
+        List<List<Integer>> members = new ArrayList<>();
+        FloorIndex[] nextZoneFloors = new FloorIndex[nextZones.length];
+        for (int i = 0; i < nextZones.length; i++) {
+            Zone zone = nextZones[i];
+            int f = 0;
+            while (f < nextFloors.size() && !nextFloors.get(f).isFor(zone.venueId, zone.buildingId, zone.floor)) f++;
+            if (f == nextFloors.size()) {
+                nextFloors.add(new FloorIndex(zone));
+                members.add(new ArrayList<>());
+            }
+            nextFloors.get(f).project(zone);
+            members.get(f).add(i);
+            nextZoneFloors[i] = nextFloors.get(f);
+        }
+        for (int f = 0; f < nextFloors.size(); f++) {
+            nextFloors.get(f).buildGrid(nextZones, members.get(f));
+        }
+
+        boolean[] nextInside     = new boolean[nextZones.length];
+        long[]    nextEnteredAt  = new long[nextZones.length];
+        boolean[] nextDwellFired = new boolean[nextZones.length];
+        int[]     nextInsideList = new int[nextZones.length];
+        int       nextInsideCount = 0;
+        for (int i = 0; i < nextZones.length; i++) {
+            Integer old = previous.get(nextZones[i].id);
+            if (old != null && inside[old]) {
+                nextInside[i] = true;
+                nextEnteredAt[i] = enteredAt[old];
+                nextDwellFired[i] = dwellFired[old];
+                nextInsideList[nextInsideCount++] = i;
+            }
+        }
+
+        zones = nextZones;
+        floors = nextFloors.toArray(new FloorIndex[0]);
+        zoneFloors = nextZoneFloors;
+        this.exitMarginMeters = Math.max(0, exitMarginMeters);
+        inside = nextInside;
+        enteredAt = nextEnteredAt;
+        dwellFired = nextDwellFired;
+        insideList = nextInsideList;
+        insideCount = nextInsideCount;
+        cacheValid = false;
+        zoneCount = zones.length;
+    }
+
+    public boolean isEmpty() {
+        return zones.length == 0;
+    }
+
+    /** Forgets which zones the user is in, e.g. when positioning stops. */
+    public void reset() {
+        Arrays.fill(inside, false);
+        Arrays.fill(dwellFired, false);
+        insideCount = 0;
+        cacheValid = false;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Evaluation
+    // ─────────────────────────────────────────────────────────────────────────
+
+    public void evaluate(MapxusLocation location, long timeMs, Emitter emitter) {
+        if (location == null || zones.length == 0) return;
+        evaluated.incrementAndGet();
+
+        double latitude  = location.getLatitude();
+        double longitude = location.getLongitude();
+        FloorIndex index = floorFor(location);
+        double x = 0, y = 0;
+        if (index != null) {
+            x = index.x(longitude);
+            y = index.y(latitude);
+        }
+
+        // Exits and dwells of the zones the user is in.
+        for (int k = insideCount - 1; k >= 0; k--) {
+            int z = insideList[k];
+            Zone zone = zones[z];
+            if (zoneFloors[z] != index || zone.outsideBy(x, y) > exitMarginMeters) {
+                inside[z] = false;
+                insideList[k] = insideList[--insideCount];
+                exits.incrementAndGet();
+                emitter.onTransition(TRANSITION_EXIT, zone, latitude, longitude, timeMs);
+            }
+        }
+
+        // Enters among the grid cell's candidates.
+        if (index != null) {
+            for (int z : index.candidates(x, y)) {
+                if (inside[z] || !zones[z].contains(x, y)) continue;
+                inside[z] = true;
+                enteredAt[z] = timeMs;
+                dwellFired[z] = false;
+                insideList[insideCount++] = z;
+                enters.incrementAndGet();
+                emitter.onTransition(TRANSITION_ENTER, zones[z], latitude, longitude, timeMs);
+            }
+        }
+
+        checkDwell(timeMs, latitude, longitude, emitter);
+    }
+
+    /**
+     * Fires dwell for zones entered at least dwellMs before timeMs. Also called
+     * from a timer so dwell fires while the duty cycler has paused fixes.
+     */
+    public void checkDwell(long timeMs, double latitude, double longitude, Emitter emitter) {
+        for (int k = 0; k < insideCount; k++) {
+            int z = insideList[k];
+            Zone zone = zones[z];
+            if (zone.dwellMs > 0 && !dwellFired[z] && timeMs - enteredAt[z] >= zone.dwellMs) {
+                dwellFired[z] = true;
+                dwells.incrementAndGet();
+                emitter.onTransition(TRANSITION_DWELL, zone, latitude, longitude, timeMs);
+            }
+        }
+    }
+
+    /** Earliest time a pending dwell becomes due, or -1 if none. */
+    public long nextDwellDueMs() {
+        long due = -1;
+        for (int k = 0; k < insideCount; k++) {
+            int z = insideList[k];
+            if (zones[z].dwellMs == 0 || dwellFired[z]) continue;
+            long at = enteredAt[z] + zones[z].dwellMs;
+            if (due == -1 || at < due) due = at;
+        }
+        return due;
+    }
+
+    private FloorIndex floorFor(MapxusLocation location) {
+        String venue    = location.getVenueId();
+        String building = location.getBuildingId();
+        String level    = location.getMapxusFloor() != null ? location.getMapxusFloor().getCode() : null;
+        if (cacheValid && Objects.equals(venue, cachedVenue)
+                && Objects.equals(building, cachedBuilding)
+                && Objects.equals(level, cachedFloor)) {
+            return cachedIndex;
+        }
+        FloorIndex found = null;
+        for (FloorIndex floor : floors) {
+            if (floor.isFor(venue, building, level)) {
+                found = floor;
+                break;
+            }
+        }
+        cachedVenue = venue;
+        cachedBuilding = building;
+        cachedFloor = level;
+        cachedIndex = found;
+        cacheValid = true;
+        return found;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Persistence — zones must survive a START_STICKY restart
+    // ─────────────────────────────────────────────────────────────────────────
+
+    public static void save(SharedPreferences prefs, List<Zone> zones, double exitMarginMeters) {
+        JSONArray array = new JSONArray();
+        for (Zone zone : zones) array.put(new JSONObject(zone.toMap()));
+        prefs.edit()
+                .putString(PREFS_KEY_ZONES, array.toString())
+                .putFloat(PREFS_KEY_EXIT_MARGIN, (float) exitMarginMeters)
+                .apply();
+    }
+
+    /** Zones saved by save(); empty if none or unreadable. */
+    public static List<Zone> load(SharedPreferences prefs) {
+        List<Zone> zones = new ArrayList<>();
+        String json = prefs.getString(PREFS_KEY_ZONES, null);
+        if (json == null) return zones;
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject object = array.getJSONObject(i);
+                Map<String, Object> map = new HashMap<>();
+                map.put("id", object.optString("id", null));
+                map.put("venueId", object.isNull("venueId") ? null : object.optString("venueId"));
+                map.put("buildingId", object.isNull("buildingId") ? null : object.optString("buildingId"));
+                map.put("floor", object.isNull("floor") ? null : object.optString("floor"));
+                map.put("dwellMs", object.optLong("dwellMs", 0));
+                JSONArray vertices = object.optJSONArray("vertices");
+                if (vertices != null) {
+                    List<Object> list = new ArrayList<>(vertices.length());
+                    for (int k = 0; k < vertices.length(); k++) list.add(vertices.getDouble(k));
+                    map.put("vertices", list);
+                } else {
+                    map.put("latitude", object.getDouble("latitude"));
+                    map.put("longitude", object.getDouble("longitude"));
+                    map.put("radius", object.getDouble("radius"));
+                }
+                zones.add(Zone.from(map));
+            }
+        } catch (JSONException | RuntimeException e) {
+            Log.e(TAG, "Ignoring unreadable saved geofences: " + e.getMessage());
+            zones.clear();
+        }
+        return zones;
+    }
+
+    public static double loadExitMargin(SharedPreferences prefs) {
+        return prefs.getFloat(PREFS_KEY_EXIT_MARGIN, 0f);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Stats
+    // ─────────────────────────────────────────────────────────────────────────
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("zones", zoneCount);
+        stats.put("evaluated", evaluated.get());
+        stats.put("enters", enters.get());
+        stats.put("exits", exits.get());
+        stats.put("dwells", dwells.get());
+        return stats;
+    }
+}
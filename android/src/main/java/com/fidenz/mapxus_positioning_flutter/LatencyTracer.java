@@ -0,0 +1,134 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LatencyTracer — measures how long location and orientation events take from
+ * the SDK callback to the hand-over to Flutter.
+ *
+ * Every location / orientation event carries elapsedRealtimeNanos, the
+ * monotonic time its SDK callback ran. When the event is handed to a sink —
+ * live stream, pending buffer flushed on app open, background isolate — one
+ * in sampleEvery events records its age into the MapxusMetrics histogram of
+ * that route, so getMetrics shows where the time goes:
+ *
+ *  • LATENCY_DISPATCH_QUEUE_US — SDK callback → foreground-service dispatch
+ *  • LATENCY_CLIENT_US         — SDK callback → stream, plugin's own client
+ *  • LATENCY_LIVE_US           — SDK callback → stream, foreground service
+ *  • LATENCY_PENDING_US        — SDK callback → stream, buffered while closed
+ *  • LATENCY_BACKGROUND_US     — SDK callback → background isolate
+ *
+ * With trace marks enabled, Map-format location events additionally carry a
+ * "trace" Map of stage → elapsedRealtimeNanos (listener, dispatch, sink), so
+ * single events can be followed end to end in Dart, including fixes that
+ * waited in the ring buffers while the app was closed (the buffers keep the
+ * Map). Binary records and journal replays carry no marks.
+ *
+ * Sampling is a shared counter; recording a sample is allocation-free.
+ */
+public final class LatencyTracer {
+
+    public static final String STAGE_LISTENER = "listener";
+    public static final String STAGE_DISPATCH = "dispatch";
+    public static final String STAGE_SINK     = "sink";
+
+    public static final int DEFAULT_SAMPLE_EVERY = 16;
+
+    /** Immutable settings parsed from init / startForegroundService. */
+    public static final class Config {
+        public static final Config DEFAULT = new Config(DEFAULT_SAMPLE_EVERY, false);
+
+        /** Record one in this many events into the histograms; 0 disables recording. */
+        public final int sampleEvery;
+        /** Attach per-stage marks to Map-format location events. */
+        public final boolean traceMarks;
+
+        public Config(int sampleEvery, boolean traceMarks) {
+            this.sampleEvery = Math.max(0, sampleEvery);
+            this.traceMarks  = traceMarks;
+        }
+
+        /** Builds a config from nullable channel / intent values; null means default. */
+        public static Config from(Number sampleEvery, Object traceMarks) {
+            return new Config(
+                    sampleEvery != null ? sampleEvery.intValue() : DEFAULT_SAMPLE_EVERY,
+                    Boolean.TRUE.equals(traceMarks));
+        }
+    }
+
+    private static volatile Config config = Config.DEFAULT;
+    private static final AtomicLong sequence = new AtomicLong();
+
+    private LatencyTracer() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static void configure(Config newConfig) {
+        config = newConfig != null ? newConfig : Config.DEFAULT;
+    }
+
+    public static Config getConfig() {
+        return config;
+    }
+
+    public static boolean isTraceMarksEnabled() {
+        return config.traceMarks;
+    }
+
+    /** A "trace" Map started at the SDK callback, or null when marks are off. */
+    public static Map<String, Object> newTrace(long listenerNanos) {
+        if (!config.traceMarks) return null;
+        Map<String, Object> trace = new HashMap<>(4);
+        trace.put(STAGE_LISTENER, listenerNanos);
+        return trace;
+    }
+
+    /** Records the SDK callback → dispatch-thread delay of a sampled event. */
+    public static void onDispatch(long listenerNanos) {
+        if (!sample()) return;
+        MapxusMetrics.record(MapxusMetrics.Histogram.LATENCY_DISPATCH_QUEUE_US,
+                (SystemClock.elapsedRealtimeNanos() - listenerNanos) / 1_000L);
+    }
+
+    /**
+     * Called right before an event is handed to a sink: adds the sink mark
+     * and records the event's age into the route's histogram when sampled.
+     */
+    public static void onSink(Object event, MapxusMetrics.Histogram route) {
+        Config cfg = config;
+        if (cfg.sampleEvery == 0 && !cfg.traceMarks) return;
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (cfg.traceMarks && event instanceof Map) {
+            Object trace = ((Map<?, ?>) event).get("trace");
+            if (trace instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> marks = (Map<String, Object>) trace;
+                marks.put(STAGE_SINK, now);
+            }
+        }
+        if (!sample()) return;
+        long captured = capturedNanos(event);
+        if (captured > 0) MapxusMetrics.record(route, (now - captured) / 1_000L);
+    }
+
+    /** elapsedRealtimeNanos of the SDK callback behind event, or 0 if it has none. */
+    static long capturedNanos(Object event) {
+        if (event instanceof Map) {
+            Object value = ((Map<?, ?>) event).get("elapsedRealtimeNanos");
+            return value instanceof Number ? ((Number) value).longValue() : 0L;
+        }
+        if (event instanceof byte[]) {
+            return MapxusEventCodec.elapsedNanosOf((byte[]) event);
+        }
+        return 0L;
+    }
+
+    private static boolean sample() {
+        int every = config.sampleEvery;
+        return every > 0 && sequence.getAndIncrement() % every == 0;
+    }
+}
@@ -0,0 +1,186 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.Locale;
+
+/**
+ * LiveStatusNotifier — turns the foreground service's fixes into the text of
+ * its ongoing notification: floor, building, accuracy and the age of the last
+ * fix, e.g. "L2 · building 4f1c8e3b · ±3 m · 20 s ago" (ids are shown in full).
+ *
+ * Every NotificationManager.notify is a binder call into system_server that
+ * also re-renders the notification, so updates are kept cheap:
+ *
+ *  • Rate limit — at most one update per minIntervalMs. Fixes arriving faster
+ *                 only replace the pending values; the newest one is shown
+ *                 when the interval elapses (trailing edge).
+ *  • Dedup      — the text is compared with the one last shown and nothing is
+ *                 sent when it is unchanged.
+ *  • Coarse age — "just now", then 10-second, minute and hour steps, so the
+ *                 text only changes when there is something new to read. The
+ *                 next refresh is scheduled for the moment the age text
+ *                 changes, not polled.
+ *
+ * Not thread-safe: everything except setConfig must be called on the looper
+ * backing the handler (the EventDispatcher thread in the service).
+ */
+public class LiveStatusNotifier {
+
+    public static final long DEFAULT_MIN_INTERVAL_MS = 5_000L;
+
+    /** Receives the new notification text; only called when it changed. */
+    public interface Sink {
+        void show(String content);
+    }
+
+    /** Immutable settings parsed from startForegroundService. */
+    public static final class Config {
+        public static final Config DISABLED = new Config(false, DEFAULT_MIN_INTERVAL_MS);
+
+        public final boolean enabled;
+        /** Shortest time between two notification updates. */
+        public final long minIntervalMs;
+
+        public Config(boolean enabled, long minIntervalMs) {
+            this.enabled       = enabled;
+            this.minIntervalMs = Math.max(1_000L, minIntervalMs);
+        }
+    }
+
+    private static final long JUST_NOW_MS = 10_000L;
+    private static final long MINUTE_MS   = 60_000L;
+    private static final long HOUR_MS     = 60 * MINUTE_MS;
+
+    private final Handler handler;
+    private final Sink sink;
+    private volatile Config config = Config.DISABLED;
+
+    // Latest fix, elapsedRealtime based.
+    private boolean hasFix = false;
+    private String  floor;
+    private String  buildingId;
+    private double  accuracy;
+    private long    fixElapsedMs;
+
+    private String  shownText;
+    private long    shownAtMs = Long.MIN_VALUE / 2;
+    /** elapsedRealtime at which render is due, or -1 when not scheduled. */
+    private long    renderDueMs = -1;
+
+    private final Runnable render = new Runnable() {
+        @Override
+        public void run() {
+            renderDueMs = -1;
+            renderNow();
+        }
+    };
+
+    public LiveStatusNotifier(Handler handler, Sink sink) {
+        this.handler = handler;
+        this.sink = sink;
+    }
+
+    public void setConfig(Config config) {
+        this.config = config != null ? config : Config.DISABLED;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Records a fix. The notification is updated now, or when the rate limit
+     * allows it.
+     */
+    public void onFix(String floor, String buildingId, double accuracy, long elapsedNanos) {
+        if (!config.enabled) return;
+        this.hasFix       = true;
+        this.floor        = floor;
+        this.buildingId   = buildingId;
+        this.accuracy     = accuracy;
+        this.fixElapsedMs = elapsedNanos / 1_000_000L;
+        scheduleRender(shownAtMs + config.minIntervalMs);
+    }
+
+    /**
+     * Forgets the text last shown, e.g. after the notification was rebuilt
+     * with its static content, so the next render sends it again.
+     */
+    public void invalidate() {
+        shownText = null;
+        if (hasFix && config.enabled) scheduleRender(shownAtMs + config.minIntervalMs);
+    }
+
+    /** Drops the last fix and any scheduled update. */
+    public void reset() {
+        handler.removeCallbacks(render);
+        renderDueMs = -1;
+        hasFix      = false;
+        floor       = null;
+        buildingId  = null;
+        shownText   = null;
+        shownAtMs   = Long.MIN_VALUE / 2;
+    }
+
+    private void renderNow() {
+        if (!hasFix || !config.enabled) return;
+        long now = SystemClock.elapsedRealtime();
+        long age = Math.max(0, now - fixElapsedMs);
+        String text = format(floor, buildingId, accuracy, age);
+        if (text.equals(shownText)) {
+            MapxusMetrics.increment(MapxusMetrics.Counter.NOTIFICATION_UPDATES_SKIPPED);
+        } else {
+            sink.show(text);
+            shownText = text;
+            shownAtMs = now;
+            MapxusMetrics.increment(MapxusMetrics.Counter.NOTIFICATION_UPDATES);
+        }
+        // Refresh the age once its text changes, unless a fix comes first.
+        scheduleRender(Math.max(now + msUntilAgeChanges(age), shownAtMs + config.minIntervalMs));
+    }
+
+    /** Schedules render at dueMs, keeping an earlier one that is already scheduled. */
+    private void scheduleRender(long dueMs) {
+        long now = SystemClock.elapsedRealtime();
+        dueMs = Math.max(now, dueMs);
+        if (renderDueMs >= 0 && renderDueMs <= dueMs) return;
+        handler.removeCallbacks(render);
+        renderDueMs = dueMs;
+        handler.postDelayed(render, dueMs - now);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Formatting
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Notification text for a fix of the given age; parts that are unknown are left out. */
+    static String format(String floor, String buildingId, double accuracy, long ageMs) {
+        StringBuilder text = new StringBuilder();
+        if (floor != null && !floor.isEmpty()) text.append(floor);
+        if (buildingId != null && !buildingId.isEmpty()) {
+            if (text.length() > 0) text.append(" · ");
+            text.append("building ").append(buildingId);
+        }
+        if (accuracy > 0) {
+            if (text.length() > 0) text.append(" · ");
+            text.append('±').append(Math.round(accuracy)).append(" m");
+        }
+        if (text.length() > 0) text.append(" · ");
+        return text.append(formatAge(ageMs)).toString();
+    }
+
+    static String formatAge(long ageMs) {
+        if (ageMs < JUST_NOW_MS) return "just now";
+        if (ageMs < MINUTE_MS)   return String.format(Locale.US, "%d s ago", ageMs / 10_000L * 10);
+        if (ageMs < HOUR_MS)     return String.format(Locale.US, "%d min ago", ageMs / MINUTE_MS);
+        return String.format(Locale.US, "%d h ago", ageMs / HOUR_MS);
+    }
+
+    /** Time until formatAge(ageMs) returns a different text. */
+    static long msUntilAgeChanges(long ageMs) {
+        long step = ageMs < MINUTE_MS ? 10_000L : ageMs < HOUR_MS ? MINUTE_MS : HOUR_MS;
+        return step - ageMs % step;
+    }
+}
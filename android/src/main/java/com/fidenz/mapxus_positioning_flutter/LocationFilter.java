@@ -0,0 +1,189 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import com.mapxus.positioning.positioning.api.MapxusLocation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LocationFilter — drops redundant fixes between the SDK listener and
+ * MapxusEventUtil, before any event is built.
+ *
+ * Decision order for each fix (when enabled):
+ *  1. First fix, or venue / building / floor differs from the last emitted
+ *     fix                                                  → emit (forced)
+ *  2. Same position, accuracy and place as the last emitted fix
+ *                                                          → drop (duplicate)
+ *  3. Less than minTimeMs since the last emitted fix       → drop (time)
+ *  4. Moved less than minDistanceMeters and accuracy did not improve by at
+ *     least accuracyImprovementMeters (0 = never overrides) → drop (distance)
+ *  5. Otherwise                                            → emit
+ *
+ * Disabled by default, in which case every fix passes and only the
+ * "received" / "emitted" counters move.
+ *
+ * Not thread-safe: accept() must be called from one thread at a time (the
+ * main thread for the plugin's client, the dispatch thread for the service).
+ * Counters may be read from any thread.
+ */
+public class LocationFilter {
+
+    /** Immutable filter settings parsed from init / startForegroundService. */
+    public static final class Config {
+        public static final Config DISABLED = new Config(false, 0, 0, 0);
+
+        public final boolean enabled;
+        public final double  minDistanceMeters;
+        public final long    minTimeMs;
+        public final double  accuracyImprovementMeters;
+
+        public Config(boolean enabled, double minDistanceMeters, long minTimeMs,
+                      double accuracyImprovementMeters) {
+            this.enabled                   = enabled;
+            this.minDistanceMeters         = Math.max(0, minDistanceMeters);
+            this.minTimeMs                 = Math.max(0, minTimeMs);
+            this.accuracyImprovementMeters = Math.max(0, accuracyImprovementMeters);
+        }
+
+        /** Builds a config from nullable channel values; null means 0 / off. */
+        public static Config from(Object enabled, Number minDistanceMeters, Number minTimeMs,
+                                  Number accuracyImprovementMeters) {
+            return new Config(
+                    Boolean.TRUE.equals(enabled),
+                    minDistanceMeters         != null ? minDistanceMeters.doubleValue()         : 0,
+                    minTimeMs                 != null ? minTimeMs.longValue()                   : 0,
+                    accuracyImprovementMeters != null ? accuracyImprovementMeters.doubleValue() : 0);
+        }
+    }
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000.0;
+
+    private volatile Config config = Config.DISABLED;
+
+    // Last emitted fix.
+    private boolean hasLast = false;
+    private double  lastLatitude;
+    private double  lastLongitude;
+    private double  lastAccuracy;
+    private long    lastTimeMs;
+    private String  lastVenueId;
+    private String  lastBuildingId;
+    private String  lastFloor;
+
+    private final AtomicLong received           = new AtomicLong();
+    private final AtomicLong emitted            = new AtomicLong();
+    private final AtomicLong forcedPlaceChange  = new AtomicLong();
+    private final AtomicLong droppedDuplicate   = new AtomicLong();
+    private final AtomicLong droppedTime        = new AtomicLong();
+    private final AtomicLong droppedDistance    = new AtomicLong();
+
+    public void setConfig(Config config) {
+        this.config = config != null ? config : Config.DISABLED;
+        hasLast = false;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    /** Forgets the last emitted fix so the next one always passes. */
+    public void reset() {
+        hasLast = false;
+    }
+
+    /**
+     * @return true if the fix should be emitted
+     */
+    public boolean accept(MapxusLocation location, long nowMs) {
+        received.incrementAndGet();
+        Config cfg = config;
+        if (!cfg.enabled || location == null) {
+            emitted.incrementAndGet();
+            return true;
+        }
+
+        double latitude  = location.getLatitude();
+        double longitude = location.getLongitude();
+        double accuracy  = location.getAccuracy();
+        String venueId    = location.getVenueId();
+        String buildingId = location.getBuildingId();
+        String floor      = location.getMapxusFloor() != null ? location.getMapxusFloor().getCode() : null;
+
+        if (!hasLast
+                || !Objects.equals(venueId, lastVenueId)
+                || !Objects.equals(buildingId, lastBuildingId)
+                || !Objects.equals(floor, lastFloor)) {
+            if (hasLast) forcedPlaceChange.incrementAndGet();
+            return emit(latitude, longitude, accuracy, venueId, buildingId, floor, nowMs);
+        }
+
+        if (latitude == lastLatitude && longitude == lastLongitude && accuracy == lastAccuracy) {
+            droppedDuplicate.incrementAndGet();
+            return false;
+        }
+
+        if (nowMs - lastTimeMs < cfg.minTimeMs) {
+            droppedTime.incrementAndGet();
+            return false;
+        }
+
+        boolean accuracyImproved = cfg.accuracyImprovementMeters > 0
+                && lastAccuracy - accuracy >= cfg.accuracyImprovementMeters;
+        if (cfg.minDistanceMeters > 0 && !accuracyImproved
+                && distanceMeters(lastLatitude, lastLongitude, latitude, longitude) < cfg.minDistanceMeters) {
+            droppedDistance.incrementAndGet();
+            return false;
+        }
+
+        return emit(latitude, longitude, accuracy, venueId, buildingId, floor, nowMs);
+    }
+
+    private boolean emit(double latitude, double longitude, double accuracy,
+                         String venueId, String buildingId, String floor, long nowMs) {
+        hasLast        = true;
+        lastLatitude   = latitude;
+        lastLongitude  = longitude;
+        lastAccuracy   = accuracy;
+        lastVenueId    = venueId;
+        lastBuildingId = buildingId;
+        lastFloor      = floor;
+        lastTimeMs     = nowMs;
+        emitted.incrementAndGet();
+        return true;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Stats
+    // ─────────────────────────────────────────────────────────────────────────
+
+    public long suppressedCount() {
+        return droppedDuplicate.get() + droppedTime.get() + droppedDistance.get();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", config.enabled);
+        stats.put("received", received.get());
+        stats.put("emitted", emitted.get());
+        stats.put("suppressed", suppressedCount());
+        stats.put("suppressedDuplicate", droppedDuplicate.get());
+        stats.put("suppressedTime", droppedTime.get());
+        stats.put("suppressedDistance", droppedDistance.get());
+        stats.put("forcedPlaceChange", forcedPlaceChange.get());
+        return stats;
+    }
+
+    /**
+     * Equirectangular approximation — the error is negligible at the
+     * distances compared here (metres within one building).
+     */
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double x = Math.toRadians(lon2 - lon1) * Math.cos((phi1 + phi2) / 2);
+        double y = phi2 - phi1;
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS_METERS;
+    }
+}
@@ -0,0 +1,295 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import com.mapxus.positioning.positioning.api.MapxusLocation;
+
+import java.util.Objects;
+
+/**
+ * LocationSmoother — constant-velocity Kalman filter for indoor fixes.
+ *
+ * State is [x, y, vx, vy] in metres / metres-per-second on a local east-north
+ * plane anchored at the first fix after a reset. Each fix is a position
+ * measurement with variance accuracy². Process noise models white
+ * acceleration with standard deviation processNoise (m/s²).
+ *
+ * Heading fusion
+ * ──────────────
+ * With fuseHeading, the latest compass heading θ adds a pseudo-measurement
+ * "no velocity across the heading": n·v = 0 with n = (cos θ, −sin θ). It only
+ * applies while the estimated speed is above MIN_HEADING_SPEED, so a
+ * stationary user turning the phone does not pull the position around.
+ *
+ * Resets
+ * ──────
+ * The filter restarts from the raw fix when venue, building or floor changes
+ * (positions on different floors must not be blended) and after a gap of
+ * more than MAX_GAP_MS.
+ *
+ * All state is primitive and preallocated, so update() does not allocate and
+ * can run at SDK rate inside the foreground service. Not thread-safe: update()
+ * and reset() must be called from one thread (the same rules as
+ * LocationFilter); setHeading() may be called from any thread.
+ */
+public class LocationSmoother {
+
+    /** Immutable smoothing settings parsed from init / startForegroundService. */
+    public static final class Config {
+        public static final Config DISABLED = new Config(false, DEFAULT_PROCESS_NOISE, true);
+
+        public final boolean enabled;
+        public final double  processNoise;
+        public final boolean fuseHeading;
+
+        public Config(boolean enabled, double processNoise, boolean fuseHeading) {
+            this.enabled      = enabled;
+            this.processNoise = processNoise > 0 ? processNoise : DEFAULT_PROCESS_NOISE;
+            this.fuseHeading  = fuseHeading;
+        }
+
+        /** Builds a config from nullable channel values. */
+        public static Config from(Object enabled, Number processNoise, Object fuseHeading) {
+            return new Config(
+                    Boolean.TRUE.equals(enabled),
+                    processNoise != null ? processNoise.doubleValue() : DEFAULT_PROCESS_NOISE,
+                    !Boolean.FALSE.equals(fuseHeading));
+        }
+    }
+
+    /** Walking acceleration noise, m/s². */
+    public static final double DEFAULT_PROCESS_NOISE = 1.0;
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000.0;
+    private static final long   MAX_GAP_MS          = 30_000L;
+    private static final double MIN_HEADING_SPEED   = 0.3;   // m/s
+    private static final double HEADING_VARIANCE    = 0.25;  // (m/s)² across the heading
+    private static final double MIN_ACCURACY        = 0.5;   // m, floor for measurement noise
+    private static final double INITIAL_VELOCITY_VARIANCE = 4.0;
+
+    private volatile Config config = Config.DISABLED;
+
+    // Local frame.
+    private boolean initialized = false;
+    private double  originLatitude;
+    private double  originLongitude;
+    private double  metersPerDegreeLat;
+    private double  metersPerDegreeLon;
+    private String  venueId;
+    private String  buildingId;
+    private String  floor;
+    private long    lastTimeMs;
+
+    // State and covariance (row-major 4×4), plus scratch for the update steps.
+    private final double[] x   = new double[4];
+    private final double[] p   = new double[16];
+    private final double[] tmp = new double[16];
+
+    // Latest compass heading, degrees clockwise from north; NaN until known.
+    private volatile double headingDegrees = Double.NaN;
+
+    // Output of the last update.
+    private boolean hasOutput = false;
+    private double  smoothedLatitude;
+    private double  smoothedLongitude;
+    private double  smoothedAccuracy;
+
+    public void setConfig(Config config) {
+        this.config = config != null ? config : Config.DISABLED;
+        reset();
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public boolean isEnabled() {
+        return config.enabled;
+    }
+
+    public void reset() {
+        initialized = false;
+        hasOutput = false;
+    }
+
+    /** Latest compass heading from onOrientationChange. */
+    public void setHeading(float degrees) {
+        headingDegrees = degrees;
+    }
+
+    /**
+     * Feeds one fix. Afterwards hasOutput() and the smoothed getters describe
+     * the filtered position for this fix.
+     */
+    public void update(MapxusLocation location, long timeMs) {
+        Config cfg = config;
+        if (!cfg.enabled || location == null) {
+            hasOutput = false;
+            return;
+        }
+
+        double latitude  = location.getLatitude();
+        double longitude = location.getLongitude();
+        double accuracy  = Math.max(MIN_ACCURACY, location.getAccuracy());
+        String fixVenue    = location.getVenueId();
+        String fixBuilding = location.getBuildingId();
+        String fixFloor    = location.getMapxusFloor() != null ? location.getMapxusFloor().getCode() : null;
+
+        if (!initialized
+                || timeMs - lastTimeMs > MAX_GAP_MS
+                || !Objects.equals(fixVenue, venueId)
+                || !Objects.equals(fixBuilding, buildingId)
+                || !Objects.equals(fixFloor, floor)) {
+            start(latitude, longitude, accuracy, fixVenue, fixBuilding, fixFloor, timeMs);
+            return;
+        }
+
+        double dt = (timeMs - lastTimeMs) / 1000.0;
+        lastTimeMs = timeMs;
+        if (dt > 0) predict(dt, cfg.processNoise);
+
+        double zx = (longitude - originLongitude) * metersPerDegreeLon;
+        double zy = (latitude  - originLatitude)  * metersPerDegreeLat;
+        updatePosition(zx, zy, accuracy * accuracy);
+
+        double heading = headingDegrees;
+        if (cfg.fuseHeading && !Double.isNaN(heading)
+                && x[2] * x[2] + x[3] * x[3] > MIN_HEADING_SPEED * MIN_HEADING_SPEED) {
+            double theta = Math.toRadians(heading);
+            updateCrossHeadingVelocity(Math.cos(theta), -Math.sin(theta));
+        }
+
+        publish();
+    }
+
+    public boolean hasOutput() {
+        return hasOutput;
+    }
+
+    public double getSmoothedLatitude() {
+        return smoothedLatitude;
+    }
+
+    public double getSmoothedLongitude() {
+        return smoothedLongitude;
+    }
+
+    /** One-sigma horizontal uncertainty of the smoothed position, in metres. */
+    public double getSmoothedAccuracy() {
+        return smoothedAccuracy;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Filter steps
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private void start(double latitude, double longitude, double accuracy,
+                       String venue, String building, String level, long timeMs) {
+        initialized = true;
+        originLatitude  = latitude;
+        originLongitude = longitude;
+        metersPerDegreeLat = Math.toRadians(1) * EARTH_RADIUS_METERS;
+        metersPerDegreeLon = metersPerDegreeLat * Math.cos(Math.toRadians(latitude));
+        venueId    = venue;
+        buildingId = building;
+        floor      = level;
+        lastTimeMs = timeMs;
+
+        x[0] = 0; x[1] = 0; x[2] = 0; x[3] = 0;
+        for (int i = 0; i < 16; i++) p[i] = 0;
+        double r = accuracy * accuracy;
+        p[0]  = r;
+        p[5]  = r;
+        p[10] = INITIAL_VELOCITY_VARIANCE;
+        p[15] = INITIAL_VELOCITY_VARIANCE;
+        publish();
+    }
+
+    /** x = F x, P = F P Fᵀ + Q for the constant-velocity model. */
+    private void predict(double dt, double sigmaA) {
+        x[0] += dt * x[2];
+        x[1] += dt * x[3];
+
+        // P' = F P Fᵀ, F = I + dt·(e0·e2ᵀ + e1·e3ᵀ). Rows first (F P), then columns (· Fᵀ).
+        for (int c = 0; c < 4; c++) {
+            p[c]     += dt * p[8 + c];
+            p[4 + c] += dt * p[12 + c];
+        }
+        for (int r = 0; r < 4; r++) {
+            p[r * 4]     += dt * p[r * 4 + 2];
+            p[r * 4 + 1] += dt * p[r * 4 + 3];
+        }
+
+        double q  = sigmaA * sigmaA;
+        double dt2 = dt * dt;
+        double qpp = q * dt2 * dt2 / 4;
+        double qpv = q * dt2 * dt / 2;
+        double qvv = q * dt2;
+        p[0]  += qpp;  p[2]  += qpv;
+        p[5]  += qpp;  p[7]  += qpv;
+        p[8]  += qpv;  p[10] += qvv;
+        p[13] += qpv;  p[15] += qvv;
+    }
+
+    /** Position measurement z = (zx, zy) with isotropic variance r. */
+    private void updatePosition(double zx, double zy, double r) {
+        // S = P[0:2,0:2] + r·I, inverted in closed form.
+        double s00 = p[0] + r, s01 = p[1], s10 = p[4], s11 = p[5] + r;
+        double det = s00 * s11 - s01 * s10;
+        if (det <= 0) return;
+        double i00 =  s11 / det, i01 = -s01 / det;
+        double i10 = -s10 / det, i11 =  s00 / det;
+
+        double y0 = zx - x[0];
+        double y1 = zy - x[1];
+
+        // K = P[:,0:2] · S⁻¹ (4×2), stored in tmp[0..7].
+        for (int row = 0; row < 4; row++) {
+            double a = p[row * 4], b = p[row * 4 + 1];
+            tmp[row * 2]     = a * i00 + b * i10;
+            tmp[row * 2 + 1] = a * i01 + b * i11;
+        }
+        for (int row = 0; row < 4; row++) {
+            x[row] += tmp[row * 2] * y0 + tmp[row * 2 + 1] * y1;
+        }
+        // P = P − K · P[0:2,:]. Copy the two rows first, they are overwritten.
+        for (int c = 0; c < 4; c++) {
+            tmp[8 + c]  = p[c];
+            tmp[12 + c] = p[4 + c];
+        }
+        for (int row = 0; row < 4; row++) {
+            double k0 = tmp[row * 2], k1 = tmp[row * 2 + 1];
+            for (int c = 0; c < 4; c++) {
+                p[row * 4 + c] -= k0 * tmp[8 + c] + k1 * tmp[12 + c];
+            }
+        }
+    }
+
+    /** Pseudo-measurement nx·vx + ny·vy = 0 (no velocity across the heading). */
+    private void updateCrossHeadingVelocity(double nx, double ny) {
+        // PHᵀ with H = [0, 0, nx, ny], stored in tmp[0..3].
+        for (int row = 0; row < 4; row++) {
+            tmp[row] = p[row * 4 + 2] * nx + p[row * 4 + 3] * ny;
+        }
+        double s = tmp[2] * nx + tmp[3] * ny + HEADING_VARIANCE;
+        if (s <= 0) return;
+        double innovation = -(nx * x[2] + ny * x[3]);
+        for (int row = 0; row < 4; row++) {
+            tmp[4 + row] = tmp[row] / s; // K
+        }
+        for (int row = 0; row < 4; row++) {
+            x[row] += tmp[4 + row] * innovation;
+        }
+        // P = P − K · (H P); H P is the transpose of P Hᵀ since P is symmetric.
+        for (int row = 0; row < 4; row++) {
+            for (int c = 0; c < 4; c++) {
+                p[row * 4 + c] -= tmp[4 + row] * tmp[c];
+            }
+        }
+    }
+
+    private void publish() {
+        hasOutput = true;
+        smoothedLatitude  = originLatitude  + x[1] / metersPerDegreeLat;
+        smoothedLongitude = originLongitude + x[0] / metersPerDegreeLon;
+        smoothedAccuracy  = Math.sqrt(Math.max(0, (p[0] + p[5]) / 2));
+    }
+}
@@ -0,0 +1,307 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import com.mapxus.positioning.positioning.api.MapxusLocation;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MapxusEventCodec — compact binary alternative to the Map event format.
+ *
+ * Every record is little-endian and starts with the same 4-byte header so the
+ * Dart decoder (MapxusEvent.fromBytes) can dispatch on the first byte.
+ *
+ * Location record (TYPE_LOCATION)
+ * ───────────────────────────────
+ * ┌────────┬──────┬──────────────────────────────────────────────────────┐
+ * │ Offset │ Size │ Field                                                │
+ * ├────────┼──────┼──────────────────────────────────────────────────────┤
+ * │ 0      │ 1    │ type (1)                                             │
+ * │ 1      │ 1    │ version                                              │
+ * │ 2      │ 1    │ flags (bit0 venueId, bit1 buildingId, bit2 floor,    │
+ * │        │      │        bit3 smoothed, bit4 elapsed)                  │
+ * │ 3      │ 1    │ reserved                                             │
+ * │ 4      │ 8    │ latitude  (float64)                                  │
+ * │ 12     │ 8    │ longitude (float64)                                  │
+ * │ 20     │ 8    │ accuracy  (float64)                                  │
+ * │ 28     │ 8    │ timestamp (int64, epoch millis)                      │
+ * │ 36     │ ...  │ present strings, each uint16 length + UTF-8 bytes    │
+ * │ ...    │ 24   │ if bit3: smoothed latitude, longitude, accuracy      │
+ * │        │      │ (3 × float64, see LocationSmoother)                  │
+ * │ ...    │ 8    │ if bit4: elapsedRealtimeNanos of the SDK callback    │
+ * │        │      │ (int64, always the last 8 bytes, see LatencyTracer)  │
+ * └────────┴──────┴──────────────────────────────────────────────────────┘
+ *
+ * Orientation record (TYPE_ORIENTATION)
+ * ─────────────────────────────────────
+ * ┌────────┬──────┬──────────────────────────────────────────────────────┐
+ * │ 0      │ 4    │ header (type 2, version, flags (bit0 timed), 0)      │
+ * │ 4      │ 4    │ orientation (float32, degrees)                       │
+ * │ 8      │ 4    │ sensor accuracy (int32)                              │
+ * │ 12     │ 4    │ samples dropped since last emission (int32)          │
+ * │ 16     │ 4    │ samples merged since last emission (int32)           │
+ * │ 20     │ 8    │ if bit0: timestamp (int64, epoch millis)             │
+ * │ 28     │ 8    │ if bit0: elapsedRealtimeNanos (int64)                │
+ * └────────┴──────┴──────────────────────────────────────────────────────┘
+ *
+ * Orientation batch record (TYPE_ORIENTATION_BATCH)
+ * ─────────────────────────────────────────────────
+ * ┌────────┬──────┬──────────────────────────────────────────────────────┐
+ * │ 0      │ 4    │ header (type 3, version, 0, 0)                       │
+ * │ 4      │ 4    │ sample count n (int32)                               │
+ * │ 8      │ 4    │ dropped (int32)                                      │
+ * │ 12     │ 4    │ merged (int32)                                       │
+ * │ 16     │ 16n  │ n × (orientation float32, accuracy int32,            │
+ * │        │      │      timestamp int64)                                │
+ * └────────┴──────┴──────────────────────────────────────────────────────┘
+ *
+ * Records are written into a reused direct ByteBuffer (one per thread) and
+ * only the final byte[] handed to the channel is allocated per event —
+ * StandardMessageCodec transfers it as a Uint8List without boxing.
+ */
+public final class MapxusEventCodec {
+
+    public static final byte TYPE_LOCATION    = 1;
+    public static final byte TYPE_ORIENTATION = 2;
+    public static final byte TYPE_ORIENTATION_BATCH = 3;
+
+    public static final byte VERSION = 1;
+
+    public static final int FLAG_VENUE    = 1;
+    public static final int FLAG_BUILDING = 1 << 1;
+    public static final int FLAG_FLOOR    = 1 << 2;
+    public static final int FLAG_SMOOTHED = 1 << 3;
+    public static final int FLAG_ELAPSED  = 1 << 4;
+
+    /** Orientation record flag: timestamp and elapsedRealtimeNanos follow. */
+    public static final int FLAG_TIMED = 1;
+
+    public static final int LOCATION_HEADER_SIZE = 36;
+    public static final int ORIENTATION_SIZE     = 20;
+    public static final int TIMED_ORIENTATION_SIZE = 36;
+    public static final int BATCH_HEADER_SIZE    = 16;
+    public static final int BATCH_SAMPLE_SIZE    = 16;
+
+    /** Upper bound for a single record; fits a full 256-sample batch. */
+    private static final int MAX_RECORD_SIZE = 8192;
+
+    private static final ThreadLocal<ByteBuffer> SCRATCH = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(MAX_RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    };
+
+    private MapxusEventCodec() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Encodes a location fix into a packed record, appending the smoothed
+     * position if the smoother produced one for this fix.
+     *
+     * @param elapsedNanos elapsedRealtimeNanos of the SDK callback; 0 omits it
+     */
+    public static byte[] encodeLocation(MapxusLocation location, long timestamp, long elapsedNanos,
+                                        LocationSmoother smoother) {
+        String floorCode = location.getMapxusFloor() != null
+                ? location.getMapxusFloor().getCode()
+                : null;
+        boolean smoothed = smoother != null && smoother.hasOutput();
+        return encodeLocation(
+                location.getLatitude(),
+                location.getLongitude(),
+                location.getAccuracy(),
+                location.getVenueId(),
+                location.getBuildingId(),
+                floorCode,
+                timestamp,
+                smoothed ? smoother.getSmoothedLatitude()  : Double.NaN,
+                smoothed ? smoother.getSmoothedLongitude() : Double.NaN,
+                smoothed ? smoother.getSmoothedAccuracy()  : Double.NaN,
+                elapsedNanos);
+    }
+
+    /**
+     * @param smoothedAccuracy NaN if there is no smoothed position (the extension is omitted)
+     * @param elapsedNanos     elapsedRealtimeNanos of the SDK callback; 0 omits it
+     */
+    public static byte[] encodeLocation(double latitude, double longitude, double accuracy,
+                                        String venueId, String buildingId, String floor,
+                                        long timestamp, double smoothedLatitude,
+                                        double smoothedLongitude, double smoothedAccuracy,
+                                        long elapsedNanos) {
+        ByteBuffer buf = SCRATCH.get();
+        buf.clear();
+
+        boolean smoothed = !Double.isNaN(smoothedAccuracy);
+        int flags = 0;
+        if (venueId    != null) flags |= FLAG_VENUE;
+        if (buildingId != null) flags |= FLAG_BUILDING;
+        if (floor      != null) flags |= FLAG_FLOOR;
+        if (smoothed)           flags |= FLAG_SMOOTHED;
+        if (elapsedNanos != 0)  flags |= FLAG_ELAPSED;
+
+        buf.put(TYPE_LOCATION).put(VERSION).put((byte) flags).put((byte) 0);
+        buf.putDouble(latitude);
+        buf.putDouble(longitude);
+        buf.putDouble(accuracy);
+        buf.putLong(timestamp);
+        putString(buf, venueId);
+        putString(buf, buildingId);
+        putString(buf, floor);
+        if (smoothed) {
+            buf.putDouble(smoothedLatitude);
+            buf.putDouble(smoothedLongitude);
+            buf.putDouble(smoothedAccuracy);
+        }
+        if (elapsedNanos != 0) buf.putLong(elapsedNanos);
+
+        return drain(buf);
+    }
+
+    /**
+     * Encodes a location event Map (as built by MapxusEventUtil.mapLocationEvent).
+     *
+     * @return the packed record, or null if the Map is not a location event
+     */
+    public static byte[] encodeLocationMap(Map<?, ?> event) {
+        if (!"locationChange".equals(event.get("type"))
+                || !(event.get("latitude") instanceof Number)) {
+            return null;
+        }
+        boolean smoothed = event.get("smoothedAccuracy") instanceof Number;
+        return encodeLocation(
+                ((Number) event.get("latitude")).doubleValue(),
+                ((Number) event.get("longitude")).doubleValue(),
+                ((Number) event.get("accuracy")).doubleValue(),
+                (String) event.get("venueId"),
+                (String) event.get("buildingId"),
+                (String) event.get("floor"),
+                ((Number) event.get("timestamp")).longValue(),
+                smoothed ? ((Number) event.get("smoothedLatitude")).doubleValue()  : Double.NaN,
+                smoothed ? ((Number) event.get("smoothedLongitude")).doubleValue() : Double.NaN,
+                smoothed ? ((Number) event.get("smoothedAccuracy")).doubleValue()  : Double.NaN,
+                event.get("elapsedRealtimeNanos") instanceof Number
+                        ? ((Number) event.get("elapsedRealtimeNanos")).longValue() : 0L);
+    }
+
+    /** True if the record is a packed location record. */
+    public static boolean isLocationRecord(byte[] record) {
+        return record.length >= LOCATION_HEADER_SIZE && record[0] == TYPE_LOCATION;
+    }
+
+    /**
+     * Decodes a packed location record back into the Map event format.
+     */
+    public static Map<String, Object> decodeLocationMap(byte[] record) {
+        ByteBuffer buf = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+        int flags = buf.get(2);
+        buf.position(4);
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", "locationChange");
+        event.put("latitude", buf.getDouble());
+        event.put("longitude", buf.getDouble());
+        event.put("accuracy", buf.getDouble());
+        event.put("timestamp", buf.getLong());
+        event.put("venueId",    (flags & FLAG_VENUE)    != 0 ? getString(buf) : null);
+        event.put("buildingId", (flags & FLAG_BUILDING) != 0 ? getString(buf) : null);
+        event.put("floor",      (flags & FLAG_FLOOR)    != 0 ? getString(buf) : null);
+        if ((flags & FLAG_SMOOTHED) != 0 && buf.remaining() >= 24) {
+            event.put("smoothedLatitude", buf.getDouble());
+            event.put("smoothedLongitude", buf.getDouble());
+            event.put("smoothedAccuracy", buf.getDouble());
+        }
+        if ((flags & FLAG_ELAPSED) != 0 && buf.remaining() >= 8) {
+            event.put("elapsedRealtimeNanos", buf.getLong());
+        }
+        return event;
+    }
+
+    /**
+     * Encodes a compass sample into a packed record.
+     *
+     * @param elapsedNanos elapsedRealtimeNanos of the SDK callback; 0 omits
+     *                     both times
+     */
+    public static byte[] encodeOrientation(float orientation, int accuracy, int dropped, int merged,
+                                           long timestamp, long elapsedNanos) {
+        ByteBuffer buf = SCRATCH.get();
+        buf.clear();
+        boolean timed = elapsedNanos != 0;
+        buf.put(TYPE_ORIENTATION).put(VERSION).put((byte) (timed ? FLAG_TIMED : 0)).put((byte) 0);
+        buf.putFloat(orientation);
+        buf.putInt(accuracy);
+        buf.putInt(dropped);
+        buf.putInt(merged);
+        if (timed) {
+            buf.putLong(timestamp);
+            buf.putLong(elapsedNanos);
+        }
+        return drain(buf);
+    }
+
+    /**
+     * elapsedRealtimeNanos carried by a location or orientation record, or 0
+     * if it has none. Reads a fixed position, nothing is decoded.
+     */
+    public static long elapsedNanosOf(byte[] record) {
+        if (record.length < 4) return 0L;
+        ByteBuffer buf = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+        if (record[0] == TYPE_LOCATION && (record[2] & FLAG_ELAPSED) != 0
+                && record.length >= LOCATION_HEADER_SIZE + 8) {
+            return buf.getLong(record.length - 8);
+        }
+        if (record[0] == TYPE_ORIENTATION && (record[2] & FLAG_TIMED) != 0
+                && record.length >= TIMED_ORIENTATION_SIZE) {
+            return buf.getLong(28);
+        }
+        return 0L;
+    }
+
+    /**
+     * Encodes the first {@code count} samples of the given arrays as one batch record.
+     */
+    public static byte[] encodeOrientationBatch(float[] orientations, int[] accuracies, long[] timestamps,
+                                                int count, int dropped, int merged) {
+        ByteBuffer buf = SCRATCH.get();
+        buf.clear();
+        int n = Math.min(count, (buf.capacity() - BATCH_HEADER_SIZE) / BATCH_SAMPLE_SIZE);
+        buf.put(TYPE_ORIENTATION_BATCH).put(VERSION).put((byte) 0).put((byte) 0);
+        buf.putInt(n);
+        buf.putInt(dropped);
+        buf.putInt(merged);
+        for (int i = 0; i < n; i++) {
+            buf.putFloat(orientations[i]);
+            buf.putInt(accuracies[i]);
+            buf.putLong(timestamps[i]);
+        }
+        return drain(buf);
+    }
+
+    private static void putString(ByteBuffer buf, String value) {
+        if (value == null) return;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, buf.remaining() - 2);
+        buf.putShort((short) length);
+        buf.put(bytes, 0, length);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int length = buf.getShort() & 0xFFFF;
+        String value = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+        buf.position(buf.position() + length);
+        return value;
+    }
+
+    private static byte[] drain(ByteBuffer buf) {
+        buf.flip();
+        byte[] out = new byte[buf.remaining()];
+        buf.get(out);
+        return out;
+    }
+}
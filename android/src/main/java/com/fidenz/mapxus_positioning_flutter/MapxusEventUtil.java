@@ -1,5 +1,7 @@
 package com.fidenz.mapxus_positioning_flutter;
 
+import android.os.SystemClock;
+
 import com.mapxus.positioning.positioning.api.MapxusLocation;
 
 import java.util.HashMap;
@@ -9,10 +11,39 @@ import io.flutter.plugin.common.EventChannel;
 
 public class MapxusEventUtil {
 
+    /** Values accepted by the "eventFormat" argument of init / startForegroundService. */
+    public static final String FORMAT_MAP    = "map";
+    public static final String FORMAT_BINARY = "binary";
+
+    /**
+     * When true, location and orientation events are sent as packed byte[]
+     * records (see MapxusEventCodec) instead of Maps. Maps stay the default so
+     * existing apps keep working without changes.
+     */
+    private static volatile boolean binaryFormat = false;
+
+    /**
+     * Selects the wire format for location and orientation events.
+     * Unknown or null values fall back to the Map format.
+     */
+    public static void setEventFormat(String format) {
+        binaryFormat = FORMAT_BINARY.equals(format);
+    }
+
+    public static boolean isBinaryFormat() {
+        return binaryFormat;
+    }
+
     /**
-     * Convert MapxusLocation to a Map<String, Object> for EventChannel
+     * Convert MapxusLocation to a Map<String, Object> for EventChannel, stamped
+     * with both times of the SDK callback: timestamp (epoch millis) and
+     * elapsedNanos (elapsedRealtimeNanos, 0 if unknown). smoothedLatitude /
+     * smoothedLongitude / smoothedAccuracy are added when the smoother produced
+     * a position for this fix, and the LatencyTracer marks when trace is not null
      */
-    public static Map<String, Object> mapLocationEvent(MapxusLocation location) {
+    public static Map<String, Object> mapLocationEvent(MapxusLocation location, long timestamp,
+                                                       long elapsedNanos, LocationSmoother smoother,
+                                                       Map<String, Object> trace) {
         Map<String, Object> event = new HashMap<>();
         event.put("type", "locationChange");
 
@@ -28,30 +59,76 @@ public class MapxusEventUtil {
                 floorCode = location.getMapxusFloor().getCode();
             }
             event.put("floor", floorCode);
+
+            if (smoother != null && smoother.hasOutput()) {
+                event.put("smoothedLatitude", smoother.getSmoothedLatitude());
+                event.put("smoothedLongitude", smoother.getSmoothedLongitude());
+                event.put("smoothedAccuracy", smoother.getSmoothedAccuracy());
+            }
         }
 
-        event.put("timestamp", System.currentTimeMillis());
+        event.put("timestamp", timestamp);
+        if (elapsedNanos != 0) event.put("elapsedRealtimeNanos", elapsedNanos);
+        if (trace != null) event.put("trace", trace);
         return event;
     }
 
     /**
-     * Convert Orientation data to a Map<String, Object> for EventChannel
+     * Convert Orientation data to a Map<String, Object> for EventChannel,
+     * including how many samples the OrientationCoalescer dropped / merged since
+     * the previous emission and the times of the SDK callback (omitted when
+     * elapsedNanos is 0)
      */
-    public static Map<String, Object> orientationChangeEvent(float orientation, int accuracy) {
+    public static Map<String, Object> orientationChangeEvent(float orientation, int accuracy,
+                                                             int dropped, int merged,
+                                                             long timestamp, long elapsedNanos) {
         Map<String, Object> event = new HashMap<>();
         event.put("type", "onOrientationChange");
         event.put("orientation", orientation);
         event.put("accuracy", accuracy);
+        if (dropped != 0 || merged != 0) {
+            event.put("dropped", dropped);
+            event.put("merged", merged);
+        }
+        if (elapsedNanos != 0) {
+            event.put("timestamp", timestamp);
+            event.put("elapsedRealtimeNanos", elapsedNanos);
+        }
         return event;
     }
 
+    /**
+     * Build a location event in the configured format (Map or packed byte[])
+     *
+     * @param trace LatencyTracer marks; only carried by the Map format
+     */
+    public static Object locationEvent(MapxusLocation location, long timestamp, long elapsedNanos,
+                                       LocationSmoother smoother, Map<String, Object> trace) {
+        if (binaryFormat && location != null) {
+            return MapxusEventCodec.encodeLocation(location, timestamp, elapsedNanos, smoother);
+        }
+        return mapLocationEvent(location, timestamp, elapsedNanos, smoother, trace);
+    }
+
+    /**
+     * Build an orientation event in the configured format (Map or packed byte[])
+     */
+    public static Object orientationEvent(float orientation, int accuracy, int dropped, int merged,
+                                          long timestamp, long elapsedNanos) {
+        if (binaryFormat) {
+            return MapxusEventCodec.encodeOrientation(orientation, accuracy, dropped, merged,
+                    timestamp, elapsedNanos);
+        }
+        return orientationChangeEvent(orientation, accuracy, dropped, merged, timestamp, elapsedNanos);
+    }
+
     /**
      * Helper to send location event to EventSink
      */
     public static void sendLocationEvent(EventChannel.EventSink events, MapxusLocation location) {
         if (events != null && location != null) {
-            Map<String, Object> event = mapLocationEvent(location);
-            events.success(event);
+            events.success(locationEvent(location, System.currentTimeMillis(),
+                    SystemClock.elapsedRealtimeNanos(), null, null));
         }
     }
 
@@ -60,8 +137,7 @@ public class MapxusEventUtil {
      */
     public static void sendOrientationEvent(EventChannel.EventSink events, float orientation, int accuracy) {
         if (events != null) {
-            Map<String, Object> event = orientationChangeEvent(orientation, accuracy);
-            events.success(event);
+            events.success(orientationEvent(orientation, accuracy, 0, 0, 0L, 0L));
         }
     }
 
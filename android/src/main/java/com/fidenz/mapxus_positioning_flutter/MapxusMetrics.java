@@ -0,0 +1,256 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MapxusMetrics — process-wide counters and histograms for the event hot paths.
+ *
+ * Counters are LongAdders, so concurrent increments from the main thread, the
+ * dispatch thread and sensor callbacks land in separate cells instead of
+ * contending on one word. Metrics are identified by enum constant and stored
+ * in arrays indexed by ordinal: recording is a field load plus an add, with
+ * no map lookup or allocation.
+ *
+ * Histograms use power-of-two buckets (bucket i holds values in
+ * [2^(i-1), 2^i), bucket 0 holds 0), which is enough to tell 2 ms from 200 ms
+ * and keeps recording allocation-free. Percentiles in a snapshot are the
+ * upper bound of the bucket they fall in.
+ *
+ * snapshot() does not stop writers, so a snapshot taken under load may be
+ * off by the few events recorded while it was being read.
+ */
+public final class MapxusMetrics {
+
+    /** Monotonic event counters. */
+    public enum Counter {
+        // Foreground-service event routing
+        EVENTS_DISPATCHED,
+        ROUTED_LIVE,
+        ROUTED_PENDING,
+        ROUTED_BACKGROUND,
+        ROUTED_JOURNAL,
+        ROUTED_BACK_AFTER_CANCEL,
+        // Flush paths
+        MAIN_FLUSHES,
+        PENDING_FLUSHED,
+        PENDING_FLUSH_CHUNKS,
+        BACKGROUND_BATCHES,
+        BACKGROUND_EVENTS_SENT,
+        BACKGROUND_ENGINE_STARTS,
+        BACKGROUND_ENGINE_FAILURES,
+        // Plugin's own positioning client
+        CLIENT_LOCATIONS,
+        CLIENT_LOCATIONS_SUPPRESSED,
+        CLIENT_ORIENTATIONS,
+        CLIENT_STATE_CHANGES,
+        CLIENT_ERRORS,
+        // Foreground service positioning client
+        SERVICE_LOCATIONS,
+        SERVICE_LOCATIONS_SUPPRESSED,
+        SERVICE_ORIENTATIONS,
+        SERVICE_STATE_CHANGES,
+        SERVICE_ERRORS,
+        // Foreground service lifecycle
+        SERVICE_STARTS,
+        SERVICE_RESTARTS,
+        SERVICE_STOPS,
+        SERVICE_TASK_REMOVED,
+        SERVICE_START_FAILURES,
+        DUTY_CYCLE_PAUSES,
+        DUTY_CYCLE_RESUMES,
+        // Separate-process service channel (counted in the app process)
+        REMOTE_DOORBELLS,
+        REMOTE_EVENTS_RECEIVED,
+        REMOTE_EVENTS_DROPPED,
+        // Native fix uploader
+        UPLOAD_BATCHES_SPOOLED,
+        UPLOAD_BATCHES_SENT,
+        UPLOAD_BATCHES_REJECTED,
+        UPLOAD_BATCHES_DROPPED,
+        UPLOAD_FIXES_DROPPED,
+        UPLOAD_FAILURES,
+        // Live status notification
+        NOTIFICATION_UPDATES,
+        NOTIFICATION_UPDATES_SKIPPED;
+
+        final String key = toKey(name());
+    }
+
+    /** Value distributions. Units are part of the name. */
+    public enum Histogram {
+        MAIN_FLUSH_BATCH_SIZE,
+        BACKGROUND_BATCH_SIZE,
+        PENDING_FLUSH_SIZE,
+        PENDING_FLUSH_CHUNK_US,
+        BACKGROUND_ENGINE_STARTUP_MS,
+        BACKGROUND_FIRST_EVENT_COLD_MS,
+        BACKGROUND_FIRST_EVENT_WARM_MS,
+        // Sampled event age at each hand-over, see LatencyTracer
+        LATENCY_DISPATCH_QUEUE_US,
+        LATENCY_CLIENT_US,
+        LATENCY_LIVE_US,
+        LATENCY_PENDING_US,
+        LATENCY_BACKGROUND_US,
+        UPLOAD_BATCH_BYTES,
+        UPLOAD_REQUEST_MS;
+
+        final String key = toKey(name());
+    }
+
+    private static final int BUCKETS = 64;
+
+    private static final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private static final HistogramCells[] histograms = new HistogramCells[Histogram.values().length];
+    private static volatile long sinceMs = SystemClock.elapsedRealtime();
+
+    static {
+        for (int i = 0; i < counters.length; i++) counters[i] = new LongAdder();
+        for (int i = 0; i < histograms.length; i++) histograms[i] = new HistogramCells();
+    }
+
+    private MapxusMetrics() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Recording
+    // ─────────────────────────────────────────────────────────────────────────
+
+    public static void increment(Counter counter) {
+        counters[counter.ordinal()].increment();
+    }
+
+    public static void add(Counter counter, long delta) {
+        if (delta != 0) counters[counter.ordinal()].add(delta);
+    }
+
+    /** Records one value; negative values are recorded as 0. */
+    public static void record(Histogram histogram, long value) {
+        histograms[histogram.ordinal()].record(Math.max(0L, value));
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Snapshot
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * @param reset zero every metric after reading it, so the next snapshot
+     *              covers only what happened in between
+     */
+    public static Map<String, Object> snapshot(boolean reset) {
+        long now = SystemClock.elapsedRealtime();
+
+        Map<String, Object> counterValues = new HashMap<>();
+        for (Counter counter : Counter.values()) {
+            LongAdder adder = counters[counter.ordinal()];
+            counterValues.put(counter.key, reset ? adder.sumThenReset() : adder.sum());
+        }
+
+        Map<String, Object> histogramValues = new HashMap<>();
+        for (Histogram histogram : Histogram.values()) {
+            histogramValues.put(histogram.key, histograms[histogram.ordinal()].snapshot(reset));
+        }
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("counters", counterValues);
+        snapshot.put("histograms", histogramValues);
+        snapshot.put("periodMs", now - sinceMs);
+        if (reset) sinceMs = now;
+        return snapshot;
+    }
+
+    /** EVENTS_DISPATCHED → "eventsDispatched". */
+    private static String toKey(String name) {
+        StringBuilder key = new StringBuilder(name.length());
+        boolean upper = false;
+        for (char c : name.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                key.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return key.toString();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Histogram storage
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private static final class HistogramCells {
+        final LongAdder[] buckets = new LongAdder[BUCKETS];
+        final LongAdder count = new LongAdder();
+        final LongAdder sum = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+        HistogramCells() {
+            for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+        }
+
+        void record(long value) {
+            buckets[BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        Map<String, Object> snapshot(boolean reset) {
+            long[] values = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                values[i] = reset ? buckets[i].sumThenReset() : buckets[i].sum();
+                total += values[i];
+            }
+            long countValue = reset ? count.sumThenReset() : count.sum();
+            long sumValue   = reset ? sum.sumThenReset()   : sum.sum();
+            long maxValue   = reset ? max.getThenReset()   : max.get();
+
+            Map<String, Object> out = new HashMap<>();
+            out.put("count", countValue);
+            out.put("sum", sumValue);
+            out.put("max", maxValue);
+            out.put("mean", countValue > 0 ? (double) sumValue / countValue : 0.0);
+            out.put("p50", percentile(values, total, 0.50));
+            out.put("p90", percentile(values, total, 0.90));
+            out.put("p99", percentile(values, total, 0.99));
+
+            // Non-empty buckets only, as [upper bound, count] pairs.
+            List<Object> nonEmpty = new ArrayList<>();
+            for (int i = 0; i < BUCKETS; i++) {
+                if (values[i] == 0) continue;
+                List<Object> bucket = new ArrayList<>(2);
+                bucket.add(upperBound(i));
+                bucket.add(values[i]);
+                nonEmpty.add(bucket);
+            }
+            out.put("buckets", nonEmpty);
+            return out;
+        }
+
+        private static long percentile(long[] values, long total, double percentile) {
+            if (total == 0) return 0L;
+            long rank = (long) Math.ceil(percentile * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += values[i];
+                if (seen >= rank) return upperBound(i);
+            }
+            return upperBound(BUCKETS - 1);
+        }
+
+        /** Largest value stored in bucket i. */
+        private static long upperBound(int bucket) {
+            if (bucket == 0) return 0L;
+            return bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mapxus.positioning.positioning.api.ErrorInfo;
+import com.mapxus.positioning.positioning.api.MapxusLocation;
+import com.mapxus.positioning.positioning.api.PositioningState;
+
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * MapxusNativePositioning — public subscription API for native Android code
+ * (other plugins, services, views) that needs fixes without a round trip
+ * through Dart.
+ *
+ * Listeners receive the callbacks of the process's PositioningSession as
+ * typed, immutable objects, stamped once at the SDK callback like every
+ * other event. They see raw fixes: before the service's geofences,
+ * location filter and smoother.
+ *
+ *   MapxusNativePositioning.getInstance().addListener(executor, new Listener() {
+ *       @Override public void onLocation(Fix fix) { ... }
+ *   });
+ *
+ * Registering a listener does not start positioning; fixes flow while the
+ * app's client (start) or the foreground service runs. With
+ * separateProcess the service's session lives in the other process, so
+ * only the app's own client reaches listeners here.
+ *
+ * Thread safety: listeners are kept in a copy-on-write list, so adding and
+ * removing from any thread never blocks delivery, and delivery (main
+ * thread) never locks. Each callback runs on the listener's executor; an
+ * exception thrown by a listener is logged and does not reach the others.
+ */
+public final class MapxusNativePositioning {
+
+    private static final String TAG = "MapxusNativePositioning";
+
+    /** Receives positioning callbacks; override only what is needed. */
+    public interface Listener {
+        default void onLocation(@NonNull Fix fix) {}
+
+        default void onOrientation(@NonNull Orientation orientation) {}
+
+        default void onStateChange(@NonNull PositioningState state) {}
+
+        default void onError(int code, @Nullable String message) {}
+    }
+
+    /** One location fix as delivered by the SDK. */
+    public static final class Fix {
+        public final double latitude;
+        public final double longitude;
+        /** Meters. */
+        public final double accuracy;
+        @Nullable public final String venueId;
+        @Nullable public final String buildingId;
+        /** Floor code, null outside buildings. */
+        @Nullable public final String floor;
+        /** Epoch millis of the SDK callback. */
+        public final long timestamp;
+        /** SystemClock.elapsedRealtimeNanos() of the SDK callback. */
+        public final long elapsedRealtimeNanos;
+
+        Fix(MapxusLocation location, long timestamp, long elapsedRealtimeNanos) {
+            this.latitude   = location.getLatitude();
+            this.longitude  = location.getLongitude();
+            this.accuracy   = location.getAccuracy();
+            this.venueId    = location.getVenueId();
+            this.buildingId = location.getBuildingId();
+            this.floor      = location.getMapxusFloor() != null ? location.getMapxusFloor().getCode() : null;
+            this.timestamp  = timestamp;
+            this.elapsedRealtimeNanos = elapsedRealtimeNanos;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "Fix{%.7f, %.7f, ±%.1fm, floor=%s, t=%d}",
+                    latitude, longitude, accuracy, floor, timestamp);
+        }
+    }
+
+    /** One compass sample as delivered by the SDK. */
+    public static final class Orientation {
+        /** Degrees clockwise from north. */
+        public final float degrees;
+        /** SensorManager.SENSOR_STATUS_* of the sample. */
+        public final int accuracy;
+        /** Epoch millis of the SDK callback. */
+        public final long timestamp;
+        /** SystemClock.elapsedRealtimeNanos() of the SDK callback. */
+        public final long elapsedRealtimeNanos;
+
+        Orientation(float degrees, int accuracy, long timestamp, long elapsedRealtimeNanos) {
+            this.degrees   = degrees;
+            this.accuracy  = accuracy;
+            this.timestamp = timestamp;
+            this.elapsedRealtimeNanos = elapsedRealtimeNanos;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "Orientation{%.1f°, accuracy=%d, t=%d}", degrees, accuracy, timestamp);
+        }
+    }
+
+    private static final class Registration {
+        final Listener listener;
+        final Executor executor;
+
+        Registration(Listener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+
+    private static final MapxusNativePositioning instance = new MapxusNativePositioning();
+
+    public static MapxusNativePositioning getInstance() {
+        return instance;
+    }
+
+    private final CopyOnWriteArrayList<Registration> registrations = new CopyOnWriteArrayList<>();
+    private final Executor mainExecutor = new Handler(Looper.getMainLooper())::post;
+
+    MapxusNativePositioning() {
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Public API
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Adds listener with callbacks on the main thread. */
+    public void addListener(@NonNull Listener listener) {
+        addListener(mainExecutor, listener);
+    }
+
+    /**
+     * Adds listener with callbacks on executor. A direct executor
+     * (Runnable::run) calls it inside the SDK callback on the main thread,
+     * which must then return quickly. Adding a listener again replaces its
+     * executor.
+     */
+    public synchronized void addListener(@NonNull Executor executor, @NonNull Listener listener) {
+        removeListener(listener);
+        registrations.add(new Registration(listener, executor));
+    }
+
+    /** Returns false if listener was not added. Callbacks already queued on its executor still run. */
+    public synchronized boolean removeListener(@NonNull Listener listener) {
+        for (Registration registration : registrations) {
+            if (registration.listener == listener) return registrations.remove(registration);
+        }
+        return false;
+    }
+
+    public int listenerCount() {
+        return registrations.size();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Delivery (PositioningSession, main thread)
+    // ─────────────────────────────────────────────────────────────────────────
+
+    void dispatchLocation(@Nullable MapxusLocation location, long timestamp, long elapsedNanos) {
+        if (location == null || registrations.isEmpty()) return;
+        Fix fix = new Fix(location, timestamp, elapsedNanos);
+        for (Registration registration : registrations) {
+            deliver(registration, () -> registration.listener.onLocation(fix));
+        }
+    }
+
+    void dispatchOrientation(float orientation, int accuracy, long timestamp, long elapsedNanos) {
+        if (registrations.isEmpty()) return;
+        Orientation sample = new Orientation(orientation, accuracy, timestamp, elapsedNanos);
+        for (Registration registration : registrations) {
+            deliver(registration, () -> registration.listener.onOrientation(sample));
+        }
+    }
+
+    void dispatchStateChange(PositioningState state) {
+        for (Registration registration : registrations) {
+            deliver(registration, () -> registration.listener.onStateChange(state));
+        }
+    }
+
+    void dispatchError(ErrorInfo errorInfo) {
+        int code = errorInfo.getErrorCode();
+        String message = errorInfo.getErrorMessage();
+        for (Registration registration : registrations) {
+            deliver(registration, () -> registration.listener.onError(code, message));
+        }
+    }
+
+    private static void deliver(Registration registration, Runnable callback) {
+        try {
+            registration.executor.execute(() -> {
+                try {
+                    callback.run();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Listener failed: " + e.getMessage(), e);
+                }
+            });
+        } catch (RuntimeException e) {
+            // e.g. RejectedExecutionException from a shut-down executor
+            Log.w(TAG, "Executor rejected callback: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Process;
+
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * MapxusPluginConfig — process-wide, in-memory view of "mapxus_fg_service_prefs"
+ * (or of REMOTE_PREFS_NAME in RemotePositioningService's process).
+ *
+ * The hot paths (event routing, isForegroundServiceRunning, listener
+ * re-registration, background engine start, service restarts) read the
+ * background handles, credentials and the service-running flag from volatile
+ * fields here instead of going through SharedPreferences each time.
+ *
+ * Consistency
+ * ───────────
+ * Writers go through this class, which updates the fields first and then
+ * persists with apply(), so a read straight after a write sees the new value.
+ * Writes made directly to the prefs file are picked up through an
+ * OnSharedPreferenceChangeListener. A fresh process (system restart,
+ * MapxusServiceRestartReceiver) loads the file once on first use.
+ *
+ * The foreground service's own settings (filter, smoothing, journal, …) are
+ * not cached here; each group is a Settings read through load(), which
+ * takes them from the start intent and saves them, or restores the saved
+ * ones when the service is restarted without extras.
+ *
+ * With RemotePositioningService each process has its own instance and its
+ * own file. SharedPreferences keeps a per-process copy and every apply()
+ * rewrites the whole file, so a shared file would lose the other process's
+ * keys. The service process keeps its settings, credentials and zones in
+ * REMOTE_PREFS_NAME for its restarts; the app process writes the
+ * credentials to its own file as well (isServiceRunning, restart receiver)
+ * and clears that on stop. Nothing is read across the two files; what the
+ * service needs at runtime comes with the start intent or over its binder.
+ */
+public final class MapxusPluginConfig implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    public static final String PREFS_NAME = "mapxus_fg_service_prefs";
+    /** File of the ":mapxus_positioning" process, see the class doc. */
+    public static final String REMOTE_PREFS_NAME = "mapxus_fg_service_prefs_remote";
+    /** Suffix of RemotePositioningService's process name in the manifest. */
+    static final String REMOTE_PROCESS_SUFFIX = ":mapxus_positioning";
+
+    public static final String KEY_BG_DISPATCHER_HANDLE = "bg_dispatcher_handle";
+    public static final String KEY_BG_USER_HANDLE       = "bg_user_handle";
+    public static final String KEY_BUFFER_CAPACITY      = "buffer_capacity";
+    public static final String KEY_WARM_BACKGROUND_ENGINE = "warm_background_engine";
+    public static final String KEY_BG_BATCH_SIZE        = "bg_batch_size";
+    public static final String KEY_BG_LINGER_MS         = "bg_linger_ms";
+    public static final String KEY_BG_GEOFENCE_ONLY     = "bg_geofence_only";
+    public static final String KEY_PENDING_CHUNK_SIZE   = "pending_chunk_size";
+    public static final String KEY_PENDING_LATEST_FIRST = "pending_latest_first";
+    public static final String KEY_PENDING_COLLAPSE     = "pending_collapse";
+    public static final String KEY_REMOTE_PROCESS       = "remote_process";
+
+    public static final int  DEFAULT_BG_BATCH_SIZE = 64;
+    public static final long DEFAULT_BG_LINGER_MS  = 0L;
+
+    public static final String DEFAULT_NOTIFICATION_TITLE   = "Mapxus Positioning";
+    public static final String DEFAULT_NOTIFICATION_CONTENT = "Location tracking is active";
+
+    /** Immutable snapshot of the foreground-service start parameters. */
+    public static final class Credentials {
+        public final String appId;
+        public final String secret;
+        public final String notificationTitle;
+        public final String notificationContent;
+
+        Credentials(String appId, String secret, String notificationTitle, String notificationContent) {
+            this.appId = appId;
+            this.secret = secret;
+            this.notificationTitle   = notificationTitle   != null ? notificationTitle   : DEFAULT_NOTIFICATION_TITLE;
+            this.notificationContent = notificationContent != null ? notificationContent : DEFAULT_NOTIFICATION_CONTENT;
+        }
+
+        public boolean isComplete() {
+            return appId != null && secret != null;
+        }
+    }
+
+    /**
+     * How one group of service settings maps onto start-intent extras and
+     * prefs keys; see load.
+     */
+    public static final class Settings<T> {
+        public interface FromIntent<T> {
+            T read(Intent intent);
+        }
+
+        public interface FromPrefs<T> {
+            T read(SharedPreferences prefs);
+        }
+
+        public interface ToPrefs<T> {
+            void write(T value, SharedPreferences.Editor editor);
+        }
+
+        final FromIntent<T> fromIntent;
+        final FromPrefs<T> fromPrefs;
+        final ToPrefs<T> toPrefs;
+
+        private Settings(FromIntent<T> fromIntent, FromPrefs<T> fromPrefs, ToPrefs<T> toPrefs) {
+            this.fromIntent = fromIntent;
+            this.fromPrefs  = fromPrefs;
+            this.toPrefs    = toPrefs;
+        }
+
+        public static <T> Settings<T> of(FromIntent<T> fromIntent, FromPrefs<T> fromPrefs, ToPrefs<T> toPrefs) {
+            return new Settings<>(fromIntent, fromPrefs, toPrefs);
+        }
+    }
+
+    private static volatile MapxusPluginConfig instance;
+
+    public static MapxusPluginConfig getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MapxusPluginConfig.class) {
+                if (instance == null) {
+                    Context app = context.getApplicationContext();
+                    instance = new MapxusPluginConfig(app.getSharedPreferences(
+                            isRemoteServiceProcess(app) ? REMOTE_PREFS_NAME : PREFS_NAME, Context.MODE_PRIVATE));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /** True in the process RemotePositioningService runs in. */
+    static boolean isRemoteServiceProcess(Context context) {
+        String name = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            name = Application.getProcessName();
+        } else {
+            ActivityManager manager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            List<ActivityManager.RunningAppProcessInfo> processes =
+                    manager != null ? manager.getRunningAppProcesses() : null;
+            if (processes != null) {
+                for (ActivityManager.RunningAppProcessInfo process : processes) {
+                    if (process.pid == Process.myPid()) name = process.processName;
+                }
+            }
+        }
+        return name != null && name.endsWith(REMOTE_PROCESS_SUFFIX);
+    }
+
+    private final SharedPreferences prefs;
+
+    private volatile Credentials credentials;
+    private volatile long bgDispatcherHandle;
+    private volatile long bgUserHandle;
+    private volatile int  bufferCapacity;
+    private volatile boolean warmBackgroundEngine;
+    private volatile int  bgBatchSize;
+    private volatile long bgLingerMs;
+    private volatile boolean bgGeofenceOnly;
+    private volatile PendingReplay.Config pendingReplay;
+    private volatile boolean remoteProcess;
+
+    private MapxusPluginConfig(SharedPreferences prefs) {
+        this.prefs = prefs;
+        reload();
+        // SharedPreferences holds listeners weakly; the singleton keeps this one alive.
+        prefs.registerOnSharedPreferenceChangeListener(this);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Reads
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** The underlying prefs file, for settings that are not on a hot path. */
+    public SharedPreferences getPreferences() {
+        return prefs;
+    }
+
+    public Credentials getCredentials() {
+        return credentials;
+    }
+
+    /** True while credentials are saved, i.e. the service has been started and not stopped. */
+    public boolean isServiceRunning() {
+        return credentials.appId != null;
+    }
+
+    /** Raw Dart handle of _mapxusBackgroundMain, or -1 if none was registered. */
+    public long getBgDispatcherHandle() {
+        return bgDispatcherHandle;
+    }
+
+    /** Raw Dart handle of the developer's background callback, or -1 if none was registered. */
+    public long getBgUserHandle() {
+        return bgUserHandle;
+    }
+
+    public int getBufferCapacity(int defaultValue) {
+        int capacity = bufferCapacity;
+        return capacity > 0 ? capacity : defaultValue;
+    }
+
+    /** True if the background engine should be started with the service and kept cached. */
+    public boolean isWarmBackgroundEngine() {
+        return warmBackgroundEngine;
+    }
+
+    /** Maximum number of events per onBackgroundEvents call. */
+    public int getBgBatchSize() {
+        return bgBatchSize;
+    }
+
+    /** How long a non-full batch may wait for more events before it is sent. */
+    public long getBgLingerMs() {
+        return bgLingerMs;
+    }
+
+    /** True if only geofence transitions may start / reach the background engine. */
+    public boolean isBackgroundGeofenceOnly() {
+        return bgGeofenceOnly;
+    }
+
+    /** How events buffered while the app was closed are replayed when it opens. */
+    public PendingReplay.Config getPendingReplayConfig() {
+        return pendingReplay;
+    }
+
+    /** True if the service was started as RemotePositioningService, in its own process. */
+    public boolean isRemoteProcess() {
+        return remoteProcess;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Writes
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * The settings of a start intent that carries credentials, saved for the
+     * next restart; otherwise (null intent after START_STICKY, or the
+     * restart receiver's intent without extras) the saved ones.
+     */
+    public <T> T load(@Nullable Intent intent, Settings<T> settings) {
+        if (intent != null && intent.getStringExtra(MapxusPositioningForegroundService.EXTRA_APP_ID) != null) {
+            T value = settings.fromIntent.read(intent);
+            SharedPreferences.Editor editor = prefs.edit();
+            settings.toPrefs.write(value, editor);
+            editor.apply();
+            return value;
+        }
+        return settings.fromPrefs.read(prefs);
+    }
+
+    public void saveCredentials(String appId, String secret,
+                                @Nullable String notificationTitle, @Nullable String notificationContent) {
+        Credentials next = new Credentials(appId, secret, notificationTitle, notificationContent);
+        credentials = next;
+        prefs.edit()
+                .putString(MapxusPositioningForegroundService.EXTRA_APP_ID,               next.appId)
+                .putString(MapxusPositioningForegroundService.EXTRA_SECRET,               next.secret)
+                .putString(MapxusPositioningForegroundService.EXTRA_NOTIFICATION_TITLE,   next.notificationTitle)
+                .putString(MapxusPositioningForegroundService.EXTRA_NOTIFICATION_CONTENT, next.notificationContent)
+                .apply();
+    }
+
+    public void saveBackgroundHandles(long dispatcherHandle, long userHandle) {
+        bgDispatcherHandle = dispatcherHandle;
+        bgUserHandle = userHandle;
+        prefs.edit()
+                .putLong(KEY_BG_DISPATCHER_HANDLE, dispatcherHandle)
+                .putLong(KEY_BG_USER_HANDLE, userHandle)
+                .apply();
+    }
+
+    public void saveBufferCapacity(int capacity) {
+        bufferCapacity = capacity;
+        prefs.edit().putInt(KEY_BUFFER_CAPACITY, capacity).apply();
+    }
+
+    public void saveWarmBackgroundEngine(boolean warm) {
+        warmBackgroundEngine = warm;
+        prefs.edit().putBoolean(KEY_WARM_BACKGROUND_ENGINE, warm).apply();
+    }
+
+    public void saveBackgroundBatching(int batchSize, long lingerMs) {
+        bgBatchSize = Math.max(1, batchSize);
+        bgLingerMs  = Math.max(0L, lingerMs);
+        prefs.edit()
+                .putInt(KEY_BG_BATCH_SIZE, bgBatchSize)
+                .putLong(KEY_BG_LINGER_MS, bgLingerMs)
+                .apply();
+    }
+
+    public void saveBackgroundGeofenceOnly(boolean geofenceOnly) {
+        bgGeofenceOnly = geofenceOnly;
+        prefs.edit().putBoolean(KEY_BG_GEOFENCE_ONLY, geofenceOnly).apply();
+    }
+
+    public void savePendingReplay(PendingReplay.Config config) {
+        pendingReplay = config;
+        prefs.edit()
+                .putInt(KEY_PENDING_CHUNK_SIZE, config.chunkSize)
+                .putBoolean(KEY_PENDING_LATEST_FIRST, config.latestFirst)
+                .putBoolean(KEY_PENDING_COLLAPSE, config.collapse)
+                .apply();
+    }
+
+    public void saveRemoteProcess(boolean remote) {
+        remoteProcess = remote;
+        prefs.edit().putBoolean(KEY_REMOTE_PROCESS, remote).apply();
+    }
+
+    /**
+     * Removes everything except the zones set through setGeofences, so the
+     * service does not restart automatically but a later start still checks
+     * the same zones. Done in memory as well because clear() does not notify
+     * listeners before Android 11.
+     */
+    public void clear() {
+        String zones = prefs.getString(GeofenceEngine.PREFS_KEY_ZONES, null);
+        float exitMargin = prefs.getFloat(GeofenceEngine.PREFS_KEY_EXIT_MARGIN, 0f);
+        SharedPreferences.Editor editor = prefs.edit().clear();
+        if (zones != null) {
+            editor.putString(GeofenceEngine.PREFS_KEY_ZONES, zones)
+                    .putFloat(GeofenceEngine.PREFS_KEY_EXIT_MARGIN, exitMargin)
+                    .putBoolean(KEY_BG_GEOFENCE_ONLY, bgGeofenceOnly);
+        }
+        editor.apply();
+        reload();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Sync
+    // ─────────────────────────────────────────────────────────────────────────
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, @Nullable String key) {
+        if (key == null) {
+            // Android 11+ reports clear() with a null key.
+            reload();
+            return;
+        }
+        switch (key) {
+            case KEY_BG_DISPATCHER_HANDLE:
+                bgDispatcherHandle = prefs.getLong(KEY_BG_DISPATCHER_HANDLE, -1L);
+                break;
+            case KEY_BG_USER_HANDLE:
+                bgUserHandle = prefs.getLong(KEY_BG_USER_HANDLE, -1L);
+                break;
+            case KEY_BUFFER_CAPACITY:
+                bufferCapacity = prefs.getInt(KEY_BUFFER_CAPACITY, 0);
+                break;
+            case KEY_BG_BATCH_SIZE:
+                bgBatchSize = Math.max(1, prefs.getInt(KEY_BG_BATCH_SIZE, DEFAULT_BG_BATCH_SIZE));
+                break;
+            case KEY_BG_LINGER_MS:
+                bgLingerMs = Math.max(0L, prefs.getLong(KEY_BG_LINGER_MS, DEFAULT_BG_LINGER_MS));
+                break;
+            case KEY_BG_GEOFENCE_ONLY:
+                bgGeofenceOnly = prefs.getBoolean(KEY_BG_GEOFENCE_ONLY, false);
+                break;
+            case KEY_PENDING_CHUNK_SIZE:
+            case KEY_PENDING_LATEST_FIRST:
+            case KEY_PENDING_COLLAPSE:
+                pendingReplay = readPendingReplay();
+                break;
+            case KEY_REMOTE_PROCESS:
+                remoteProcess = prefs.getBoolean(KEY_REMOTE_PROCESS, false);
+                break;
+            case KEY_WARM_BACKGROUND_ENGINE:
+                warmBackgroundEngine = prefs.getBoolean(KEY_WARM_BACKGROUND_ENGINE, false);
+                break;
+            case MapxusPositioningForegroundService.EXTRA_APP_ID:
+            case MapxusPositioningForegroundService.EXTRA_SECRET:
+            case MapxusPositioningForegroundService.EXTRA_NOTIFICATION_TITLE:
+            case MapxusPositioningForegroundService.EXTRA_NOTIFICATION_CONTENT:
+                credentials = readCredentials();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void reload() {
+        credentials        = readCredentials();
+        bgDispatcherHandle = prefs.getLong(KEY_BG_DISPATCHER_HANDLE, -1L);
+        bgUserHandle       = prefs.getLong(KEY_BG_USER_HANDLE, -1L);
+        bufferCapacity     = prefs.getInt(KEY_BUFFER_CAPACITY, 0);
+        warmBackgroundEngine = prefs.getBoolean(KEY_WARM_BACKGROUND_ENGINE, false);
+        bgBatchSize        = Math.max(1, prefs.getInt(KEY_BG_BATCH_SIZE, DEFAULT_BG_BATCH_SIZE));
+        bgLingerMs         = Math.max(0L, prefs.getLong(KEY_BG_LINGER_MS, DEFAULT_BG_LINGER_MS));
+        bgGeofenceOnly     = prefs.getBoolean(KEY_BG_GEOFENCE_ONLY, false);
+        pendingReplay      = readPendingReplay();
+        remoteProcess      = prefs.getBoolean(KEY_REMOTE_PROCESS, false);
+    }
+
+    private PendingReplay.Config readPendingReplay() {
+        return new PendingReplay.Config(
+                prefs.getInt(KEY_PENDING_CHUNK_SIZE, PendingReplay.DEFAULT_CHUNK_SIZE),
+                prefs.getBoolean(KEY_PENDING_LATEST_FIRST, false),
+                prefs.getBoolean(KEY_PENDING_COLLAPSE, false));
+    }
+
+    private Credentials readCredentials() {
+        return new Credentials(
+                prefs.getString(MapxusPositioningForegroundService.EXTRA_APP_ID, null),
+                prefs.getString(MapxusPositioningForegroundService.EXTRA_SECRET, null),
+                prefs.getString(MapxusPositioningForegroundService.EXTRA_NOTIFICATION_TITLE, null),
+                prefs.getString(MapxusPositioningForegroundService.EXTRA_NOTIFICATION_CONTENT, null));
+    }
+}
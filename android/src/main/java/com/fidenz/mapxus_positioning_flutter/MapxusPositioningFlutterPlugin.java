@@ -1,8 +1,10 @@
 package com.fidenz.mapxus_positioning_flutter;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import io.flutter.FlutterInjector;
 import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.embedding.engine.FlutterEngineCache;
 import io.flutter.embedding.engine.dart.DartExecutor;
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.embedding.engine.plugins.activity.ActivityAware;
@@ -14,20 +16,23 @@ import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.app.Activity;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import androidx.lifecycle.LifecycleOwner;
 import io.flutter.plugin.common.EventChannel;
 
 import com.mapxus.positioning.positioning.api.ErrorInfo;
 import com.mapxus.positioning.positioning.api.MapxusLocation;
-import com.mapxus.positioning.positioning.api.MapxusPositioningClient;
 import com.mapxus.positioning.positioning.api.MapxusPositioningListener;
 import com.mapxus.positioning.positioning.api.PositioningState;
 
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -41,12 +46,17 @@ import java.util.Map;
  * ┌─────────────────┬────────────────────────────────────────────────────────┐
  * │ App state       │ Where events go                                        │
  * ├─────────────────┼────────────────────────────────────────────────────────┤
- * │ App open        │ activeEventSink → Flutter EventChannel (live stream)   │
+ * │ App open        │ activeEventSink → EventFanOut → main stream and named  │
+ * │                 │ subscription streams (each with its own filters)       │
  * │ App closed +    │ backgroundDispatchChannel → headless Flutter engine    │
  * │   bg handler    │ → developer's @pragma('vm:entry-point') callback       │
- * │ App closed,     │ pendingForegroundEvents buffer → flushed on next open  │
- * │   no bg handler │                                                        │
+ * │ App closed,     │ pendingForegroundEvents buffer → replayed in chunks on │
+ * │   no bg handler │ next open (PendingReplay)                              │
  * └─────────────────┴────────────────────────────────────────────────────────┘
+ *
+ * Routing runs on the EventDispatcher thread. Only the final EventSink /
+ * MethodChannel calls are posted to the main thread, batched so that any
+ * number of ready events costs a single main-thread task.
  */
 public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChannel.MethodCallHandler, ActivityAware {
 
@@ -55,8 +65,12 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
     // ── Instance channels & references ────────────────────────────────────────
     private MethodChannel channel;
     private EventChannel eventChannel;
+    /** The fan-out hub while anything is listening, else null. */
     private EventChannel.EventSink eventSink;
-    private MapxusPositioningClient positioningClient;
+    /** Main stream plus named subscription streams. Null on the background instance. */
+    private EventFanOut fanOut;
+    /** Owns the SDK client (or TracePlayer) shared with the foreground service. */
+    private final PositioningSession session = PositioningSession.getInstance();
     public MapxusPositioningListener positioningListener;
     private Context context;
     private Activity activity;
@@ -64,6 +78,12 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
     private boolean paused;
     private boolean initialized;
     private PluginResponseHelper responseHelper;
+    private OrientationCoalescer orientationCoalescer;
+    /** Drops redundant fixes of this instance's client. Main thread only. */
+    private final LocationFilter locationFilter = new LocationFilter();
+    private final LocationSmoother locationSmoother = new LocationSmoother();
+    /** True if this instance was attached to the headless background engine. */
+    private boolean backgroundInstance;
 
     // ── Static bridge — survives plugin instance recreation ───────────────────
     //
@@ -86,18 +106,58 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
      */
     private static volatile boolean isMainEngineActive = false;
 
-    /** Events buffered while app is closed and no background handler is set. */
-    private static final List<Map<String, Object>> pendingForegroundEvents = new ArrayList<>();
-    private static final int MAX_PENDING_EVENTS = 500;
+    private static final int DEFAULT_BUFFER_CAPACITY = 512;
+
+    /**
+     * Events buffered while app is closed and no background handler is set.
+     * Entries are Maps or packed byte[] records (see MapxusEventCodec).
+     * Overwrites the oldest event when full; capacity is set via the
+     * "bufferCapacity" argument of startForegroundService.
+     */
+    private static volatile EventRingBuffer pendingForegroundEvents =
+            new EventRingBuffer(DEFAULT_BUFFER_CAPACITY);
+
+    /**
+     * Events a cancelled PendingReplay had taken from pendingForegroundEvents
+     * but not sent, and events carried over from a buffer replaced by
+     * configureBufferCapacity; the next replay sends them first. Main thread
+     * only, so the ring keeps a single consumer.
+     */
+    private static final ArrayDeque<Object> returnedPendingEvents = new ArrayDeque<>();
 
-    /** Main-thread handler used by all static routing code. */
+    /** Main-thread handler; only final sink / channel calls are posted here. */
     private static final Handler fgHandler = new Handler(Looper.getMainLooper());
 
+    /** Events routed to the live stream, waiting for the next main-thread post. */
+    private static final List<Object> mainOutbox = new ArrayList<>();
+
+    /** True while a flushMainOutbox task is queued on fgHandler. Guarded by mainOutbox. */
+    private static boolean mainFlushScheduled = false;
+
+    /** True while a background-engine flush task is queued on fgHandler. Guarded by mainOutbox. */
+    private static boolean bgFlushScheduled = false;
+
+    /** True if the queued background flush runs without linger delay. Guarded by mainOutbox. */
+    private static boolean bgFlushImmediate = false;
+
+    /** Application context of the installed service listener; used to re-route undelivered events. */
+    private static volatile Context routingContext = null;
+
     // ── Background engine (headless Flutter for when app is closed) ───────────
 
+    /** FlutterEngineCache id of the headless background engine. */
+    public static final String BACKGROUND_ENGINE_ID = "mapxus_positioning_background_engine";
+
     /** The headless engine running _mapxusBackgroundMain() in Dart. */
     private static FlutterEngine backgroundFlutterEngine = null;
 
+    /**
+     * True while the background FlutterEngine constructor runs. Plugin
+     * registration attaches a plugin instance to the new engine during the
+     * constructor; that instance must not reset the main engine's routing state.
+     */
+    private static boolean creatingBackgroundEngine = false;
+
     /** Method channel on the background engine for sending events to Dart. */
     private static MethodChannel backgroundDispatchChannel = null;
 
@@ -108,7 +168,31 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
     private static volatile long bgUserCallbackHandle = -1L;
 
     /** Events queued while the background engine is still initializing. */
-    private static final List<Map<String, Object>> bgEventQueue = new ArrayList<>();
+    private static volatile EventRingBuffer bgEventQueue =
+            new EventRingBuffer(DEFAULT_BUFFER_CAPACITY);
+
+    /**
+     * Events carried over from a bgEventQueue replaced by
+     * configureBufferCapacity; flushed before the queue. Main thread only.
+     */
+    private static final ArrayDeque<Object> carriedBgEvents = new ArrayDeque<>();
+
+    // ── Background engine startup latency ─────────────────────────────────────
+
+    /** Set when the app opens; the next background-routed event starts a measurement. */
+    private static volatile boolean measureNextBgEvent = true;
+    /** elapsedRealtimeNanos of the first background event of this session, 0 if none pending. */
+    private static volatile long bgFirstEventNanos = 0L;
+    /** Whether the engine had to be started for the pending measurement. */
+    private static volatile boolean bgFirstEventCold = true;
+    /** elapsedRealtime when initBackgroundEngine last started an engine. */
+    private static long bgEngineCreatedMs = 0L;
+
+    private static long bgEngineStartupMs  = -1L;
+    private static long lastColdLatencyMs  = -1L;
+    private static long lastWarmLatencyMs  = -1L;
+    private static int  coldStartCount     = 0;
+    private static int  warmStartCount     = 0;
 
     // ─────────────────────────────────────────────────────────────────────────
     // FlutterPlugin lifecycle
@@ -116,6 +200,19 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
 
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding binding) {
+        backgroundInstance = creatingBackgroundEngine;
+        if (backgroundInstance) {
+            // Attached to our own headless engine: expose the method channel so
+            // the background callback can use the plugin API, but leave the
+            // static routing state of the main engine untouched.
+            context = binding.getApplicationContext();
+            responseHelper = new PluginResponseHelper(context);
+            orientationCoalescer = new OrientationCoalescer(fgHandler, event -> {});
+            channel = new MethodChannel(binding.getBinaryMessenger(), "mapxus_positioning_flutter");
+            channel.setMethodCallHandler(this);
+            return;
+        }
+
         // Clear any stale sink left over from a previously killed engine.
         // When the app is closed abruptly (task removed), the Flutter engine can
         // be torn down without calling EventChannel.StreamHandler.onCancel, so
@@ -132,27 +229,35 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
         // Destroy any background Flutter engine immediately.
         // Running two Dart isolates in the same process while the main engine is
         // initializing starves the main isolate and causes a white-screen freeze.
-        destroyBackgroundEngine();
+        // In warm mode the engine is kept: it has finished starting and sits idle
+        // while the app is open, since routing sends events to the main engine.
+        if (!MapxusPluginConfig.getInstance(binding.getApplicationContext()).isWarmBackgroundEngine()
+                || !bgEngineReady) {
+            destroyBackgroundEngine();
+        }
 
         context = binding.getApplicationContext();
         responseHelper = new PluginResponseHelper(context);
+        orientationCoalescer = new OrientationCoalescer(fgHandler, event -> {
+            if (eventSink == null) return;
+            LatencyTracer.onSink(event, MapxusMetrics.Histogram.LATENCY_CLIENT_US);
+            eventSink.success(event);
+        });
 
         channel = new MethodChannel(binding.getBinaryMessenger(), "mapxus_positioning_flutter");
         channel.setMethodCallHandler(this);
 
+        fanOut = new EventFanOut(binding.getBinaryMessenger(), this::onReceiversChanged);
         eventChannel = new EventChannel(binding.getBinaryMessenger(), "mapxus_positioning_stream");
         eventChannel.setStreamHandler(new EventChannel.StreamHandler() {
             @Override
             public void onListen(Object arguments, EventChannel.EventSink events) {
-                eventSink = events;
-                activeEventSink = events;
-                flushPendingForegroundEvents(events);
+                fanOut.setPrimary(events);
             }
 
             @Override
             public void onCancel(Object arguments) {
-                eventSink = null;
-                activeEventSink = null;
+                fanOut.setPrimary(null);
             }
         });
 
@@ -163,8 +268,17 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
 
     @Override
     public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
-        isMainEngineActive = false;  // engine is gone; app is now truly closed
         channel.setMethodCallHandler(null);
+        if (initialized) {
+            // Release this engine's reference so the session can stop the SDK
+            // once the foreground service (if any) lets go too.
+            session.detach(clientConsumer);
+            initialized = false;
+            started = false;
+        }
+        if (backgroundInstance) return;  // headless engine; main routing state is unaffected
+        isMainEngineActive = false;  // engine is gone; app is now truly closed
+        if (fanOut != null) fanOut.clear();
         // Only clear the static sink if it still belongs to THIS engine instance.
         // When the background engine is destroyed (via destroyBackgroundEngine called
         // from onListen of the main engine), this method is invoked for the background
@@ -176,6 +290,31 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
         eventSink = null;
     }
 
+    /**
+     * The main stream or a named subscription is the first receiver (flush
+     * buffered events through the hub so every subscriber's filters apply),
+     * or the last one went away (route to the buffers / background engine).
+     */
+    private void onReceiversChanged(boolean hasReceivers) {
+        if (hasReceivers) {
+            eventSink = fanOut;
+            activeEventSink = fanOut;
+            // A routeEvent already past its activeEventSink check may still
+            // buffer its event. Going through the dispatch thread first puts
+            // the replay behind it, so that event is replayed now and in order.
+            EventChannel.EventSink sink = fanOut;
+            Context appContext = context;
+            EventDispatcher.getInstance().post(() -> fgHandler.post(() -> {
+                if (activeEventSink != sink) return;
+                replayPendingForegroundEvents(appContext, sink);
+                replayJournal(appContext, sink);
+            }));
+        } else {
+            if (activeEventSink == fanOut) activeEventSink = null;
+            eventSink = null;
+        }
+    }
+
     // ─────────────────────────────────────────────────────────────────────────
     // Method call routing
     // ─────────────────────────────────────────────────────────────────────────
@@ -199,7 +338,7 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
                 handleResume(result);
                 break;
             case "isInitialized":
-                result.success(positioningClient != null);
+                result.success(initialized);
                 break;
             case "stop":
                 handleStop(result);
@@ -219,6 +358,48 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
             case "isForegroundServiceRunning":
                 handleIsForegroundServiceRunning(result);
                 break;
+            case "getBufferStats":
+                handleGetBufferStats(result);
+                break;
+            case "getBackgroundEngineStats":
+                handleGetBackgroundEngineStats(result);
+                break;
+            case "getLocationFilterStats":
+                handleGetLocationFilterStats(result);
+                break;
+            case "getMetrics":
+                handleGetMetrics(call, result);
+                break;
+            case "subscribe":
+                handleSubscribe(call, result);
+                break;
+            case "unsubscribe":
+                handleUnsubscribe(call, result);
+                break;
+            case "getSubscriptionStats":
+                handleGetSubscriptionStats(result);
+                break;
+            case "setGeofences":
+                handleSetGeofences(call, result);
+                break;
+            case "getGeofenceStats":
+                handleGetGeofenceStats(result);
+                break;
+            case "queryTrajectory":
+                handleQueryTrajectory(call, result);
+                break;
+            case "exportTrajectory":
+                handleExportTrajectory(call, result);
+                break;
+            case "clearTrajectory":
+                TrajectoryStore.getInstance(context).clear(fgHandler, trajectoryCallback(result, "TRAJECTORY_CLEAR_FAILED"));
+                break;
+            case "getReplayStats":
+                handleGetReplayStats(result);
+                break;
+            case "getTrajectoryStats":
+                TrajectoryStore.getInstance(context).stats(fgHandler, trajectoryCallback(result, "TRAJECTORY_STATS_FAILED"));
+                break;
             default:
                 result.notImplemented();
         }
@@ -239,11 +420,34 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
     private void handleInit(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
         try {
             if (!initialized) {
-                positioningClient = MapxusPositioningClient.getInstance(
+                MapxusEventUtil.setEventFormat(call.argument("eventFormat"));
+                orientationCoalescer.setConfig(OrientationCoalescer.Config.from(
+                        call.argument("orientationMaxRateHz"),
+                        call.argument("orientationDeadBandDegrees"),
+                        call.argument("orientationBatchWindowMs")));
+                locationFilter.setConfig(LocationFilter.Config.from(
+                        call.argument("locationFilterEnabled"),
+                        call.argument("locationMinDistanceMeters"),
+                        call.argument("locationMinTimeMs"),
+                        call.argument("locationAccuracyImprovementMeters")));
+                locationSmoother.setConfig(LocationSmoother.Config.from(
+                        call.argument("smoothingEnabled"),
+                        call.argument("smoothingProcessNoise"),
+                        call.argument("smoothingFuseHeading")));
+                LatencyTracer.configure(LatencyTracer.Config.from(
+                        call.argument("latencySampleEvery"),
+                        call.argument("latencyTraceMarks")));
+                session.attach(
+                        clientConsumer,
                         (LifecycleOwner) activity,
                         context,
                         call.argument("appId"),
-                        call.argument("secret")
+                        call.argument("secret"),
+                        PositioningSource.TraceOptions.from(
+                                call.argument("recordTracePath"),
+                                call.argument("replayTracePath"),
+                                call.argument("replaySpeed"),
+                                call.argument("replayLoop"))
                 );
                 initialized = true;
                 responseHelper.sendResponse(result, true, "MapxusPositioningClient initialized successfully");
@@ -260,8 +464,7 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
         try {
             if (initialized) {
                 if (!started) {
-                    positioningClient.addPositioningListener(mapxusPositioningListener);
-                    positioningClient.start();
+                    session.start(clientConsumer);
                     started = true;
                     if (eventSink != null) {
                         Map<String, Object> event = new HashMap<>();
@@ -285,9 +488,12 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
 
     private void handleStop(@NonNull MethodChannel.Result result) {
         try {
-            if (positioningClient != null) {
-                positioningClient.stop();
-                positioningClient = null;
+            if (initialized) {
+                // Stops the SDK only if the foreground service is not using it.
+                session.detach(clientConsumer);
+                orientationCoalescer.reset();
+                locationFilter.reset();
+                locationSmoother.reset();
                 initialized = false;
                 started = false;
                 if (eventSink != null) {
@@ -307,8 +513,8 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
 
     private void handlePause(@NonNull MethodChannel.Result result) {
         try {
-            if (positioningClient != null && started) {
-                positioningClient.pause();
+            if (initialized && started) {
+                session.pause(clientConsumer);
                 paused = true;
                 if (eventSink != null) {
                     Map<String, Object> event = new HashMap<>();
@@ -327,8 +533,8 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
 
     private void handleResume(@NonNull MethodChannel.Result result) {
         try {
-            if (positioningClient != null && paused) {
-                positioningClient.resume();
+            if (initialized && paused) {
+                session.resume(clientConsumer);
                 paused = false;
                 if (eventSink != null) {
                     Map<String, Object> event = new HashMap<>();
@@ -345,9 +551,16 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
         }
     }
 
-    public final MapxusPositioningListener mapxusPositioningListener = new MapxusPositioningListener() {
+    /**
+     * The app's own client as a session consumer. While the foreground service
+     * consumes the session too, its pipeline already delivers every callback
+     * to the same stream, so this one stays silent instead of converting and
+     * sending each fix a second time.
+     */
+    private final PositioningSession.Consumer clientConsumer = new PositioningSession.Consumer() {
         @Override
         public void onStateChange(PositioningState positionerState) {
+            if (MapxusPositioningForegroundService.isAttachedToSession()) return;
             Map<String, Object> event = new HashMap<>();
             event.put("type", "stateChange");
             switch (positionerState) {
@@ -355,11 +568,14 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
                 case RUNNING: event.put("state", "running"); break;
                 default: return;
             }
+            MapxusMetrics.increment(MapxusMetrics.Counter.CLIENT_STATE_CHANGES);
             if (eventSink != null) eventSink.success(event);
         }
 
         @Override
         public void onError(ErrorInfo errorInfo) {
+            if (MapxusPositioningForegroundService.isAttachedToSession()) return;
+            MapxusMetrics.increment(MapxusMetrics.Counter.CLIENT_ERRORS);
             Log.e(TAG, errorInfo.getErrorMessage());
             if (eventSink != null) {
                 MapxusEventUtil.sendEventError(eventSink, errorInfo.getErrorMessage(), errorInfo.getErrorCode());
@@ -367,16 +583,195 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
         }
 
         @Override
-        public void onOrientationChange(float orientation, int sensorAccuracy) {
-            if (eventSink != null) MapxusEventUtil.sendOrientationEvent(eventSink, orientation, sensorAccuracy);
+        public void onOrientationChange(float orientation, int sensorAccuracy, long timestamp, long elapsedNanos) {
+            if (MapxusPositioningForegroundService.isAttachedToSession()) return;
+            MapxusMetrics.increment(MapxusMetrics.Counter.CLIENT_ORIENTATIONS);
+            locationSmoother.setHeading(orientation);
+            if (eventSink != null) {
+                orientationCoalescer.offer(orientation, sensorAccuracy, timestamp, elapsedNanos);
+            }
         }
 
         @Override
-        public void onLocationChange(MapxusLocation location) {
-            if (eventSink != null) MapxusEventUtil.sendLocationEvent(eventSink, location);
+        public void onLocationChange(MapxusLocation location, long timestamp, long elapsedNanos) {
+            if (MapxusPositioningForegroundService.isAttachedToSession()) return;
+            MapxusMetrics.increment(MapxusMetrics.Counter.CLIENT_LOCATIONS);
+            if (eventSink == null || location == null) return;
+            if (!locationFilter.accept(location, timestamp)) {
+                MapxusMetrics.increment(MapxusMetrics.Counter.CLIENT_LOCATIONS_SUPPRESSED);
+                return;
+            }
+            locationSmoother.update(location, timestamp);
+            Object event = MapxusEventUtil.locationEvent(location, timestamp, elapsedNanos, locationSmoother,
+                    LatencyTracer.newTrace(elapsedNanos));
+            LatencyTracer.onSink(event, MapxusMetrics.Histogram.LATENCY_CLIENT_US);
+            eventSink.success(event);
         }
     };
 
+    // ─────────────────────────────────────────────────────────────────────────
+    // Named subscriptions
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Registers (or reconfigures) a named stream served on
+     * "mapxus_positioning_stream/<name>". The Dart side listens to that channel
+     * after this call returns.
+     */
+    private void handleSubscribe(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        String name = call.argument("name");
+        if (fanOut == null) {
+            responseHelper.sendResponse(result, false, "Subscriptions are not available on the background engine");
+            return;
+        }
+        if (name == null || !name.matches("[A-Za-z0-9_.-]+")) {
+            responseHelper.sendError(result, "INVALID_SUBSCRIPTION",
+                    "Subscription name must be non-empty and contain only letters, digits, '_', '.' or '-'");
+            return;
+        }
+        fanOut.subscribe(name, EventFanOut.Options.from(
+                call.argument("types"),
+                call.argument("throttleMs"),
+                call.argument("bufferCapacity"),
+                call.argument("overflow")));
+        responseHelper.sendResponse(result, true, "Subscribed " + name);
+    }
+
+    private void handleUnsubscribe(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        String name = call.argument("name");
+        if (fanOut != null && name != null && fanOut.unsubscribe(name)) {
+            responseHelper.sendResponse(result, true, "Unsubscribed " + name);
+        } else {
+            responseHelper.sendResponse(result, false, "No subscription named " + name);
+        }
+    }
+
+    private void handleGetSubscriptionStats(@NonNull MethodChannel.Result result) {
+        if (fanOut == null) {
+            result.success(new HashMap<String, Object>());
+            return;
+        }
+        result.success(fanOut.stats());
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Geofences
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Replaces the zones evaluated by the foreground service and saves them so
+     * a restarted service evaluates the same zones. Cleared by
+     * stopForegroundService together with the other service settings.
+     */
+    private void handleSetGeofences(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        List<GeofenceEngine.Zone> zones = new ArrayList<>();
+        try {
+            List<Map<String, Object>> maps = call.argument("zones");
+            if (maps != null) {
+                for (Map<String, Object> map : maps) zones.add(GeofenceEngine.Zone.from(map));
+            }
+        } catch (IllegalArgumentException | ClassCastException e) {
+            responseHelper.sendError(result, "INVALID_GEOFENCE", "Invalid geofence: " + e.getMessage());
+            return;
+        }
+        Number exitMargin = call.argument("exitMarginMeters");
+        double exitMarginMeters = exitMargin != null ? exitMargin.doubleValue() : 0;
+
+        MapxusPluginConfig config = MapxusPluginConfig.getInstance(context);
+        GeofenceEngine.save(config.getPreferences(), zones, exitMarginMeters);
+        config.saveBackgroundGeofenceOnly(Boolean.TRUE.equals(call.argument("backgroundGeofenceOnly")));
+        if (config.isRemoteProcess()) {
+            // Zones are evaluated by the service process, not by this one's engine.
+            RemotePositioningConnection.getInstance(context).setGeofences(zones, exitMarginMeters);
+        } else {
+            MapxusPositioningForegroundService.setGeofences(zones, exitMarginMeters);
+        }
+        responseHelper.sendResponse(result, true, zones.size() + " geofences set");
+    }
+
+    /** Counters of the engine that evaluates the zones, in the service process when it runs there. */
+    private void handleGetGeofenceStats(@NonNull MethodChannel.Result result) {
+        Map<String, Object> local = MapxusPositioningForegroundService.getGeofenceEngine().stats();
+        if (!MapxusPluginConfig.getInstance(context).isRemoteProcess()) {
+            result.success(local);
+            return;
+        }
+        RemotePositioningConnection connection = RemotePositioningConnection.getInstance(context);
+        EventDispatcher.getInstance().post(() -> {
+            Map<String, Object> remote = connection.geofenceStats();
+            fgHandler.post(() -> result.success(remote != null ? remote : local));
+        });
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Trajectory store
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** One page of stored fixes; runs on the store thread, answers on the main thread. */
+    private void handleQueryTrajectory(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        Number from      = call.argument("fromMs");
+        Number to        = call.argument("toMs");
+        Number afterTime = call.argument("afterTime");
+        Number afterId   = call.argument("afterId");
+        Number pageSize  = call.argument("pageSize");
+        TrajectoryStore.getInstance(context).query(
+                from != null ? from.longValue() : 0,
+                to   != null ? to.longValue()   : Long.MAX_VALUE,
+                call.argument("floor"),
+                afterTime != null ? afterTime.longValue() : -1,
+                afterId   != null ? afterId.longValue()   : -1,
+                pageSize  != null ? pageSize.intValue()   : TrajectoryStore.DEFAULT_PAGE_SIZE,
+                fgHandler,
+                trajectoryCallback(result, "TRAJECTORY_QUERY_FAILED"));
+    }
+
+    /**
+     * Progress of the trace replays of the app's client and of the service,
+     * when active. Both report the same replay while they share the session.
+     */
+    private void handleGetReplayStats(@NonNull MethodChannel.Result result) {
+        TracePlayer client  = initialized ? session.getReplay() : null;
+        TracePlayer service = MapxusPositioningForegroundService.getActiveReplay();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("client", client != null ? client.stats() : null);
+        stats.put("service", service != null ? service.stats() : null);
+        result.success(stats);
+    }
+
+    /**
+     * Streams a time range into a .mxt file (see TrajectoryFileWriter) and
+     * answers with its path only. Without a "path" argument the file goes to
+     * the cache directory, where the system may reclaim it.
+     */
+    private void handleExportTrajectory(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        Number from = call.argument("fromMs");
+        Number to   = call.argument("toMs");
+        long fromMs = from != null ? from.longValue() : 0;
+        long toMs   = to   != null ? to.longValue()   : Long.MAX_VALUE;
+        boolean gzip = !Boolean.FALSE.equals(call.argument("gzip"));
+        String path = call.argument("path");
+        File file = path != null
+                ? new File(path)
+                : new File(new File(context.getCacheDir(), "mapxus_exports"),
+                        "trajectory-" + fromMs + "-" + System.currentTimeMillis() + (gzip ? ".mxt.gz" : ".mxt"));
+        TrajectoryStore.getInstance(context).export(fromMs, toMs, call.argument("floor"), file, gzip,
+                fgHandler, trajectoryCallback(result, "TRAJECTORY_EXPORT_FAILED"));
+    }
+
+    private TrajectoryStore.ResultCallback trajectoryCallback(MethodChannel.Result result, String errorCode) {
+        return new TrajectoryStore.ResultCallback() {
+            @Override
+            public void onResult(Map<String, Object> map) {
+                result.success(map);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                responseHelper.sendError(result, errorCode, "Trajectory store error: " + e.getMessage());
+            }
+        };
+    }
+
     // ─────────────────────────────────────────────────────────────────────────
     // Background handler registration
     // ─────────────────────────────────────────────────────────────────────────
@@ -393,10 +788,7 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
             long dispatcherHandle = ((Number) call.argument("dispatcherHandle")).longValue();
             long userHandle       = ((Number) call.argument("userCallbackHandle")).longValue();
 
-            context.getSharedPreferences("mapxus_fg_service_prefs", Context.MODE_PRIVATE).edit()
-                    .putLong("bg_dispatcher_handle", dispatcherHandle)
-                    .putLong("bg_user_handle", userHandle)
-                    .apply();
+            MapxusPluginConfig.getInstance(context).saveBackgroundHandles(dispatcherHandle, userHandle);
 
             bgUserCallbackHandle = userHandle;
             responseHelper.sendResponse(result, true, "Background handler registered");
@@ -418,10 +810,7 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
      * flushed when the app reopens and onListen fires.
      */
     private void handleIsForegroundServiceRunning(@NonNull MethodChannel.Result result) {
-        SharedPreferences prefs = context.getSharedPreferences(
-                "mapxus_fg_service_prefs", Context.MODE_PRIVATE);
-        boolean running = prefs.getString(MapxusPositioningForegroundService.EXTRA_APP_ID, null) != null;
-        result.success(running);
+        result.success(MapxusPluginConfig.getInstance(context).isServiceRunning());
     }
 
     private void handleStartForegroundService(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
@@ -430,15 +819,121 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
             String secret          = call.argument("secret");
             String notifTitle      = call.argument("notificationTitle");
             String notifContent    = call.argument("notificationContent");
+            String eventFormat     = call.argument("eventFormat");
 
-            MapxusPositioningForegroundService.setEventListener(createServiceListener(context));
+            MapxusEventUtil.setEventFormat(eventFormat);
+
+            Number bufferCapacity = call.argument("bufferCapacity");
+            if (bufferCapacity != null) {
+                MapxusPluginConfig.getInstance(context).saveBufferCapacity(bufferCapacity.intValue());
+                configureBufferCapacity(bufferCapacity.intValue());
+            }
+
+            MapxusPluginConfig config = MapxusPluginConfig.getInstance(context);
+            config.saveWarmBackgroundEngine(Boolean.TRUE.equals(call.argument("warmBackgroundEngine")));
+            Number bgBatchSize = call.argument("backgroundBatchSize");
+            Number bgLingerMs  = call.argument("backgroundLingerMs");
+            config.saveBackgroundBatching(
+                    bgBatchSize != null ? bgBatchSize.intValue()  : MapxusPluginConfig.DEFAULT_BG_BATCH_SIZE,
+                    bgLingerMs  != null ? bgLingerMs.longValue()  : MapxusPluginConfig.DEFAULT_BG_LINGER_MS);
+            config.savePendingReplay(PendingReplay.Config.from(
+                    call.argument("pendingChunkSize"),
+                    call.argument("pendingLatestFirst"),
+                    call.argument("pendingCollapse")));
+
+            boolean remote = Boolean.TRUE.equals(call.argument("separateProcess"))
+                    && RemotePositioningService.isSupported();
+            config.saveRemoteProcess(remote);
+            if (remote) {
+                // The service process saves them in its own file; this
+                // process's copy backs isServiceRunning and the restart receiver.
+                config.saveCredentials(appId, secret, notifTitle, notifContent);
+            }
+            connectServiceEvents(context, remote);
 
-            Intent serviceIntent = new Intent(context, MapxusPositioningForegroundService.class);
+            Intent serviceIntent = new Intent(context, remote
+                    ? RemotePositioningService.class : MapxusPositioningForegroundService.class);
             serviceIntent.setAction(MapxusPositioningForegroundService.ACTION_START);
+            serviceIntent.putExtra(RemotePositioningService.EXTRA_EVENT_FORMAT, eventFormat);
             serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_APP_ID,               appId);
             serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_SECRET,               secret);
             serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_NOTIFICATION_TITLE,   notifTitle);
             serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_NOTIFICATION_CONTENT, notifContent);
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_ORIENTATION_MAX_RATE_HZ,
+                    call.argument("orientationMaxRateHz"));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_ORIENTATION_DEAD_BAND,
+                    call.argument("orientationDeadBandDegrees"));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_ORIENTATION_BATCH_WINDOW_MS,
+                    call.argument("orientationBatchWindowMs"));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_JOURNAL_MAX_BYTES,
+                    call.argument("journalMaxBytes"));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_PERSIST_EVENTS,
+                    Boolean.TRUE.equals(call.argument("persistEvents")));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_ADAPTIVE_DUTY_CYCLE,
+                    Boolean.TRUE.equals(call.argument("adaptiveDutyCycle")));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_STATIONARY_DELAY_MS,
+                    call.argument("stationaryDelayMs"));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_RESUME_STEPS,
+                    call.argument("resumeSteps"));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_RESUME_WINDOW_MS,
+                    call.argument("resumeWindowMs"));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_LOCATION_FILTER_ENABLED,
+                    Boolean.TRUE.equals(call.argument("locationFilterEnabled")));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_LOCATION_MIN_DISTANCE,
+                    call.argument("locationMinDistanceMeters"));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_LOCATION_MIN_TIME_MS,
+                    call.argument("locationMinTimeMs"));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_LOCATION_ACCURACY_GAIN,
+                    call.argument("locationAccuracyImprovementMeters"));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_SMOOTHING_ENABLED,
+                    Boolean.TRUE.equals(call.argument("smoothingEnabled")));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_SMOOTHING_PROCESS_NOISE,
+                    call.argument("smoothingProcessNoise"));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_SMOOTHING_FUSE_HEADING,
+                    !Boolean.FALSE.equals(call.argument("smoothingFuseHeading")));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_RECORD_TRACE_PATH,
+                    (String) call.argument("recordTracePath"));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_REPLAY_TRACE_PATH,
+                    (String) call.argument("replayTracePath"));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_REPLAY_SPEED,
+                    call.argument("replaySpeed"));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_REPLAY_LOOP,
+                    Boolean.TRUE.equals(call.argument("replayLoop")));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_TRAJECTORY_ENABLED,
+                    Boolean.TRUE.equals(call.argument("trajectoryEnabled")));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_TRAJECTORY_BATCH_SIZE,
+                    call.argument("trajectoryBatchSize"));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_TRAJECTORY_FLUSH_INTERVAL_MS,
+                    call.argument("trajectoryFlushIntervalMs"));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_TRAJECTORY_RETENTION_MS,
+                    call.argument("trajectoryRetentionMs"));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_TRAJECTORY_MAX_FIXES,
+                    call.argument("trajectoryMaxFixes"));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_LATENCY_SAMPLE_EVERY,
+                    call.argument("latencySampleEvery"));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_LATENCY_TRACE_MARKS,
+                    Boolean.TRUE.equals(call.argument("latencyTraceMarks")));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_UPLOAD_URL,
+                    (String) call.argument("uploadUrl"));
+            Map<String, Object> uploadHeaders = call.argument("uploadHeaders");
+            if (uploadHeaders != null) {
+                serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_UPLOAD_HEADERS,
+                        new JSONObject(uploadHeaders).toString());
+            }
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_UPLOAD_BATCH_SIZE,
+                    call.argument("uploadBatchSize"));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_UPLOAD_MAX_BATCH_DELAY_MS,
+                    call.argument("uploadMaxBatchDelayMs"));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_UPLOAD_REQUIRE_UNMETERED,
+                    Boolean.TRUE.equals(call.argument("uploadRequireUnmetered")));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_UPLOAD_REQUIRE_CHARGING,
+                    Boolean.TRUE.equals(call.argument("uploadRequireCharging")));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_UPLOAD_MAX_SPOOL_BYTES,
+                    call.argument("uploadMaxSpoolBytes"));
+            serviceIntent.putExtra(MapxusPositioningForegroundService.EXTRA_LIVE_NOTIFICATION,
+                    Boolean.TRUE.equals(call.argument("liveNotification")));
+            putNumberExtra(serviceIntent, MapxusPositioningForegroundService.EXTRA_LIVE_NOTIFICATION_INTERVAL_MS,
+                    call.argument("liveNotificationIntervalMs"));
 
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                 context.startForegroundService(serviceIntent);
@@ -446,6 +941,8 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
                 context.startService(serviceIntent);
             }
 
+            warmUpBackgroundEngine(context);
+
             responseHelper.sendResponse(result, true, "Mapxus foreground service started");
         } catch (Exception e) {
             responseHelper.sendError(result, "FOREGROUND_SERVICE_START_FAILED",
@@ -453,13 +950,30 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
         }
     }
 
+    /** Copies an optional numeric channel argument into the service intent as a double. */
+    private static void putNumberExtra(Intent intent, String key, Object value) {
+        if (value instanceof Number) {
+            intent.putExtra(key, ((Number) value).doubleValue());
+        }
+    }
+
     private void handleStopForegroundService(@NonNull MethodChannel.Result result) {
         try {
+            MapxusPluginConfig config = MapxusPluginConfig.getInstance(context);
+            boolean remote = config.isRemoteProcess();
             MapxusPositioningForegroundService.setEventListener(null);
+            if (remote) RemotePositioningConnection.getInstance(context).unbind();
+            if (config.isWarmBackgroundEngine()) {
+                // The cached engine is only useful while the service runs.
+                destroyBackgroundEngine();
+            }
 
-            Intent serviceIntent = new Intent(context, MapxusPositioningForegroundService.class);
+            Intent serviceIntent = new Intent(context, remote
+                    ? RemotePositioningService.class : MapxusPositioningForegroundService.class);
             serviceIntent.setAction(MapxusPositioningForegroundService.ACTION_STOP);
             context.startService(serviceIntent);
+            // The service process clears only its own prefs file.
+            if (remote) config.clear();
 
             responseHelper.sendResponse(result, true, "Mapxus foreground service stopped");
         } catch (Exception e) {
@@ -472,26 +986,51 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
     // Background Flutter engine management (static)
     // ─────────────────────────────────────────────────────────────────────────
 
+    /**
+     * Warm-start mode: starts the background engine together with the
+     * foreground service so the first event after the app closes does not
+     * wait for engine startup. The engine is cached in FlutterEngineCache
+     * under BACKGROUND_ENGINE_ID and reused across app open/close cycles.
+     *
+     * No-op unless warmBackgroundEngine was requested and a background
+     * handler has been registered. Must be called on the main thread.
+     */
+    static void warmUpBackgroundEngine(Context context) {
+        MapxusPluginConfig config = MapxusPluginConfig.getInstance(context);
+        if (!config.isWarmBackgroundEngine() || config.getBgDispatcherHandle() == -1L) return;
+        if (backgroundFlutterEngine == null) {
+            Log.d(TAG, "Warm start: starting background Flutter engine with the service");
+            initBackgroundEngine(context);
+        }
+    }
+
     /**
      * Starts a headless Flutter engine that runs _mapxusBackgroundMain() in Dart.
      * The engine stays alive as long as the foreground service is running.
      *
      * Called lazily the first time an event arrives while the app is closed
-     * and a background handler has been registered.
+     * and a background handler has been registered (cold start), or by
+     * warmUpBackgroundEngine when the service starts (warm start).
      */
     static synchronized void initBackgroundEngine(Context context) {
         if (backgroundFlutterEngine != null) return; // already initializing
 
-        SharedPreferences prefs = context.getSharedPreferences(
-                "mapxus_fg_service_prefs", Context.MODE_PRIVATE);
-        final long dispatcherHandle = prefs.getLong("bg_dispatcher_handle", -1L);
+        final long dispatcherHandle = MapxusPluginConfig.getInstance(context).getBgDispatcherHandle();
         if (dispatcherHandle == -1L) {
             Log.w(TAG, "initBackgroundEngine: no dispatcher handle saved");
             return;
         }
 
         // Mark as "initializing" so we don't start a second engine.
-        backgroundFlutterEngine = new FlutterEngine(context);
+        bgEngineCreatedMs = SystemClock.elapsedRealtime();
+        MapxusMetrics.increment(MapxusMetrics.Counter.BACKGROUND_ENGINE_STARTS);
+        creatingBackgroundEngine = true;
+        try {
+            backgroundFlutterEngine = new FlutterEngine(context);
+        } finally {
+            creatingBackgroundEngine = false;
+        }
+        FlutterEngineCache.getInstance().put(BACKGROUND_ENGINE_ID, backgroundFlutterEngine);
 
         // Flutter loader initialization can be slow — do it off the main thread.
         final Context appCtx = context.getApplicationContext();
@@ -501,6 +1040,7 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
                 FlutterInjector.instance().flutterLoader().ensureInitializationComplete(appCtx, null);
             } catch (Exception e) {
                 Log.e(TAG, "FlutterLoader init failed: " + e.getMessage());
+                MapxusMetrics.increment(MapxusMetrics.Counter.BACKGROUND_ENGINE_FAILURES);
                 backgroundFlutterEngine = null;
                 return;
             }
@@ -512,7 +1052,8 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
                             FlutterCallbackInformation.lookupCallbackInformation(dispatcherHandle);
                     if (info == null) {
                         Log.e(TAG, "Callback info not found for dispatcher handle: " + dispatcherHandle);
-                        backgroundFlutterEngine = null;
+                        MapxusMetrics.increment(MapxusMetrics.Counter.BACKGROUND_ENGINE_FAILURES);
+                        destroyBackgroundEngine();
                         return;
                     }
 
@@ -536,6 +1077,9 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
                         if ("ready".equals(methodCall.method)) {
                             backgroundDispatchChannel = channel;
                             bgEngineReady = true;
+                            bgEngineStartupMs = SystemClock.elapsedRealtime() - bgEngineCreatedMs;
+                            MapxusMetrics.record(MapxusMetrics.Histogram.BACKGROUND_ENGINE_STARTUP_MS,
+                                    bgEngineStartupMs);
                             methodResult.success(null);
                             Log.d(TAG, "Background Dart engine ready. Flushing "
                                     + bgEventQueue.size() + " queued events.");
@@ -546,23 +1090,67 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
                     Log.d(TAG, "Background Flutter engine started");
                 } catch (Exception e) {
                     Log.e(TAG, "Background engine setup failed: " + e.getMessage());
-                    backgroundFlutterEngine = null;
+                    MapxusMetrics.increment(MapxusMetrics.Counter.BACKGROUND_ENGINE_FAILURES);
+                    destroyBackgroundEngine();
                 }
             });
         }).start();
     }
 
-    /** Sends all events queued during engine initialisation to the Dart callback. */
+    /**
+     * Sends all queued events to the Dart callback as "onBackgroundEvents"
+     * calls of at most bgBatchSize events each, with the handle sent once per
+     * call instead of once per event.
+     */
     private static void flushBgEventQueue(MethodChannel channel) {
-        synchronized (bgEventQueue) {
-            for (Map<String, Object> event : bgEventQueue) {
-                Map<String, Object> args = new HashMap<>();
-                args.put("handle", bgUserCallbackHandle);
-                args.put("event", event);
-                channel.invokeMethod("onBackgroundEvent", args, null);
+        int batchSize = routingContext != null
+                ? MapxusPluginConfig.getInstance(routingContext).getBgBatchSize()
+                : MapxusPluginConfig.DEFAULT_BG_BATCH_SIZE;
+        int flushed = 0;
+        while (true) {
+            List<Object> events = new ArrayList<>(
+                    Math.min(batchSize, carriedBgEvents.size() + bgEventQueue.size()));
+            while (events.size() < batchSize && !carriedBgEvents.isEmpty()) {
+                events.add(carriedBgEvents.pollFirst());
+            }
+            int drained = events.size() + bgEventQueue.drain(events::add, batchSize - events.size());
+            if (drained == 0) break;
+            for (Object event : events) {
+                LatencyTracer.onSink(event, MapxusMetrics.Histogram.LATENCY_BACKGROUND_US);
             }
-            bgEventQueue.clear();
+            Map<String, Object> args = new HashMap<>();
+            args.put("handle", bgUserCallbackHandle);
+            args.put("events", events);
+            channel.invokeMethod("onBackgroundEvents", args, null);
+            MapxusMetrics.increment(MapxusMetrics.Counter.BACKGROUND_BATCHES);
+            MapxusMetrics.record(MapxusMetrics.Histogram.BACKGROUND_BATCH_SIZE, drained);
+            flushed += drained;
+        }
+        MapxusMetrics.add(MapxusMetrics.Counter.BACKGROUND_EVENTS_SENT, flushed);
+        if (flushed > 0) recordFirstBackgroundEvent();
+    }
+
+    /**
+     * Records startup-to-first-event latency: from the first event routed to
+     * the background path after the app closed, to its hand-off to Dart.
+     * Cold if the engine had to be started for it, warm if it was already up.
+     */
+    private static void recordFirstBackgroundEvent() {
+        long firstNanos = bgFirstEventNanos;
+        if (firstNanos == 0L) return;
+        bgFirstEventNanos = 0L;
+        long latencyMs = (SystemClock.elapsedRealtimeNanos() - firstNanos) / 1_000_000L;
+        if (bgFirstEventCold) {
+            lastColdLatencyMs = latencyMs;
+            coldStartCount++;
+            MapxusMetrics.record(MapxusMetrics.Histogram.BACKGROUND_FIRST_EVENT_COLD_MS, latencyMs);
+        } else {
+            lastWarmLatencyMs = latencyMs;
+            warmStartCount++;
+            MapxusMetrics.record(MapxusMetrics.Histogram.BACKGROUND_FIRST_EVENT_WARM_MS, latencyMs);
         }
+        Log.d(TAG, (bgFirstEventCold ? "Cold" : "Warm")
+                + " background start: first event delivered after " + latencyMs + " ms");
     }
 
     /** Destroys the background engine and resets all related state. */
@@ -570,12 +1158,12 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
         bgEngineReady = false;
         backgroundDispatchChannel = null;
         if (backgroundFlutterEngine != null) {
+            FlutterEngineCache.getInstance().remove(BACKGROUND_ENGINE_ID);
             backgroundFlutterEngine.destroy();
             backgroundFlutterEngine = null;
         }
-        synchronized (bgEventQueue) {
-            bgEventQueue.clear();
-        }
+        carriedBgEvents.clear();
+        bgEventQueue.clear();
         Log.d(TAG, "Background Flutter engine destroyed");
     }
 
@@ -583,18 +1171,148 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
     // Pending event flush (for no-bg-handler buffering)
     // ─────────────────────────────────────────────────────────────────────────
 
-    private static void flushPendingForegroundEvents(EventChannel.EventSink sink) {
-        synchronized (pendingForegroundEvents) {
-            if (!pendingForegroundEvents.isEmpty()) {
-                Log.d(TAG, "Flushing " + pendingForegroundEvents.size() + " buffered foreground events");
-                for (Map<String, Object> event : pendingForegroundEvents) {
-                    sink.success(event);
-                }
-                pendingForegroundEvents.clear();
+    /**
+     * Replays the events buffered while the app was closed to the new sink,
+     * one chunk per main-thread message (see PendingReplay): onListen returns
+     * before anything is sent and the first frames are not held up by the
+     * backlog.
+     */
+    private static void replayPendingForegroundEvents(Context context, EventChannel.EventSink sink) {
+        PendingReplay.Config config = MapxusPluginConfig.getInstance(context).getPendingReplayConfig();
+        new PendingReplay(fgHandler, pendingForegroundEvents, returnedPendingEvents, config,
+                new PendingReplay.Target() {
+            @Override
+            public boolean isActive() {
+                return activeEventSink == sink;
+            }
+
+            @Override
+            public void send(Object event) {
+                sink.success(event);
             }
+        }).start();
+    }
+
+    /** Sends everything buffered to sink at once, from the calling message. */
+    @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    static void flushPendingForegroundEvents(EventChannel.EventSink sink) {
+        int flushed = returnedPendingEvents.size();
+        for (Object event; (event = returnedPendingEvents.pollFirst()) != null; ) {
+            LatencyTracer.onSink(event, MapxusMetrics.Histogram.LATENCY_PENDING_US);
+            sink.success(event);
+        }
+        flushed += pendingForegroundEvents.drain(event -> {
+            LatencyTracer.onSink(event, MapxusMetrics.Histogram.LATENCY_PENDING_US);
+            sink.success(event);
+        });
+        if (flushed > 0) {
+            MapxusMetrics.add(MapxusMetrics.Counter.PENDING_FLUSHED, flushed);
+            MapxusMetrics.record(MapxusMetrics.Histogram.PENDING_FLUSH_SIZE, flushed);
+            Log.d(TAG, "Flushed " + flushed + " buffered foreground events");
         }
     }
 
+    /**
+     * Streams fixes persisted by the EventJournal to the new sink. Reading runs
+     * on the journal thread and chunks are delivered one main-thread task at a
+     * time, so the replay never blocks first-frame rendering. A chunk is only
+     * acknowledged if this sink is still the active one.
+     */
+    private static void replayJournal(Context context, EventChannel.EventSink sink) {
+        EventJournal.getInstance(context).replay(fgHandler, chunk -> {
+            if (activeEventSink != sink) return false;
+            for (Object event : chunk) {
+                sink.success(event);
+            }
+            return true;
+        });
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Buffer configuration & stats
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Replaces both buffers with ones of the given capacity, carrying over any
+     * events already buffered, without giving either ring a second producer
+     * or consumer:
+     *
+     *  • the swap runs on the dispatch thread, serialised with routeEvent
+     *    (the producer), which writes only to the new buffer from then on;
+     *  • the old buffer is then emptied on the main thread (the consumer)
+     *    into returnedPendingEvents / carriedBgEvents, which every consumer
+     *    sends before the ring, so the carried events stay ahead of newer
+     *    ones. A PendingReplay still holding the old buffer finds them there.
+     */
+    private static void configureBufferCapacity(int capacity) {
+        EventDispatcher.getInstance().post(() -> {
+            EventRingBuffer oldPending    = pendingForegroundEvents;
+            EventRingBuffer oldBackground = bgEventQueue;
+            EventRingBuffer newPending    = resized(oldPending, capacity);
+            EventRingBuffer newBackground = resized(oldBackground, capacity);
+            if (newPending == oldPending && newBackground == oldBackground) return;
+            pendingForegroundEvents = newPending;
+            bgEventQueue = newBackground;
+            fgHandler.post(() -> {
+                if (newPending != oldPending) oldPending.drain(returnedPendingEvents::addLast);
+                if (newBackground != oldBackground) oldBackground.drain(carriedBgEvents::addLast);
+            });
+        });
+    }
+
+    /** A new buffer of the given capacity, or current if it has that capacity already. */
+    private static EventRingBuffer resized(EventRingBuffer current, int capacity) {
+        EventRingBuffer next = new EventRingBuffer(capacity);
+        return next.capacity() == current.capacity() ? current : next;
+    }
+
+    private void handleGetBackgroundEngineStats(@NonNull MethodChannel.Result result) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("warmMode", MapxusPluginConfig.getInstance(context).isWarmBackgroundEngine());
+        stats.put("engineRunning", backgroundFlutterEngine != null);
+        stats.put("engineReady", bgEngineReady);
+        stats.put("engineStartupMs", bgEngineStartupMs);
+        stats.put("lastColdLatencyMs", lastColdLatencyMs);
+        stats.put("lastWarmLatencyMs", lastWarmLatencyMs);
+        stats.put("coldStarts", coldStartCount);
+        stats.put("warmStarts", warmStartCount);
+        result.success(stats);
+    }
+
+    private void handleGetLocationFilterStats(@NonNull MethodChannel.Result result) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("foreground", locationFilter.stats());
+        stats.put("service", MapxusPositioningForegroundService.getLocationFilter().stats());
+        result.success(stats);
+    }
+
+    /**
+     * Counters and histograms from MapxusMetrics plus the current ring-buffer
+     * levels. With reset: true the metrics start over after this snapshot
+     * (buffer levels and their overwrite counters are not affected).
+     */
+    private void handleGetMetrics(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        Map<String, Object> snapshot = MapxusMetrics.snapshot(Boolean.TRUE.equals(call.argument("reset")));
+        Map<String, Object> gauges = new HashMap<>();
+        gauges.put("pendingSize", pendingForegroundEvents.size());
+        gauges.put("pendingOverwritten", pendingForegroundEvents.overwrittenCount());
+        gauges.put("pendingDropped", pendingForegroundEvents.droppedCount());
+        gauges.put("backgroundSize", bgEventQueue.size());
+        gauges.put("backgroundOverwritten", bgEventQueue.overwrittenCount());
+        gauges.put("backgroundDropped", bgEventQueue.droppedCount());
+        gauges.put("backgroundEngineRunning", backgroundFlutterEngine != null);
+        gauges.put("backgroundEngineReady", bgEngineReady);
+        snapshot.put("gauges", gauges);
+        result.success(snapshot);
+    }
+
+    private void handleGetBufferStats(@NonNull MethodChannel.Result result) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", pendingForegroundEvents.stats());
+        stats.put("background", bgEventQueue.stats());
+        result.success(stats);
+    }
+
     // ─────────────────────────────────────────────────────────────────────────
     // Re-register listener when app reopens
     // ─────────────────────────────────────────────────────────────────────────
@@ -604,13 +1322,29 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
      * restarts after the app was closed while the service was running.
      */
     private void reRegisterForegroundServiceListenerIfNeeded() {
-        SharedPreferences prefs = context.getSharedPreferences(
-                "mapxus_fg_service_prefs", Context.MODE_PRIVATE);
-        if (prefs.getString(MapxusPositioningForegroundService.EXTRA_APP_ID, null) == null) {
+        MapxusPluginConfig config = MapxusPluginConfig.getInstance(context);
+        if (!config.isServiceRunning()) {
             return; // Service was not running
         }
 
-        MapxusPositioningForegroundService.setEventListener(createServiceListener(context));
+        configureBufferCapacity(config.getBufferCapacity(DEFAULT_BUFFER_CAPACITY));
+
+        connectServiceEvents(context, config.isRemoteProcess());
+    }
+
+    /**
+     * Receives the service's events: through the static listener when it runs
+     * in this process, through the shared-memory channel of
+     * RemotePositioningConnection when it runs in its own. Both end in
+     * dispatchForegroundEvent.
+     */
+    private static void connectServiceEvents(Context context, boolean remote) {
+        if (remote) {
+            routingContext = context.getApplicationContext();
+            RemotePositioningConnection.getInstance(context).bind();
+        } else {
+            MapxusPositioningForegroundService.setEventListener(createServiceListener(context));
+        }
     }
 
     // ─────────────────────────────────────────────────────────────────────────
@@ -631,71 +1365,159 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
      */
     private static MapxusPositioningForegroundService.MapxusServiceEventListener
     createServiceListener(Context context) {
+        routingContext = context.getApplicationContext();
         return new MapxusPositioningForegroundService.MapxusServiceEventListener() {
-            @Override public void onServiceLocationEvent(Map<String, Object> e)    { dispatchForegroundEvent(context, e); }
-            @Override public void onServiceStateEvent(Map<String, Object> e)       { dispatchForegroundEvent(context, e); }
-            @Override public void onServiceErrorEvent(Map<String, Object> e)       { dispatchForegroundEvent(context, e); }
-            @Override public void onServiceOrientationEvent(Map<String, Object> e) { dispatchForegroundEvent(context, e); }
+            @Override public void onServiceLocationEvent(Object e)              { dispatchForegroundEvent(context, e); }
+            @Override public void onServiceStateEvent(Map<String, Object> e)    { dispatchForegroundEvent(context, e); }
+            @Override public void onServiceErrorEvent(Map<String, Object> e)    { dispatchForegroundEvent(context, e); }
+            @Override public void onServiceOrientationEvent(Object e)           { dispatchForegroundEvent(context, e); }
+            @Override public void onServiceGeofenceEvent(Map<String, Object> e) { dispatchForegroundEvent(context, e); }
         };
     }
 
-    private static void dispatchForegroundEvent(Context context, Map<String, Object> event) {
-        fgHandler.post(() -> {
-            if (activeEventSink != null) {
-                // App is open and stream is subscribed — send directly.
-                activeEventSink.success(event);
-                return;
-            }
+    @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    static void dispatchForegroundEvent(Context context, Object event) {
+        MapxusMetrics.increment(MapxusMetrics.Counter.EVENTS_DISPATCHED);
+        EventDispatcher.getInstance().execute(() -> routeEvent(context, event));
+    }
 
-            if (isMainEngineActive) {
-                // The main engine is attaching/initialising but the Dart side has
-                // not yet called receiveBroadcastStream(). Buffer here; the events
-                // will be delivered by flushPendingForegroundEvents() once onListen
-                // fires. Starting the background engine now would create two Dart
-                // isolates competing for the same process → blank/frozen screen.
-                synchronized (pendingForegroundEvents) {
-                    if (pendingForegroundEvents.size() < MAX_PENDING_EVENTS) {
-                        pendingForegroundEvents.add(new HashMap<>(event));
-                    }
-                }
-                return;
+    /** Decides where an event goes. Runs on the dispatch thread. */
+    private static void routeEvent(Context context, Object event) {
+        if (activeEventSink != null) {
+            // App is open and stream is subscribed — hand over to the main thread.
+            MapxusMetrics.increment(MapxusMetrics.Counter.ROUTED_LIVE);
+            postToMain(event);
+            return;
+        }
+
+        if (isMainEngineActive) {
+            // The main engine is attaching/initialising but the Dart side has
+            // not yet called receiveBroadcastStream(). Buffer here; the events
+            // will be delivered by replayPendingForegroundEvents() once onListen
+            // fires. Starting the background engine now would create two Dart
+            // isolates competing for the same process → blank/frozen screen.
+            MapxusMetrics.increment(MapxusMetrics.Counter.ROUTED_PENDING);
+            pendingForegroundEvents.offer(event);
+            return;
+        }
+
+        // App is truly closed. Check whether a background handler has been registered.
+        MapxusPluginConfig config = MapxusPluginConfig.getInstance(context);
+        long userHandle = config.getBgUserHandle();
+
+        if (userHandle != -1L && config.isBackgroundGeofenceOnly() && !isGeofenceEvent(event)) {
+            // Only zone transitions wake the headless engine; everything else
+            // waits for the next app open like without a handler.
+            bufferUntilOpen(context, event);
+        } else if (userHandle != -1L) {
+            // Background handler registered — route through the headless engine.
+            // The queue is drained on the main thread as soon as the engine is ready.
+            bgUserCallbackHandle = userHandle;
+            if (measureNextBgEvent) {
+                measureNextBgEvent = false;
+                bgFirstEventCold = !bgEngineReady;
+                bgFirstEventNanos = SystemClock.elapsedRealtimeNanos();
             }
+            MapxusMetrics.increment(MapxusMetrics.Counter.ROUTED_BACKGROUND);
+            bgEventQueue.offer(event);
+            scheduleBackgroundFlush(context);
+        } else {
+            bufferUntilOpen(context, event);
+        }
+    }
 
-            // App is truly closed. Check whether a background handler has been registered.
-            SharedPreferences prefs = context.getSharedPreferences(
-                    "mapxus_fg_service_prefs", Context.MODE_PRIVATE);
-            long userHandle = prefs.getLong("bg_user_handle", -1L);
+    /**
+     * Persists fixes to the journal when it is enabled and buffers everything
+     * else for delivery on next app open.
+     */
+    private static void bufferUntilOpen(Context context, Object event) {
+        if (EventJournal.getInstance(context).append(event)) {
+            MapxusMetrics.increment(MapxusMetrics.Counter.ROUTED_JOURNAL);
+        } else {
+            MapxusMetrics.increment(MapxusMetrics.Counter.ROUTED_PENDING);
+            pendingForegroundEvents.offer(event);
+        }
+    }
 
-            if (userHandle != -1L) {
-                // Background handler registered — route through the headless engine.
-                bgUserCallbackHandle = userHandle;
-                if (backgroundFlutterEngine == null) {
-                    initBackgroundEngine(context);
-                }
-                if (bgEngineReady && backgroundDispatchChannel != null) {
-                    Map<String, Object> args = new HashMap<>();
-                    args.put("handle", bgUserCallbackHandle);
-                    args.put("event", event);
-                    backgroundDispatchChannel.invokeMethod("onBackgroundEvent", args, null);
-                } else {
-                    // Engine still initializing — queue; flushed once "ready" fires.
-                    synchronized (bgEventQueue) {
-                        if (bgEventQueue.size() < MAX_PENDING_EVENTS) {
-                            bgEventQueue.add(new HashMap<>(event));
-                        }
-                    }
-                }
-            } else {
-                // No background handler — buffer for delivery on next app open.
-                synchronized (pendingForegroundEvents) {
-                    if (pendingForegroundEvents.size() < MAX_PENDING_EVENTS) {
-                        pendingForegroundEvents.add(new HashMap<>(event));
-                    }
-                }
+    private static boolean isGeofenceEvent(Object event) {
+        return event instanceof Map && "geofence".equals(((Map<?, ?>) event).get("type"));
+    }
+
+    /** Queues an event for the live stream; schedules one main post per batch. */
+    private static void postToMain(Object event) {
+        synchronized (mainOutbox) {
+            mainOutbox.add(event);
+            if (mainFlushScheduled) return;
+            mainFlushScheduled = true;
+        }
+        fgHandler.post(MapxusPositioningFlutterPlugin::flushMainOutbox);
+    }
+
+    /** Delivers every queued live event in one main-thread task. */
+    private static void flushMainOutbox() {
+        Object[] batch;
+        synchronized (mainOutbox) {
+            batch = mainOutbox.toArray();
+            mainOutbox.clear();
+            mainFlushScheduled = false;
+        }
+        EventChannel.EventSink sink = activeEventSink;
+        if (sink == null) {
+            // The stream was cancelled after routing — send the batch back
+            // through the dispatch thread so it is buffered instead of lost.
+            Context context = routingContext;
+            if (context != null) {
+                MapxusMetrics.add(MapxusMetrics.Counter.ROUTED_BACK_AFTER_CANCEL, batch.length);
+                EventDispatcher.getInstance().post(() -> {
+                    for (Object event : batch) routeEvent(context, event);
+                });
             }
-        });
+            return;
+        }
+        MapxusMetrics.increment(MapxusMetrics.Counter.MAIN_FLUSHES);
+        MapxusMetrics.record(MapxusMetrics.Histogram.MAIN_FLUSH_BATCH_SIZE, batch.length);
+        for (Object event : batch) {
+            LatencyTracer.onSink(event, MapxusMetrics.Histogram.LATENCY_LIVE_US);
+            sink.success(event);
+        }
+    }
+
+    /**
+     * Schedules one main-thread task that starts the background engine if
+     * needed and, once it is ready, drains bgEventQueue.
+     *
+     * With a ready engine the flush lingers up to bgLingerMs so more events
+     * can join the batch; it runs immediately once a full batch is queued.
+     */
+    private static void scheduleBackgroundFlush(Context context) {
+        MapxusPluginConfig config = MapxusPluginConfig.getInstance(context);
+        long delay = bgEngineReady && bgEventQueue.size() < config.getBgBatchSize()
+                ? config.getBgLingerMs()
+                : 0L;
+        synchronized (mainOutbox) {
+            if (bgFlushScheduled && (bgFlushImmediate || delay > 0)) return;
+            bgFlushScheduled = true;
+            bgFlushImmediate = delay == 0;
+        }
+        fgHandler.removeCallbacks(backgroundFlushTask);
+        fgHandler.postDelayed(backgroundFlushTask, delay);
     }
 
+    private static final Runnable backgroundFlushTask = () -> {
+        synchronized (mainOutbox) {
+            bgFlushScheduled = false;
+            bgFlushImmediate = false;
+        }
+        Context context = routingContext;
+        if (backgroundFlutterEngine == null && context != null) {
+            initBackgroundEngine(context);
+        }
+        if (bgEngineReady && backgroundDispatchChannel != null) {
+            flushBgEventQueue(backgroundDispatchChannel);
+        }
+        // Otherwise the engine is still initializing — flushed once "ready" fires.
+    };
+
     // ─────────────────────────────────────────────────────────────────────────
     // ActivityAware
     // ─────────────────────────────────────────────────────────────────────────
@@ -703,7 +1525,9 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
     @Override
     public void onAttachedToActivity(@NonNull ActivityPluginBinding binding) {
         activity = binding.getActivity();
+        if (backgroundInstance) return;
         isMainEngineActive = true;  // real activity attached — genuine app open
+        measureNextBgEvent = true;  // next close starts a new startup measurement
     }
 
     @Override public void onDetachedFromActivityForConfigChanges() {}
@@ -711,6 +1535,7 @@ public class MapxusPositioningFlutterPlugin implements FlutterPlugin, MethodChan
         activity = binding.getActivity();
     }
     @Override public void onDetachedFromActivity() {
+        if (backgroundInstance) return;
         isMainEngineActive = false;  // activity gone — treat as app closing
     }
 }
@@ -9,7 +9,9 @@ import android.app.Service;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.util.Log;
 
@@ -22,11 +24,12 @@ import androidx.lifecycle.LifecycleRegistry;
 
 import com.mapxus.positioning.positioning.api.ErrorInfo;
 import com.mapxus.positioning.positioning.api.MapxusLocation;
-import com.mapxus.positioning.positioning.api.MapxusPositioningClient;
-import com.mapxus.positioning.positioning.api.MapxusPositioningListener;
 import com.mapxus.positioning.positioning.api.PositioningState;
 
+import org.json.JSONObject;
+
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -55,7 +58,49 @@ import java.util.Map;
  * Events are forwarded via the static MapxusServiceEventListener which is set
  * by MapxusPositioningFlutterPlugin. When the Flutter engine is live the events
  * flow directly; when the engine is gone they are buffered in the plugin's
- * static pendingForegroundEvents list and delivered on the next app open.
+ * static pendingForegroundEvents ring buffer and delivered on the next app open.
+ *
+ * Location and orientation events are built on the EventDispatcher thread,
+ * not in the SDK callback on the main thread; the orientation coalescer runs
+ * there as well.
+ *
+ * Geofences:
+ * ──────────
+ * Every fix is evaluated by the static GeofenceEngine on the dispatch thread,
+ * before the location filter. Only enter / exit / dwell transitions are sent,
+ * as "geofence" events through onServiceGeofenceEvent.
+ *
+ * Record / replay:
+ * ────────────────
+ * With recordTracePath the raw SDK callbacks are captured by TraceRecorder;
+ * with replayTracePath a TracePlayer replaces the SDK client, so the whole
+ * pipeline below runs on a recorded session.
+ *
+ * Shared session:
+ * ───────────────
+ * The service is a consumer of the process-wide PositioningSession, like the
+ * plugin's own client. If the app's client is already running, the service
+ * attaches to the same SDK subscription instead of registering a second
+ * listener, and its duty cycle only pauses the SDK while the app's client
+ * is paused too.
+ *
+ * Trajectory history:
+ * ───────────────────
+ * With trajectoryEnabled, every raw fix is also written to the SQLite
+ * TrajectoryStore, whether or not a plugin listener is attached.
+ *
+ * Upload:
+ * ───────
+ * With an uploadUrl, every raw fix is also batched by the FixUploader and
+ * POSTed natively, so fixes reach the backend with the app closed and no
+ * Flutter engine running.
+ *
+ * Live notification:
+ * ──────────────────
+ * With liveNotification, the LiveStatusNotifier replaces the notification
+ * text with the floor, building, accuracy and age of the last raw fix. The
+ * notification builder is kept and reused; updates are rate-limited and only
+ * sent when the text changed.
  */
 public class MapxusPositioningForegroundService extends Service implements LifecycleOwner {
 
@@ -64,9 +109,6 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
     private static final String CHANNEL_ID       = "mapxus_positioning_fg_channel";
     private static final int    NOTIFICATION_ID   = 8431;
 
-    /** SharedPreferences file used to persist credentials across restarts. */
-    private static final String PREFS_NAME = "mapxus_fg_service_prefs";
-
     // ── Intent actions ────────────────────────────────────────────────────────
     public static final String ACTION_START = "com.fidenz.mapxus_positioning_flutter.ACTION_START";
     public static final String ACTION_STOP  = "com.fidenz.mapxus_positioning_flutter.ACTION_STOP";
@@ -76,31 +118,140 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
     public static final String EXTRA_SECRET               = "secret";
     public static final String EXTRA_NOTIFICATION_TITLE   = "notificationTitle";
     public static final String EXTRA_NOTIFICATION_CONTENT = "notificationContent";
+    public static final String EXTRA_ORIENTATION_MAX_RATE_HZ     = "orientationMaxRateHz";
+    public static final String EXTRA_ORIENTATION_DEAD_BAND       = "orientationDeadBandDegrees";
+    public static final String EXTRA_ORIENTATION_BATCH_WINDOW_MS = "orientationBatchWindowMs";
+    public static final String EXTRA_PERSIST_EVENTS              = "persistEvents";
+    public static final String EXTRA_JOURNAL_MAX_BYTES           = "journalMaxBytes";
+    public static final String EXTRA_ADAPTIVE_DUTY_CYCLE         = "adaptiveDutyCycle";
+    public static final String EXTRA_STATIONARY_DELAY_MS         = "stationaryDelayMs";
+    public static final String EXTRA_RESUME_STEPS                = "resumeSteps";
+    public static final String EXTRA_RESUME_WINDOW_MS            = "resumeWindowMs";
+    public static final String EXTRA_LOCATION_FILTER_ENABLED     = "locationFilterEnabled";
+    public static final String EXTRA_LOCATION_MIN_DISTANCE       = "locationMinDistanceMeters";
+    public static final String EXTRA_LOCATION_MIN_TIME_MS        = "locationMinTimeMs";
+    public static final String EXTRA_LOCATION_ACCURACY_GAIN      = "locationAccuracyImprovementMeters";
+    public static final String EXTRA_SMOOTHING_ENABLED           = "smoothingEnabled";
+    public static final String EXTRA_SMOOTHING_PROCESS_NOISE     = "smoothingProcessNoise";
+    public static final String EXTRA_SMOOTHING_FUSE_HEADING      = "smoothingFuseHeading";
+    public static final String EXTRA_RECORD_TRACE_PATH           = "recordTracePath";
+    public static final String EXTRA_REPLAY_TRACE_PATH           = "replayTracePath";
+    public static final String EXTRA_REPLAY_SPEED                = "replaySpeed";
+    public static final String EXTRA_REPLAY_LOOP                 = "replayLoop";
+    public static final String EXTRA_TRAJECTORY_ENABLED          = "trajectoryEnabled";
+    public static final String EXTRA_TRAJECTORY_BATCH_SIZE       = "trajectoryBatchSize";
+    public static final String EXTRA_TRAJECTORY_FLUSH_INTERVAL_MS = "trajectoryFlushIntervalMs";
+    public static final String EXTRA_TRAJECTORY_RETENTION_MS     = "trajectoryRetentionMs";
+    public static final String EXTRA_TRAJECTORY_MAX_FIXES        = "trajectoryMaxFixes";
+    public static final String EXTRA_LATENCY_SAMPLE_EVERY        = "latencySampleEvery";
+    public static final String EXTRA_LATENCY_TRACE_MARKS         = "latencyTraceMarks";
+    public static final String EXTRA_UPLOAD_URL                  = "uploadUrl";
+    public static final String EXTRA_UPLOAD_HEADERS              = "uploadHeaders";
+    public static final String EXTRA_UPLOAD_BATCH_SIZE           = "uploadBatchSize";
+    public static final String EXTRA_UPLOAD_MAX_BATCH_DELAY_MS   = "uploadMaxBatchDelayMs";
+    public static final String EXTRA_UPLOAD_REQUIRE_UNMETERED    = "uploadRequireUnmetered";
+    public static final String EXTRA_UPLOAD_REQUIRE_CHARGING     = "uploadRequireCharging";
+    public static final String EXTRA_UPLOAD_MAX_SPOOL_BYTES      = "uploadMaxSpoolBytes";
+    public static final String EXTRA_LIVE_NOTIFICATION           = "liveNotification";
+    public static final String EXTRA_LIVE_NOTIFICATION_INTERVAL_MS = "liveNotificationIntervalMs";
 
     // ── Static event listener (set by the plugin) ─────────────────────────────
-    private static MapxusServiceEventListener eventListener;
+    private static volatile MapxusServiceEventListener eventListener;
+
+    /** Drops redundant fixes before events are built. Dispatch-thread only; static so stats outlive the service. */
+    private static final LocationFilter locationFilter = new LocationFilter();
+
+    /** Zone enter / exit / dwell evaluation. Dispatch-thread only; static so zones can be set before the service starts. */
+    private static final GeofenceEngine geofenceEngine = new GeofenceEngine();
+
+    /** Adds smoothed coordinates to emitted fixes. Dispatch-thread only (except setHeading). */
+    private final LocationSmoother locationSmoother = new LocationSmoother();
 
     // ── Instance state ────────────────────────────────────────────────────────
-    private MapxusPositioningClient positioningClient;
+    /** Owns the SDK client (or TracePlayer) shared with the plugin's own client. */
+    private final PositioningSession session = PositioningSession.getInstance();
+    /** True while positioningConsumer is attached to the session. */
+    private static volatile boolean attachedToSession;
+    private PositioningSource.TraceOptions traceOptions = PositioningSource.TraceOptions.NONE;
     /** True once start() has been called and the SDK has not yet emitted STOPPED. */
     private boolean positioningActive = false;
+    /** True while the duty cycler has paused the client because the device is stationary. */
+    private boolean dutyCyclePaused = false;
     private final LifecycleRegistry lifecycleRegistry = new LifecycleRegistry(this);
+    private MotionDutyCycler dutyCycler;
+    private MotionDutyCycler.Config dutyCycleConfig = MotionDutyCycler.Config.DISABLED;
+    private final EventDispatcher dispatcher = EventDispatcher.getInstance();
+    /** Rate-limits / batches compass samples before they reach the listener. Dispatch-thread only. */
+    private final OrientationCoalescer orientationCoalescer = new OrientationCoalescer(
+            dispatcher.getHandler(),
+            event -> {
+                MapxusServiceEventListener listener = eventListener;
+                if (listener != null) listener.onServiceOrientationEvent(event);
+            });
+    /** Builder of the ongoing notification, reused for live status updates. */
+    private volatile NotificationCompat.Builder notificationBuilder;
+    /**
+     * False once stopPositioning ran: showStatus then posts nothing, so a
+     * render queued before the reset cannot bring back the notification
+     * after stopSelf removed it.
+     */
+    private volatile boolean statusActive;
+    /** Writes fix status into the notification text. Dispatch-thread only. */
+    private final LiveStatusNotifier liveStatus = new LiveStatusNotifier(
+            dispatcher.getHandler(),
+            this::showStatus);
 
     // ─────────────────────────────────────────────────────────────────────────
     // Event Listener Interface
     // ─────────────────────────────────────────────────────────────────────────
 
+    /**
+     * Location and orientation events are either a Map or a packed byte[]
+     * record, depending on MapxusEventUtil.isBinaryFormat(). State and error
+     * events are always Maps.
+     */
     public interface MapxusServiceEventListener {
-        void onServiceLocationEvent(Map<String, Object> event);
+        void onServiceLocationEvent(Object event);
         void onServiceStateEvent(Map<String, Object> event);
         void onServiceErrorEvent(Map<String, Object> event);
-        void onServiceOrientationEvent(Map<String, Object> event);
+        void onServiceOrientationEvent(Object event);
+        void onServiceGeofenceEvent(Map<String, Object> event);
     }
 
     public static void setEventListener(@Nullable MapxusServiceEventListener listener) {
         eventListener = listener;
     }
 
+    /** Location filter of the service's positioning client (for its counters). */
+    public static LocationFilter getLocationFilter() {
+        return locationFilter;
+    }
+
+    /** Geofence engine of the service (for its counters). */
+    public static GeofenceEngine getGeofenceEngine() {
+        return geofenceEngine;
+    }
+
+    /** The TracePlayer standing in for the SDK client, or null when the SDK is used. */
+    @Nullable
+    public static TracePlayer getActiveReplay() {
+        return attachedToSession ? PositioningSession.getInstance().getReplay() : null;
+    }
+
+    /**
+     * True while the service consumes the positioning session: its pipeline
+     * then delivers every fix to the plugin, including those of the app's
+     * own client.
+     */
+    public static boolean isAttachedToSession() {
+        return attachedToSession;
+    }
+
+    /** Replaces the zones evaluated for every fix; takes effect on the dispatch thread. */
+    public static void setGeofences(List<GeofenceEngine.Zone> zones, double exitMarginMeters) {
+        EventDispatcher.getInstance().post(() -> geofenceEngine.setZones(zones, exitMarginMeters));
+    }
+
     // ─────────────────────────────────────────────────────────────────────────
     // Service Lifecycle
     // ─────────────────────────────────────────────────────────────────────────
@@ -109,11 +260,24 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
     public void onCreate() {
         super.onCreate();
         lifecycleRegistry.setCurrentState(Lifecycle.State.CREATED);
+        dutyCycler = new MotionDutyCycler(this, new Handler(Looper.getMainLooper()), dutyCycleCallback);
+        // After process death the static engine is empty; zones set while the
+        // process was alive are already loaded and keep their inside-state.
+        SharedPreferences prefs = MapxusPluginConfig.getInstance(this).getPreferences();
+        List<GeofenceEngine.Zone> zones = GeofenceEngine.load(prefs);
+        double exitMargin = GeofenceEngine.loadExitMargin(prefs);
+        dispatcher.post(() -> {
+            if (geofenceEngine.isEmpty()) geofenceEngine.setZones(zones, exitMargin);
+        });
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (intent == null || ACTION_START.equals(intent.getAction())) {
+            MapxusMetrics.increment(intent == null || intent.getStringExtra(EXTRA_APP_ID) == null
+                    ? MapxusMetrics.Counter.SERVICE_RESTARTS
+                    : MapxusMetrics.Counter.SERVICE_STARTS);
+
             // ── Determine credentials ──────────────────────────────────────
             // When intent == null, Android is restarting the service after it
             // was killed (START_STICKY). We restore credentials from prefs.
@@ -135,24 +299,45 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
                     // Intent present but no credentials (e.g. restart via
                     // MapxusServiceRestartReceiver / AlarmManager) — restore from prefs.
                     Log.d(TAG, "No credentials in intent — restoring from prefs");
-                    SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-                    appId   = prefs.getString(EXTRA_APP_ID, null);
-                    secret  = prefs.getString(EXTRA_SECRET, null);
-                    title   = prefs.getString(EXTRA_NOTIFICATION_TITLE,   "Mapxus Positioning");
-                    content = prefs.getString(EXTRA_NOTIFICATION_CONTENT, "Location tracking is active");
+                    MapxusPluginConfig.Credentials saved = MapxusPluginConfig.getInstance(this).getCredentials();
+                    appId   = saved.appId;
+                    secret  = saved.secret;
+                    title   = saved.notificationTitle;
+                    content = saved.notificationContent;
                 }
             } else {
                 // Null intent — Android system restart (START_STICKY).
                 Log.d(TAG, "Service restarted by system — restoring credentials from prefs");
-                SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-                appId   = prefs.getString(EXTRA_APP_ID, null);
-                secret  = prefs.getString(EXTRA_SECRET, null);
-                title   = prefs.getString(EXTRA_NOTIFICATION_TITLE,   "Mapxus Positioning");
-                content = prefs.getString(EXTRA_NOTIFICATION_CONTENT, "Location tracking is active");
+                MapxusPluginConfig.Credentials saved = MapxusPluginConfig.getInstance(this).getCredentials();
+                appId   = saved.appId;
+                secret  = saved.secret;
+                title   = saved.notificationTitle;
+                content = saved.notificationContent;
             }
 
+            MapxusPluginConfig settings = MapxusPluginConfig.getInstance(this);
+            OrientationCoalescer.Config orientationConfig = settings.load(intent, ORIENTATION_SETTINGS);
+            dispatcher.post(() -> orientationCoalescer.setConfig(orientationConfig));
+            EventJournal.getInstance(this).configure(settings.load(intent, JOURNAL_SETTINGS));
+            TrajectoryStore.getInstance(this).configure(settings.load(intent, TRAJECTORY_SETTINGS));
+            FixUploader.getInstance(this).configure(settings.load(intent, UPLOAD_SETTINGS));
+            traceOptions = settings.load(intent, TRACE_SETTINGS);
+            LatencyTracer.configure(settings.load(intent, LATENCY_SETTINGS));
+            dutyCycleConfig = settings.load(intent, DUTY_CYCLE_SETTINGS);
+            LocationFilter.Config filterConfig = settings.load(intent, LOCATION_FILTER_SETTINGS);
+            dispatcher.post(() -> locationFilter.setConfig(filterConfig));
+            LocationSmoother.Config smoothingConfig = settings.load(intent, SMOOTHING_SETTINGS);
+            dispatcher.post(() -> locationSmoother.setConfig(smoothingConfig));
+            LiveStatusNotifier.Config liveConfig = settings.load(intent, LIVE_NOTIFICATION_SETTINGS);
+            dispatcher.post(() -> liveStatus.setConfig(liveConfig));
+
             if (appId != null && secret != null) {
                 startPositioning(appId, secret, title, content);
+                if ((intent == null || intent.getStringExtra(EXTRA_APP_ID) == null) && runsInAppProcess()) {
+                    // Restart without the app: bring the cached background engine
+                    // back up front if warm start was requested.
+                    MapxusPositioningFlutterPlugin.warmUpBackgroundEngine(this);
+                }
             } else {
                 Log.e(TAG, "No credentials found — stopping service");
                 stopSelf();
@@ -182,13 +367,12 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
     @Override
     public void onTaskRemoved(Intent rootIntent) {
         Log.d(TAG, "App removed from recents — scheduling safety-net restart via AlarmManager");
-
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        MapxusMetrics.increment(MapxusMetrics.Counter.SERVICE_TASK_REMOVED);
 
         // Only reschedule if credentials are saved (developer started the service).
         // clearCredentials() is called by stopForegroundService(), so if the developer
         // intentionally stopped the service we will NOT restart it.
-        if (prefs.getString(EXTRA_APP_ID, null) != null) {
+        if (MapxusPluginConfig.getInstance(this).isServiceRunning()) {
             // Target the BroadcastReceiver, which calls startForegroundService() properly.
             Intent broadcastIntent = new Intent(
                     getApplicationContext(), MapxusServiceRestartReceiver.class);
@@ -216,6 +400,7 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
     @Override
     public void onDestroy() {
         lifecycleRegistry.setCurrentState(Lifecycle.State.DESTROYED);
+        MapxusMetrics.increment(MapxusMetrics.Counter.SERVICE_STOPS);
         stopPositioning();
         if (eventListener != null) {
             Map<String, Object> event = new HashMap<>();
@@ -232,6 +417,14 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
         return null;
     }
 
+    /**
+     * False for a subclass declared in a process of its own: Flutter engines
+     * (the background handler) are then not started from the service.
+     */
+    protected boolean runsInAppProcess() {
+        return true;
+    }
+
     @NonNull
     @Override
     public Lifecycle getLifecycle() {
@@ -243,20 +436,198 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
     // ─────────────────────────────────────────────────────────────────────────
 
     private void saveCredentials(String appId, String secret, String title, String content) {
-        getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
-                .putString(EXTRA_APP_ID,               appId)
-                .putString(EXTRA_SECRET,               secret)
-                .putString(EXTRA_NOTIFICATION_TITLE,   title   != null ? title   : "Mapxus Positioning")
-                .putString(EXTRA_NOTIFICATION_CONTENT, content != null ? content : "Location tracking is active")
-                .apply();
+        MapxusPluginConfig.getInstance(this).saveCredentials(appId, secret, title, content);
     }
 
+    // ── Service settings: start-intent extras, persisted for restarts ───────
+    // Read through MapxusPluginConfig.load; the extras double as prefs keys.
+
+    private static final MapxusPluginConfig.Settings<OrientationCoalescer.Config> ORIENTATION_SETTINGS =
+            MapxusPluginConfig.Settings.of(
+                    intent -> new OrientationCoalescer.Config(
+                            intent.getDoubleExtra(EXTRA_ORIENTATION_MAX_RATE_HZ, 0),
+                            intent.getDoubleExtra(EXTRA_ORIENTATION_DEAD_BAND, 0),
+                            (long) intent.getDoubleExtra(EXTRA_ORIENTATION_BATCH_WINDOW_MS, 0)),
+                    prefs -> new OrientationCoalescer.Config(
+                            prefs.getFloat(EXTRA_ORIENTATION_MAX_RATE_HZ, 0f),
+                            prefs.getFloat(EXTRA_ORIENTATION_DEAD_BAND, 0f),
+                            prefs.getLong(EXTRA_ORIENTATION_BATCH_WINDOW_MS, 0L)),
+                    (config, editor) -> editor
+                            .putFloat(EXTRA_ORIENTATION_MAX_RATE_HZ,     (float) config.maxRateHz)
+                            .putFloat(EXTRA_ORIENTATION_DEAD_BAND,       (float) config.deadBandDegrees)
+                            .putLong(EXTRA_ORIENTATION_BATCH_WINDOW_MS,  config.batchWindowMs));
+
+    private static final MapxusPluginConfig.Settings<MotionDutyCycler.Config> DUTY_CYCLE_SETTINGS =
+            MapxusPluginConfig.Settings.of(
+                    intent -> new MotionDutyCycler.Config(
+                            intent.getBooleanExtra(EXTRA_ADAPTIVE_DUTY_CYCLE, false),
+                            (long) intent.getDoubleExtra(EXTRA_STATIONARY_DELAY_MS, 0),
+                            (int) intent.getDoubleExtra(EXTRA_RESUME_STEPS, 0),
+                            (long) intent.getDoubleExtra(EXTRA_RESUME_WINDOW_MS, 0)),
+                    prefs -> new MotionDutyCycler.Config(
+                            prefs.getBoolean(EXTRA_ADAPTIVE_DUTY_CYCLE, false),
+                            prefs.getLong(EXTRA_STATIONARY_DELAY_MS, 0L),
+                            prefs.getInt(EXTRA_RESUME_STEPS, 0),
+                            prefs.getLong(EXTRA_RESUME_WINDOW_MS, 0L)),
+                    (config, editor) -> editor
+                            .putBoolean(EXTRA_ADAPTIVE_DUTY_CYCLE, config.enabled)
+                            .putLong(EXTRA_STATIONARY_DELAY_MS,   config.stationaryDelayMs)
+                            .putInt(EXTRA_RESUME_STEPS,           config.resumeSteps)
+                            .putLong(EXTRA_RESUME_WINDOW_MS,      config.resumeWindowMs));
+
+    private static final MapxusPluginConfig.Settings<LocationFilter.Config> LOCATION_FILTER_SETTINGS =
+            MapxusPluginConfig.Settings.of(
+                    intent -> new LocationFilter.Config(
+                            intent.getBooleanExtra(EXTRA_LOCATION_FILTER_ENABLED, false),
+                            intent.getDoubleExtra(EXTRA_LOCATION_MIN_DISTANCE, 0),
+                            (long) intent.getDoubleExtra(EXTRA_LOCATION_MIN_TIME_MS, 0),
+                            intent.getDoubleExtra(EXTRA_LOCATION_ACCURACY_GAIN, 0)),
+                    prefs -> new LocationFilter.Config(
+                            prefs.getBoolean(EXTRA_LOCATION_FILTER_ENABLED, false),
+                            prefs.getFloat(EXTRA_LOCATION_MIN_DISTANCE, 0f),
+                            prefs.getLong(EXTRA_LOCATION_MIN_TIME_MS, 0L),
+                            prefs.getFloat(EXTRA_LOCATION_ACCURACY_GAIN, 0f)),
+                    (config, editor) -> editor
+                            .putBoolean(EXTRA_LOCATION_FILTER_ENABLED, config.enabled)
+                            .putFloat(EXTRA_LOCATION_MIN_DISTANCE,     (float) config.minDistanceMeters)
+                            .putLong(EXTRA_LOCATION_MIN_TIME_MS,       config.minTimeMs)
+                            .putFloat(EXTRA_LOCATION_ACCURACY_GAIN,    (float) config.accuracyImprovementMeters));
+
+    private static final MapxusPluginConfig.Settings<LocationSmoother.Config> SMOOTHING_SETTINGS =
+            MapxusPluginConfig.Settings.of(
+                    intent -> new LocationSmoother.Config(
+                            intent.getBooleanExtra(EXTRA_SMOOTHING_ENABLED, false),
+                            intent.getDoubleExtra(EXTRA_SMOOTHING_PROCESS_NOISE, LocationSmoother.DEFAULT_PROCESS_NOISE),
+                            intent.getBooleanExtra(EXTRA_SMOOTHING_FUSE_HEADING, true)),
+                    prefs -> new LocationSmoother.Config(
+                            prefs.getBoolean(EXTRA_SMOOTHING_ENABLED, false),
+                            prefs.getFloat(EXTRA_SMOOTHING_PROCESS_NOISE, (float) LocationSmoother.DEFAULT_PROCESS_NOISE),
+                            prefs.getBoolean(EXTRA_SMOOTHING_FUSE_HEADING, true)),
+                    (config, editor) -> editor
+                            .putBoolean(EXTRA_SMOOTHING_ENABLED,      config.enabled)
+                            .putFloat(EXTRA_SMOOTHING_PROCESS_NOISE,  (float) config.processNoise)
+                            .putBoolean(EXTRA_SMOOTHING_FUSE_HEADING, config.fuseHeading));
+
+    /**
+     * With the journal on, fixes are kept across process death — including
+     * fixes produced while no plugin listener is attached at all.
+     */
+    private static final MapxusPluginConfig.Settings<EventJournal.Config> JOURNAL_SETTINGS =
+            MapxusPluginConfig.Settings.of(
+                    intent -> new EventJournal.Config(
+                            intent.getBooleanExtra(EXTRA_PERSIST_EVENTS, false),
+                            (long) intent.getDoubleExtra(EXTRA_JOURNAL_MAX_BYTES, EventJournal.DEFAULT_MAX_BYTES)),
+                    prefs -> new EventJournal.Config(
+                            prefs.getBoolean(EXTRA_PERSIST_EVENTS, false),
+                            prefs.getLong(EXTRA_JOURNAL_MAX_BYTES, EventJournal.DEFAULT_MAX_BYTES)),
+                    (config, editor) -> editor
+                            .putBoolean(EXTRA_PERSIST_EVENTS, config.enabled)
+                            .putLong(EXTRA_JOURNAL_MAX_BYTES, config.maxBytes));
+
+    private static final MapxusPluginConfig.Settings<PositioningSource.TraceOptions> TRACE_SETTINGS =
+            MapxusPluginConfig.Settings.of(
+                    intent -> new PositioningSource.TraceOptions(
+                            intent.getStringExtra(EXTRA_RECORD_TRACE_PATH),
+                            intent.getStringExtra(EXTRA_REPLAY_TRACE_PATH),
+                            intent.getDoubleExtra(EXTRA_REPLAY_SPEED, 1.0),
+                            intent.getBooleanExtra(EXTRA_REPLAY_LOOP, false)),
+                    prefs -> new PositioningSource.TraceOptions(
+                            prefs.getString(EXTRA_RECORD_TRACE_PATH, null),
+                            prefs.getString(EXTRA_REPLAY_TRACE_PATH, null),
+                            prefs.getFloat(EXTRA_REPLAY_SPEED, 1f),
+                            prefs.getBoolean(EXTRA_REPLAY_LOOP, false)),
+                    (options, editor) -> editor
+                            .putString(EXTRA_RECORD_TRACE_PATH, options.recordPath)
+                            .putString(EXTRA_REPLAY_TRACE_PATH, options.replayPath)
+                            .putFloat(EXTRA_REPLAY_SPEED,       (float) options.replaySpeed)
+                            .putBoolean(EXTRA_REPLAY_LOOP,      options.replayLoop));
+
+    private static final MapxusPluginConfig.Settings<TrajectoryStore.Config> TRAJECTORY_SETTINGS =
+            MapxusPluginConfig.Settings.of(
+                    intent -> new TrajectoryStore.Config(
+                            intent.getBooleanExtra(EXTRA_TRAJECTORY_ENABLED, false),
+                            (int) intent.getDoubleExtra(EXTRA_TRAJECTORY_BATCH_SIZE, TrajectoryStore.DEFAULT_BATCH_SIZE),
+                            (long) intent.getDoubleExtra(EXTRA_TRAJECTORY_FLUSH_INTERVAL_MS,
+                                    TrajectoryStore.DEFAULT_FLUSH_INTERVAL_MS),
+                            (long) intent.getDoubleExtra(EXTRA_TRAJECTORY_RETENTION_MS,
+                                    TrajectoryStore.DEFAULT_RETENTION_MS),
+                            (int) intent.getDoubleExtra(EXTRA_TRAJECTORY_MAX_FIXES, TrajectoryStore.DEFAULT_MAX_FIXES)),
+                    prefs -> new TrajectoryStore.Config(
+                            prefs.getBoolean(EXTRA_TRAJECTORY_ENABLED, false),
+                            prefs.getInt(EXTRA_TRAJECTORY_BATCH_SIZE, TrajectoryStore.DEFAULT_BATCH_SIZE),
+                            prefs.getLong(EXTRA_TRAJECTORY_FLUSH_INTERVAL_MS, TrajectoryStore.DEFAULT_FLUSH_INTERVAL_MS),
+                            prefs.getLong(EXTRA_TRAJECTORY_RETENTION_MS, TrajectoryStore.DEFAULT_RETENTION_MS),
+                            prefs.getInt(EXTRA_TRAJECTORY_MAX_FIXES, TrajectoryStore.DEFAULT_MAX_FIXES)),
+                    (config, editor) -> editor
+                            .putBoolean(EXTRA_TRAJECTORY_ENABLED,        config.enabled)
+                            .putInt(EXTRA_TRAJECTORY_BATCH_SIZE,         config.batchSize)
+                            .putLong(EXTRA_TRAJECTORY_FLUSH_INTERVAL_MS, config.flushIntervalMs)
+                            .putLong(EXTRA_TRAJECTORY_RETENTION_MS,      config.retentionMs)
+                            .putInt(EXTRA_TRAJECTORY_MAX_FIXES,          config.maxFixes));
+
+    /** Headers travel as a JSON object string. */
+    private static final MapxusPluginConfig.Settings<FixUploader.Config> UPLOAD_SETTINGS =
+            MapxusPluginConfig.Settings.of(
+                    intent -> new FixUploader.Config(
+                            intent.getStringExtra(EXTRA_UPLOAD_URL),
+                            FixUploader.parseHeaders(intent.getStringExtra(EXTRA_UPLOAD_HEADERS)),
+                            (int) intent.getDoubleExtra(EXTRA_UPLOAD_BATCH_SIZE, FixUploader.DEFAULT_BATCH_SIZE),
+                            (long) intent.getDoubleExtra(EXTRA_UPLOAD_MAX_BATCH_DELAY_MS,
+                                    FixUploader.DEFAULT_MAX_BATCH_DELAY_MS),
+                            intent.getBooleanExtra(EXTRA_UPLOAD_REQUIRE_UNMETERED, false),
+                            intent.getBooleanExtra(EXTRA_UPLOAD_REQUIRE_CHARGING, false),
+                            (long) intent.getDoubleExtra(EXTRA_UPLOAD_MAX_SPOOL_BYTES,
+                                    FixUploader.DEFAULT_MAX_SPOOL_BYTES)),
+                    prefs -> new FixUploader.Config(
+                            prefs.getString(EXTRA_UPLOAD_URL, null),
+                            FixUploader.parseHeaders(prefs.getString(EXTRA_UPLOAD_HEADERS, null)),
+                            prefs.getInt(EXTRA_UPLOAD_BATCH_SIZE, FixUploader.DEFAULT_BATCH_SIZE),
+                            prefs.getLong(EXTRA_UPLOAD_MAX_BATCH_DELAY_MS, FixUploader.DEFAULT_MAX_BATCH_DELAY_MS),
+                            prefs.getBoolean(EXTRA_UPLOAD_REQUIRE_UNMETERED, false),
+                            prefs.getBoolean(EXTRA_UPLOAD_REQUIRE_CHARGING, false),
+                            prefs.getLong(EXTRA_UPLOAD_MAX_SPOOL_BYTES, FixUploader.DEFAULT_MAX_SPOOL_BYTES)),
+                    (config, editor) -> editor
+                            .putString(EXTRA_UPLOAD_URL,                config.url)
+                            .putString(EXTRA_UPLOAD_HEADERS,            new JSONObject(config.headers).toString())
+                            .putInt(EXTRA_UPLOAD_BATCH_SIZE,            config.batchSize)
+                            .putLong(EXTRA_UPLOAD_MAX_BATCH_DELAY_MS,   config.maxBatchDelayMs)
+                            .putBoolean(EXTRA_UPLOAD_REQUIRE_UNMETERED, config.requireUnmetered)
+                            .putBoolean(EXTRA_UPLOAD_REQUIRE_CHARGING,  config.requireCharging)
+                            .putLong(EXTRA_UPLOAD_MAX_SPOOL_BYTES,      config.maxSpoolBytes));
+
+    private static final MapxusPluginConfig.Settings<LiveStatusNotifier.Config> LIVE_NOTIFICATION_SETTINGS =
+            MapxusPluginConfig.Settings.of(
+                    intent -> new LiveStatusNotifier.Config(
+                            intent.getBooleanExtra(EXTRA_LIVE_NOTIFICATION, false),
+                            (long) intent.getDoubleExtra(EXTRA_LIVE_NOTIFICATION_INTERVAL_MS,
+                                    LiveStatusNotifier.DEFAULT_MIN_INTERVAL_MS)),
+                    prefs -> new LiveStatusNotifier.Config(
+                            prefs.getBoolean(EXTRA_LIVE_NOTIFICATION, false),
+                            prefs.getLong(EXTRA_LIVE_NOTIFICATION_INTERVAL_MS,
+                                    LiveStatusNotifier.DEFAULT_MIN_INTERVAL_MS)),
+                    (config, editor) -> editor
+                            .putBoolean(EXTRA_LIVE_NOTIFICATION,          config.enabled)
+                            .putLong(EXTRA_LIVE_NOTIFICATION_INTERVAL_MS, config.minIntervalMs));
+
+    private static final MapxusPluginConfig.Settings<LatencyTracer.Config> LATENCY_SETTINGS =
+            MapxusPluginConfig.Settings.of(
+                    intent -> new LatencyTracer.Config(
+                            (int) intent.getDoubleExtra(EXTRA_LATENCY_SAMPLE_EVERY, LatencyTracer.DEFAULT_SAMPLE_EVERY),
+                            intent.getBooleanExtra(EXTRA_LATENCY_TRACE_MARKS, false)),
+                    prefs -> new LatencyTracer.Config(
+                            prefs.getInt(EXTRA_LATENCY_SAMPLE_EVERY, LatencyTracer.DEFAULT_SAMPLE_EVERY),
+                            prefs.getBoolean(EXTRA_LATENCY_TRACE_MARKS, false)),
+                    (config, editor) -> editor
+                            .putInt(EXTRA_LATENCY_SAMPLE_EVERY,     config.sampleEvery)
+                            .putBoolean(EXTRA_LATENCY_TRACE_MARKS,  config.traceMarks));
+
     /**
      * Removes persisted credentials so the service does NOT restart automatically
-     * after being stopped intentionally via stopForegroundService().
+     * after being stopped intentionally via stopForegroundService(). Geofence
+     * zones are kept, in the engine and in prefs, for the next start.
      */
     private void clearCredentials() {
-        getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit().clear().apply();
+        MapxusPluginConfig.getInstance(this).clear();
     }
 
     // ─────────────────────────────────────────────────────────────────────────
@@ -269,6 +640,9 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
                 title   != null ? title   : "Mapxus Positioning",
                 content != null ? content : "Location tracking is active"
         ));
+        // The rebuilt notification shows the static text again.
+        statusActive = true;
+        dispatcher.post(liveStatus::invalidate);
 
         // Only advance to RESUMED if not already there.
         // On an AlarmManager restart the same service instance survives so the
@@ -289,15 +663,15 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
         }
 
         try {
-            if (positioningClient == null) {
-                positioningClient = MapxusPositioningClient.getInstance(
-                        this, this, appId, secret);
-                positioningClient.addPositioningListener(positioningListener);
-            }
-            positioningClient.start();
+            session.attach(positioningConsumer, this, this, appId, secret, traceOptions);
+            attachedToSession = true;
+            session.start(positioningConsumer);
+            dutyCyclePaused = false;
+            dutyCycler.start(dutyCycleConfig);
             Log.d(TAG, "Foreground positioning started");
         } catch (Exception e) {
             Log.e(TAG, "Failed to start foreground positioning: " + e.getMessage());
+            MapxusMetrics.increment(MapxusMetrics.Counter.SERVICE_START_FAILURES);
             if (eventListener != null) {
                 Map<String, Object> event = new HashMap<>();
                 event.put("type", "error");
@@ -310,18 +684,112 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
 
     private void stopPositioning() {
         positioningActive = false;
-        if (positioningClient != null) {
+        dispatcher.post(orientationCoalescer::reset);
+        dispatcher.post(locationFilter::reset);
+        dispatcher.post(locationSmoother::reset);
+        dispatcher.post(geofenceEngine::reset);
+        statusActive = false;
+        dispatcher.post(() -> {
+            liveStatus.reset();
+            // A render already running when statusActive was cleared may have
+            // posted after stopSelf; remove it unless the service restarted.
+            if (!statusActive) cancelStatus();
+        });
+        dispatcher.getHandler().removeCallbacks(dwellCheck);
+        // After the dispatch queue, so the last fixes are included.
+        dispatcher.post(TrajectoryStore.getInstance(this)::flushAsync);
+        dispatcher.post(FixUploader.getInstance(this)::flushAsync);
+        if (dutyCycler != null) dutyCycler.stop();
+        dutyCyclePaused = false;
+        if (attachedToSession) {
+            // Stops the SDK only if the app's own client is not using it.
             try {
-                // Remove the listener before stopping so it is not left registered
-                // on the SDK singleton. If we don't do this, the next call to
-                // getInstance() returns the same instance and addPositioningListener
-                // registers it a second time, causing every event to fire twice.
-                positioningClient.removePositioningListener(positioningListener);
-                positioningClient.stop();
+                session.detach(positioningConsumer);
             } catch (Exception e) {
                 Log.e(TAG, "Error stopping positioning client: " + e.getMessage());
             }
-            positioningClient = null;
+            attachedToSession = false;
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Adaptive duty-cycling
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private final MotionDutyCycler.Callback dutyCycleCallback = new MotionDutyCycler.Callback() {
+        @Override
+        public void onStationary() {
+            if (!attachedToSession || dutyCyclePaused) return;
+            try {
+                session.pause(positioningConsumer);
+                dutyCyclePaused = true;
+                MapxusMetrics.increment(MapxusMetrics.Counter.DUTY_CYCLE_PAUSES);
+                Log.d(TAG, "Device stationary — positioning paused");
+            } catch (Exception e) {
+                Log.e(TAG, "Error pausing positioning client: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void onMoving() {
+            if (!attachedToSession || !dutyCyclePaused) return;
+            try {
+                session.resume(positioningConsumer);
+                dutyCyclePaused = false;
+                MapxusMetrics.increment(MapxusMetrics.Counter.DUTY_CYCLE_RESUMES);
+                Log.d(TAG, "Motion detected — positioning resumed");
+            } catch (Exception e) {
+                Log.e(TAG, "Error resuming positioning client: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void onDutyCycleEvent(Map<String, Object> event) {
+            MapxusServiceEventListener listener = eventListener;
+            if (listener != null) listener.onServiceStateEvent(event);
+        }
+    };
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Geofences
+    // ─────────────────────────────────────────────────────────────────────────
+
+    // Position of the last evaluated fix, reported with timer-driven dwell events. Dispatch thread.
+    private double lastFixLatitude;
+    private double lastFixLongitude;
+
+    private final GeofenceEngine.Emitter geofenceEmitter = (transition, zone, latitude, longitude, timeMs) -> {
+        MapxusServiceEventListener listener = eventListener;
+        if (listener == null) return;
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", "geofence");
+        event.put("transition", transition);
+        event.put("zoneId", zone.id);
+        event.put("venueId", zone.venueId);
+        event.put("buildingId", zone.buildingId);
+        event.put("floor", zone.floor);
+        event.put("latitude", latitude);
+        event.put("longitude", longitude);
+        event.put("timestamp", timeMs);
+        listener.onServiceGeofenceEvent(event);
+    };
+
+    /** Fires dwell for users standing still, when no fixes arrive (duty cycling). */
+    private final Runnable dwellCheck = new Runnable() {
+        @Override
+        public void run() {
+            geofenceEngine.checkDwell(System.currentTimeMillis(), lastFixLatitude, lastFixLongitude, geofenceEmitter);
+            scheduleDwellCheck();
+        }
+    };
+
+    /** Runs on the dispatch thread after every evaluation. */
+    private void scheduleDwellCheck() {
+        Handler handler = dispatcher.getHandler();
+        handler.removeCallbacks(dwellCheck);
+        long due = geofenceEngine.nextDwellDueMs();
+        if (due >= 0) {
+            handler.postDelayed(dwellCheck, Math.max(0, due - System.currentTimeMillis()));
         }
     }
 
@@ -329,10 +797,11 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
     // Positioning Listener
     // ─────────────────────────────────────────────────────────────────────────
 
-    private final MapxusPositioningListener positioningListener = new MapxusPositioningListener() {
+    private final PositioningSession.Consumer positioningConsumer = new PositioningSession.Consumer() {
 
         @Override
         public void onStateChange(PositioningState positionerState) {
+            MapxusMetrics.increment(MapxusMetrics.Counter.SERVICE_STATE_CHANGES);
             if (eventListener == null) return;
             Map<String, Object> event = new HashMap<>();
             event.put("type", "stateChange");
@@ -354,6 +823,7 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
 
         @Override
         public void onError(ErrorInfo errorInfo) {
+            MapxusMetrics.increment(MapxusMetrics.Counter.SERVICE_ERRORS);
             if (eventListener == null) return;
             Map<String, Object> event = new HashMap<>();
             event.put("type", "error");
@@ -363,16 +833,52 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
         }
 
         @Override
-        public void onOrientationChange(float orientation, int sensorAccuracy) {
+        public void onOrientationChange(float orientation, int sensorAccuracy, long timestamp, long elapsedNanos) {
+            MapxusMetrics.increment(MapxusMetrics.Counter.SERVICE_ORIENTATIONS);
+            locationSmoother.setHeading(orientation);
             if (eventListener == null) return;
-            eventListener.onServiceOrientationEvent(
-                    MapxusEventUtil.orientationChangeEvent(orientation, sensorAccuracy));
+            dispatcher.post(() -> orientationCoalescer.offer(orientation, sensorAccuracy, timestamp, elapsedNanos));
         }
 
         @Override
-        public void onLocationChange(MapxusLocation location) {
-            if (eventListener == null) return;
-            eventListener.onServiceLocationEvent(MapxusEventUtil.mapLocationEvent(location));
+        public void onLocationChange(MapxusLocation location, long timestamp, long elapsedNanos) {
+            MapxusMetrics.increment(MapxusMetrics.Counter.SERVICE_LOCATIONS);
+            dispatcher.post(() -> {
+                LatencyTracer.onDispatch(elapsedNanos);
+                TrajectoryStore.getInstance(MapxusPositioningForegroundService.this).record(location, timestamp);
+                FixUploader.getInstance(MapxusPositioningForegroundService.this).record(location, timestamp);
+                if (location != null) {
+                    liveStatus.onFix(
+                            location.getMapxusFloor() != null ? location.getMapxusFloor().getCode() : null,
+                            location.getBuildingId(), location.getAccuracy(), elapsedNanos);
+                }
+                if (location != null && !geofenceEngine.isEmpty()) {
+                    lastFixLatitude  = location.getLatitude();
+                    lastFixLongitude = location.getLongitude();
+                    geofenceEngine.evaluate(location, timestamp, geofenceEmitter);
+                    scheduleDwellCheck();
+                }
+                if (!locationFilter.accept(location, timestamp)) {
+                    MapxusMetrics.increment(MapxusMetrics.Counter.SERVICE_LOCATIONS_SUPPRESSED);
+                    return;
+                }
+                locationSmoother.update(location, timestamp);
+                MapxusServiceEventListener listener = eventListener;
+                if (listener == null) {
+                    // No plugin attached (e.g. system restart after process death):
+                    // keep the fix in the journal so it is replayed on the next open.
+                    EventJournal journal = EventJournal.getInstance(MapxusPositioningForegroundService.this);
+                    if (journal.isEnabled() && location != null) {
+                        journal.append(MapxusEventCodec.encodeLocation(location, timestamp, elapsedNanos,
+                                locationSmoother));
+                    }
+                    return;
+                }
+                Map<String, Object> trace = LatencyTracer.newTrace(elapsedNanos);
+                if (trace != null) trace.put(LatencyTracer.STAGE_DISPATCH, SystemClock.elapsedRealtimeNanos());
+                listener.onServiceLocationEvent(
+                        MapxusEventUtil.locationEvent(location, timestamp, elapsedNanos, locationSmoother, trace));
+            });
         }
     };
 
@@ -403,13 +909,34 @@ public class MapxusPositioningForegroundService extends Service implements Lifec
         PendingIntent pendingIntent = PendingIntent.getActivity(
                 this, 0, launchIntent != null ? launchIntent : new Intent(), flags);
 
-        return new NotificationCompat.Builder(this, CHANNEL_ID)
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
                 .setContentTitle(title)
                 .setContentText(content)
                 .setSmallIcon(android.R.drawable.ic_menu_mylocation)
                 .setContentIntent(pendingIntent)
                 .setOngoing(true)
-                .setPriority(NotificationCompat.PRIORITY_LOW)
-                .build();
+                .setOnlyAlertOnce(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW);
+        notificationBuilder = builder;
+        return builder.build();
+    }
+
+    /** Sink of the LiveStatusNotifier: re-posts the kept notification with new text. */
+    private void showStatus(String content) {
+        if (!statusActive) return;
+        NotificationCompat.Builder builder = notificationBuilder;
+        NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        if (builder == null || manager == null) return;
+        try {
+            manager.notify(NOTIFICATION_ID, builder.setContentText(content).build());
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not update the notification: " + e.getMessage());
+        }
+    }
+
+    /** Cancels a live status left over after stop; the system ignores it while in the foreground. */
+    private void cancelStatus() {
+        NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        if (manager != null) manager.cancel(NOTIFICATION_ID);
     }
 }
@@ -28,7 +28,10 @@ public class MapxusServiceRestartReceiver extends BroadcastReceiver {
     public void onReceive(Context context, Intent intent) {
         Log.d(TAG, "Restarting MapxusPositioningForegroundService after task removal");
 
-        Intent serviceIntent = new Intent(context, MapxusPositioningForegroundService.class);
+        // Runs in the app process, whose prefs say which service was started.
+        boolean remote = MapxusPluginConfig.getInstance(context).isRemoteProcess();
+        Intent serviceIntent = new Intent(context, remote
+                ? RemotePositioningService.class : MapxusPositioningForegroundService.class);
         serviceIntent.setAction(MapxusPositioningForegroundService.ACTION_START);
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
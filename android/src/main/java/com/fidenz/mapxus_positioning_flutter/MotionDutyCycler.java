@@ -0,0 +1,245 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.hardware.TriggerEvent;
+import android.hardware.TriggerEventListener;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MotionDutyCycler — pauses positioning while the device is stationary and
+ * resumes it when the user starts moving again.
+ *
+ * Motion sources
+ * ──────────────
+ *  • Step detector       — every step counts as motion. Required: without it
+ *                          stillness cannot be detected and the cycler stays
+ *                          inactive. On Android 10+ it needs the
+ *                          ACTIVITY_RECOGNITION runtime permission; without
+ *                          the grant it delivers no steps, so the cycler
+ *                          stays inactive then as well rather than pausing
+ *                          positioning while the user walks.
+ *  • Significant motion  — optional one-shot trigger, armed while stationary;
+ *                          resumes immediately when it fires.
+ *
+ * Hysteresis
+ * ──────────
+ *  • MOVING → STATIONARY after stationaryDelayMs without a step.
+ *  • STATIONARY → MOVING after resumeSteps steps, each no more than
+ *    resumeWindowMs apart (single stray steps — e.g. picking up the phone —
+ *    do not restart positioning), or on a significant-motion trigger.
+ *
+ * Every transition emits a "dutyCycle" event with the time spent in the state
+ * being left and the running totals, so the savings can be measured.
+ *
+ * Runs on the handler's looper; sensor callbacks are delivered there as well.
+ */
+public class MotionDutyCycler {
+
+    private static final String TAG = "MapxusDutyCycler";
+
+    public static final String STATE_MOVING     = "moving";
+    public static final String STATE_STATIONARY = "stationary";
+
+    /** Receives transitions. Called on the handler's looper. */
+    public interface Callback {
+        void onStationary();
+        void onMoving();
+        void onDutyCycleEvent(Map<String, Object> event);
+    }
+
+    /** Immutable settings parsed from startForegroundService. */
+    public static final class Config {
+        public static final Config DISABLED = new Config(false, 0, 0, 0);
+
+        public final boolean enabled;
+        public final long    stationaryDelayMs;
+        public final int     resumeSteps;
+        public final long    resumeWindowMs;
+
+        public Config(boolean enabled, long stationaryDelayMs, int resumeSteps, long resumeWindowMs) {
+            this.enabled           = enabled;
+            this.stationaryDelayMs = stationaryDelayMs > 0 ? stationaryDelayMs : 60_000L;
+            this.resumeSteps       = Math.max(1, resumeSteps);
+            this.resumeWindowMs    = resumeWindowMs > 0 ? resumeWindowMs : 5_000L;
+        }
+    }
+
+    private final Context context;
+    private final SensorManager sensorManager;
+    private final Handler handler;
+    private final Callback callback;
+
+    private Config  config = Config.DISABLED;
+    private boolean active = false;
+    private Sensor  stepDetector;
+    private Sensor  significantMotion;
+
+    private String state = STATE_MOVING;
+    private long   stateSinceMs;
+    private long   movingTotalMs;
+    private long   stationaryTotalMs;
+    private long   lastStepMs;
+    private int    resumeStepCount;
+
+    private final Runnable stationaryCheck = new Runnable() {
+        @Override
+        public void run() {
+            if (!active || !STATE_MOVING.equals(state)) return;
+            long idle = SystemClock.elapsedRealtime() - lastStepMs;
+            if (idle >= config.stationaryDelayMs) {
+                enterStationary();
+            } else {
+                handler.postDelayed(this, config.stationaryDelayMs - idle);
+            }
+        }
+    };
+
+    private final SensorEventListener stepListener = new SensorEventListener() {
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            onStep();
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {}
+    };
+
+    private final TriggerEventListener motionListener = new TriggerEventListener() {
+        @Override
+        public void onTrigger(TriggerEvent event) {
+            // One-shot sensor: it is disarmed now and re-armed on the next STATIONARY.
+            handler.post(() -> {
+                if (active && STATE_STATIONARY.equals(state)) enterMoving("significant_motion");
+            });
+        }
+    };
+
+    public MotionDutyCycler(Context context, Handler handler, Callback callback) {
+        this.context = context;
+        this.sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        this.handler = handler;
+        this.callback = callback;
+    }
+
+    /** Starts monitoring with the given settings; no-op if disabled or unsupported. */
+    public void start(Config config) {
+        stop();
+        this.config = config != null ? config : Config.DISABLED;
+        if (!this.config.enabled || sensorManager == null) return;
+
+        stepDetector      = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_DETECTOR);
+        significantMotion = sensorManager.getDefaultSensor(Sensor.TYPE_SIGNIFICANT_MOTION);
+        if (stepDetector == null) {
+            Log.w(TAG, "No step detector — adaptive duty-cycling disabled");
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                && ContextCompat.checkSelfPermission(context, Manifest.permission.ACTIVITY_RECOGNITION)
+                        != PackageManager.PERMISSION_GRANTED) {
+            Log.w(TAG, "ACTIVITY_RECOGNITION not granted — adaptive duty-cycling disabled");
+            return;
+        }
+
+        active = true;
+        long now = SystemClock.elapsedRealtime();
+        state = STATE_MOVING;
+        stateSinceMs = now;
+        lastStepMs = now;
+        movingTotalMs = 0;
+        stationaryTotalMs = 0;
+        sensorManager.registerListener(stepListener, stepDetector, SensorManager.SENSOR_DELAY_NORMAL);
+        handler.postDelayed(stationaryCheck, this.config.stationaryDelayMs);
+    }
+
+    /** Stops monitoring. Does not resume positioning; the caller is stopping it anyway. */
+    public void stop() {
+        if (!active) return;
+        active = false;
+        handler.removeCallbacks(stationaryCheck);
+        sensorManager.unregisterListener(stepListener);
+        if (significantMotion != null) {
+            sensorManager.cancelTriggerSensor(motionListener, significantMotion);
+        }
+    }
+
+    public boolean isStationary() {
+        return active && STATE_STATIONARY.equals(state);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Internals
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private void onStep() {
+        if (!active) return;
+        long now = SystemClock.elapsedRealtime();
+        long sinceLast = now - lastStepMs;
+        lastStepMs = now;
+
+        if (STATE_MOVING.equals(state)) return; // stationaryCheck re-arms itself from lastStepMs
+
+        resumeStepCount = sinceLast <= config.resumeWindowMs ? resumeStepCount + 1 : 1;
+        if (resumeStepCount >= config.resumeSteps) {
+            enterMoving("steps");
+        }
+    }
+
+    private void enterStationary() {
+        Map<String, Object> event = transition(STATE_STATIONARY, "idle");
+        resumeStepCount = 0;
+        if (significantMotion != null) {
+            sensorManager.requestTriggerSensor(motionListener, significantMotion);
+        }
+        callback.onStationary();
+        callback.onDutyCycleEvent(event);
+    }
+
+    private void enterMoving(String reason) {
+        Map<String, Object> event = transition(STATE_MOVING, reason);
+        if (significantMotion != null) {
+            sensorManager.cancelTriggerSensor(motionListener, significantMotion);
+        }
+        handler.removeCallbacks(stationaryCheck);
+        handler.postDelayed(stationaryCheck, config.stationaryDelayMs);
+        callback.onMoving();
+        callback.onDutyCycleEvent(event);
+    }
+
+    private Map<String, Object> transition(String next, String reason) {
+        long now = SystemClock.elapsedRealtime();
+        long spent = now - stateSinceMs;
+        if (STATE_MOVING.equals(state)) {
+            movingTotalMs += spent;
+        } else {
+            stationaryTotalMs += spent;
+        }
+        String previous = state;
+        state = next;
+        stateSinceMs = now;
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", "dutyCycle");
+        event.put("state", next);
+        event.put("reason", reason);
+        event.put("previousState", previous);
+        event.put("previousStateMs", spent);
+        event.put("movingMs", movingTotalMs);
+        event.put("stationaryMs", stationaryTotalMs);
+        event.put("timestamp", System.currentTimeMillis());
+        return event;
+    }
+}
@@ -0,0 +1,276 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * OrientationCoalescer — thins out compass samples before they cross the
+ * platform channel.
+ *
+ * Three independent stages, all configurable and all disabled by default:
+ *
+ *  • Dead-band   — samples within deadBandDegrees of the last accepted sample
+ *                  (same sensor accuracy) are dropped.
+ *  • Rate limit  — at most maxRateHz emissions per second. Samples arriving
+ *                  faster are merged: only the newest one is emitted when the
+ *                  interval elapses (trailing edge, so the final heading is
+ *                  never lost).
+ *  • Batching    — with batchWindowMs > 0, accepted samples are collected for
+ *                  one window and delivered as a single "orientationBatch"
+ *                  event. The rate limit then applies within the batch.
+ *
+ * Every emitted event reports how many samples were dropped (dead-band) and
+ * merged (rate limit / batch overflow) since the previous emission, and
+ * carries the times of the SDK callback that produced its sample(s).
+ *
+ * Not thread-safe: offer() must be called on the looper that backs the
+ * handler passed to the constructor (main for the plugin, the EventDispatcher
+ * thread for the foreground service).
+ */
+public class OrientationCoalescer {
+
+    /** Receives the events produced by the coalescer. */
+    public interface Sink {
+        void emit(Object event);
+    }
+
+    /** Immutable pipeline settings parsed from init / startForegroundService. */
+    public static final class Config {
+        public static final Config DISABLED = new Config(0, 0, 0);
+
+        public final double maxRateHz;
+        public final double deadBandDegrees;
+        public final long   batchWindowMs;
+
+        public Config(double maxRateHz, double deadBandDegrees, long batchWindowMs) {
+            this.maxRateHz       = Math.max(0, maxRateHz);
+            this.deadBandDegrees = Math.max(0, deadBandDegrees);
+            this.batchWindowMs   = Math.max(0, batchWindowMs);
+        }
+
+        public boolean isEnabled() {
+            return maxRateHz > 0 || deadBandDegrees > 0 || batchWindowMs > 0;
+        }
+
+        /** Builds a config from nullable channel / intent values; null means off. */
+        public static Config from(Number maxRateHz, Number deadBandDegrees, Number batchWindowMs) {
+            return new Config(
+                    maxRateHz       != null ? maxRateHz.doubleValue()       : 0,
+                    deadBandDegrees != null ? deadBandDegrees.doubleValue() : 0,
+                    batchWindowMs   != null ? batchWindowMs.longValue()     : 0);
+        }
+    }
+
+    /** Hard cap on samples per batch; further samples overwrite the last slot. */
+    private static final int MAX_BATCH_SAMPLES = 256;
+
+    private final Handler handler;
+    private final Sink sink;
+    private volatile Config config = Config.DISABLED;
+
+    // Dead-band reference (last sample that passed the dead-band).
+    private boolean hasAccepted = false;
+    private float   acceptedOrientation;
+    private int     acceptedAccuracy;
+
+    // Rate limiting.
+    private long    lastEmitMs = Long.MIN_VALUE / 2;
+    private boolean hasPending = false;
+    private float   pendingOrientation;
+    private int     pendingAccuracy;
+    private long    pendingTimestamp;
+    private long    pendingNanos;
+    private boolean trailingScheduled = false;
+
+    // Batching — primitive arrays, reused between windows.
+    private final float[] batchOrientations = new float[MAX_BATCH_SAMPLES];
+    private final int[]   batchAccuracies   = new int[MAX_BATCH_SAMPLES];
+    private final long[]  batchTimestamps   = new long[MAX_BATCH_SAMPLES];
+    private int     batchSize = 0;
+    private long    lastSlotOpenedMs;
+    private boolean batchScheduled = false;
+
+    // Counters since the previous emission.
+    private int dropped = 0;
+    private int merged  = 0;
+
+    private final Runnable trailingEmit = new Runnable() {
+        @Override
+        public void run() {
+            trailingScheduled = false;
+            if (hasPending) {
+                hasPending = false;
+                emitSingle(pendingOrientation, pendingAccuracy, System.currentTimeMillis(),
+                        pendingTimestamp, pendingNanos);
+            }
+        }
+    };
+
+    private final Runnable batchFlush = new Runnable() {
+        @Override
+        public void run() {
+            batchScheduled = false;
+            flushBatch();
+        }
+    };
+
+    public OrientationCoalescer(Handler handler, Sink sink) {
+        this.handler = handler;
+        this.sink = sink;
+    }
+
+    public void setConfig(Config config) {
+        this.config = config != null ? config : Config.DISABLED;
+        reset();
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    /** Feeds one compass sample into the pipeline, stamped now. */
+    public void offer(float orientation, int accuracy) {
+        offer(orientation, accuracy, System.currentTimeMillis(), SystemClock.elapsedRealtimeNanos());
+    }
+
+    /**
+     * Feeds one compass sample into the pipeline.
+     *
+     * @param timestamp    epoch millis of the SDK callback
+     * @param elapsedNanos elapsedRealtimeNanos of the SDK callback
+     */
+    public void offer(float orientation, int accuracy, long timestamp, long elapsedNanos) {
+        Config cfg = config;
+        if (!cfg.isEnabled()) {
+            sink.emit(MapxusEventUtil.orientationEvent(orientation, accuracy, 0, 0, timestamp, elapsedNanos));
+            return;
+        }
+
+        if (cfg.deadBandDegrees > 0 && hasAccepted
+                && accuracy == acceptedAccuracy
+                && angularDistance(orientation, acceptedOrientation) < cfg.deadBandDegrees) {
+            dropped++;
+            return;
+        }
+        hasAccepted = true;
+        acceptedOrientation = orientation;
+        acceptedAccuracy = accuracy;
+
+        long now = System.currentTimeMillis();
+        if (cfg.batchWindowMs > 0) {
+            addToBatch(cfg, orientation, accuracy, now, timestamp);
+            return;
+        }
+
+        if (cfg.maxRateHz > 0) {
+            long minIntervalMs = (long) (1000.0 / cfg.maxRateHz);
+            long elapsed = now - lastEmitMs;
+            if (elapsed < minIntervalMs) {
+                if (hasPending) merged++;
+                hasPending = true;
+                pendingOrientation = orientation;
+                pendingAccuracy = accuracy;
+                pendingTimestamp = timestamp;
+                pendingNanos = elapsedNanos;
+                if (!trailingScheduled) {
+                    trailingScheduled = true;
+                    handler.postDelayed(trailingEmit, minIntervalMs - elapsed);
+                }
+                return;
+            }
+        }
+
+        emitSingle(orientation, accuracy, now, timestamp, elapsedNanos);
+    }
+
+    /** Drops any queued samples and cancels pending timers. */
+    public void reset() {
+        handler.removeCallbacks(trailingEmit);
+        handler.removeCallbacks(batchFlush);
+        trailingScheduled = false;
+        batchScheduled = false;
+        hasPending = false;
+        hasAccepted = false;
+        batchSize = 0;
+        dropped = 0;
+        merged = 0;
+        lastEmitMs = Long.MIN_VALUE / 2;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Internals
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private void addToBatch(Config cfg, float orientation, int accuracy, long now, long timestamp) {
+        int slot = batchSize;
+        if (slot > 0 && cfg.maxRateHz > 0
+                && now - lastSlotOpenedMs < (long) (1000.0 / cfg.maxRateHz)) {
+            // Same rate-limit interval as the previous batched sample — replace it.
+            slot--;
+            merged++;
+        } else if (slot == MAX_BATCH_SAMPLES) {
+            slot--;
+            merged++;
+        } else {
+            batchSize++;
+            lastSlotOpenedMs = now;
+        }
+        batchOrientations[slot] = orientation;
+        batchAccuracies[slot]   = accuracy;
+        batchTimestamps[slot]   = timestamp;
+
+        if (!batchScheduled) {
+            batchScheduled = true;
+            handler.postDelayed(batchFlush, cfg.batchWindowMs);
+        }
+    }
+
+    private void flushBatch() {
+        if (batchSize == 0) return;
+        int count = batchSize;
+        batchSize = 0;
+
+        Object event;
+        if (MapxusEventUtil.isBinaryFormat()) {
+            event = MapxusEventCodec.encodeOrientationBatch(
+                    batchOrientations, batchAccuracies, batchTimestamps, count, dropped, merged);
+        } else {
+            float[] orientations = new float[count];
+            int[]   accuracies   = new int[count];
+            long[]  timestamps   = new long[count];
+            System.arraycopy(batchOrientations, 0, orientations, 0, count);
+            System.arraycopy(batchAccuracies,   0, accuracies,   0, count);
+            System.arraycopy(batchTimestamps,   0, timestamps,   0, count);
+
+            Map<String, Object> map = new HashMap<>();
+            map.put("type", "orientationBatch");
+            map.put("orientations", orientations);
+            map.put("accuracies", accuracies);
+            map.put("timestamps", timestamps);
+            map.put("dropped", dropped);
+            map.put("merged", merged);
+            event = map;
+        }
+        dropped = 0;
+        merged = 0;
+        sink.emit(event);
+    }
+
+    private void emitSingle(float orientation, int accuracy, long now, long timestamp, long elapsedNanos) {
+        lastEmitMs = now;
+        Object event = MapxusEventUtil.orientationEvent(orientation, accuracy, dropped, merged,
+                timestamp, elapsedNanos);
+        dropped = 0;
+        merged = 0;
+        sink.emit(event);
+    }
+
+    /** Smallest absolute difference between two headings in degrees (0..180). */
+    static double angularDistance(float a, float b) {
+        double diff = Math.abs(a - b) % 360.0;
+        return diff > 180.0 ? 360.0 - diff : diff;
+    }
+}
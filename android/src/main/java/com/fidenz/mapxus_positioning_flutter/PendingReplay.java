@@ -0,0 +1,197 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PendingReplay — hands the events buffered while the app was closed to a
+ * newly opened stream without blocking the app's first frames.
+ *
+ * Every chunk of at most chunkSize events is its own main-thread message and
+ * the next chunk is posted behind whatever the Looper has queued meanwhile,
+ * so input, frame callbacks (Choreographer's asynchronous messages jump the
+ * queue) and other main-thread work run between two chunks.
+ *
+ *  • latestFirst — the newest location fix is sent on its own first, so the
+ *                  current position shows immediately; the history backfills
+ *                  afterwards, oldest first.
+ *  • collapse    — the history is sent as one "backlog" event holding the
+ *                  events in order, i.e. a single channel message instead of
+ *                  one per event.
+ *
+ * Live events keep flowing to the sink while a replay runs, so they can
+ * arrive between two backfilled chunks; every event carries its timestamp.
+ * A replay ends as soon as its target is no longer the active sink. Events
+ * it had already taken from the buffer but not sent are put back at the
+ * front of the returned deque, which the next replay sends before the
+ * buffer. The deque is owned by the main thread; the buffer's only consumer
+ * stays the main thread, so it remains single-producer / single-consumer.
+ *
+ * Main thread only.
+ */
+public final class PendingReplay implements Runnable {
+
+    public static final int DEFAULT_CHUNK_SIZE = 32;
+
+    /** "type" of the single event sent in collapse mode. */
+    public static final String TYPE_BACKLOG = "backlog";
+
+    /** Immutable settings parsed from startForegroundService. */
+    public static final class Config {
+        public static final Config DEFAULT = new Config(DEFAULT_CHUNK_SIZE, false, false);
+
+        /** Events sent per main-thread message. */
+        public final int chunkSize;
+        /** Send the newest location fix before the history. */
+        public final boolean latestFirst;
+        /** Send the history as a single backlog event. */
+        public final boolean collapse;
+
+        public Config(int chunkSize, boolean latestFirst, boolean collapse) {
+            this.chunkSize   = Math.max(1, chunkSize);
+            this.latestFirst = latestFirst;
+            this.collapse    = collapse;
+        }
+
+        /** Builds a config from nullable channel values; null means default. */
+        public static Config from(Number chunkSize, Object latestFirst, Object collapse) {
+            return new Config(
+                    chunkSize != null ? chunkSize.intValue() : DEFAULT_CHUNK_SIZE,
+                    Boolean.TRUE.equals(latestFirst),
+                    Boolean.TRUE.equals(collapse));
+        }
+    }
+
+    /** The stream a replay writes to. */
+    public interface Target {
+        /** False once the stream was closed or replaced; checked before every chunk. */
+        boolean isActive();
+
+        void send(Object event);
+    }
+
+    private final Handler handler;
+    private final EventRingBuffer buffer;
+    /** Events an earlier replay took but did not send; older than the buffer. */
+    private final Deque<Object> returned;
+    private final Config config;
+    private final Target target;
+
+    /** latestFirst / collapse: the whole buffer, taken by the first step. */
+    private List<Object> taken;
+    private int next;
+    private boolean started;
+    private int sent;
+
+    public PendingReplay(Handler handler, EventRingBuffer buffer, Deque<Object> returned,
+                         Config config, Target target) {
+        this.handler  = handler;
+        this.buffer   = buffer;
+        this.returned = returned;
+        this.config   = config != null ? config : Config.DEFAULT;
+        this.target   = target;
+    }
+
+    /** Posts the first chunk; nothing is sent from the calling message. */
+    public void start() {
+        handler.post(this);
+    }
+
+    @Override
+    public void run() {
+        if (!target.isActive()) {
+            if (taken != null) {
+                for (int i = taken.size() - 1; i >= next; i--) returned.addFirst(taken.get(i));
+            }
+            finish();
+            return;
+        }
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        boolean more = step();
+        MapxusMetrics.increment(MapxusMetrics.Counter.PENDING_FLUSH_CHUNKS);
+        MapxusMetrics.record(MapxusMetrics.Histogram.PENDING_FLUSH_CHUNK_US,
+                (SystemClock.elapsedRealtimeNanos() - startNanos) / 1_000L);
+        if (more) {
+            handler.post(this);
+        } else {
+            finish();
+        }
+    }
+
+    /** Sends one chunk; returns true if another one is due. */
+    private boolean step() {
+        if (!started) {
+            started = true;
+            if (config.latestFirst || config.collapse) {
+                taken = new ArrayList<>(returned.size() + buffer.size());
+                taken.addAll(returned);
+                returned.clear();
+                buffer.drain(taken::add);
+                if (config.latestFirst) {
+                    int latest = latestLocationIndex(taken);
+                    if (latest >= 0) {
+                        send(taken.remove(latest));
+                        return !taken.isEmpty();
+                    }
+                }
+            }
+        }
+
+        if (taken == null) {
+            int drained = 0;
+            while (drained < config.chunkSize && !returned.isEmpty()) {
+                send(returned.pollFirst());
+                drained++;
+            }
+            if (drained < config.chunkSize) drained += buffer.drain(this::send, config.chunkSize - drained);
+            return drained == config.chunkSize && (!returned.isEmpty() || !buffer.isEmpty());
+        }
+
+        if (config.collapse) {
+            if (next < taken.size()) {
+                List<Object> events = taken.subList(next, taken.size());
+                for (Object event : events) {
+                    LatencyTracer.onSink(event, MapxusMetrics.Histogram.LATENCY_PENDING_US);
+                }
+                Map<String, Object> backlog = new HashMap<>();
+                backlog.put("type", TYPE_BACKLOG);
+                backlog.put("count", events.size());
+                backlog.put("events", new ArrayList<>(events));
+                target.send(backlog);
+                sent += events.size();
+                next = taken.size();
+            }
+            return false;
+        }
+
+        int end = Math.min(taken.size(), next + config.chunkSize);
+        while (next < end) send(taken.get(next++));
+        return next < taken.size();
+    }
+
+    private void send(Object event) {
+        LatencyTracer.onSink(event, MapxusMetrics.Histogram.LATENCY_PENDING_US);
+        target.send(event);
+        sent++;
+    }
+
+    private void finish() {
+        if (sent == 0) return;
+        MapxusMetrics.add(MapxusMetrics.Counter.PENDING_FLUSHED, sent);
+        MapxusMetrics.record(MapxusMetrics.Histogram.PENDING_FLUSH_SIZE, sent);
+    }
+
+    /** Index of the newest location event in either wire format, or -1. */
+    static int latestLocationIndex(List<Object> events) {
+        for (int i = events.size() - 1; i >= 0; i--) {
+            if (EventFanOut.typeOf(events.get(i)) == EventFanOut.TYPE_LOCATION) return i;
+        }
+        return -1;
+    }
+}
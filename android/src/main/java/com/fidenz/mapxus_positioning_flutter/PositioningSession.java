@@ -0,0 +1,326 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.mapxus.positioning.positioning.api.ErrorInfo;
+import com.mapxus.positioning.positioning.api.MapxusLocation;
+import com.mapxus.positioning.positioning.api.MapxusPositioningListener;
+import com.mapxus.positioning.positioning.api.PositioningState;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PositioningSession — the one positioning pipeline of the process, shared by
+ * the plugin's own client (init / start) and the foreground service.
+ *
+ * MapxusPositioningClient is a process-wide singleton. The session owns the
+ * PositioningSource on top of it, registers a single listener and hands every
+ * callback, stamped once with its capture time, to each attached consumer.
+ * With both modes active there is one SDK subscription and one stamping per
+ * fix, however many consumers there are:
+ *
+ *  • attach / detach — reference counted. The source is created for the
+ *                      first consumer and released with the last one.
+ *  • start / stop    — the source runs while at least one attached consumer
+ *                      is started; after the last one stops it is released
+ *                      and the next start creates it again.
+ *  • pause / resume  — per consumer. The source is paused only while every
+ *                      started consumer is paused, so the service's duty
+ *                      cycle cannot pause the app's client and vice versa.
+ *
+ * A source is created with the lifecycle owner, credentials and trace
+ * options of the consumer that needed it first; consumers attaching later
+ * share it as is.
+ *
+ * MapxusNativePositioning listeners are served from the same callback,
+ * after the consumers; they do not hold the source open. Releasing a
+ * started source sends them STOPPED, since the SDK's own STOPPED arrives
+ * after the session's listener is gone.
+ *
+ * Main thread only, like the SDK callbacks.
+ */
+public final class PositioningSession {
+
+    /** One user of the session; callbacks arrive on the main thread. */
+    public interface Consumer {
+        void onStateChange(PositioningState state);
+
+        void onError(ErrorInfo errorInfo);
+
+        /** timestamp / elapsedNanos: wall-clock and monotonic time of the SDK callback. */
+        void onOrientationChange(float orientation, int sensorAccuracy, long timestamp, long elapsedNanos);
+
+        /** timestamp / elapsedNanos: wall-clock and monotonic time of the SDK callback. */
+        void onLocationChange(@Nullable MapxusLocation location, long timestamp, long elapsedNanos);
+    }
+
+    /** Creates the source for a consumer; see PositioningSource.create. */
+    interface SourceFactory {
+        PositioningSource create() throws IOException;
+    }
+
+    private static final class Entry {
+        final SourceFactory factory;
+        boolean started;
+        boolean paused;
+        /** Last state this consumer was given. */
+        @Nullable
+        PositioningState state;
+
+        Entry(SourceFactory factory) {
+            this.factory = factory;
+        }
+    }
+
+    private static final PositioningSession instance =
+            new PositioningSession(MapxusNativePositioning.getInstance());
+
+    public static PositioningSession getInstance() {
+        return instance;
+    }
+
+    private final Map<Consumer, Entry> consumers = new LinkedHashMap<>();
+    /** Copy of the consumers for allocation-free delivery; replaced on attach / detach. */
+    private Consumer[] snapshot = new Consumer[0];
+    private PositioningSource source;
+    private boolean sourceStarted;
+    private boolean sourcePaused;
+    /** Last state the source reported; null until it reports one. */
+    @Nullable
+    private PositioningState sourceState;
+
+    /** Public native listeners; they see every callback the consumers see. */
+    private final MapxusNativePositioning nativeListeners;
+
+    private final MapxusPositioningListener listener = asListener(new Consumer() {
+        @Override
+        public void onStateChange(PositioningState state) {
+            sourceState = state;
+            for (Entry entry : consumers.values()) entry.state = state;
+            for (Consumer consumer : snapshot) consumer.onStateChange(state);
+            nativeListeners.dispatchStateChange(state);
+        }
+
+        @Override
+        public void onError(ErrorInfo errorInfo) {
+            for (Consumer consumer : snapshot) consumer.onError(errorInfo);
+            nativeListeners.dispatchError(errorInfo);
+        }
+
+        @Override
+        public void onOrientationChange(float orientation, int sensorAccuracy, long timestamp, long elapsedNanos) {
+            for (Consumer consumer : snapshot) {
+                consumer.onOrientationChange(orientation, sensorAccuracy, timestamp, elapsedNanos);
+            }
+            nativeListeners.dispatchOrientation(orientation, sensorAccuracy, timestamp, elapsedNanos);
+        }
+
+        @Override
+        public void onLocationChange(MapxusLocation location, long timestamp, long elapsedNanos) {
+            for (Consumer consumer : snapshot) consumer.onLocationChange(location, timestamp, elapsedNanos);
+            nativeListeners.dispatchLocation(location, timestamp, elapsedNanos);
+        }
+    });
+
+    PositioningSession() {
+        this(new MapxusNativePositioning());
+    }
+
+    PositioningSession(MapxusNativePositioning nativeListeners) {
+        this.nativeListeners = nativeListeners;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Consumers
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Adds consumer and creates the source if there is none yet, so invalid
+     * credentials or trace files are reported here rather than on start.
+     * Attaching an attached consumer again does nothing.
+     */
+    public void attach(Consumer consumer, LifecycleOwner owner, Context context, String appId, String secret,
+                       PositioningSource.TraceOptions traceOptions) throws IOException {
+        attach(consumer, () -> PositioningSource.create(owner, context, appId, secret, traceOptions));
+    }
+
+    void attach(Consumer consumer, SourceFactory factory) throws IOException {
+        if (consumers.containsKey(consumer)) return;
+        if (source == null) openSource(factory);
+        consumers.put(consumer, new Entry(factory));
+        snapshot = consumers.keySet().toArray(new Consumer[0]);
+    }
+
+    /** Stops consumer if it was started and removes it; the last one releases the source. */
+    public void detach(Consumer consumer) {
+        if (!consumers.containsKey(consumer)) return;
+        stop(consumer);
+        consumers.remove(consumer);
+        snapshot = consumers.keySet().toArray(new Consumer[0]);
+        if (consumers.isEmpty()) closeSource();
+    }
+
+    public boolean isAttached(Consumer consumer) {
+        return consumers.containsKey(consumer);
+    }
+
+    public int consumerCount() {
+        return consumers.size();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Start / stop / pause / resume
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Starts the source unless it runs already; resumes it if it was paused
+     * for everyone. A consumer that attached after the source reported
+     * RUNNING gets that state from here, since the SDK does not repeat it.
+     */
+    public void start(Consumer consumer) throws IOException {
+        Entry entry = entryOf(consumer);
+        entry.started = true;
+        entry.paused  = false;
+        if (source == null) openSource(entry.factory);
+        if (!sourceStarted) {
+            source.start();
+            sourceStarted = true;
+            return;
+        }
+        if (sourcePaused) {
+            source.resume();
+            sourcePaused = false;
+        }
+        if (sourceState == PositioningState.RUNNING && entry.state != PositioningState.RUNNING) {
+            entry.state = PositioningState.RUNNING;
+            consumer.onStateChange(PositioningState.RUNNING);
+        }
+    }
+
+    /** The source stops and is released when no other consumer is started. */
+    public void stop(Consumer consumer) {
+        Entry entry = consumers.get(consumer);
+        if (entry == null || !entry.started) return;
+        entry.started = false;
+        entry.paused  = false;
+        if (startedCount() == 0) {
+            closeSource();
+        } else {
+            updatePaused();
+        }
+    }
+
+    public void pause(Consumer consumer) {
+        Entry entry = entryOf(consumer);
+        if (!entry.started) return;
+        entry.paused = true;
+        updatePaused();
+    }
+
+    public void resume(Consumer consumer) {
+        Entry entry = entryOf(consumer);
+        if (!entry.started) return;
+        entry.paused = false;
+        updatePaused();
+    }
+
+    /** The TracePlayer standing in for the SDK client, or null when the SDK is used. */
+    @Nullable
+    public TracePlayer getReplay() {
+        return source instanceof TracePlayer ? (TracePlayer) source : null;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Internals
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private Entry entryOf(Consumer consumer) {
+        Entry entry = consumers.get(consumer);
+        if (entry == null) throw new IllegalStateException("Consumer is not attached to the positioning session");
+        return entry;
+    }
+
+    private int startedCount() {
+        int count = 0;
+        for (Entry entry : consumers.values()) {
+            if (entry.started) count++;
+        }
+        return count;
+    }
+
+    /** Pauses the source while every started consumer is paused, resumes it otherwise. */
+    private void updatePaused() {
+        if (!sourceStarted) return;
+        boolean allPaused = true;
+        for (Entry entry : consumers.values()) {
+            if (entry.started && !entry.paused) {
+                allPaused = false;
+                break;
+            }
+        }
+        if (allPaused && !sourcePaused) {
+            source.pause();
+            sourcePaused = true;
+        } else if (!allPaused && sourcePaused) {
+            source.resume();
+            sourcePaused = false;
+        }
+    }
+
+    private void openSource(SourceFactory factory) throws IOException {
+        source = factory.create();
+        source.addPositioningListener(listener);
+    }
+
+    /**
+     * Removes the listener before stopping so it is not left registered on
+     * the SDK singleton, which would deliver every callback twice once a new
+     * source registers it again. Native listeners therefore get a
+     * synthesized STOPPED for a source that was started and had not
+     * reported it yet.
+     */
+    private void closeSource() {
+        PositioningSource closing = source;
+        boolean wasStarted = sourceStarted && sourceState != PositioningState.STOPPED;
+        source        = null;
+        sourceStarted = false;
+        sourcePaused  = false;
+        sourceState   = null;
+        if (closing == null) return;
+        closing.removePositioningListener(listener);
+        closing.stop();
+        if (wasStarted) nativeListeners.dispatchStateChange(PositioningState.STOPPED);
+    }
+
+    /** Adapts consumer to the SDK listener, stamping every callback with its capture time. */
+    static MapxusPositioningListener asListener(Consumer consumer) {
+        return new MapxusPositioningListener() {
+            @Override
+            public void onStateChange(PositioningState state) {
+                consumer.onStateChange(state);
+            }
+
+            @Override
+            public void onError(ErrorInfo errorInfo) {
+                consumer.onError(errorInfo);
+            }
+
+            @Override
+            public void onOrientationChange(float orientation, int sensorAccuracy) {
+                consumer.onOrientationChange(orientation, sensorAccuracy,
+                        System.currentTimeMillis(), SystemClock.elapsedRealtimeNanos());
+            }
+
+            @Override
+            public void onLocationChange(MapxusLocation location) {
+                consumer.onLocationChange(location, System.currentTimeMillis(), SystemClock.elapsedRealtimeNanos());
+            }
+        };
+    }
+}
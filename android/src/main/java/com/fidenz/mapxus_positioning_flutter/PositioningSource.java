@@ -0,0 +1,126 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.mapxus.positioning.positioning.api.MapxusPositioningClient;
+import com.mapxus.positioning.positioning.api.MapxusPositioningListener;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * PositioningSource — the part of MapxusPositioningClient the plugin and the
+ * foreground service use, so a recorded trace (TracePlayer) can stand in for
+ * the SDK and drive the full event pipeline off-site.
+ *
+ * Callbacks arrive on the main thread for every implementation, as they do
+ * from the SDK.
+ */
+public interface PositioningSource {
+
+    void addPositioningListener(MapxusPositioningListener listener);
+
+    void removePositioningListener(MapxusPositioningListener listener);
+
+    void start();
+
+    void stop();
+
+    void pause();
+
+    void resume();
+
+    /** Record / replay settings from init or startForegroundService. */
+    final class TraceOptions {
+        public static final TraceOptions NONE = new TraceOptions(null, null, 1.0, false);
+
+        /** Capture every listener callback of the real client to this file. */
+        @Nullable public final String recordPath;
+        /** Play this recorded trace instead of starting the SDK. */
+        @Nullable public final String replayPath;
+        /** 1 = real time, N = N times faster, 0 = as fast as the pipeline accepts. */
+        public final double replaySpeed;
+        /** Start over at the end of the trace instead of stopping. */
+        public final boolean replayLoop;
+
+        public TraceOptions(@Nullable String recordPath, @Nullable String replayPath,
+                            double replaySpeed, boolean replayLoop) {
+            this.recordPath  = recordPath;
+            this.replayPath  = replayPath;
+            this.replaySpeed = Math.max(0, replaySpeed);
+            this.replayLoop  = replayLoop;
+        }
+
+        /** Builds options from nullable channel values. */
+        public static TraceOptions from(Object recordPath, Object replayPath, Object replaySpeed, Object replayLoop) {
+            return new TraceOptions(
+                    recordPath instanceof String ? (String) recordPath : null,
+                    replayPath instanceof String ? (String) replayPath : null,
+                    replaySpeed instanceof Number ? ((Number) replaySpeed).doubleValue() : 1.0,
+                    Boolean.TRUE.equals(replayLoop));
+        }
+
+        public boolean isReplay() {
+            return replayPath != null;
+        }
+    }
+
+    /**
+     * The SDK client, or a TracePlayer when options.replayPath is set;
+     * wrapped in a TraceRecorder when options.recordPath is set.
+     */
+    static PositioningSource create(LifecycleOwner owner, Context context, String appId, String secret,
+                                    TraceOptions options) throws IOException {
+        PositioningSource source;
+        if (options.isReplay()) {
+            source = new TracePlayer(new File(options.replayPath), options.replaySpeed, options.replayLoop,
+                    new Handler(Looper.getMainLooper()));
+        } else {
+            source = of(MapxusPositioningClient.getInstance(owner, context, appId, secret));
+        }
+        if (options.recordPath != null) {
+            source = TraceRecorder.wrap(source, new File(options.recordPath));
+        }
+        return source;
+    }
+
+    /** Adapts the SDK client. */
+    static PositioningSource of(MapxusPositioningClient client) {
+        return new PositioningSource() {
+            @Override
+            public void addPositioningListener(MapxusPositioningListener listener) {
+                client.addPositioningListener(listener);
+            }
+
+            @Override
+            public void removePositioningListener(MapxusPositioningListener listener) {
+                client.removePositioningListener(listener);
+            }
+
+            @Override
+            public void start() {
+                client.start();
+            }
+
+            @Override
+            public void stop() {
+                client.stop();
+            }
+
+            @Override
+            public void pause() {
+                client.pause();
+            }
+
+            @Override
+            public void resume() {
+                client.resume();
+            }
+        };
+    }
+}
@@ -0,0 +1,284 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.content.SharedPreferences;
+import android.os.Binder;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.RemoteException;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.StandardMessageCodec;
+
+/**
+ * RemotePositioningConnection — app-process end of the event channel of
+ * RemotePositioningService.
+ *
+ * Binds without BIND_AUTO_CREATE, so the binding never starts the service
+ * and is re-established by the system whenever the service (re)starts. On
+ * connect it hands the service a doorbell binder and maps the shared ring
+ * read-only. Each doorbell carries a write position; the records up to it
+ * are decoded on the EventDispatcher thread, routed exactly like events of
+ * the in-process service (dispatchForegroundEvent) and acknowledged with a
+ * single oneway call.
+ *
+ * Geofences are evaluated in the service process, so zones set by the app
+ * are forwarded to it, and sent again with every new connection in case
+ * they changed while the channel was down.
+ *
+ * Dispatch-thread state: ring, read position, service binder.
+ */
+public final class RemotePositioningConnection implements ServiceConnection {
+
+    private static final String TAG = "MapxusRemoteConnection";
+
+    private static volatile RemotePositioningConnection instance;
+
+    public static RemotePositioningConnection getInstance(Context context) {
+        if (instance == null) {
+            synchronized (RemotePositioningConnection.class) {
+                if (instance == null) {
+                    instance = new RemotePositioningConnection(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final Context context;
+    private final EventDispatcher dispatcher = EventDispatcher.getInstance();
+    /** Main thread. */
+    private boolean bound;
+
+    // Dispatch thread
+    private IBinder service;
+    private SharedMemory memory;
+    private ByteBuffer mapping;
+    private SharedEventRing ring;
+    private long readPosition;
+    private long droppedSeen;
+
+    private RemotePositioningConnection(Context context) {
+        this.context = context;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Binding (main thread)
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Starts receiving events; does nothing when bound already. */
+    public void bind() {
+        if (bound) return;
+        bound = context.bindService(new Intent(context, RemotePositioningService.class), this, 0);
+        if (!bound) Log.w(TAG, "RemotePositioningService is not available");
+    }
+
+    /** Stops receiving; records not yet acknowledged go to the next connection. */
+    public void unbind() {
+        if (!bound) return;
+        bound = false;
+        context.unbindService(this);
+        dispatcher.post(() -> {
+            IBinder current = service;
+            if (current != null) call(current, RemotePositioningService.TRANSACTION_UNREGISTER);
+            release();
+        });
+    }
+
+    public boolean isBound() {
+        return bound;
+    }
+
+    @Override
+    public void onServiceConnected(ComponentName name, IBinder binder) {
+        dispatcher.post(() -> register(binder));
+    }
+
+    /** The service process died; the system reconnects once it is restarted. */
+    @Override
+    public void onServiceDisconnected(ComponentName name) {
+        dispatcher.post(this::release);
+    }
+
+    /** The binding cannot recover by itself (e.g. the package was updated). */
+    @Override
+    public void onBindingDied(ComponentName name) {
+        if (!bound) return;
+        unbind();
+        bind();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Channel (dispatch thread)
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private void register(IBinder binder) {
+        release();
+        Parcel data  = Parcel.obtain();
+        Parcel reply = Parcel.obtain();
+        try {
+            data.writeInterfaceToken(RemotePositioningService.DESCRIPTOR);
+            data.writeStrongBinder(doorbell);
+            binder.transact(RemotePositioningService.TRANSACTION_REGISTER, data, reply, 0);
+            reply.readException();
+            memory       = reply.readTypedObject(SharedMemory.CREATOR);
+            readPosition = reply.readLong();
+            mapping      = memory.mapReadOnly();
+            ring         = new SharedEventRing(mapping);
+            service      = binder;
+            SharedPreferences prefs = MapxusPluginConfig.getInstance(context).getPreferences();
+            sendGeofences(GeofenceEngine.load(prefs), GeofenceEngine.loadExitMargin(prefs));
+        } catch (RemoteException | ErrnoException | RuntimeException e) {
+            Log.e(TAG, "Could not open the event channel: " + e.getMessage());
+            release();
+        } finally {
+            data.recycle();
+            reply.recycle();
+        }
+    }
+
+    private void release() {
+        service = null;
+        ring    = null;
+        if (mapping != null) SharedMemory.unmap(mapping);
+        if (memory != null) memory.close();
+        mapping = null;
+        memory  = null;
+    }
+
+    /**
+     * Routes every record up to tail, then acknowledges them with one call.
+     * A doorbell is always acknowledged, even a stale one, since the service
+     * does not ring again before it is.
+     */
+    private void drain(long tail, long dropped) {
+        if (ring == null) return;
+        MapxusMetrics.increment(MapxusMetrics.Counter.REMOTE_DOORBELLS);
+        if (dropped > droppedSeen) {
+            MapxusMetrics.add(MapxusMetrics.Counter.REMOTE_EVENTS_DROPPED, dropped - droppedSeen);
+        }
+        droppedSeen = dropped;
+        if (tail > readPosition) readPosition = ring.read(readPosition, tail, this::route);
+
+        Parcel data = Parcel.obtain();
+        try {
+            data.writeInterfaceToken(RemotePositioningService.DESCRIPTOR);
+            data.writeStrongBinder(doorbell);
+            data.writeLong(readPosition);
+            service.transact(RemotePositioningService.TRANSACTION_ACK, data, null, IBinder.FLAG_ONEWAY);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Service process gone: " + e.getMessage());
+        } finally {
+            data.recycle();
+        }
+    }
+
+    /** Forwards zones to the service process. Any thread. */
+    public void setGeofences(List<GeofenceEngine.Zone> zones, double exitMarginMeters) {
+        dispatcher.post(() -> sendGeofences(zones, exitMarginMeters));
+    }
+
+    /**
+     * Geofence counters of the service process, or null while not connected.
+     * Dispatch thread.
+     */
+    @Nullable
+    Map<String, Object> geofenceStats() {
+        IBinder current = service;
+        if (current == null) return null;
+        Parcel data  = Parcel.obtain();
+        Parcel reply = Parcel.obtain();
+        try {
+            data.writeInterfaceToken(RemotePositioningService.DESCRIPTOR);
+            current.transact(RemotePositioningService.TRANSACTION_GEOFENCE_STATS, data, reply, 0);
+            reply.readException();
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = (Map<String, Object>) RemotePositioningService.decode(reply.createByteArray());
+            return stats;
+        } catch (RemoteException | RuntimeException e) {
+            Log.w(TAG, "Could not read geofence stats: " + e.getMessage());
+            return null;
+        } finally {
+            data.recycle();
+            reply.recycle();
+        }
+    }
+
+    /** Without a connection the zones are picked up from the preferences on the next one. */
+    private void sendGeofences(List<GeofenceEngine.Zone> zones, double exitMarginMeters) {
+        IBinder current = service;
+        if (current == null) return;
+        List<Object> maps = new ArrayList<>(zones.size());
+        for (GeofenceEngine.Zone zone : zones) maps.add(zone.toMap());
+        Map<String, Object> message = new HashMap<>();
+        message.put("zones", maps);
+        message.put("exitMarginMeters", exitMarginMeters);
+        Parcel data = Parcel.obtain();
+        try {
+            data.writeInterfaceToken(RemotePositioningService.DESCRIPTOR);
+            data.writeByteArray(RemotePositioningService.encode(message));
+            current.transact(RemotePositioningService.TRANSACTION_SET_GEOFENCES, data, null, IBinder.FLAG_ONEWAY);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Service process gone: " + e.getMessage());
+        } finally {
+            data.recycle();
+        }
+    }
+
+    /** Copies the record out of shared memory before it can be reused. */
+    private void route(byte kind, ByteBuffer payload) {
+        Object event;
+        if (kind == SharedEventRing.KIND_RECORD) {
+            byte[] record = new byte[payload.remaining()];
+            payload.get(record);
+            event = record;
+        } else {
+            event = StandardMessageCodec.INSTANCE.decodeMessage(payload);
+        }
+        if (event == null) return;
+        MapxusMetrics.increment(MapxusMetrics.Counter.REMOTE_EVENTS_RECEIVED);
+        MapxusPositioningFlutterPlugin.dispatchForegroundEvent(context, event);
+    }
+
+    private void call(IBinder binder, int code) {
+        Parcel data = Parcel.obtain();
+        try {
+            data.writeInterfaceToken(RemotePositioningService.DESCRIPTOR);
+            data.writeStrongBinder(doorbell);
+            binder.transact(code, data, null, IBinder.FLAG_ONEWAY);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Service process gone: " + e.getMessage());
+        } finally {
+            data.recycle();
+        }
+    }
+
+    /** Rung by the service (oneway, binder thread) with its write position. */
+    private final Binder doorbell = new Binder() {
+        @Override
+        protected boolean onTransact(int code, Parcel data, @Nullable Parcel reply, int flags)
+                throws RemoteException {
+            if (code != RemotePositioningService.TRANSACTION_RING) {
+                return super.onTransact(code, data, reply, flags);
+            }
+            data.enforceInterface(RemotePositioningService.DESCRIPTOR);
+            long tail    = data.readLong();
+            long dropped = data.readLong();
+            dispatcher.post(() -> drain(tail, dropped));
+            return true;
+        }
+    };
+}
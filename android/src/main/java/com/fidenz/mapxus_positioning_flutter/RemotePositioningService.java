@@ -0,0 +1,360 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Binder;
+import android.os.Build;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.RemoteException;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import io.flutter.plugin.common.StandardMessageCodec;
+
+/**
+ * RemotePositioningService — MapxusPositioningForegroundService running in its
+ * own process (":mapxus_positioning" in the manifest), so UI work, GC pauses
+ * and background-engine starts of the app process do not delay positioning,
+ * and the other way round.
+ *
+ * Events leave the process through a SharedEventRing in an
+ * android.os.SharedMemory region instead of one Binder parcel per event:
+ *
+ *   service (dispatch thread)           app (RemotePositioningConnection)
+ *   ─────────────────────────           ─────────────────────────────────
+ *   write record into the ring
+ *   ring the doorbell (oneway, tail) ─► read records up to tail, route them
+ *                                   ◄─ ACK (oneway, read position)
+ *   more written meanwhile? ring again
+ *
+ * At most one doorbell is outstanding, so under load one Binder call carries
+ * a whole batch of events. While no app is bound, the ring keeps the newest
+ * events (oldest dropped first) and they are delivered when the app binds;
+ * records the app was told about but did not acknowledge are sent again to
+ * the next app that binds. Dropped records are counted in the doorbell and
+ * show up as remoteEventsDropped in the app's metrics.
+ *
+ * Location and orientation events use the app's event format: binary records
+ * are copied as they are, Map events are encoded with StandardMessageCodec.
+ *
+ * Requires SharedMemory (Android 8.1, API 27); the plugin falls back to the
+ * in-process service below that. Everything that is static in the service
+ * process — metrics, replay and buffer stats, the background engine, the
+ * positioning session — stays in that process: the background handler is
+ * not started from here, and the app's own client (init / start) keeps its
+ * own SDK subscription. Settings reach the service through the start intent;
+ * geofences, which change while the service runs, and their counters go over
+ * the service binder.
+ */
+public class RemotePositioningService extends MapxusPositioningForegroundService {
+
+    private static final String TAG = "MapxusRemoteService";
+
+    public static final String DESCRIPTOR = "com.fidenz.mapxus_positioning_flutter.RemotePositioning";
+
+    /** Service binder: doorbell binder in, SharedMemory and read position out. */
+    static final int TRANSACTION_REGISTER   = IBinder.FIRST_CALL_TRANSACTION;
+    /**
+     * Service binder, oneway: doorbell binder and read position; the app has
+     * read everything before it. ACKs from an earlier doorbell are ignored.
+     */
+    static final int TRANSACTION_ACK        = IBinder.FIRST_CALL_TRANSACTION + 1;
+    /** Service binder, oneway: the app stops reading. */
+    static final int TRANSACTION_UNREGISTER = IBinder.FIRST_CALL_TRANSACTION + 2;
+    /** Service binder, oneway: zones and exit margin, as a StandardMessageCodec Map. */
+    static final int TRANSACTION_SET_GEOFENCES  = IBinder.FIRST_CALL_TRANSACTION + 3;
+    /** Service binder: GeofenceEngine stats out, as a StandardMessageCodec Map. */
+    static final int TRANSACTION_GEOFENCE_STATS = IBinder.FIRST_CALL_TRANSACTION + 4;
+    /** Doorbell binder, oneway: write position and total records dropped so far. */
+    static final int TRANSACTION_RING       = IBinder.FIRST_CALL_TRANSACTION;
+
+    public static final String EXTRA_EVENT_FORMAT = "eventFormat";
+    public static final int RING_BYTES = 256 * 1024;
+
+    /** True if this device can run the service in its own process. */
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1;
+    }
+
+    private final EventDispatcher dispatcher = EventDispatcher.getInstance();
+
+    private SharedMemory memory;
+    private ByteBuffer mapping;
+    // Ring state, dispatch thread only
+    private SharedEventRing ring;
+    private IBinder doorbell;
+    /** Write position sent with the outstanding doorbell; ring.head() when none. */
+    private long signalled;
+    private boolean doorbellPending;
+    /** New records dropped because the ring was full of records the app was told about. */
+    private long rejected;
+
+    @Override
+    public void onCreate() {
+        try {
+            memory  = SharedMemory.create("mapxus_events", RING_BYTES);
+            mapping = memory.mapReadWrite();
+            ring    = new SharedEventRing(mapping);
+        } catch (ErrnoException e) {
+            Log.e(TAG, "Shared memory unavailable: " + e.getMessage());
+        }
+        setEventListener(ringWriter);
+        super.onCreate();
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent == null || ACTION_START.equals(intent.getAction())) {
+            MapxusEventUtil.setEventFormat(loadEventFormat(intent));
+        }
+        return super.onStartCommand(intent, flags, startId);
+    }
+
+    /**
+     * The app's event format, from the start intent or, after a restart of
+     * this process, from the last start. Persisted here because the app
+     * process sets it only in its own memory.
+     */
+    private String loadEventFormat(@Nullable Intent intent) {
+        SharedPreferences prefs = MapxusPluginConfig.getInstance(this).getPreferences();
+        if (intent != null && intent.getStringExtra(EXTRA_APP_ID) != null) {
+            String format = intent.getStringExtra(EXTRA_EVENT_FORMAT);
+            prefs.edit().putString(EXTRA_EVENT_FORMAT, format).apply();
+            return format;
+        }
+        return prefs.getString(EXTRA_EVENT_FORMAT, MapxusEventUtil.FORMAT_MAP);
+    }
+
+    @Override
+    protected boolean runsInAppProcess() {
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return ring != null ? binder : null;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        setEventListener(null);
+        dispatcher.post(() -> {
+            doorbell = null;
+            // A write() queued behind this runnable must not touch the unmapped buffer.
+            ring = null;
+            if (mapping != null) SharedMemory.unmap(mapping);
+            if (memory != null) memory.close();
+        });
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Producer
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private final MapxusServiceEventListener ringWriter = new MapxusServiceEventListener() {
+        @Override
+        public void onServiceLocationEvent(Object event) {
+            write(event);
+        }
+
+        @Override
+        public void onServiceStateEvent(Map<String, Object> event) {
+            write(event);
+        }
+
+        @Override
+        public void onServiceErrorEvent(Map<String, Object> event) {
+            write(event);
+        }
+
+        @Override
+        public void onServiceOrientationEvent(Object event) {
+            write(event);
+        }
+
+        @Override
+        public void onServiceGeofenceEvent(Map<String, Object> event) {
+            write(event);
+        }
+    };
+
+    /** State and error events arrive on the main thread, the others on the dispatch thread. */
+    private void write(Object event) {
+        dispatcher.execute(() -> {
+            if (ring == null) return;
+            byte kind;
+            byte[] payload;
+            if (event instanceof byte[]) {
+                kind    = SharedEventRing.KIND_RECORD;
+                payload = (byte[]) event;
+            } else {
+                payload = encode(event);
+                kind    = SharedEventRing.KIND_MESSAGE;
+            }
+            // Records the app was told about cannot be dropped; then the new one is.
+            while (!ring.offer(kind, payload)) {
+                if (ring.head() < signalled || !ring.dropOldest()) {
+                    rejected++;
+                    return;
+                }
+            }
+            ringDoorbell();
+        });
+    }
+
+    /** Sends the write position unless a doorbell is outstanding. Dispatch thread. */
+    private void ringDoorbell() {
+        if (doorbell == null || doorbellPending || ring.tail() == signalled) return;
+        Parcel data = Parcel.obtain();
+        try {
+            data.writeInterfaceToken(DESCRIPTOR);
+            data.writeLong(ring.tail());
+            data.writeLong(ring.droppedCount() + rejected);
+            doorbell.transact(TRANSACTION_RING, data, null, IBinder.FLAG_ONEWAY);
+            signalled = ring.tail();
+            doorbellPending = true;
+        } catch (RemoteException e) {
+            Log.w(TAG, "App process gone: " + e.getMessage());
+            unregister(doorbell);
+        } finally {
+            data.recycle();
+        }
+    }
+
+    static byte[] encode(Object message) {
+        ByteBuffer buffer = StandardMessageCodec.INSTANCE.encodeMessage(message);
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Nullable
+    static Object decode(@Nullable byte[] bytes) {
+        return bytes != null ? StandardMessageCodec.INSTANCE.decodeMessage(ByteBuffer.wrap(bytes)) : null;
+    }
+
+    /**
+     * Applies zones sent by the app and saves them in this process's prefs
+     * file too, so a restart of this process loads them.
+     */
+    private void applyGeofences(@Nullable Object message) {
+        try {
+            Map<?, ?> map = (Map<?, ?>) message;
+            List<GeofenceEngine.Zone> zones = new ArrayList<>();
+            List<?> maps = (List<?>) map.get("zones");
+            if (maps != null) {
+                for (Object zone : maps) zones.add(GeofenceEngine.Zone.from((Map<?, ?>) zone));
+            }
+            Object margin = map.get("exitMarginMeters");
+            double exitMarginMeters = margin instanceof Number ? ((Number) margin).doubleValue() : 0;
+            GeofenceEngine.save(MapxusPluginConfig.getInstance(this).getPreferences(), zones, exitMarginMeters);
+            setGeofences(zones, exitMarginMeters);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Ignoring invalid geofences: " + e.getMessage());
+        }
+    }
+
+    /** The app's doorbell went away: unacknowledged records go to the next one. Dispatch thread. */
+    private void unregister(IBinder which) {
+        if (doorbell != which) return;
+        doorbell = null;
+        doorbellPending = false;
+        signalled = ring.head();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Binder interface
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private final Binder binder = new Binder() {
+        @Override
+        protected boolean onTransact(int code, Parcel data, @Nullable Parcel reply, int flags)
+                throws RemoteException {
+            switch (code) {
+                case TRANSACTION_REGISTER: {
+                    data.enforceInterface(DESCRIPTOR);
+                    IBinder bell = data.readStrongBinder();
+                    // Hand-over happens on the dispatch thread so the reply
+                    // carries a read position consistent with the ring.
+                    long[] position = {-1};
+                    CountDownLatch registered = new CountDownLatch(1);
+                    dispatcher.post(() -> {
+                        if (ring == null) {
+                            registered.countDown();
+                            return;
+                        }
+                        doorbell = bell;
+                        doorbellPending = false;
+                        signalled = ring.head();
+                        position[0] = ring.head();
+                        registered.countDown();
+                    });
+                    try {
+                        registered.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RemoteException("Interrupted while registering");
+                    }
+                    if (position[0] < 0) throw new RemoteException("Service is stopping");
+                    bell.linkToDeath(() -> dispatcher.post(() -> unregister(bell)), 0);
+                    if (reply != null) {
+                        reply.writeNoException();
+                        reply.writeTypedObject(memory, 0);
+                        reply.writeLong(position[0]);
+                    }
+                    // Deliver whatever was kept while no app was bound.
+                    dispatcher.post(RemotePositioningService.this::ringDoorbell);
+                    return true;
+                }
+                case TRANSACTION_ACK: {
+                    data.enforceInterface(DESCRIPTOR);
+                    IBinder bell = data.readStrongBinder();
+                    long read = data.readLong();
+                    dispatcher.post(() -> {
+                        // A late ACK of a previous connection would release
+                        // records the current one has not read yet.
+                        if (ring == null || bell != doorbell) return;
+                        ring.release(read);
+                        doorbellPending = false;
+                        ringDoorbell();
+                    });
+                    return true;
+                }
+                case TRANSACTION_UNREGISTER: {
+                    data.enforceInterface(DESCRIPTOR);
+                    IBinder bell = data.readStrongBinder();
+                    dispatcher.post(() -> unregister(bell));
+                    return true;
+                }
+                case TRANSACTION_SET_GEOFENCES: {
+                    data.enforceInterface(DESCRIPTOR);
+                    applyGeofences(decode(data.createByteArray()));
+                    return true;
+                }
+                case TRANSACTION_GEOFENCE_STATS: {
+                    data.enforceInterface(DESCRIPTOR);
+                    if (reply != null) {
+                        reply.writeNoException();
+                        reply.writeByteArray(encode(getGeofenceEngine().stats()));
+                    }
+                    return true;
+                }
+                default:
+                    return super.onTransact(code, data, reply, flags);
+            }
+        }
+    };
+}
@@ -0,0 +1,168 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * SharedEventRing — variable-length event records in a byte ring that two
+ * processes map (see RemotePositioningService).
+ *
+ * Record layout, 4-byte aligned, little-endian:
+ *
+ *   int32 length   payload bytes + 1; 0 = padding up to the end of the ring
+ *   byte  kind     KIND_RECORD or KIND_MESSAGE
+ *   bytes payload
+ *
+ * A record never wraps: when it does not fit before the end of the buffer,
+ * a padding marker fills the rest and the record starts at offset 0.
+ *
+ * Only the payload lives in shared memory. Read and write positions are
+ * monotonic byte counts owned by the producer and exchanged over Binder:
+ * the producer sends its write position with the doorbell, the consumer
+ * reads up to exactly that position and acknowledges what it has read.
+ * Binder transactions order memory between the processes, so the ring
+ * itself needs no cross-process atomics.
+ *
+ * Producer methods belong to one thread, consumer methods to another.
+ */
+public final class SharedEventRing {
+
+    /** Payload is a MapxusEventCodec record (binary event format). */
+    public static final byte KIND_RECORD  = 1;
+    /** Payload is a StandardMessageCodec message (Map events). */
+    public static final byte KIND_MESSAGE = 2;
+
+    /** Per-record overhead: length and kind. */
+    static final int HEADER_SIZE = 5;
+
+    /** Consumer callback; payload is only valid during the call. */
+    public interface Reader {
+        void accept(byte kind, ByteBuffer payload);
+    }
+
+    private final ByteBuffer buffer;
+    /** Producer's view for bulk payload copies. */
+    private final ByteBuffer writer;
+    private final int capacity;
+
+    // Producer state
+    private long head;
+    private long tail;
+    private long dropped;
+
+    public SharedEventRing(ByteBuffer buffer) {
+        this.buffer   = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.writer   = buffer.duplicate();
+        this.capacity = buffer.capacity() & ~3;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Producer side
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Write position: everything before it has been written. */
+    public long tail() {
+        return tail;
+    }
+
+    /** Oldest position still owned by the consumer or not yet read. */
+    public long head() {
+        return head;
+    }
+
+    public long droppedCount() {
+        return dropped;
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * Appends a record, or returns false if it does not fit next to the
+     * unread records; the caller decides whether to drop older ones.
+     */
+    public boolean offer(byte kind, byte[] payload) {
+        int size = align(HEADER_SIZE + payload.length);
+        if (size > capacity) {
+            dropped++;
+            return true; // can never fit; counted and discarded
+        }
+        int offset = (int) (tail % capacity);
+        int pad = offset + size > capacity ? capacity - offset : 0;
+        if (capacity - (tail - head) < pad + size) return false;
+        if (pad > 0) {
+            buffer.putInt(offset, 0);
+            tail += pad;
+            offset = 0;
+        }
+        buffer.putInt(offset, payload.length + 1);
+        buffer.put(offset + 4, kind);
+        writer.clear();
+        writer.position(offset + HEADER_SIZE);
+        writer.put(payload);
+        tail += size;
+        return true;
+    }
+
+    /**
+     * Discards the oldest record. Only valid for records the consumer has
+     * not been told about; returns false if the ring is empty.
+     */
+    public boolean dropOldest() {
+        if (head == tail) return false;
+        head = next(head);
+        dropped++;
+        return true;
+    }
+
+    /** The consumer acknowledged everything before position. */
+    public void release(long position) {
+        if (position > head && position <= tail) head = position;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Consumer side
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Hands every record between from and to to reader, oldest first.
+     *
+     * @return the position after the last record read, i.e. to
+     */
+    public long read(long from, long to, Reader reader) {
+        long position = from;
+        while (position < to) {
+            int offset = (int) (position % capacity);
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                position += capacity - offset;
+                continue;
+            }
+            ByteBuffer payload = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            payload.position(offset + HEADER_SIZE).limit(offset + 4 + length);
+            reader.accept(buffer.get(offset + 4), payload.slice());
+            position += align(4 + length);
+        }
+        return position;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Internals
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Position after the record (or padding) at position. */
+    private long next(long position) {
+        int offset = (int) (position % capacity);
+        int length = buffer.getInt(offset);
+        return position + (length == 0 ? capacity - offset : align(4 + length));
+    }
+
+    private static int align(int size) {
+        return (size + 3) & ~3;
+    }
+}
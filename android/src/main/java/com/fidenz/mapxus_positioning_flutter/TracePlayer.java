@@ -0,0 +1,351 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.os.Handler;
+import android.util.Log;
+
+import com.mapxus.positioning.positioning.api.ErrorInfo;
+import com.mapxus.positioning.positioning.api.MapxusFloor;
+import com.mapxus.positioning.positioning.api.MapxusLocation;
+import com.mapxus.positioning.positioning.api.MapxusPositioningListener;
+import com.mapxus.positioning.positioning.api.PositioningState;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * TracePlayer — replays a TraceRecorder trace as a PositioningSource.
+ *
+ * The file is read on a dedicated thread and each callback is posted to the
+ * callback handler (the main thread, as with the SDK) when it is due:
+ *
+ *  • speed 1   — original timing
+ *  • speed N   — N times faster
+ *  • speed 0   — as fast as the listeners accept; at most MAX_IN_FLIGHT
+ *                callbacks wait in the handler's queue, so the reader is
+ *                paced by the pipeline instead of flooding the main Looper
+ *
+ * Consecutive sessions of an appended trace play back to back. pause() /
+ * resume() freeze the trace clock (as duty cycling does with the SDK); the
+ * end of the trace is reported as PositioningState.STOPPED unless looping.
+ *
+ * stats() reports how many callbacks were played, the throughput and how
+ * far posting fell behind schedule, which makes pipeline throughput
+ * measurable without the SDK.
+ */
+public final class TracePlayer implements PositioningSource {
+
+    private static final String TAG = "MapxusTracePlayer";
+
+    static final int MAX_IN_FLIGHT = 256;
+    private static final int  BUFFER_SIZE     = 64 * 1024;
+    private static final long MAX_PARK_NANOS  = 50_000_000L;
+
+    private final File file;
+    private final double speed;
+    private final boolean loop;
+    private final Handler callbackHandler;
+    private final List<MapxusPositioningListener> listeners = new CopyOnWriteArrayList<>();
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+
+    private final Object lock = new Object();
+    /** Guarded by lock. */
+    private boolean paused = false;
+    private long pausedAtNanos;
+    private long pausedTotalNanos;
+
+    private volatile boolean running = false;
+    private volatile boolean finished = false;
+    private Thread thread;
+
+    // ── Stats (written by the reader thread) ──────────────────────────────────
+    private volatile long played;
+    private volatile long maxLagNanos;
+    private volatile long startedNanos;
+    private volatile long endedNanos;
+
+    public TracePlayer(File file, double speed, boolean loop, Handler callbackHandler) throws IOException {
+        if (!file.isFile()) throw new IOException("Trace not found: " + file);
+        this.file = file;
+        this.speed = Math.max(0, speed);
+        this.loop = loop;
+        this.callbackHandler = callbackHandler;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // PositioningSource
+    // ─────────────────────────────────────────────────────────────────────────
+
+    @Override
+    public void addPositioningListener(MapxusPositioningListener listener) {
+        if (!listeners.contains(listener)) listeners.add(listener);
+    }
+
+    @Override
+    public void removePositioningListener(MapxusPositioningListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        finished = false;
+        played = 0;
+        maxLagNanos = 0;
+        startedNanos = System.nanoTime();
+        endedNanos = 0;
+        thread = new Thread(this::play, "MapxusTracePlayer");
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        synchronized (lock) {
+            paused = false;
+            lock.notifyAll();
+        }
+        thread.interrupt();
+        thread = null;
+        endedNanos = System.nanoTime();
+        dispatchState(PositioningState.STOPPED);
+    }
+
+    @Override
+    public void pause() {
+        synchronized (lock) {
+            if (paused) return;
+            paused = true;
+            pausedAtNanos = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void resume() {
+        synchronized (lock) {
+            if (!paused) return;
+            paused = false;
+            pausedTotalNanos += System.nanoTime() - pausedAtNanos;
+            lock.notifyAll();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long end = endedNanos != 0 ? endedNanos : System.nanoTime();
+        double seconds = startedNanos != 0 ? (end - startedNanos) / 1e9 : 0;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("path", file.getPath());
+        stats.put("speed", speed);
+        stats.put("loop", loop);
+        stats.put("running", running);
+        stats.put("finished", finished);
+        stats.put("played", played);
+        stats.put("elapsedMs", (long) (seconds * 1000));
+        stats.put("callbacksPerSecond", seconds > 0 ? played / seconds : 0.0);
+        stats.put("maxLagMs", maxLagNanos / 1_000_000.0);
+        return stats;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Reader thread
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private void play() {
+        long base = System.nanoTime();
+        try {
+            do {
+                long end = playOnce(base);
+                base = end;
+            } while (running && loop);
+        } catch (IOException e) {
+            Log.e(TAG, "Trace replay of " + file + " failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            return; // stop()
+        }
+        endedNanos = System.nanoTime();
+        if (running) {
+            finished = true;
+            running = false;
+            dispatchState(PositioningState.STOPPED);
+        }
+    }
+
+    /** Plays the file once; returns the time base for a following loop. */
+    private long playOnce(long base) throws IOException, InterruptedException {
+        long timeline = 0;
+        long sessionOffset = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != TraceRecorder.MAGIC) throw new IOException("Not a Mapxus trace");
+            int version = in.readInt();
+            if (version != TraceRecorder.VERSION) throw new IOException("Unsupported trace version " + version);
+
+            while (running) {
+                int kind;
+                try {
+                    kind = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                long elapsed = in.readLong();
+                if (kind == TraceRecorder.KIND_SESSION) {
+                    in.readLong(); // wall clock of the session, informational
+                    sessionOffset = timeline;
+                    continue;
+                }
+                timeline = sessionOffset + elapsed;
+                Runnable callback = readCallback(kind, in);
+                if (!awaitDue(base, timeline)) break;
+                if (callback == null) continue;
+
+                inFlight.acquire();
+                callbackHandler.post(() -> {
+                    try {
+                        callback.run();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                played++;
+            }
+        }
+        return speed > 0 ? base + (long) (timeline / speed) : System.nanoTime();
+    }
+
+    /**
+     * Waits until the callback at timeline (trace nanoseconds) is due,
+     * holding while paused. Returns false when stopped.
+     */
+    private boolean awaitDue(long base, long timeline) throws InterruptedException {
+        while (running) {
+            long pausedTotal;
+            synchronized (lock) {
+                while (paused && running) lock.wait();
+                pausedTotal = pausedTotalNanos;
+            }
+            if (speed == 0) return running;
+            long due = base + (long) (timeline / speed) + pausedTotal;
+            long now = System.nanoTime();
+            if (now >= due) {
+                if (now - due > maxLagNanos) maxLagNanos = now - due;
+                return running;
+            }
+            LockSupport.parkNanos(Math.min(due - now, MAX_PARK_NANOS));
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+        return false;
+    }
+
+    /** Reads one record's payload; null for records that are skipped. */
+    private Runnable readCallback(int kind, DataInputStream in) throws IOException {
+        switch (kind) {
+            case TraceRecorder.KIND_STATE: {
+                String name = in.readUTF();
+                PositioningState state;
+                try {
+                    state = PositioningState.valueOf(name);
+                } catch (IllegalArgumentException e) {
+                    return null; // state unknown to this SDK version
+                }
+                return () -> dispatchState(state);
+            }
+            case TraceRecorder.KIND_ERROR: {
+                ErrorInfo error = new ReplayedError(in.readInt(), TraceRecorder.readNullable(in));
+                return () -> {
+                    for (MapxusPositioningListener listener : listeners) listener.onError(error);
+                };
+            }
+            case TraceRecorder.KIND_ORIENTATION: {
+                float orientation = in.readFloat();
+                int accuracy = in.readInt();
+                return () -> {
+                    for (MapxusPositioningListener listener : listeners) {
+                        listener.onOrientationChange(orientation, accuracy);
+                    }
+                };
+            }
+            case TraceRecorder.KIND_LOCATION: {
+                in.readLong(); // recorded wall clock; the pipeline stamps fixes itself
+                MapxusLocation location = new ReplayedLocation(
+                        in.readDouble(), in.readDouble(), in.readDouble(),
+                        TraceRecorder.readNullable(in), TraceRecorder.readNullable(in),
+                        TraceRecorder.readNullable(in));
+                return () -> {
+                    for (MapxusPositioningListener listener : listeners) listener.onLocationChange(location);
+                };
+            }
+            default:
+                throw new IOException("Unknown trace record kind " + kind);
+        }
+    }
+
+    private void dispatchState(PositioningState state) {
+        callbackHandler.post(() -> {
+            for (MapxusPositioningListener listener : listeners) listener.onStateChange(state);
+        });
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Replayed SDK values
+    // ─────────────────────────────────────────────────────────────────────────
+
+    static final class ReplayedLocation extends MapxusLocation {
+        private final double latitude;
+        private final double longitude;
+        private final float accuracy;
+        private final String venueId;
+        private final String buildingId;
+        private final MapxusFloor floor;
+
+        ReplayedLocation(double latitude, double longitude, double accuracy,
+                         String venueId, String buildingId, String floorCode) {
+            this.latitude   = latitude;
+            this.longitude  = longitude;
+            this.accuracy   = (float) accuracy;
+            this.venueId    = venueId;
+            this.buildingId = buildingId;
+            this.floor      = floorCode != null ? new ReplayedFloor(floorCode) : null;
+        }
+
+        @Override public double getLatitude()          { return latitude; }
+        @Override public double getLongitude()         { return longitude; }
+        @Override public float getAccuracy()           { return accuracy; }
+        @Override public String getVenueId()           { return venueId; }
+        @Override public String getBuildingId()        { return buildingId; }
+        @Override public MapxusFloor getMapxusFloor()  { return floor; }
+    }
+
+    static final class ReplayedFloor extends MapxusFloor {
+        private final String code;
+
+        ReplayedFloor(String code) {
+            this.code = code;
+        }
+
+        @Override public String getCode() { return code; }
+    }
+
+    static final class ReplayedError extends ErrorInfo {
+        private final int code;
+        private final String message;
+
+        ReplayedError(int code, String message) {
+            this.code = code;
+            this.message = message;
+        }
+
+        @Override public int getErrorCode()       { return code; }
+        @Override public String getErrorMessage() { return message; }
+    }
+}
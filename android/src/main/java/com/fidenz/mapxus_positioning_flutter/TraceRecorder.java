@@ -0,0 +1,291 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.mapxus.positioning.positioning.api.ErrorInfo;
+import com.mapxus.positioning.positioning.api.MapxusLocation;
+import com.mapxus.positioning.positioning.api.MapxusPositioningListener;
+import com.mapxus.positioning.positioning.api.PositioningState;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * TraceRecorder — captures the raw MapxusPositioningListener callbacks of a
+ * positioning source to a file that TracePlayer can replay.
+ *
+ * Registered as one more listener on the source, so it sees exactly what the
+ * plugin / service listener sees, before any filtering. Callbacks only copy
+ * their arguments and the callback time; the file is written on a dedicated
+ * background thread.
+ *
+ * Trace format (big-endian, DataOutputStream)
+ * ───────────────────────────────────────────
+ *   file     = "MXR1" int(version = 1) record*
+ *   record   = byte(kind) long(elapsedNanos) payload
+ *   SESSION  long(wallClockMs)                      elapsed is 0; later
+ *                                                   records are relative to it
+ *   STATE    utf(PositioningState name)
+ *   ERROR    int(code) nullableUtf(message)
+ *   ORIENT   float(degrees) int(sensorAccuracy)
+ *   LOCATION long(wallClockMs) double(lat) double(lon) double(accuracy)
+ *            nullableUtf(venueId) nullableUtf(buildingId) nullableUtf(floor)
+ *   nullableUtf = boolean(present) [utf]
+ *
+ * Recording to an existing trace appends a new SESSION, so a service
+ * restart does not overwrite what was captured before it.
+ */
+public final class TraceRecorder implements MapxusPositioningListener {
+
+    private static final String TAG = "MapxusTraceRecorder";
+
+    static final int MAGIC   = 0x4D585231; // "MXR1"
+    static final int VERSION = 1;
+
+    static final byte KIND_SESSION     = 0;
+    static final byte KIND_STATE       = 1;
+    static final byte KIND_ERROR       = 2;
+    static final byte KIND_ORIENTATION = 3;
+    static final byte KIND_LOCATION    = 4;
+
+    private static final int  BUFFER_SIZE       = 64 * 1024;
+    private static final long FLUSH_INTERVAL_MS = 5_000L;
+
+    private final File file;
+    private final Handler ioHandler;
+    private final boolean ownsThread;
+    private final long startNanos = SystemClock.elapsedRealtimeNanos();
+
+    // ── IO-thread state ───────────────────────────────────────────────────────
+    private DataOutputStream out;
+    private boolean failed = false;
+    private long records = 0;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+            ioHandler.postDelayed(this, FLUSH_INTERVAL_MS);
+        }
+    };
+
+    public TraceRecorder(File file) {
+        this(file, newIoHandler(), true);
+    }
+
+    /** Writes on ioHandler's thread; tests pass a Handler they drive themselves. */
+    TraceRecorder(File file, Handler ioHandler, boolean ownsThread) {
+        this.file = file;
+        this.ioHandler = ioHandler;
+        this.ownsThread = ownsThread;
+        long wallClockMs = System.currentTimeMillis();
+        ioHandler.post(() -> open(wallClockMs));
+        ioHandler.postDelayed(flushTask, FLUSH_INTERVAL_MS);
+    }
+
+    /**
+     * Returns a source that records every callback of source from start()
+     * until stop(), then closes the trace.
+     */
+    public static PositioningSource wrap(PositioningSource source, File file) {
+        return new PositioningSource() {
+            private TraceRecorder recorder;
+
+            @Override
+            public void addPositioningListener(MapxusPositioningListener listener) {
+                source.addPositioningListener(listener);
+            }
+
+            @Override
+            public void removePositioningListener(MapxusPositioningListener listener) {
+                source.removePositioningListener(listener);
+            }
+
+            @Override
+            public void start() {
+                if (recorder == null) {
+                    recorder = new TraceRecorder(file);
+                    source.addPositioningListener(recorder);
+                }
+                source.start();
+            }
+
+            @Override
+            public void stop() {
+                source.stop();
+                if (recorder != null) {
+                    source.removePositioningListener(recorder);
+                    recorder.close();
+                    recorder = null;
+                }
+            }
+
+            @Override
+            public void pause() {
+                source.pause();
+            }
+
+            @Override
+            public void resume() {
+                source.resume();
+            }
+        };
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // MapxusPositioningListener
+    // ─────────────────────────────────────────────────────────────────────────
+
+    @Override
+    public void onStateChange(PositioningState state) {
+        long elapsed = elapsedNanos();
+        String name = state.name();
+        write(KIND_STATE, elapsed, out -> out.writeUTF(name));
+    }
+
+    @Override
+    public void onError(ErrorInfo errorInfo) {
+        long elapsed = elapsedNanos();
+        int code = errorInfo.getErrorCode();
+        String message = errorInfo.getErrorMessage();
+        write(KIND_ERROR, elapsed, out -> {
+            out.writeInt(code);
+            writeNullable(out, message);
+        });
+    }
+
+    @Override
+    public void onOrientationChange(float orientation, int sensorAccuracy) {
+        long elapsed = elapsedNanos();
+        write(KIND_ORIENTATION, elapsed, out -> {
+            out.writeFloat(orientation);
+            out.writeInt(sensorAccuracy);
+        });
+    }
+
+    @Override
+    public void onLocationChange(MapxusLocation location) {
+        if (location == null) return;
+        long elapsed   = elapsedNanos();
+        long wallClock = System.currentTimeMillis();
+        double latitude  = location.getLatitude();
+        double longitude = location.getLongitude();
+        double accuracy  = location.getAccuracy();
+        String venueId    = location.getVenueId();
+        String buildingId = location.getBuildingId();
+        String floor = location.getMapxusFloor() != null ? location.getMapxusFloor().getCode() : null;
+        write(KIND_LOCATION, elapsed, out -> {
+            out.writeLong(wallClock);
+            out.writeDouble(latitude);
+            out.writeDouble(longitude);
+            out.writeDouble(accuracy);
+            writeNullable(out, venueId);
+            writeNullable(out, buildingId);
+            writeNullable(out, floor);
+        });
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // File
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Flushes and closes the trace; later callbacks are ignored. */
+    public void close() {
+        ioHandler.post(() -> {
+            ioHandler.removeCallbacks(flushTask);
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Trace close failed: " + e.getMessage());
+                }
+                out = null;
+            }
+            failed = true;
+            Log.d(TAG, records + " records written to " + file);
+            if (ownsThread) ioHandler.getLooper().quitSafely();
+        });
+    }
+
+    private static Handler newIoHandler() {
+        HandlerThread thread = new HandlerThread("MapxusTraceRecorder", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        return new Handler(thread.getLooper());
+    }
+
+    private interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private long elapsedNanos() {
+        return SystemClock.elapsedRealtimeNanos() - startNanos;
+    }
+
+    private void write(byte kind, long elapsedNanos, Payload payload) {
+        ioHandler.post(() -> {
+            if (failed || out == null) return;
+            try {
+                out.writeByte(kind);
+                out.writeLong(elapsedNanos);
+                payload.write(out);
+                records++;
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    private void open(long wallClockMs) {
+        try {
+            File dir = file.getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            boolean isNew = file.length() == 0;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE));
+            if (isNew) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            out.writeByte(KIND_SESSION);
+            out.writeLong(0L);
+            out.writeLong(wallClockMs);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void flush() {
+        if (failed || out == null) return;
+        try {
+            out.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        Log.e(TAG, "Trace recording to " + file + " stopped: " + e.getMessage());
+        failed = true;
+    }
+
+    static void writeNullable(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    @Nullable
+    static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
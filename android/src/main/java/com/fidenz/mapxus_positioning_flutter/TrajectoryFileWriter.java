@@ -0,0 +1,175 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TrajectoryFileWriter — streams fixes into the compact ".mxt" export format
+ * read by MapxusTrajectoryFileReader in Dart.
+ *
+ * Memory use is fixed: one block of BLOCK_SIZE fixes in primitive columns,
+ * one BUFFER_SIZE output buffer and the string dictionary (one entry per
+ * distinct venue / building / floor, which is small for any real trace).
+ *
+ * Format
+ * ──────
+ *   file    = "MXT1" varint(version = 1) block* varint(0)
+ *   block   = varint(count > 0) dict column*
+ *   dict    = varint(n) { varint(len) utf8[len] }*n   strings first used in
+ *             this block; ids continue from the previous blocks
+ *   columns, each count values, in this order:
+ *     time       zigzag varint, delta to the previous fix, milliseconds
+ *     latitude   zigzag varint, delta, 1e-7 degrees
+ *     longitude  zigzag varint, delta, 1e-7 degrees
+ *     accuracy   varint, centimetres (not delta)
+ *     venue      varint, 0 = null, else dictionary id + 1
+ *     building   varint, same
+ *     floor      varint, same
+ *
+ * Deltas start from 0 and carry across blocks. Grouping a block by column
+ * puts similar bytes next to each other, which is what makes the optional
+ * gzip layer (applied by the caller around the whole file) effective.
+ */
+public final class TrajectoryFileWriter {
+
+    static final byte[] MAGIC = { 'M', 'X', 'T', '1' };
+    static final int VERSION = 1;
+
+    static final int BLOCK_SIZE  = 1024;
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final double COORDINATE_SCALE = 1e7;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final String[] newStrings = new String[BLOCK_SIZE * 3];
+    private int newStringCount = 0;
+
+    private final long[] times      = new long[BLOCK_SIZE];
+    private final long[] latitudes  = new long[BLOCK_SIZE];
+    private final long[] longitudes = new long[BLOCK_SIZE];
+    private final long[] accuracies = new long[BLOCK_SIZE];
+    private final int[]  venues     = new int[BLOCK_SIZE];
+    private final int[]  buildings  = new int[BLOCK_SIZE];
+    private final int[]  floors     = new int[BLOCK_SIZE];
+    private int count = 0;
+
+    private long lastTime;
+    private long lastLatitude;
+    private long lastLongitude;
+    private long written;
+
+    public TrajectoryFileWriter(OutputStream out) throws IOException {
+        this.out = out;
+        for (byte b : MAGIC) buffer[position++] = b;
+        writeVarint(VERSION);
+    }
+
+    public void add(long time, double latitude, double longitude, double accuracy,
+                    String venueId, String buildingId, String floor) throws IOException {
+        times[count]      = time;
+        latitudes[count]  = Math.round(latitude  * COORDINATE_SCALE);
+        longitudes[count] = Math.round(longitude * COORDINATE_SCALE);
+        accuracies[count] = Math.max(0, Math.round(accuracy * 100));
+        venues[count]     = reference(venueId);
+        buildings[count]  = reference(buildingId);
+        floors[count]     = reference(floor);
+        count++;
+        written++;
+        if (count == BLOCK_SIZE) writeBlock();
+    }
+
+    /** Fixes added so far. */
+    public long getCount() {
+        return written;
+    }
+
+    /** Writes the last block and the end marker and flushes; does not close the stream. */
+    public void finish() throws IOException {
+        if (count > 0) writeBlock();
+        writeVarint(0);
+        drain();
+        out.flush();
+    }
+
+    private int reference(String value) {
+        if (value == null) return 0;
+        Integer id = dictionary.get(value);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.put(value, id);
+            newStrings[newStringCount++] = value;
+        }
+        return id + 1;
+    }
+
+    private void writeBlock() throws IOException {
+        writeVarint(count);
+
+        writeVarint(newStringCount);
+        for (int i = 0; i < newStringCount; i++) {
+            byte[] utf8 = newStrings[i].getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            writeBytes(utf8);
+            newStrings[i] = null;
+        }
+        newStringCount = 0;
+
+        for (int i = 0; i < count; i++) {
+            writeVarint(zigzag(times[i] - lastTime));
+            lastTime = times[i];
+        }
+        for (int i = 0; i < count; i++) {
+            writeVarint(zigzag(latitudes[i] - lastLatitude));
+            lastLatitude = latitudes[i];
+        }
+        for (int i = 0; i < count; i++) {
+            writeVarint(zigzag(longitudes[i] - lastLongitude));
+            lastLongitude = longitudes[i];
+        }
+        for (int i = 0; i < count; i++) writeVarint(accuracies[i]);
+        for (int i = 0; i < count; i++) writeVarint(venues[i]);
+        for (int i = 0; i < count; i++) writeVarint(buildings[i]);
+        for (int i = 0; i < count; i++) writeVarint(floors[i]);
+        count = 0;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Encoding
+    // ─────────────────────────────────────────────────────────────────────────
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void writeVarint(long value) throws IOException {
+        if (BUFFER_SIZE - position < 10) drain();
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (position == BUFFER_SIZE) drain();
+            int length = Math.min(bytes.length - offset, BUFFER_SIZE - position);
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+            offset += length;
+        }
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+}
@@ -0,0 +1,572 @@
+package com.fidenz.mapxus_positioning_flutter;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.mapxus.positioning.positioning.api.MapxusLocation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * TrajectoryStore — opt-in SQLite history of the foreground service's fixes,
+ * for post-processing hours of indoor trajectory.
+ *
+ * Unlike EventJournal (a delivery queue that is emptied on replay), rows stay
+ * until the retention policy removes them and are read back with paged
+ * time-range queries.
+ *
+ * Writes
+ * ──────
+ * Every raw SDK fix (before the location filter) is copied into a small
+ * immutable Row on the dispatch thread and handed to the store thread, which
+ * collects rows and inserts them in one transaction once batchSize rows are
+ * pending or flushIntervalMs after the first pending row, whichever comes
+ * first. Inserts reuse one compiled statement; the database runs in WAL mode
+ * so queries don't block the writer.
+ *
+ * Schema
+ * ──────
+ *   fixes(id INTEGER PRIMARY KEY, time, latitude, longitude, accuracy,
+ *         venue_id, building_id, floor)
+ *   idx_fixes_time  (time)         range queries and retention
+ *   idx_fixes_floor (floor, time)  range queries for one floor
+ *
+ * Retention
+ * ─────────
+ * After a flush, at most every COMPACT_INTERVAL_MS, rows older than
+ * retentionMs are deleted, then the oldest rows beyond maxFixes. Freed pages
+ * are returned to the file system with incremental vacuum and the WAL is
+ * truncated, so the file stays bounded as well as the row count.
+ *
+ * Export
+ * ──────
+ * export() streams a time range through TrajectoryFileWriter into a file and
+ * reports only its path, so long traces never cross the platform channel as
+ * Maps or sit in memory at once.
+ *
+ * Threading
+ * ─────────
+ * All database access runs on a dedicated background HandlerThread; query
+ * results are posted to the caller's handler.
+ *
+ * Processes
+ * ─────────
+ * With separateProcess the service's instance records in its own process and
+ * the plugin reads through another instance in the app process. Both open the
+ * same database file, so queries, exports and clear() see every row the
+ * service has inserted, but rows still pending in the service process are
+ * only inserted by its next batch: they are neither returned nor deleted, and
+ * stats() reports the app-side instance (enabled false, no pending rows or
+ * write counters) plus the row count and file size of the shared file.
+ */
+public final class TrajectoryStore {
+
+    private static final String TAG = "MapxusTrajectoryStore";
+
+    private static final String DB_NAME    = "mapxus_trajectory.db";
+    private static final int    DB_VERSION = 1;
+
+    public static final int  DEFAULT_BATCH_SIZE        = 32;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 5_000L;
+    public static final long DEFAULT_RETENTION_MS      = 24L * 60 * 60 * 1000;
+    public static final int  DEFAULT_MAX_FIXES         = 200_000;
+    public static final int  DEFAULT_PAGE_SIZE         = 500;
+    public static final int  MAX_PAGE_SIZE             = 5_000;
+    static final long COMPACT_INTERVAL_MS = 10L * 60 * 1000;
+
+    /** Immutable store settings from startForegroundService. */
+    public static final class Config {
+        public static final Config DISABLED = new Config(false, DEFAULT_BATCH_SIZE,
+                DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_RETENTION_MS, DEFAULT_MAX_FIXES);
+
+        public final boolean enabled;
+        public final int     batchSize;
+        public final long    flushIntervalMs;
+        /** 0 keeps rows regardless of age. */
+        public final long    retentionMs;
+        /** 0 keeps any number of rows. */
+        public final int     maxFixes;
+
+        public Config(boolean enabled, int batchSize, long flushIntervalMs, long retentionMs, int maxFixes) {
+            this.enabled         = enabled;
+            this.batchSize       = Math.max(1, batchSize);
+            this.flushIntervalMs = Math.max(0, flushIntervalMs);
+            this.retentionMs     = Math.max(0, retentionMs);
+            this.maxFixes        = Math.max(0, maxFixes);
+        }
+    }
+
+    /** Receives a query result on the caller's handler. */
+    public interface ResultCallback {
+        void onResult(Map<String, Object> result);
+
+        void onError(Exception e);
+    }
+
+    /** One fix, copied off the SDK object on the dispatch thread. */
+    static final class Row {
+        final long   time;
+        final double latitude;
+        final double longitude;
+        final double accuracy;
+        final String venueId;
+        final String buildingId;
+        final String floor;
+
+        Row(long time, double latitude, double longitude, double accuracy,
+            String venueId, String buildingId, String floor) {
+            this.time       = time;
+            this.latitude   = latitude;
+            this.longitude  = longitude;
+            this.accuracy   = accuracy;
+            this.venueId    = venueId;
+            this.buildingId = buildingId;
+            this.floor      = floor;
+        }
+
+        static Row of(MapxusLocation location, long time) {
+            return new Row(time, location.getLatitude(), location.getLongitude(), location.getAccuracy(),
+                    location.getVenueId(), location.getBuildingId(),
+                    location.getMapxusFloor() != null ? location.getMapxusFloor().getCode() : null);
+        }
+    }
+
+    private static volatile TrajectoryStore instance;
+
+    public static TrajectoryStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (TrajectoryStore.class) {
+                if (instance == null) {
+                    instance = new TrajectoryStore(new Helper(context.getApplicationContext(), DB_NAME));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final SQLiteOpenHelper helper;
+    private final Handler ioHandler;
+
+    private volatile Config config = Config.DISABLED;
+
+    // ── Store-thread state ────────────────────────────────────────────────────
+    private final ArrayList<Row> pending = new ArrayList<>();
+    private SQLiteDatabase db;
+    private SQLiteStatement insert;
+    private long lastCompactMs = -COMPACT_INTERVAL_MS;
+    private long inserted;
+    private long batches;
+    private long compacted;
+    private long failedBatches;
+    private long lastBatchMicros;
+
+    private final Runnable flushTask = this::flush;
+
+    TrajectoryStore(SQLiteOpenHelper helper) {
+        this.helper = helper;
+        HandlerThread thread = new HandlerThread("MapxusTrajectory", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        this.ioHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Enables or disables recording of new fixes. Stored rows are kept, and
+     * still queryable, when disabled; the new retention limits apply from the
+     * next flush.
+     */
+    public void configure(Config config) {
+        this.config = config;
+        if (!config.enabled) ioHandler.post(this::flush);
+    }
+
+    public boolean isEnabled() {
+        return config.enabled;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Writes
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Records one fix; a no-op while disabled. Called on the dispatch thread. */
+    public void record(MapxusLocation location, long timestamp) {
+        if (!config.enabled || location == null) return;
+        Row row = Row.of(location, timestamp);
+        ioHandler.post(() -> enqueue(row));
+    }
+
+    /** Writes pending rows now, e.g. when positioning stops. */
+    public void flushAsync() {
+        ioHandler.post(this::flush);
+    }
+
+    private void enqueue(Row row) {
+        pending.add(row);
+        Config current = config;
+        if (pending.size() >= current.batchSize) {
+            flush();
+        } else if (pending.size() == 1) {
+            ioHandler.postDelayed(flushTask, current.flushIntervalMs);
+        }
+    }
+
+    private void flush() {
+        ioHandler.removeCallbacks(flushTask);
+        if (pending.isEmpty()) return;
+        long start = SystemClock.elapsedRealtimeNanos();
+        try {
+            insertBatch(pending);
+            inserted += pending.size();
+            batches++;
+        } catch (SQLiteException e) {
+            // Disk full, corrupt file…: drop the batch rather than grow memory.
+            Log.e(TAG, "Trajectory batch of " + pending.size() + " fixes failed: " + e.getMessage());
+            failedBatches++;
+        }
+        pending.clear();
+        lastBatchMicros = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+
+        long now = SystemClock.elapsedRealtime();
+        if (now - lastCompactMs >= COMPACT_INTERVAL_MS) {
+            lastCompactMs = now;
+            compact(System.currentTimeMillis());
+        }
+    }
+
+    void insertBatch(List<Row> rows) {
+        SQLiteDatabase database = open();
+        database.beginTransactionNonExclusive();
+        try {
+            for (Row row : rows) {
+                insert.clearBindings();
+                insert.bindLong(1, row.time);
+                insert.bindDouble(2, row.latitude);
+                insert.bindDouble(3, row.longitude);
+                insert.bindDouble(4, row.accuracy);
+                bindNullable(insert, 5, row.venueId);
+                bindNullable(insert, 6, row.buildingId);
+                bindNullable(insert, 7, row.floor);
+                insert.executeInsert();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Retention
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Applies the retention policy; store thread. */
+    void compact(long nowMs) {
+        Config current = config;
+        try {
+            SQLiteDatabase database = open();
+            int deleted = 0;
+            if (current.retentionMs > 0) {
+                deleted += database.delete("fixes", "time < ?",
+                        new String[] { Long.toString(nowMs - current.retentionMs) });
+            }
+            if (current.maxFixes > 0) {
+                long excess = count(database) - current.maxFixes;
+                if (excess > 0) {
+                    deleted += database.delete("fixes",
+                            "id IN (SELECT id FROM fixes ORDER BY time, id LIMIT ?)",
+                            new String[] { Long.toString(excess) });
+                }
+            }
+            if (deleted > 0) {
+                compacted += deleted;
+                drain(database.rawQuery("PRAGMA incremental_vacuum", null));
+                drain(database.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null));
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Trajectory compaction failed: " + e.getMessage());
+        }
+    }
+
+    /** Steps a PRAGMA cursor to completion so the statement actually runs. */
+    private static void drain(Cursor cursor) {
+        try {
+            while (cursor.moveToNext()) {
+                // results not needed
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Queries
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Reads one page of fixes with fromMs &lt;= time &lt; toMs, oldest first,
+     * optionally restricted to one floor code. This instance's pending rows
+     * are written first, so the page includes every fix it recorded before
+     * the call; with separateProcess, rows still pending in the service
+     * process are not included (see "Processes" above).
+     *
+     * Paging is keyset-based: pass the afterTime / afterId of the previous
+     * page's result ("next") to continue; -1 / -1 starts at fromMs. The
+     * result holds "fixes" (location-event Maps plus "id") and "next", which
+     * is null on the last page.
+     */
+    public void query(long fromMs, long toMs, @Nullable String floor, long afterTime, long afterId,
+                      int pageSize, Handler resultHandler, ResultCallback callback) {
+        int limit = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        ioHandler.post(() -> {
+            try {
+                flush();
+                Map<String, Object> page = readPage(fromMs, toMs, floor, afterTime, afterId, limit);
+                resultHandler.post(() -> callback.onResult(page));
+            } catch (SQLiteException e) {
+                resultHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    Map<String, Object> readPage(long fromMs, long toMs, @Nullable String floor,
+                                 long afterTime, long afterId, int limit) {
+        List<String> args = new ArrayList<>();
+        StringBuilder where = rangeWhere(fromMs, toMs, floor, args);
+        if (afterId >= 0) {
+            where.append(" AND (time > ? OR (time = ? AND id > ?))");
+            args.add(Long.toString(afterTime));
+            args.add(Long.toString(afterTime));
+            args.add(Long.toString(afterId));
+        }
+        // One extra row tells whether another page follows.
+        String sql = "SELECT id, time, latitude, longitude, accuracy, venue_id, building_id, floor"
+                + " FROM fixes WHERE " + where + " ORDER BY time, id LIMIT " + (limit + 1);
+
+        List<Object> fixes = new ArrayList<>(limit);
+        Map<String, Object> next = null;
+        try (Cursor cursor = open().rawQuery(sql, args.toArray(new String[0]))) {
+            while (cursor.moveToNext()) {
+                if (fixes.size() == limit) {
+                    Map<?, ?> last = (Map<?, ?>) fixes.get(limit - 1);
+                    next = new HashMap<>();
+                    next.put("afterTime", last.get("timestamp"));
+                    next.put("afterId", last.get("id"));
+                    break;
+                }
+                Map<String, Object> fix = new HashMap<>();
+                fix.put("type", "locationChange");
+                fix.put("id", cursor.getLong(0));
+                fix.put("timestamp", cursor.getLong(1));
+                fix.put("latitude", cursor.getDouble(2));
+                fix.put("longitude", cursor.getDouble(3));
+                fix.put("accuracy", cursor.getDouble(4));
+                fix.put("venueId", cursor.isNull(5) ? null : cursor.getString(5));
+                fix.put("buildingId", cursor.isNull(6) ? null : cursor.getString(6));
+                fix.put("floor", cursor.isNull(7) ? null : cursor.getString(7));
+                fixes.add(fix);
+            }
+        }
+        Map<String, Object> page = new HashMap<>();
+        page.put("fixes", fixes);
+        page.put("next", next);
+        return page;
+    }
+
+    private static StringBuilder rangeWhere(long fromMs, long toMs, @Nullable String floor, List<String> args) {
+        StringBuilder where = new StringBuilder("time >= ? AND time < ?");
+        args.add(Long.toString(fromMs));
+        args.add(Long.toString(toMs));
+        if (floor != null) {
+            where.append(" AND floor = ?");
+            args.add(floor);
+        }
+        return where;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Export
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Writes every fix with fromMs &lt;= time &lt; toMs (optionally one floor)
+     * to file in the .mxt format, gzip-compressed if requested. The file is
+     * written next to its final name and renamed when complete, so a reader
+     * never sees a partial export. The result holds "path", "fixes" and
+     * "bytes".
+     */
+    public void export(long fromMs, long toMs, @Nullable String floor, File file, boolean gzip,
+                       Handler resultHandler, ResultCallback callback) {
+        ioHandler.post(() -> {
+            File partial = new File(file.getPath() + ".part");
+            try {
+                flush();
+                long fixes = writeExport(fromMs, toMs, floor, partial, gzip);
+                if (!partial.renameTo(file)) throw new IOException("Cannot rename to " + file);
+                Map<String, Object> result = new HashMap<>();
+                result.put("path", file.getAbsolutePath());
+                result.put("fixes", fixes);
+                result.put("bytes", file.length());
+                resultHandler.post(() -> callback.onResult(result));
+            } catch (IOException | SQLiteException e) {
+                if (partial.exists() && !partial.delete()) {
+                    Log.w(TAG, "Could not delete " + partial);
+                }
+                resultHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    long writeExport(long fromMs, long toMs, @Nullable String floor, File file, boolean gzip)
+            throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        List<String> args = new ArrayList<>();
+        String sql = "SELECT time, latitude, longitude, accuracy, venue_id, building_id, floor"
+                + " FROM fixes WHERE " + rangeWhere(fromMs, toMs, floor, args) + " ORDER BY time, id";
+        // The writer buffers a full block itself; no extra buffering in front of the file.
+        OutputStream stream = new FileOutputStream(file);
+        if (gzip) stream = new GZIPOutputStream(stream, TrajectoryFileWriter.BUFFER_SIZE);
+        try (OutputStream out = stream;
+             Cursor cursor = open().rawQuery(sql, args.toArray(new String[0]))) {
+            TrajectoryFileWriter writer = new TrajectoryFileWriter(out);
+            while (cursor.moveToNext()) {
+                writer.add(cursor.getLong(0), cursor.getDouble(1), cursor.getDouble(2), cursor.getDouble(3),
+                        cursor.isNull(4) ? null : cursor.getString(4),
+                        cursor.isNull(5) ? null : cursor.getString(5),
+                        cursor.isNull(6) ? null : cursor.getString(6));
+            }
+            writer.finish();
+            return writer.getCount();
+        }
+    }
+
+    /** Deletes every stored and pending fix. */
+    public void clear(Handler resultHandler, ResultCallback callback) {
+        ioHandler.post(() -> {
+            ioHandler.removeCallbacks(flushTask);
+            pending.clear();
+            try {
+                SQLiteDatabase database = open();
+                int deleted = database.delete("fixes", null, null);
+                drain(database.rawQuery("PRAGMA incremental_vacuum", null));
+                drain(database.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null));
+                Map<String, Object> result = new HashMap<>();
+                result.put("deleted", deleted);
+                resultHandler.post(() -> callback.onResult(result));
+            } catch (SQLiteException e) {
+                resultHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    /** Row count, time span and write counters; delivered like a query. */
+    public void stats(Handler resultHandler, ResultCallback callback) {
+        ioHandler.post(() -> {
+            try {
+                SQLiteDatabase database = open();
+                Map<String, Object> stats = new HashMap<>();
+                stats.put("enabled", config.enabled);
+                stats.put("fixes", count(database));
+                try (Cursor cursor = database.rawQuery("SELECT MIN(time), MAX(time) FROM fixes", null)) {
+                    if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                        stats.put("oldest", cursor.getLong(0));
+                        stats.put("newest", cursor.getLong(1));
+                    }
+                }
+                stats.put("pending", pending.size());
+                stats.put("inserted", inserted);
+                stats.put("batches", batches);
+                stats.put("failedBatches", failedBatches);
+                stats.put("compacted", compacted);
+                stats.put("lastBatchMicros", lastBatchMicros);
+                String path = database.getPath();
+                stats.put("fileBytes", path != null ? new File(path).length() : 0L);
+                resultHandler.post(() -> callback.onResult(stats));
+            } catch (SQLiteException e) {
+                resultHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Database
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private SQLiteDatabase open() {
+        if (db == null) {
+            db = helper.getWritableDatabase();
+            insert = db.compileStatement("INSERT INTO fixes"
+                    + " (time, latitude, longitude, accuracy, venue_id, building_id, floor)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?)");
+        }
+        return db;
+    }
+
+    private static long count(SQLiteDatabase database) {
+        try (Cursor cursor = database.rawQuery("SELECT COUNT(*) FROM fixes", null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    static final class Helper extends SQLiteOpenHelper {
+        Helper(Context context, @Nullable String name) {
+            super(context, name, null, DB_VERSION);
+            setWriteAheadLoggingEnabled(true);
+        }
+
+        @Override
+        public void onConfigure(SQLiteDatabase db) {
+            // Must precede table creation to take effect; a no-op afterwards.
+            drain(db.rawQuery("PRAGMA auto_vacuum = INCREMENTAL", null));
+            // WAL makes NORMAL durable across app crashes; only power loss can drop the last batch.
+            drain(db.rawQuery("PRAGMA synchronous = NORMAL", null));
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE fixes ("
+                    + "id INTEGER PRIMARY KEY, "
+                    + "time INTEGER NOT NULL, "
+                    + "latitude REAL NOT NULL, "
+                    + "longitude REAL NOT NULL, "
+                    + "accuracy REAL NOT NULL, "
+                    + "venue_id TEXT, "
+                    + "building_id TEXT, "
+                    + "floor TEXT)");
+            db.execSQL("CREATE INDEX idx_fixes_time ON fixes (time)");
+            db.execSQL("CREATE INDEX idx_fixes_floor ON fixes (floor, time)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // Only version 1 exists.
+        }
+    }
+}
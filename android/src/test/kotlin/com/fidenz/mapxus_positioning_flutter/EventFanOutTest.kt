@@ -0,0 +1,71 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+internal class EventFanOutTest {
+
+  private lateinit var messenger: FakeBinaryMessenger
+  private lateinit var primary: FakeEventSink
+  private val receiverChanges = mutableListOf<Boolean>()
+  private lateinit var fanOut: EventFanOut
+
+  @Before
+  fun setUp() {
+    messenger = FakeBinaryMessenger()
+    primary = FakeEventSink()
+    fanOut = EventFanOut(messenger) { receiverChanges.add(it) }
+    fanOut.setPrimary(primary)
+  }
+
+  @Test
+  fun typeMaskAndThrottleApplyPerSubscription() {
+    fanOut.subscribe("map", EventFanOut.Options.from(listOf("orientation"), 1_000, null, null))
+    fanOut.subscribe("debug", EventFanOut.Options.from(null, null, null, null))
+    messenger.listen(channel("map"))
+    messenger.listen(channel("debug"))
+
+    repeat(3) { fanOut.success(MapxusEventUtil.orientationChangeEvent(it.toFloat(), 3, 0, 0, 0L, 0L)) }
+    repeat(2) { fanOut.success(location(it.toLong())) }
+    fanOut.success(mapOf("type" to "stateChange", "state" to "running"))
+
+    assertEquals(6, primary.count)
+    assertEquals(6, messenger.eventsOn(channel("debug")).size)
+    // Only the first orientation: the clock does not advance, so the rest are throttled.
+    val map = messenger.eventsOn(channel("map"))
+    assertEquals(listOf("onOrientationChange"), map.map { (it as Map<*, *>)["type"] })
+  }
+
+  @Test
+  fun eventsBeforeListenAreBufferedWithOverflowPolicy() {
+    fanOut.subscribe("oldest", EventFanOut.Options.from(listOf("location"), null, 2, "dropOldest"))
+    fanOut.subscribe("newest", EventFanOut.Options.from(listOf("location"), null, 2, "dropNewest"))
+
+    (0L until 3L).forEach { fanOut.success(location(it)) }
+    messenger.listen(channel("oldest"))
+    messenger.listen(channel("newest"))
+
+    assertEquals(listOf(1L, 2L), messenger.eventsOn(channel("oldest")).map { (it as Map<*, *>)["timestamp"] })
+    assertEquals(listOf(0L, 1L), messenger.eventsOn(channel("newest")).map { (it as Map<*, *>)["timestamp"] })
+  }
+
+  @Test
+  fun receiversChangeOnlyOnFirstAndLast() {
+    fanOut.subscribe("a", EventFanOut.Options.from(null, null, null, null))
+    fanOut.setPrimary(null)
+    fanOut.unsubscribe("a")
+
+    assertEquals(listOf(true, false), receiverChanges)
+  }
+
+  private fun channel(name: String) = EventFanOut.CHANNEL_PREFIX + name
+
+  private fun location(timestamp: Long): Map<String, Any?> =
+    MapxusEventUtil.mapLocationEvent(FakePositioningClient.walkingTrace(size = 1)[0], timestamp, 0L, null, null)
+}
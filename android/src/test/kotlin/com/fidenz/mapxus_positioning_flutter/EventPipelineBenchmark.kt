@@ -0,0 +1,156 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import com.mapxus.positioning.positioning.api.MapxusLocation
+import java.util.concurrent.locks.LockSupport
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Throughput / latency / allocation benchmarks of the event pipeline.
+ *
+ * Opt-in: run with -Dmapxus.benchmark; results are written to
+ * mapxus.benchmark.reportDir (see [MicroBenchmark.Report]). Routing latencies
+ * include the cost of idling Robolectric's main Looper, so compare them
+ * between runs rather than with device numbers.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+internal class EventPipelineBenchmark {
+
+  @get:Rule val report = MicroBenchmark.Report()
+
+  private lateinit var harness: PluginHarness
+  private val trace = FakePositioningClient.walkingTrace(size = TRACE_SIZE)
+
+  @Volatile private var blackhole: Any? = null
+
+  @Before
+  fun setUp() {
+    harness = PluginHarness(recordEvents = false)
+  }
+
+  @After
+  fun tearDown() {
+    harness.close()
+  }
+
+  @Test
+  fun mapLocationEvent() {
+    val fixture = MicroBenchmark.run("fixture: MapxusLocation getters") { i ->
+      blackhole = readFix(trace[i and TRACE_MASK])
+    }
+    val map = MicroBenchmark.run("MapxusEventUtil.mapLocationEvent") { i ->
+      blackhole = MapxusEventUtil.mapLocationEvent(trace[i and TRACE_MASK], i.toLong(), 0L, null, null)
+    }
+    report.record(fixture, map, map.minus(fixture))
+
+    MapxusEventUtil.setEventFormat(MapxusEventUtil.FORMAT_BINARY)
+    val binary = MicroBenchmark.run("MapxusEventUtil.locationEvent (binary)") { i ->
+      blackhole = MapxusEventUtil.locationEvent(trace[i and TRACE_MASK], i.toLong(), 0L, null, null)
+    }
+    report.record(binary, binary.minus(fixture))
+  }
+
+  @Test
+  fun dispatchForegroundEvent() {
+    harness.openApp()
+    harness.listen()
+    val events = Array(TRACE_SIZE) { MapxusEventUtil.mapLocationEvent(trace[it], it.toLong(), 0L, null, null) }
+    val dispatchThread = { listOfNotNull(MicroBenchmark.thread("MapxusDispatch")) }
+    harness.awaitDispatcher()
+
+    report.record(MicroBenchmark.run("dispatchForegroundEvent → stream, one at a time", threads = dispatchThread) { i ->
+      val target = harness.messenger.eventCount + 1
+      MapxusPositioningFlutterPlugin.dispatchForegroundEvent(harness.context, events[i and TRACE_MASK])
+      harness.idleUntil { harness.messenger.eventCount >= target }
+    })
+
+    report.record(MicroBenchmark.run(
+      "dispatchForegroundEvent → stream, bursts of $BURST",
+      ops = maxOf(1, MicroBenchmark.defaultOps / BURST),
+      warmup = maxOf(1, MicroBenchmark.defaultWarmup / BURST),
+      perOp = BURST,
+      threads = dispatchThread,
+    ) { i ->
+      val target = harness.messenger.eventCount + BURST
+      for (j in 0 until BURST) {
+        MapxusPositioningFlutterPlugin.dispatchForegroundEvent(harness.context, events[(i * BURST + j) and TRACE_MASK])
+      }
+      harness.idleUntil { harness.messenger.eventCount >= target }
+    })
+  }
+
+  @Test
+  fun flushPendingForegroundEvents() {
+    harness.openApp()  // app open but not listening: events are buffered
+    val events = Array(TRACE_SIZE) { MapxusEventUtil.mapLocationEvent(trace[it], it.toLong(), 0L, null, null) }
+    val sink = FakeEventSink(recordEvents = false)
+    val ops = maxOf(1, MicroBenchmark.defaultOps / FLUSH_BATCH)
+    val warmup = maxOf(1, MicroBenchmark.defaultWarmup / FLUSH_BATCH)
+
+    report.record(MicroBenchmark.run(
+      "flushPendingForegroundEvents, batches of $FLUSH_BATCH",
+      ops = ops,
+      warmup = warmup,
+      perOp = FLUSH_BATCH,
+      setUp = {
+        for (j in 0 until FLUSH_BATCH) {
+          MapxusPositioningFlutterPlugin.dispatchForegroundEvent(harness.context, events[j])
+        }
+        harness.awaitDispatcher()
+      },
+    ) {
+      MapxusPositioningFlutterPlugin.flushPendingForegroundEvents(sink)
+    })
+    assertEquals((ops + warmup) * FLUSH_BATCH, sink.count)
+  }
+
+  @Test
+  fun pacedReplayThroughService() {
+    harness.openApp()
+    harness.listen()
+    harness.attachServiceListener()
+    val client = FakePositioningClient(trace)
+    client.addPositioningListener(harness.serviceListener())
+    val rateHz = System.getProperty("mapxus.benchmark.rateHz", "200").toDouble()
+    val periodNanos = (1e9 / rateHz).toLong()
+    val ops = Integer.getInteger("mapxus.benchmark.replayOps", 1_000)
+    var next = System.nanoTime()
+
+    report.record(MicroBenchmark.run(
+      "FakePositioningClient @ ${rateHz.toInt()} Hz → service → stream",
+      ops = ops,
+      warmup = ops / 10,
+      threads = { listOfNotNull(MicroBenchmark.thread("MapxusDispatch")) },
+      setUp = {
+        val wait = next - System.nanoTime()
+        if (wait > 0) LockSupport.parkNanos(wait)
+        next = maxOf(next, System.nanoTime()) + periodNanos
+      },
+    ) { i ->
+      val target = harness.messenger.eventCount + 1
+      client.emit(i)
+      harness.idleUntil { harness.messenger.eventCount >= target }
+    })
+  }
+
+  /** Reads the same getters MapxusEventUtil does, to measure the fixture's own cost. */
+  private fun readFix(location: MapxusLocation): Any {
+    val floor = location.mapxusFloor?.code
+    return location.latitude + location.longitude + location.accuracy.toDouble() +
+      (location.venueId?.length ?: 0) + (location.buildingId?.length ?: 0) + (floor?.length ?: 0)
+  }
+
+  companion object {
+    private const val TRACE_SIZE = 1024
+    private const val TRACE_MASK = TRACE_SIZE - 1
+    private const val BURST = 64
+    private const val FLUSH_BATCH = 256
+  }
+}
@@ -0,0 +1,79 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+internal class EventPipelineTest {
+
+  private lateinit var harness: PluginHarness
+
+  @Before
+  fun setUp() {
+    harness = PluginHarness()
+  }
+
+  @After
+  fun tearDown() {
+    harness.close()
+  }
+
+  @Test
+  fun replayedFixesReachTheStreamInOrder() {
+    harness.openApp()
+    harness.listen()
+    harness.attachServiceListener()
+    val trace = FakePositioningClient.walkingTrace(size = 50, floorEvery = 20)
+    val client = FakePositioningClient(trace)
+    client.addPositioningListener(harness.serviceListener())
+
+    client.replay(trace.size, rateHz = 200.0)
+    harness.idleUntil { harness.locationEvents().size == trace.size }
+
+    val events = harness.locationEvents()
+    assertEquals(trace.map { it.latitude }, events.map { it["latitude"] })
+    assertEquals(trace.map { it.mapxusFloor?.code }, events.map { it["floor"] })
+  }
+
+  @Test
+  fun eventsBeforeListenAreBufferedAndFlushedOnListen() {
+    harness.openApp()
+    val trace = FakePositioningClient.walkingTrace(size = 10)
+    trace.forEachIndexed { i, location ->
+      MapxusPositioningFlutterPlugin.dispatchForegroundEvent(
+        harness.context, MapxusEventUtil.mapLocationEvent(location, i.toLong(), 0L, null, null))
+    }
+    harness.awaitDispatcher()
+
+    val stats = harness.invokeMethod("getBufferStats") as Map<*, *>
+    assertEquals(10, (stats["pending"] as Map<*, *>)["size"])
+
+    harness.listen()
+    assertEquals(0, harness.locationEvents().size) // replayed after onListen returns
+    harness.idleUntil { harness.locationEvents().size == 10 }
+    assertEquals((0L until 10L).toList(), harness.locationEvents().map { it["timestamp"] })
+  }
+
+  @Test
+  fun binaryRecordsKeepSmoothedPosition() {
+    val smoother = LocationSmoother()
+    smoother.setConfig(LocationSmoother.Config(true, LocationSmoother.DEFAULT_PROCESS_NOISE, false))
+    val trace = FakePositioningClient.walkingTrace(size = 5)
+    trace.forEachIndexed { i, location -> smoother.update(location, i * 1_000L) }
+
+    val record = MapxusEventCodec.encodeLocation(trace.last(), 4_000L, 0L, smoother)
+    val decoded = MapxusEventCodec.decodeLocationMap(record)
+
+    assertEquals(trace.last().latitude, decoded["latitude"])
+    assertEquals(smoother.smoothedLatitude, decoded["smoothedLatitude"])
+    assertEquals(smoother.smoothedLongitude, decoded["smoothedLongitude"])
+    assertEquals(smoother.smoothedAccuracy, decoded["smoothedAccuracy"])
+    assertEquals(FakePositioningClient.VENUE_ID, decoded["venueId"])
+  }
+}
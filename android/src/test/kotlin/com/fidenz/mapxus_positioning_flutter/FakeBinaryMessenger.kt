@@ -0,0 +1,109 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import io.flutter.plugin.common.BinaryMessenger
+import io.flutter.plugin.common.MethodCall
+import io.flutter.plugin.common.StandardMethodCodec
+import java.nio.ByteBuffer
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * In-memory BinaryMessenger standing in for the Dart side of the plugin's
+ * MethodChannel / EventChannel.
+ *
+ * Messages are encoded and decoded with StandardMethodCodec exactly as the
+ * engine would, so the channel code under test runs unchanged. Events sent
+ * on a channel that was listened to are decoded and recorded in [events]
+ * (or only counted, with [recordEvents] off, so benchmarks pay for the
+ * plugin's encoding but not for decoding); method calls from native to Dart
+ * are recorded in [calls] and answered with a null success.
+ */
+internal class FakeBinaryMessenger(private val recordEvents: Boolean = true) : BinaryMessenger {
+
+  private val codec = StandardMethodCodec.INSTANCE
+  private val handlers = ConcurrentHashMap<String, BinaryMessenger.BinaryMessageHandler>()
+  private val streams = ConcurrentHashMap.newKeySet<String>()
+
+  /** Decoded stream events, per event channel, in arrival order. */
+  val events = ConcurrentHashMap<String, MutableList<Any?>>()
+
+  /** Method calls made from native to Dart, per channel. */
+  val calls = ConcurrentHashMap<String, MutableList<MethodCall>>()
+
+  private val received = AtomicInteger()
+
+  /** Number of stream events received on all event channels. */
+  val eventCount: Int get() = received.get()
+
+  override fun send(channel: String, message: ByteBuffer?) {
+    send(channel, message, null)
+  }
+
+  override fun send(channel: String, message: ByteBuffer?, callback: BinaryMessenger.BinaryReply?) {
+    if (message == null) {
+      // A null message on an event channel is the end-of-stream marker.
+      callback?.reply(null)
+      return
+    }
+    if (channel in streams) {
+      if (recordEvents) {
+        events.getOrPut(channel) { CopyOnWriteArrayList() }.add(codec.decodeEnvelope(readable(message)))
+      }
+      received.incrementAndGet()
+      callback?.reply(null)
+    } else {
+      calls.getOrPut(channel) { CopyOnWriteArrayList() }.add(codec.decodeMethodCall(readable(message)))
+      callback?.reply(codec.encodeSuccessEnvelope(null))
+    }
+  }
+
+  override fun setMessageHandler(channel: String, handler: BinaryMessenger.BinaryMessageHandler?) {
+    if (handler == null) handlers.remove(channel) else handlers[channel] = handler
+  }
+
+  /** Invokes a method on a native MethodChannel and returns the decoded result. */
+  fun invokeMethod(channel: String, method: String, arguments: Any? = null): Any? {
+    var result: Any? = null
+    deliver(channel, MethodCall(method, arguments)) { reply ->
+      result = if (reply != null) codec.decodeEnvelope(reply) else null
+    }
+    return result
+  }
+
+  /** Subscribes to a native EventChannel, like receiveBroadcastStream().listen(). */
+  fun listen(channel: String) {
+    streams.add(channel)
+    deliver(channel, MethodCall("listen", null)) {}
+  }
+
+  /** Cancels the subscription made by [listen]. */
+  fun cancel(channel: String) {
+    deliver(channel, MethodCall("cancel", null)) {}
+    streams.remove(channel)
+  }
+
+  fun eventsOn(channel: String): List<Any?> = events[channel] ?: emptyList()
+
+  fun clearEvents() {
+    events.clear()
+    calls.clear()
+  }
+
+  private fun deliver(channel: String, call: MethodCall, onReply: (ByteBuffer?) -> Unit) {
+    val handler = checkNotNull(handlers[channel]) { "No handler registered on $channel" }
+    handler.onMessage(readable(codec.encodeMethodCall(call))) { reply ->
+      onReply(reply?.let { readable(it) })
+    }
+  }
+
+  /**
+   * Codec output is left positioned at its end (the engine reads the size
+   * from position()); returns a view positioned at the start of the data.
+   */
+  private fun readable(buffer: ByteBuffer): ByteBuffer {
+    val view = buffer.duplicate()
+    if (view.position() != 0) view.flip()
+    return view
+  }
+}
@@ -0,0 +1,37 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import io.flutter.plugin.common.EventChannel
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * EventChannel.EventSink that records what it receives.
+ *
+ * With [recordEvents] off it only counts, so benchmarks do not measure the
+ * cost of growing a list.
+ */
+internal class FakeEventSink(private val recordEvents: Boolean = true) : EventChannel.EventSink {
+
+  val events = CopyOnWriteArrayList<Any?>()
+  val errors = CopyOnWriteArrayList<String>()
+  private val received = AtomicInteger()
+
+  @Volatile var ended = false
+    private set
+
+  /** Number of success events received so far. */
+  val count: Int get() = received.get()
+
+  override fun success(event: Any?) {
+    if (recordEvents) events.add(event)
+    received.incrementAndGet()
+  }
+
+  override fun error(errorCode: String, errorMessage: String?, errorDetails: Any?) {
+    errors.add(errorCode)
+  }
+
+  override fun endOfStream() {
+    ended = true
+  }
+}
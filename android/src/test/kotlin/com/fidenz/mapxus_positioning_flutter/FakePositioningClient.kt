@@ -0,0 +1,156 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import com.mapxus.positioning.positioning.api.MapxusFloor
+import com.mapxus.positioning.positioning.api.MapxusLocation
+import com.mapxus.positioning.positioning.api.MapxusPositioningListener
+import com.mapxus.positioning.positioning.api.PositioningState
+import java.util.Random
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.locks.LockSupport
+import org.mockito.Mockito
+
+/**
+ * Stand-in for MapxusPositioningClient in JVM tests.
+ *
+ * Replays a synthetic fix trace to the registered listeners — the same
+ * MapxusPositioningListener instances the plugin and the foreground service
+ * register with the real SDK — either paced at a fixed rate or as fast as
+ * the listeners accept them. Also usable as the PositioningSource of a
+ * PositioningSession; [calls] records the lifecycle calls it received.
+ */
+internal class FakePositioningClient(private val trace: List<MapxusLocation>) : PositioningSource {
+
+  private val listeners = CopyOnWriteArrayList<MapxusPositioningListener>()
+  val calls = CopyOnWriteArrayList<String>()
+
+  val listenerCount: Int get() = listeners.size
+
+  override fun addPositioningListener(listener: MapxusPositioningListener) {
+    listeners.add(listener)
+  }
+
+  override fun removePositioningListener(listener: MapxusPositioningListener) {
+    listeners.remove(listener)
+  }
+
+  override fun start() {
+    calls.add("start")
+    listeners.forEach { it.onStateChange(PositioningState.RUNNING) }
+  }
+
+  override fun stop() {
+    calls.add("stop")
+    listeners.forEach { it.onStateChange(PositioningState.STOPPED) }
+  }
+
+  override fun pause() {
+    calls.add("pause")
+  }
+
+  override fun resume() {
+    calls.add("resume")
+  }
+
+  /**
+   * Delivers [count] fixes on the calling thread, cycling through the trace.
+   *
+   * @param rateHz fixes per second; 0 delivers them back to back
+   * @param afterFix called after each fix with its index, e.g. to wait for delivery
+   */
+  fun replay(count: Int, rateHz: Double = 0.0, afterFix: (Int) -> Unit = {}) {
+    val periodNanos = if (rateHz > 0) (1_000_000_000L / rateHz).toLong() else 0L
+    var next = System.nanoTime()
+    for (i in 0 until count) {
+      if (periodNanos > 0) {
+        val wait = next - System.nanoTime()
+        if (wait > 0) LockSupport.parkNanos(wait)
+        next += periodNanos
+      }
+      emit(i)
+      afterFix(i)
+    }
+  }
+
+  /** Delivers fix [index] of the trace (modulo its size) to every listener. */
+  fun emit(index: Int) {
+    val location = trace[index % trace.size]
+    listeners.forEach { it.onLocationChange(location) }
+  }
+
+  /** Delivers one compass sample to every listener. */
+  fun emitOrientation(degrees: Float, accuracy: Int = 3) {
+    listeners.forEach { it.onOrientationChange(degrees, accuracy) }
+  }
+
+  companion object {
+    const val VENUE_ID = "venue-1"
+    const val BUILDING_ID = "building-1"
+
+    private const val METERS_PER_DEGREE = 111_195.0
+
+    /**
+     * A walk east along a corridor at [speedMetersPerSecond], sampled at
+     * [sampleHz], with Gaussian position noise of [noiseMeters] and a floor
+     * change every [floorEvery] fixes (0 = never).
+     */
+    fun walkingTrace(
+      size: Int,
+      seed: Long = 42L,
+      originLatitude: Double = 22.3,
+      originLongitude: Double = 114.1,
+      speedMetersPerSecond: Double = 1.2,
+      sampleHz: Double = 1.0,
+      noiseMeters: Double = 3.0,
+      floorEvery: Int = 0,
+    ): List<MapxusLocation> {
+      val random = Random(seed)
+      val metersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(originLatitude))
+      val floors = listOf(floor("L1"), floor("L2"))
+      return List(size) { i ->
+        val east = speedMetersPerSecond * i / sampleHz
+        val floorIndex = if (floorEvery > 0) (i / floorEvery) % floors.size else 0
+        location(
+          latitude = originLatitude + random.nextGaussian() * noiseMeters / METERS_PER_DEGREE,
+          longitude = originLongitude + (east + random.nextGaussian() * noiseMeters) / metersPerDegreeLon,
+          accuracy = noiseMeters + random.nextDouble(),
+          floor = floors[floorIndex],
+        )
+      }
+    }
+
+    /**
+     * A fixed MapxusLocation. Answers by getter name so the fixture does not
+     * depend on the SDK's exact return types; stub-only mocks keep the
+     * per-call overhead low.
+     */
+    fun location(
+      latitude: Double,
+      longitude: Double,
+      accuracy: Double,
+      floor: MapxusFloor? = null,
+      venueId: String? = VENUE_ID,
+      buildingId: String? = BUILDING_ID,
+    ): MapxusLocation {
+      val settings = Mockito.withSettings().stubOnly().defaultAnswer { invocation ->
+        val method = invocation.method
+        when (method.name) {
+          "getLatitude" -> latitude
+          "getLongitude" -> longitude
+          "getAccuracy" -> if (method.returnType == java.lang.Float.TYPE) accuracy.toFloat() else accuracy
+          "getVenueId" -> venueId
+          "getBuildingId" -> buildingId
+          "getMapxusFloor" -> floor
+          else -> Mockito.RETURNS_DEFAULTS.answer(invocation)
+        }
+      }
+      return Mockito.mock(MapxusLocation::class.java, settings)
+    }
+
+    fun floor(code: String): MapxusFloor {
+      val settings = Mockito.withSettings().stubOnly().defaultAnswer { invocation ->
+        if (invocation.method.name == "getCode") code else Mockito.RETURNS_DEFAULTS.answer(invocation)
+      }
+      return Mockito.mock(MapxusFloor::class.java, settings)
+    }
+  }
+}
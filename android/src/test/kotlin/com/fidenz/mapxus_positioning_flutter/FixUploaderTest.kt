@@ -0,0 +1,129 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import com.sun.net.httpserver.HttpServer
+import java.net.InetSocketAddress
+import java.util.zip.GZIPInputStream
+import org.json.JSONArray
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+internal class FixUploaderTest {
+
+  @get:Rule val folder = TemporaryFolder()
+
+  /** Local endpoint answering with the queued statuses, then 200. */
+  private val statuses = ArrayDeque<Int>()
+  private val bodies = mutableListOf<ByteArray>()
+  private val requestHeaders = mutableListOf<Map<String, String?>>()
+  private val server = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0).apply {
+    createContext("/fixes") { exchange ->
+      bodies.add(exchange.requestBody.readBytes())
+      requestHeaders.add(
+        listOf("Content-Encoding", "Content-Type", "Authorization")
+          .associateWith { exchange.requestHeaders.getFirst(it) },
+      )
+      exchange.sendResponseHeaders(statuses.removeFirstOrNull() ?: 200, -1)
+      exchange.close()
+    }
+    start()
+  }
+  private val url = "http://127.0.0.1:${server.address.port}/fixes"
+
+  @After
+  fun tearDown() {
+    server.stop(0)
+  }
+
+  private fun uploader() = FixUploader(folder.root, FixUploader.Conditions { true })
+
+  private fun config() =
+    FixUploader.Config(url, mapOf("Authorization" to "Bearer t"), 100, 60_000, false, false, 1L shl 20)
+
+  @Test
+  fun batchIsPostedAsGzipJsonWithHeaders() {
+    val uploader = uploader()
+    uploader.writeBatch(listOf(row(1_000, "L1"), row(2_000, null)))
+
+    assertEquals(FixUploader.Result.SENT, uploader.uploadNext(config()))
+
+    assertEquals(
+      mapOf("Content-Encoding" to "gzip", "Content-Type" to "application/json", "Authorization" to "Bearer t"),
+      requestHeaders.single(),
+    )
+    val fixes = JSONArray(GZIPInputStream(bodies.single().inputStream()).readBytes().decodeToString())
+    assertEquals(2, fixes.length())
+    assertEquals(1_000L, fixes.getJSONObject(0).getLong("timestamp"))
+    assertEquals("L1", fixes.getJSONObject(0).getString("floor"))
+    assertTrue(fixes.getJSONObject(1).isNull("floor"))
+    assertEquals(0, uploader.spooled().size)
+  }
+
+  @Test
+  fun serverErrorsKeepTheBatchAndRejectionsDropIt() {
+    val uploader = uploader()
+    uploader.writeBatch(listOf(row(1_000, "L1")))
+    statuses.addAll(listOf(503, 429, 400))
+
+    assertEquals(FixUploader.Result.RETRY, uploader.uploadNext(config()))
+    assertEquals(FixUploader.Result.RETRY, uploader.uploadNext(config()))
+    assertEquals(1, uploader.spooled().size)
+    assertEquals(FixUploader.Result.REJECTED, uploader.uploadNext(config()))
+    assertEquals(FixUploader.Result.EMPTY, uploader.uploadNext(config()))
+    assertEquals(3, bodies.size)
+  }
+
+  @Test
+  fun spoolSurvivesRestartInOrderAndDropsOldestBeyondBudget() {
+    val first = uploader()
+    (1..3).forEach { first.writeBatch(listOf(row(it * 1_000L, "L$it"))) }
+
+    val restarted = uploader()
+    val files = restarted.spooled()
+    assertEquals(3, files.size)
+    restarted.trimSpool(files[1].length() + files[2].length())
+
+    while (restarted.uploadNext(config()) == FixUploader.Result.SENT) Unit
+    val floors = bodies.map {
+      JSONArray(GZIPInputStream(it.inputStream()).readBytes().decodeToString()).getJSONObject(0).getString("floor")
+    }
+    assertEquals(listOf("L2", "L3"), floors)
+  }
+
+  @Test
+  fun parseHeadersSkipsNamesAndValuesTheConnectionWouldRefuse() {
+    val headers = FixUploader.parseHeaders(
+      """{"Authorization":"Bearer t","X-Evil":"a\r\nHost: b","Bad Name":"v","X-Tab":"a\tb"}""",
+    )
+    assertEquals(mapOf("Authorization" to "Bearer t", "X-Tab" to "a\tb"), headers)
+  }
+
+  @Test
+  fun requestThatCannotBeBuiltIsRejectedInsteadOfThrowing() {
+    val uploader = uploader()
+    uploader.writeBatch(listOf(row(1_000, "L1")))
+    val invalid = FixUploader.Config(url, mapOf("X-Evil" to "a\r\nb"), 100, 60_000, false, false, 1L shl 20)
+
+    assertEquals(FixUploader.Result.REJECTED, uploader.uploadNext(invalid))
+    assertEquals(0, uploader.spooled().size)
+    assertEquals(0, bodies.size)
+  }
+
+  @Test
+  fun backoffDoublesUpToTheCap() {
+    assertEquals(FixUploader.INITIAL_BACKOFF_MS, FixUploader.backoffMs(1))
+    assertEquals(FixUploader.INITIAL_BACKOFF_MS * 4, FixUploader.backoffMs(3))
+    assertEquals(FixUploader.MAX_BACKOFF_MS, FixUploader.backoffMs(40))
+  }
+
+  private fun row(time: Long, floor: String?) =
+    TrajectoryStore.Row(time, 22.3, 114.1, 3.0, "venue", "building", floor)
+}
@@ -0,0 +1,92 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import com.mapxus.positioning.positioning.api.MapxusFloor
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+
+internal class GeofenceEngineTest {
+
+  private val engine = GeofenceEngine()
+  private val transitions = mutableListOf<String>()
+  private val emitter = GeofenceEngine.Emitter { transition, zone, _, _, _ ->
+    transitions.add("$transition:${zone.id}")
+  }
+  private val l1 = FakePositioningClient.floor("L1")
+  private val l2 = FakePositioningClient.floor("L2")
+
+  @Before
+  fun setUp() {
+    engine.setZones(
+      listOf(
+        zone("room", "vertices" to square(east = 0.0, size = 10.0), "dwellMs" to 5_000L),
+        zone("desk", "latitude" to ORIGIN_LAT, "longitude" to lon(30.0), "radius" to 3.0),
+      ),
+      1.0,
+    )
+  }
+
+  @Test
+  fun enterDwellAndExitFireOncePerVisit() {
+    fix(east = -5.0, time = 0)
+    fix(east = 5.0, time = 1_000)
+    fix(east = 6.0, time = 2_000)
+    fix(east = 5.0, time = 7_000)
+    fix(east = 10.5, time = 8_000) // inside the exit margin
+    fix(east = 30.0, time = 9_000)
+
+    assertEquals(listOf("enter:room", "dwell:room", "exit:room", "enter:desk"), transitions)
+  }
+
+  @Test
+  fun floorChangeLeavesTheZone() {
+    fix(east = 5.0, time = 0)
+    fix(east = 5.0, time = 1_000, floor = l2)
+
+    assertEquals(listOf("enter:room", "exit:room"), transitions)
+  }
+
+  @Test
+  fun replacingZonesKeepsInsideStateOfSurvivingIds() {
+    fix(east = 5.0, time = 0)
+    engine.setZones(listOf(zone("room", "vertices" to square(east = 0.0, size = 10.0))), 0.0)
+    fix(east = 6.0, time = 1_000)
+
+    assertEquals(listOf("enter:room"), transitions)
+  }
+
+  private fun fix(east: Double, time: Long, floor: MapxusFloor = l1) {
+    val location = FakePositioningClient.location(ORIGIN_LAT + 2.0 / METERS_PER_DEGREE, lon(east), 1.0, floor)
+    engine.evaluate(location, time, emitter)
+  }
+
+  private fun zone(id: String, vararg fields: Pair<String, Any>): GeofenceEngine.Zone =
+    GeofenceEngine.Zone.from(
+      mapOf(
+        "id" to id,
+        "venueId" to FakePositioningClient.VENUE_ID,
+        "buildingId" to FakePositioningClient.BUILDING_ID,
+        "floor" to "L1",
+      ) + fields
+    )
+
+  /** A square from [east] metres east of the origin, [size] metres wide, 0..size metres north. */
+  private fun square(east: Double, size: Double): List<Double> {
+    val north = size / METERS_PER_DEGREE
+    return listOf(
+      ORIGIN_LAT, lon(east),
+      ORIGIN_LAT, lon(east + size),
+      ORIGIN_LAT + north, lon(east + size),
+      ORIGIN_LAT + north, lon(east),
+    )
+  }
+
+  private fun lon(eastMeters: Double) =
+    ORIGIN_LON + eastMeters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(ORIGIN_LAT)))
+
+  private companion object {
+    const val ORIGIN_LAT = 22.3
+    const val ORIGIN_LON = 114.1
+    const val METERS_PER_DEGREE = 111_195.0
+  }
+}
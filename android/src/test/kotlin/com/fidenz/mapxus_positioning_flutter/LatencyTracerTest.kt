@@ -0,0 +1,98 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import android.os.SystemClock
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+internal class LatencyTracerTest {
+
+  @After
+  fun tearDown() {
+    LatencyTracer.configure(LatencyTracer.Config.DEFAULT)
+    MapxusEventUtil.setEventFormat(MapxusEventUtil.FORMAT_MAP)
+  }
+
+  @Test
+  fun captureTimeSurvivesEveryWireFormatAndBuffer() {
+    val elapsed = 123_456_789_012L
+    val record = MapxusEventCodec.encodeLocation(22.3, 114.1, 2.5, "v", "b", "L1", 1_000L,
+      22.31, 114.11, 1.5, elapsed)
+    assertEquals(elapsed, MapxusEventCodec.elapsedNanosOf(record))
+    assertEquals(elapsed, MapxusEventCodec.decodeLocationMap(record)["elapsedRealtimeNanos"])
+
+    val orientation = MapxusEventCodec.encodeOrientation(90f, 3, 0, 0, 1_000L, elapsed)
+    assertEquals(MapxusEventCodec.TIMED_ORIENTATION_SIZE, orientation.size)
+    assertEquals(elapsed, MapxusEventCodec.elapsedNanosOf(orientation))
+
+    // Records from before this change (no flag) report no capture time.
+    assertEquals(0L, MapxusEventCodec.elapsedNanosOf(MapxusEventCodec.encodeOrientation(90f, 3, 0, 0, 0L, 0L)))
+
+    val buffer = EventRingBuffer(4)
+    buffer.offer(MapxusEventCodec.decodeLocationMap(record))
+    buffer.drain { assertEquals(elapsed, (it as Map<*, *>)["elapsedRealtimeNanos"]) }
+  }
+
+  @Test
+  fun sinkRecordsRouteHistogramAndAddsMarks() {
+    LatencyTracer.configure(LatencyTracer.Config(1, true))
+    MapxusMetrics.snapshot(true)
+
+    val listener = SystemClock.elapsedRealtimeNanos() - 5_000_000L
+    val trace = LatencyTracer.newTrace(listener)!!
+    val event = MapxusEventUtil.mapLocationEvent(
+      FakePositioningClient.location(22.3, 114.1, 3.0), 1_000L, listener, null, trace)
+    LatencyTracer.onSink(event, MapxusMetrics.Histogram.LATENCY_LIVE_US)
+
+    @Suppress("UNCHECKED_CAST")
+    val marks = event["trace"] as Map<String, Long>
+    assertEquals(listener, marks[LatencyTracer.STAGE_LISTENER])
+    assertTrue(marks.getValue(LatencyTracer.STAGE_SINK) - listener >= 5_000_000L)
+
+    @Suppress("UNCHECKED_CAST")
+    val live = (MapxusMetrics.snapshot(false)["histograms"] as Map<String, Map<String, Any>>)["latencyLiveUs"]!!
+    assertEquals(1L, live["count"])
+    assertTrue((live["max"] as Long) >= 5_000L)
+  }
+
+  @Test
+  fun bufferedEventKeepsItsMarks() {
+    LatencyTracer.configure(LatencyTracer.Config(1, true))
+    val listener = SystemClock.elapsedRealtimeNanos() - 5_000_000L
+    val trace = LatencyTracer.newTrace(listener)!!
+    trace[LatencyTracer.STAGE_DISPATCH] = listener + 1_000L
+    val buffer = EventRingBuffer(4)
+    buffer.offer(MapxusEventUtil.mapLocationEvent(
+      FakePositioningClient.location(22.3, 114.1, 3.0), 1_000L, listener, null, trace))
+
+    val drained = mutableListOf<Any>()
+    buffer.drain { drained.add(it) }
+    val event = drained.single() as Map<*, *>
+    LatencyTracer.onSink(event, MapxusMetrics.Histogram.LATENCY_PENDING_US)
+
+    @Suppress("UNCHECKED_CAST")
+    val marks = event["trace"] as Map<String, Long>
+    assertEquals(listener, marks[LatencyTracer.STAGE_LISTENER])
+    assertEquals(listener + 1_000L, marks[LatencyTracer.STAGE_DISPATCH])
+    assertTrue(marks.getValue(LatencyTracer.STAGE_SINK) > listener)
+    assertEquals(22.3, event["latitude"])
+  }
+
+  @Test
+  fun marksAreOffByDefault() {
+    val listener = SystemClock.elapsedRealtimeNanos()
+    val trace = LatencyTracer.newTrace(listener)
+    assertNull(trace)
+    val event = MapxusEventUtil.mapLocationEvent(
+      FakePositioningClient.location(22.3, 114.1, 3.0), 1_000L, listener, null, trace)
+    assertNull(event["trace"])
+    assertEquals(listener, event["elapsedRealtimeNanos"])
+  }
+}
@@ -0,0 +1,81 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import java.time.Duration
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+internal class LiveStatusNotifierTest {
+
+  private val shown = mutableListOf<String>()
+  private val looper = shadowOf(Looper.getMainLooper())
+  private val notifier = LiveStatusNotifier(Handler(Looper.getMainLooper())) { shown.add(it) }.apply {
+    setConfig(LiveStatusNotifier.Config(true, 5_000))
+  }
+
+  private fun fix(floor: String, accuracy: Double = 3.0) =
+    notifier.onFix(floor, "B1", accuracy, SystemClock.elapsedRealtimeNanos())
+
+  private fun advance(ms: Long) = looper.idleFor(Duration.ofMillis(ms))
+
+  @Test
+  fun textListsKnownPartsAndCoarseAge() {
+    assertEquals("L2 · building B1 · ±3 m · just now", LiveStatusNotifier.format("L2", "B1", 3.2, 9_999))
+    assertEquals("±12 m · 40 s ago", LiveStatusNotifier.format(null, "", 12.0, 45_000))
+    assertEquals("L1 · 3 min ago", LiveStatusNotifier.format("L1", null, 0.0, 200_000))
+    assertEquals("2 h ago", LiveStatusNotifier.formatAge(7_300_000))
+    assertEquals(5_000L, LiveStatusNotifier.msUntilAgeChanges(45_000))
+    assertEquals(40_000L, LiveStatusNotifier.msUntilAgeChanges(200_000))
+  }
+
+  @Test
+  fun fixesWithinTheIntervalCollapseIntoTheNewest() {
+    fix("L1")
+    looper.idle()
+    assertEquals(listOf("L1 · building B1 · ±3 m · just now"), shown)
+
+    advance(1_000)
+    fix("L2")
+    advance(1_000)
+    fix("L3")
+    advance(2_000)
+    assertEquals(1, shown.size)
+
+    advance(1_000)
+    assertEquals("L3 · building B1 · ±3 m · just now", shown.last())
+    assertEquals(2, shown.size)
+  }
+
+  @Test
+  fun unchangedTextIsNotSentAndAgeRefreshesOnItsOwn() {
+    fix("L1")
+    looper.idle()
+    advance(6_000)
+    fix("L1")
+    advance(5_000)
+    assertEquals(1, shown.size)
+
+    // No more fixes: the age moves on in 10 s steps, then minutes.
+    advance(9_000)
+    assertEquals("L1 · building B1 · ±3 m · 10 s ago", shown.last())
+    advance(50_000)
+    assertEquals("L1 · building B1 · ±3 m · 1 min ago", shown.last())
+    assertEquals(7, shown.size)
+
+    notifier.invalidate()
+    advance(5_000)
+    assertEquals(8, shown.size)
+
+    notifier.reset()
+    advance(600_000)
+    assertEquals(8, shown.size)
+  }
+}
@@ -0,0 +1,124 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import android.os.Looper
+import com.mapxus.positioning.positioning.api.ErrorInfo
+import com.mapxus.positioning.positioning.api.MapxusLocation
+import com.mapxus.positioning.positioning.api.PositioningState
+import java.util.concurrent.Executor
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+internal class MapxusNativePositioningTest {
+
+  private val listeners = MapxusNativePositioning()
+  private val session = PositioningSession(listeners)
+  private val source = FakePositioningClient(FakePositioningClient.walkingTrace(size = 3, floorEvery = 2))
+  private val consumer = object : PositioningSession.Consumer {
+    override fun onStateChange(state: PositioningState) {}
+    override fun onError(errorInfo: ErrorInfo) {}
+    override fun onOrientationChange(orientation: Float, sensorAccuracy: Int, timestamp: Long, elapsedNanos: Long) {}
+    override fun onLocationChange(location: MapxusLocation?, timestamp: Long, elapsedNanos: Long) {}
+  }
+
+  private class Recorder : MapxusNativePositioning.Listener {
+    val fixes = mutableListOf<MapxusNativePositioning.Fix>()
+    val orientations = mutableListOf<MapxusNativePositioning.Orientation>()
+    val states = mutableListOf<PositioningState>()
+
+    override fun onLocation(fix: MapxusNativePositioning.Fix) {
+      fixes.add(fix)
+    }
+    override fun onOrientation(orientation: MapxusNativePositioning.Orientation) {
+      orientations.add(orientation)
+    }
+    override fun onStateChange(state: PositioningState) {
+      states.add(state)
+    }
+  }
+
+  private fun startSession() {
+    session.attach(consumer) { source }
+    session.start(consumer)
+  }
+
+  @Test
+  fun listenersGetTypedCallbacksOnTheirExecutor() {
+    val queued = mutableListOf<Runnable>()
+    val direct = Recorder()
+    val deferred = Recorder()
+    listeners.addListener(Executor { it.run() }, direct)
+    listeners.addListener(Executor { queued.add(it) }, deferred)
+    startSession()
+
+    source.emit(2)
+    source.emitOrientation(90f)
+
+    assertEquals(listOf(PositioningState.RUNNING), direct.states)
+    val fix = direct.fixes.single()
+    assertEquals("L2", fix.floor)
+    assertEquals(FakePositioningClient.VENUE_ID, fix.venueId)
+    assertTrue(fix.elapsedRealtimeNanos > 0)
+    assertEquals(90f, direct.orientations.single().degrees)
+
+    assertTrue(deferred.fixes.isEmpty())
+    queued.forEach { it.run() }
+    assertEquals(direct.fixes, deferred.fixes)
+    assertEquals(direct.orientations, deferred.orientations)
+  }
+
+  @Test
+  fun failingListenerDoesNotStopDelivery() {
+    val after = Recorder()
+    listeners.addListener(Executor { it.run() }, object : MapxusNativePositioning.Listener {
+      override fun onLocation(fix: MapxusNativePositioning.Fix) = throw IllegalStateException("boom")
+    })
+    listeners.addListener(Executor { it.run() }, after)
+    startSession()
+
+    source.emit(0)
+    source.emit(1)
+    assertEquals(2, after.fixes.size)
+  }
+
+  @Test
+  fun listenersGetStoppedWhenTheSessionReleasesTheSource() {
+    val recorder = Recorder()
+    listeners.addListener(Executor { it.run() }, recorder)
+    session.attach(consumer) { source }
+    session.stop(consumer) // never started: nothing to report
+    assertTrue(recorder.states.isEmpty())
+
+    session.start(consumer)
+    session.stop(consumer)
+    assertEquals(listOf(PositioningState.RUNNING, PositioningState.STOPPED), recorder.states)
+    assertEquals(0, source.listenerCount)
+  }
+
+  @Test
+  fun addingAgainReplacesExecutorAndRemoveStopsDelivery() {
+    val recorder = Recorder()
+    listeners.addListener(Executor { throw AssertionError("replaced executor used") }, recorder)
+    listeners.addListener(recorder) // main thread
+    assertEquals(1, listeners.listenerCount())
+    startSession()
+
+    source.emit(0)
+    assertTrue(recorder.fixes.isEmpty())
+    shadowOf(Looper.getMainLooper()).idle()
+    assertEquals(1, recorder.fixes.size)
+
+    assertTrue(listeners.removeListener(recorder))
+    assertFalse(listeners.removeListener(recorder))
+    source.emit(1)
+    shadowOf(Looper.getMainLooper()).idle()
+    assertEquals(1, recorder.fixes.size)
+  }
+}
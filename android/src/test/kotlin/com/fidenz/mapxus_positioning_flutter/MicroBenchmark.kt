@@ -0,0 +1,152 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import java.io.File
+import java.lang.management.ManagementFactory
+import org.junit.Assume
+import org.junit.rules.TestRule
+import org.junit.runner.Description
+import org.junit.runners.model.Statement
+
+/**
+ * Minimal JMH-style harness for JVM unit tests.
+ *
+ * Runs an operation for a warm-up phase, then times every measured call
+ * individually (for p50 / p99) and reads the JVM's per-thread allocation
+ * counters before and after the measured phase (for bytes per operation).
+ * Allocation is summed over the calling thread plus any [threads] named by
+ * the benchmark, so work handed to e.g. the dispatch thread is included.
+ *
+ * Numbers are only comparable between runs on the same machine; use them to
+ * spot regressions, not as absolute device figures. Benchmarks are skipped
+ * unless -Dmapxus.benchmark is set (see [Report]); sizes can be raised with
+ * -Dmapxus.benchmark.ops / -Dmapxus.benchmark.warmup.
+ */
+internal object MicroBenchmark {
+
+  class Result(
+    val name: String,
+    val ops: Int,
+    val p50Nanos: Long,
+    val p99Nanos: Long,
+    val meanNanos: Double,
+    val bytesPerOp: Double,
+  ) {
+    val opsPerSecond: Double get() = if (meanNanos > 0) 1e9 / meanNanos else 0.0
+
+    /** This result minus the fixture cost measured in [baseline]. */
+    fun minus(baseline: Result): Result = Result(
+      "$name (net of ${baseline.name})",
+      ops,
+      maxOf(0L, p50Nanos - baseline.p50Nanos),
+      maxOf(0L, p99Nanos - baseline.p99Nanos),
+      maxOf(0.0, meanNanos - baseline.meanNanos),
+      maxOf(0.0, bytesPerOp - baseline.bytesPerOp),
+    )
+
+    override fun toString(): String = String.format(
+      "%-60s ops=%d  p50=%,d ns  p99=%,d ns  mean=%,.0f ns  %,.0f ops/s  alloc=%,.1f B/op",
+      name, ops, p50Nanos, p99Nanos, meanNanos, opsPerSecond, bytesPerOp)
+  }
+
+  /**
+   * Rule of a benchmark class: skips each test unless -Dmapxus.benchmark is
+   * set, and writes the results [record]ed by the test to
+   * `<mapxus.benchmark.reportDir>/<class>.<test>.txt` once it passed.
+   */
+  class Report : TestRule {
+    private val results = mutableListOf<Result>()
+
+    fun record(vararg result: Result) {
+      results.addAll(result)
+    }
+
+    override fun apply(base: Statement, description: Description): Statement = object : Statement() {
+      override fun evaluate() {
+        Assume.assumeTrue("benchmarks run with -D$ENABLED_PROPERTY", System.getProperty(ENABLED_PROPERTY) != null)
+        results.clear()
+        base.evaluate()
+        val dir = File(System.getProperty(REPORT_DIR_PROPERTY, "build/reports/benchmarks"))
+        dir.mkdirs()
+        File(dir, "${description.testClass.simpleName}.${description.methodName}.txt")
+          .writeText(results.joinToString(separator = "\n", postfix = "\n"))
+      }
+    }
+  }
+
+  const val ENABLED_PROPERTY = "mapxus.benchmark"
+  const val REPORT_DIR_PROPERTY = "mapxus.benchmark.reportDir"
+
+  val defaultOps: Int = Integer.getInteger("mapxus.benchmark.ops", 20_000)
+  val defaultWarmup: Int = Integer.getInteger("mapxus.benchmark.warmup", 5_000)
+
+  private val threadBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+
+  /**
+   * @param perOp how many logical events one call of [op] handles; latency
+   *              and allocation are divided by it (e.g. a batch flush)
+   * @param threads extra threads whose allocations count towards the result
+   * @param setUp runs before each call, excluded from timing and allocation
+   *              (the counters are then read around every call instead of
+   *              once around the whole phase, which adds a few bytes per op)
+   */
+  fun run(
+    name: String,
+    ops: Int = defaultOps,
+    warmup: Int = defaultWarmup,
+    perOp: Int = 1,
+    threads: () -> List<Thread> = { emptyList() },
+    setUp: ((Int) -> Unit)? = null,
+    op: (Int) -> Unit,
+  ): Result {
+    for (i in 0 until warmup) {
+      setUp?.invoke(i)
+      op(i)
+    }
+
+    val latencies = LongArray(ops)
+    val ids = (listOf(Thread.currentThread()) + threads()).map { it.id }.toLongArray()
+    var allocated = 0L
+    if (setUp == null) {
+      val bytesBefore = allocatedBytes(ids)
+      for (i in 0 until ops) {
+        val start = System.nanoTime()
+        op(i)
+        latencies[i] = (System.nanoTime() - start) / perOp
+      }
+      allocated = allocatedBytes(ids) - bytesBefore
+    } else {
+      for (i in 0 until ops) {
+        setUp(i)
+        val bytesBefore = allocatedBytes(ids)
+        val start = System.nanoTime()
+        op(i)
+        latencies[i] = (System.nanoTime() - start) / perOp
+        allocated += allocatedBytes(ids) - bytesBefore
+      }
+    }
+
+    latencies.sort()
+    return Result(
+      name,
+      ops * perOp,
+      latencies[percentileIndex(ops, 0.50)],
+      latencies[percentileIndex(ops, 0.99)],
+      latencies.average(),
+      allocated.toDouble() / (ops.toLong() * perOp),
+    )
+  }
+
+  private fun allocatedBytes(ids: LongArray): Long {
+    var total = 0L
+    for (bytes in threadBean.getThreadAllocatedBytes(ids)) {
+      if (bytes > 0) total += bytes
+    }
+    return total
+  }
+
+  private fun percentileIndex(size: Int, percentile: Double): Int =
+    minOf(size - 1, maxOf(0, Math.ceil(percentile * size).toInt() - 1))
+
+  /** The live thread with the given name, e.g. "MapxusDispatch". */
+  fun thread(name: String): Thread? = Thread.getAllStackTraces().keys.firstOrNull { it.name == name }
+}
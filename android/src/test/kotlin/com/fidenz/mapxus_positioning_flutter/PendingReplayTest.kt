@@ -0,0 +1,122 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import android.os.Handler
+import android.os.Looper
+import java.util.ArrayDeque
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+internal class PendingReplayTest {
+
+  private val main = Handler(Looper.getMainLooper())
+  private val looper = shadowOf(Looper.getMainLooper())
+  private val returned = ArrayDeque<Any>()
+
+  private class Target : PendingReplay.Target {
+    var active = true
+    val sent = mutableListOf<Any>()
+
+    override fun isActive() = active
+    override fun send(event: Any) {
+      sent.add(event)
+    }
+  }
+
+  @Test
+  fun sendsOneChunkPerMainThreadMessage() {
+    val buffer = filled(10)
+    val target = Target()
+    PendingReplay(main, buffer, returned, PendingReplay.Config(4, false, false), target).start()
+    assertEquals(0, target.sent.size)
+
+    var otherTaskRanAfter = -1
+    main.post { otherTaskRanAfter = target.sent.size }
+    looper.runOneTask()
+    looper.runOneTask()
+    assertEquals(4, otherTaskRanAfter) // work queued meanwhile runs between two chunks
+    looper.idle()
+
+    assertEquals((0L until 10L).toList(), target.sent.map { timestampOf(it) })
+    assertTrue(buffer.isEmpty)
+  }
+
+  @Test
+  fun latestFirstSendsNewestFixThenHistoryInOrder() {
+    val buffer = filled(6)
+    buffer.offer(mapOf("type" to "stateChange", "state" to "RUNNING"))
+    val target = Target()
+    PendingReplay(main, buffer, returned, PendingReplay.Config(2, true, false), target).start()
+
+    looper.runOneTask()
+    assertEquals(listOf(5L), target.sent.map { timestampOf(it) })
+    looper.idle()
+    assertEquals(listOf(5L, 0L, 1L, 2L, 3L, 4L, null), target.sent.map { timestampOf(it) })
+  }
+
+  @Test
+  fun collapseSendsHistoryAsOneBacklogEvent() {
+    val buffer = filled(5)
+    val target = Target()
+    PendingReplay(main, buffer, returned, PendingReplay.Config(2, true, true), target).start()
+    looper.idle()
+
+    assertEquals(2, target.sent.size)
+    assertEquals(4L, timestampOf(target.sent[0]))
+    val backlog = target.sent[1] as Map<*, *>
+    assertEquals(PendingReplay.TYPE_BACKLOG, backlog["type"])
+    assertEquals(4, backlog["count"])
+    assertEquals(listOf(0L, 1L, 2L, 3L), (backlog["events"] as List<*>).map { timestampOf(it!!) })
+    assertEquals(EventFanOut.TYPE_LOCATION, EventFanOut.typeOf(backlog) and EventFanOut.TYPE_ALL)
+  }
+
+  @Test
+  fun closedStreamGivesBackWhatWasNotSent() {
+    val buffer = filled(10)
+    val target = Target()
+    PendingReplay(main, buffer, returned, PendingReplay.Config(3, true, false), target).start()
+    looper.runOneTask()
+    looper.runOneTask()
+    target.active = false
+    looper.idle()
+
+    assertEquals(listOf(9L, 0L, 1L, 2L), target.sent.map { timestampOf(it) })
+    assertEquals((3L until 9L).toList(), returned.map { timestampOf(it) })
+    assertTrue(buffer.isEmpty)
+  }
+
+  @Test
+  fun nextReplaySendsReturnedEventsBeforeTheBuffer() {
+    val buffer = filled(10)
+    val first = Target()
+    PendingReplay(main, buffer, returned, PendingReplay.Config(3, true, false), first).start()
+    looper.runOneTask()
+    first.active = false
+    looper.idle()
+    buffer.offer(MapxusEventUtil.mapLocationEvent(FakePositioningClient.walkingTrace(size = 1)[0], 10L, 0L, null, null))
+
+    val second = Target()
+    PendingReplay(main, buffer, returned, PendingReplay.Config(4, false, false), second).start()
+    looper.idle()
+
+    assertEquals(listOf(9L), first.sent.map { timestampOf(it) })
+    assertEquals((0L until 9L).toList() + 10L, second.sent.map { timestampOf(it) })
+    assertTrue(returned.isEmpty())
+  }
+
+  private fun filled(size: Int): EventRingBuffer {
+    val buffer = EventRingBuffer(32)
+    FakePositioningClient.walkingTrace(size = size).forEachIndexed { i, location ->
+      buffer.offer(MapxusEventUtil.mapLocationEvent(location, i.toLong(), 0L, null, null))
+    }
+    return buffer
+  }
+
+  private fun timestampOf(event: Any): Any? = (event as Map<*, *>)["timestamp"]
+}
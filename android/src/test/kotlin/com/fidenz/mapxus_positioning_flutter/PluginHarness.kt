@@ -0,0 +1,132 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import android.content.Context
+import android.os.Looper
+import com.mapxus.positioning.positioning.api.MapxusPositioningListener
+import io.flutter.embedding.engine.plugins.FlutterPlugin
+import io.flutter.embedding.engine.plugins.activity.ActivityPluginBinding
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.mockito.Mockito
+import org.robolectric.Robolectric
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.android.controller.ServiceController
+
+/**
+ * Wires a MapxusPositioningFlutterPlugin to a FakeBinaryMessenger under
+ * Robolectric, so the routing code (dispatch thread → main-thread batches →
+ * EventChannel) runs on the JVM exactly as on a device.
+ *
+ * Robolectric runs the main Looper on the test thread in paused mode: tasks
+ * the plugin posts to it only run inside [idleUntil].
+ */
+internal class PluginHarness(recordEvents: Boolean = true) : AutoCloseable {
+
+  val context: Context = RuntimeEnvironment.getApplication()
+  val messenger = FakeBinaryMessenger(recordEvents)
+  val plugin = MapxusPositioningFlutterPlugin()
+
+  private val engineBinding = Mockito.mock(FlutterPlugin.FlutterPluginBinding::class.java)
+  private val activityBinding = Mockito.mock(ActivityPluginBinding::class.java)
+  private var service: ServiceController<MapxusPositioningForegroundService>? = null
+  private var listening = false
+
+  init {
+    Mockito.`when`(engineBinding.applicationContext).thenReturn(context)
+    Mockito.`when`(engineBinding.binaryMessenger).thenReturn(messenger)
+    plugin.onAttachedToEngine(engineBinding)
+  }
+
+  /** Attaches an activity: the app counts as open even before Dart listens. */
+  fun openApp() {
+    plugin.onAttachedToActivity(activityBinding)
+  }
+
+  /** Subscribes to the event stream, like MapxusPositioningFlutter.instance.events. */
+  fun listen() {
+    messenger.listen(EVENT_CHANNEL)
+    listening = true
+  }
+
+  fun cancel() {
+    messenger.cancel(EVENT_CHANNEL)
+    listening = false
+  }
+
+  fun invokeMethod(method: String, arguments: Any? = null): Any? =
+    messenger.invokeMethod(METHOD_CHANNEL, method, arguments)
+
+  /** Location events received on the stream so far (Map format). */
+  fun locationEvents(): List<Map<*, *>> =
+    messenger.eventsOn(EVENT_CHANNEL).filterIsInstance<Map<*, *>>().filter { it["type"] == "locationChange" }
+
+  /** Routes service events through the plugin, as createServiceListener does. */
+  fun attachServiceListener() {
+    MapxusPositioningForegroundService.setEventListener(
+      object : MapxusPositioningForegroundService.MapxusServiceEventListener {
+        override fun onServiceLocationEvent(event: Any) =
+          MapxusPositioningFlutterPlugin.dispatchForegroundEvent(context, event)
+        override fun onServiceStateEvent(event: Map<String, Any>) =
+          MapxusPositioningFlutterPlugin.dispatchForegroundEvent(context, event)
+        override fun onServiceErrorEvent(event: Map<String, Any>) =
+          MapxusPositioningFlutterPlugin.dispatchForegroundEvent(context, event)
+        override fun onServiceOrientationEvent(event: Any) =
+          MapxusPositioningFlutterPlugin.dispatchForegroundEvent(context, event)
+        override fun onServiceGeofenceEvent(event: Map<String, Any>) =
+          MapxusPositioningFlutterPlugin.dispatchForegroundEvent(context, event)
+      })
+  }
+
+  /**
+   * Creates the real foreground service (without starting the SDK) and
+   * returns a listener feeding its PositioningSession consumer the way the
+   * session does, so a FakePositioningClient can drive its location path.
+   */
+  fun serviceListener(): MapxusPositioningListener {
+    val controller = service ?: Robolectric.buildService(MapxusPositioningForegroundService::class.java).create()
+    service = controller
+    val field = MapxusPositioningForegroundService::class.java.getDeclaredField("positioningConsumer")
+    field.isAccessible = true
+    return PositioningSession.asListener(field.get(controller.get()) as PositioningSession.Consumer)
+  }
+
+  /** Runs main-thread tasks until [condition] holds. */
+  fun idleUntil(timeoutMs: Long = 5_000, condition: () -> Boolean) {
+    val deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs)
+    val looper = shadowOf(Looper.getMainLooper())
+    while (!condition()) {
+      looper.idle()
+      if (System.nanoTime() > deadline) fail("Condition not met within $timeoutMs ms")
+      Thread.onSpinWait()
+    }
+  }
+
+  /** Waits until every task queued on the dispatch thread so far has run. */
+  fun awaitDispatcher() {
+    val latch = CountDownLatch(1)
+    EventDispatcher.getInstance().post { latch.countDown() }
+    assertTrue("Dispatch thread did not drain", latch.await(5, TimeUnit.SECONDS))
+  }
+
+  /** Detaches everything and drops whatever is still buffered, so tests do not leak static state. */
+  override fun close() {
+    service?.destroy()
+    MapxusPositioningForegroundService.setEventListener(null)
+    if (listening) cancel()
+    plugin.onDetachedFromActivity()
+    plugin.onDetachedFromEngine(engineBinding)
+    awaitDispatcher()
+    shadowOf(Looper.getMainLooper()).idle()
+    awaitDispatcher()
+    MapxusPositioningFlutterPlugin.flushPendingForegroundEvents(FakeEventSink(recordEvents = false))
+    MapxusEventUtil.setEventFormat(MapxusEventUtil.FORMAT_MAP)
+  }
+
+  companion object {
+    const val METHOD_CHANNEL = "mapxus_positioning_flutter"
+    const val EVENT_CHANNEL = "mapxus_positioning_stream"
+  }
+}
@@ -0,0 +1,115 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import com.mapxus.positioning.positioning.api.ErrorInfo
+import com.mapxus.positioning.positioning.api.MapxusLocation
+import com.mapxus.positioning.positioning.api.PositioningState
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+internal class PositioningSessionTest {
+
+  private val session = PositioningSession()
+  private val sources = mutableListOf<FakePositioningClient>()
+  private val factory = PositioningSession.SourceFactory {
+    FakePositioningClient(FakePositioningClient.walkingTrace(size = 5)).also { sources.add(it) }
+  }
+
+  private class Recorder : PositioningSession.Consumer {
+    val fixes = mutableListOf<Triple<MapxusLocation?, Long, Long>>()
+    val states = mutableListOf<PositioningState>()
+
+    override fun onStateChange(state: PositioningState) {
+      states.add(state)
+    }
+    override fun onError(errorInfo: ErrorInfo) {}
+    override fun onOrientationChange(orientation: Float, sensorAccuracy: Int, timestamp: Long, elapsedNanos: Long) {}
+    override fun onLocationChange(location: MapxusLocation?, timestamp: Long, elapsedNanos: Long) {
+      fixes.add(Triple(location, timestamp, elapsedNanos))
+    }
+  }
+
+  @Test
+  fun consumersShareOneSubscriptionAndOneStampPerFix() {
+    val app = Recorder()
+    val service = Recorder()
+    session.attach(app, factory)
+    session.attach(service, factory)
+    session.start(app)
+    session.start(service)
+
+    val source = sources.single()
+    assertEquals(1, source.listenerCount)
+    assertEquals(listOf("start"), source.calls)
+
+    source.emit(0)
+    assertEquals(1, app.fixes.size)
+    assertEquals(app.fixes, service.fixes)
+    assertTrue(app.fixes[0].third > 0)
+  }
+
+  @Test
+  fun consumerJoiningARunningSourceGetsRunningOnce() {
+    val app = Recorder()
+    val early = Recorder()
+    session.attach(app, factory)
+    session.attach(early, factory)
+    session.start(app)
+
+    val service = Recorder()
+    session.attach(service, factory)
+    session.start(service)
+    session.start(early)
+
+    assertEquals(listOf(PositioningState.RUNNING), app.states)
+    assertEquals(listOf(PositioningState.RUNNING), service.states)
+    assertEquals(listOf(PositioningState.RUNNING), early.states) // saw it from the SDK already
+  }
+
+  @Test
+  fun sourceIsPausedOnlyWhileEveryStartedConsumerIsPaused() {
+    val app = Recorder()
+    val service = Recorder()
+    session.attach(app, factory)
+    session.attach(service, factory)
+    session.start(app)
+    session.start(service)
+    val source = sources.single()
+
+    session.pause(service) // duty cycle: device stationary, app still wants fixes
+    assertEquals(listOf("start"), source.calls)
+    session.pause(app)
+    session.resume(service)
+    session.stop(app) // a paused consumer leaving does not pause the others
+    assertEquals(listOf("start", "pause", "resume"), source.calls)
+  }
+
+  @Test
+  fun lastConsumerReleasesSourceAndNextStartCreatesItAgain() {
+    val app = Recorder()
+    val service = Recorder()
+    session.attach(app, factory)
+    session.attach(service, factory)
+    session.start(app)
+    session.start(service)
+    val first = sources.single()
+
+    session.detach(service)
+    assertEquals(listOf("start"), first.calls)
+    session.detach(app)
+    assertEquals(listOf("start", "stop"), first.calls)
+    assertEquals(0, first.listenerCount)
+    assertEquals(0, session.consumerCount())
+
+    session.attach(service, factory)
+    session.start(service)
+    assertEquals(2, sources.size)
+    assertEquals(listOf("start"), sources[1].calls)
+    assertEquals(listOf(PositioningState.RUNNING, PositioningState.RUNNING), service.states)
+  }
+}
@@ -0,0 +1,57 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import java.nio.ByteBuffer
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+internal class SharedEventRingTest {
+
+  private val memory = ByteBuffer.allocate(64)
+  private val producer = SharedEventRing(memory)
+  private val consumer = SharedEventRing(memory.asReadOnlyBuffer())
+
+  @Test
+  fun consumerReadsExactlyUpToSignalledPosition() {
+    producer.offer(SharedEventRing.KIND_RECORD, byteArrayOf(1, 2, 3))
+    val signalled = producer.tail()
+    producer.offer(SharedEventRing.KIND_MESSAGE, byteArrayOf(4))
+
+    val read = mutableListOf<Pair<Byte, List<Byte>>>()
+    val position = consumer.read(0, signalled) { kind, payload -> read.add(kind to bytes(payload)) }
+
+    assertEquals(signalled, position)
+    assertEquals(listOf(SharedEventRing.KIND_RECORD to listOf<Byte>(1, 2, 3)), read)
+  }
+
+  @Test
+  fun recordThatWouldWrapStartsAtOffsetZeroAfterPadding() {
+    repeat(3) { producer.offer(SharedEventRing.KIND_RECORD, ByteArray(11) { i -> i.toByte() }) } // 16 bytes each
+    producer.release(producer.tail())
+    val start = producer.tail()
+
+    assertTrue(producer.offer(SharedEventRing.KIND_RECORD, ByteArray(20) { 7 })) // 28 bytes, 16 left before the end
+
+    val read = mutableListOf<List<Byte>>()
+    consumer.read(start, producer.tail()) { _, payload -> read.add(bytes(payload)) }
+    assertEquals(listOf(List<Byte>(20) { 7 }), read)
+    assertEquals(start + 16 + 28, producer.tail())
+  }
+
+  @Test
+  fun fullRingRejectsUntilOldestIsDroppedOrReleased() {
+    repeat(4) { i -> assertTrue(producer.offer(SharedEventRing.KIND_RECORD, ByteArray(11) { i.toByte() })) }
+    assertFalse(producer.offer(SharedEventRing.KIND_RECORD, ByteArray(11)))
+
+    assertTrue(producer.dropOldest())
+    assertTrue(producer.offer(SharedEventRing.KIND_RECORD, ByteArray(11) { 4 }))
+    assertEquals(1L, producer.droppedCount())
+
+    val firstBytes = mutableListOf<Byte>()
+    consumer.read(producer.head(), producer.tail()) { _, payload -> firstBytes.add(payload.get(0)) }
+    assertEquals(listOf<Byte>(1, 2, 3, 4), firstBytes)
+  }
+
+  private fun bytes(payload: ByteBuffer): List<Byte> = ByteArray(payload.remaining()).also { payload.get(it) }.toList()
+}
@@ -0,0 +1,124 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import android.os.Handler
+import android.os.Looper
+import com.mapxus.positioning.positioning.api.ErrorInfo
+import com.mapxus.positioning.positioning.api.MapxusLocation
+import com.mapxus.positioning.positioning.api.MapxusPositioningListener
+import com.mapxus.positioning.positioning.api.PositioningState
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import java.io.File
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+internal class TraceReplayTest {
+
+  @get:Rule val folder = TemporaryFolder()
+
+  private val main = Handler(Looper.getMainLooper())
+
+  /** Collects callbacks as comparable strings. */
+  private class Collector : MapxusPositioningListener {
+    val calls = mutableListOf<String>()
+
+    override fun onStateChange(state: PositioningState) {
+      calls.add("state ${state.name}")
+    }
+
+    override fun onError(errorInfo: ErrorInfo) {
+      calls.add("error ${errorInfo.errorCode} ${errorInfo.errorMessage}")
+    }
+
+    override fun onOrientationChange(orientation: Float, sensorAccuracy: Int) {
+      calls.add("orientation $orientation $sensorAccuracy")
+    }
+
+    override fun onLocationChange(location: MapxusLocation) {
+      calls.add("location ${location.latitude} ${location.longitude} ${location.accuracy.toDouble()} " +
+        "${location.venueId} ${location.buildingId} ${location.mapxusFloor?.code}")
+    }
+  }
+
+  @Test
+  fun replayDeliversRecordedCallbacksOfAppendedSessionsInOrder() {
+    val file = File(folder.root, "traces/walk.mxr")
+    val trace = FakePositioningClient.walkingTrace(size = 400, floorEvery = 100)
+    val expected = Collector()
+
+    // Two sessions appended to the same file, as after a service restart.
+    record(file, expected) { listener ->
+      listener.onStateChange(PositioningState.RUNNING)
+      trace.take(250).forEach { listener.onLocationChange(it) }
+      listener.onOrientationChange(87.5f, 3)
+    }
+    record(file, expected) { listener ->
+      listener.onError(FakeErrorInfo(7, "signal lost"))
+      trace.drop(250).forEach { listener.onLocationChange(it) }
+    }
+
+    val replayed = Collector()
+    val player = TracePlayer(file, 0.0, false, main)
+    player.addPositioningListener(replayed)
+    player.start()
+    awaitFinished(player)
+
+    // More callbacks than MAX_IN_FLIGHT: the reader had to wait for the main thread.
+    assertTrue(expected.calls.size > TracePlayer.MAX_IN_FLIGHT)
+    assertEquals(expected.calls + "state STOPPED", replayed.calls)
+    assertEquals(expected.calls.size.toLong(), player.stats()["played"])
+  }
+
+  @Test
+  fun stopWhilePausedEndsReplayWithoutFurtherCallbacks() {
+    val file = File(folder.root, "long.mxr")
+    record(file, Collector()) { listener ->
+      FakePositioningClient.walkingTrace(size = 100).forEach { listener.onLocationChange(it) }
+    }
+
+    val replayed = Collector()
+    val player = TracePlayer(file, 1.0, false, main)
+    player.addPositioningListener(replayed)
+    player.pause() // the trace clock is frozen before the first callback is due
+    player.start()
+    Thread.sleep(50)
+    player.stop()
+    shadowOf(Looper.getMainLooper()).idle()
+
+    assertEquals(listOf("state STOPPED"), replayed.calls)
+    assertEquals(0L, player.stats()["played"])
+    assertEquals(false, player.stats()["finished"])
+  }
+
+  /** Records the callbacks made by [block] to [file] and mirrors them into [mirror]. */
+  private fun record(file: File, mirror: Collector, block: (MapxusPositioningListener) -> Unit) {
+    val recorder = TraceRecorder(file, main, false)
+    shadowOf(Looper.getMainLooper()).idle()
+    block(recorder)
+    block(mirror)
+    recorder.close()
+    shadowOf(Looper.getMainLooper()).idle()
+  }
+
+  private fun awaitFinished(player: TracePlayer) {
+    val deadline = System.nanoTime() + 10_000_000_000L
+    while (player.stats()["running"] == true) {
+      shadowOf(Looper.getMainLooper()).idle()
+      assertTrue("replay did not finish", System.nanoTime() < deadline)
+      Thread.sleep(1)
+    }
+    shadowOf(Looper.getMainLooper()).idle()
+  }
+
+  private class FakeErrorInfo(private val code: Int, private val message: String) : ErrorInfo() {
+    override fun getErrorCode() = code
+    override fun getErrorMessage() = message
+  }
+}
@@ -0,0 +1,113 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.InputStream
+
+internal class TrajectoryFileWriterTest {
+
+  private data class Fix(
+    val time: Long,
+    val latitude: Double,
+    val longitude: Double,
+    val accuracy: Double,
+    val venueId: String?,
+    val buildingId: String?,
+    val floor: String?,
+  )
+
+  @Test
+  fun roundTripsAcrossBlocksWithDictionaryAndNulls() {
+    // Crosses two block boundaries; the floor changes mid-trace and some fixes are outside any venue.
+    val fixes = (0 until TrajectoryFileWriter.BLOCK_SIZE * 2 + 100).map {
+      val indoor = it % 500 != 0
+      Fix(
+        time = 1_700_000_000_000L + it * 1_000L + (it % 3),
+        latitude = 22.3 + it * 1e-6,
+        longitude = 114.1 - it * 2e-6,
+        accuracy = 2.5 + (it % 7) * 0.01,
+        venueId = if (indoor) "venue-1" else null,
+        buildingId = if (indoor) "building-1" else null,
+        floor = if (!indoor) null else if (it < 1_500) "L1" else "L2",
+      )
+    }
+    val bytes = write(fixes)
+
+    val decoded = read(ByteArrayInputStream(bytes))
+
+    assertEquals(fixes.size, decoded.size)
+    fixes.zip(decoded).forEach { (expected, actual) ->
+      assertEquals(expected.time, actual.time)
+      assertEquals(expected.latitude, actual.latitude, 1e-7)
+      assertEquals(expected.longitude, actual.longitude, 1e-7)
+      assertEquals(expected.accuracy, actual.accuracy, 0.01)
+      assertEquals(expected.venueId, actual.venueId)
+      assertEquals(expected.buildingId, actual.buildingId)
+      assertEquals(expected.floor, actual.floor)
+    }
+    // Steady walking: small deltas keep every fix well under the 56 bytes of raw columns.
+    assertTrue("${bytes.size} bytes", bytes.size < fixes.size * 12)
+  }
+
+  @Test
+  fun emptyExportIsHeaderAndEndMarker() {
+    assertArrayEquals(byteArrayOf('M'.code.toByte(), 'X'.code.toByte(), 'T'.code.toByte(), '1'.code.toByte(), 1, 0),
+      write(emptyList()))
+  }
+
+  private fun write(fixes: List<Fix>): ByteArray {
+    val out = ByteArrayOutputStream()
+    val writer = TrajectoryFileWriter(out)
+    fixes.forEach { writer.add(it.time, it.latitude, it.longitude, it.accuracy, it.venueId, it.buildingId, it.floor) }
+    writer.finish()
+    assertEquals(fixes.size.toLong(), writer.count)
+    return out.toByteArray()
+  }
+
+  /** Reference decoder for the format documented in TrajectoryFileWriter. */
+  private fun read(input: InputStream): List<Fix> {
+    val magic = ByteArray(4).also { input.read(it) }
+    assertArrayEquals(TrajectoryFileWriter.MAGIC, magic)
+    assertEquals(TrajectoryFileWriter.VERSION.toLong(), input.varint())
+
+    val dictionary = mutableListOf<String>()
+    val fixes = mutableListOf<Fix>()
+    var time = 0L
+    var lat = 0L
+    var lon = 0L
+    while (true) {
+      val count = input.varint().toInt()
+      if (count == 0) return fixes
+      repeat(input.varint().toInt()) {
+        dictionary.add(String(ByteArray(input.varint().toInt()).also { input.read(it) }, Charsets.UTF_8))
+      }
+      val times = LongArray(count) { time += unzigzag(input.varint()); time }
+      val lats = LongArray(count) { lat += unzigzag(input.varint()); lat }
+      val lons = LongArray(count) { lon += unzigzag(input.varint()); lon }
+      val accuracies = LongArray(count) { input.varint() }
+      val refs = Array(3) { LongArray(count) { input.varint() } }
+      fun lookup(ref: Long) = if (ref == 0L) null else dictionary[ref.toInt() - 1]
+      for (i in 0 until count) {
+        fixes.add(Fix(times[i], lats[i] / 1e7, lons[i] / 1e7, accuracies[i] / 100.0,
+          lookup(refs[0][i]), lookup(refs[1][i]), lookup(refs[2][i])))
+      }
+    }
+  }
+
+  private fun InputStream.varint(): Long {
+    var result = 0L
+    var shift = 0
+    while (true) {
+      val b = read()
+      result = result or ((b and 0x7F).toLong() shl shift)
+      if (b and 0x80 == 0) return result
+      shift += 7
+    }
+  }
+
+  private fun unzigzag(value: Long) = (value ushr 1) xor -(value and 1)
+}
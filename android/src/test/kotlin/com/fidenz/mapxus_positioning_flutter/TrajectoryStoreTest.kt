@@ -0,0 +1,75 @@
+package com.fidenz.mapxus_positioning_flutter
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+internal class TrajectoryStoreTest {
+
+  private lateinit var store: TrajectoryStore
+
+  @Before
+  fun setUp() {
+    // In-memory database; the store's own thread is not used by these tests.
+    store = TrajectoryStore(TrajectoryStore.Helper(RuntimeEnvironment.getApplication(), null))
+  }
+
+  @Test
+  fun pagesCoverRangeWithoutGapsOrDuplicates() {
+    // Two fixes share each timestamp, so paging must break ties by id.
+    store.insertBatch((0 until 10).map { row(time = 1_000L + it / 2, floor = "L1") })
+
+    val times = mutableListOf<Long>()
+    var afterTime = -1L
+    var afterId = -1L
+    var pages = 0
+    do {
+      val page = store.readPage(1_000, 1_004, null, afterTime, afterId, 3)
+      pages++
+      @Suppress("UNCHECKED_CAST")
+      (page["fixes"] as List<Map<String, Any?>>).forEach { times.add(it["timestamp"] as Long) }
+      val next = page["next"] as Map<*, *>?
+      afterTime = next?.get("afterTime") as Long? ?: -1
+      afterId = next?.get("afterId") as Long? ?: -1
+    } while (next != null)
+
+    assertEquals(listOf(1_000L, 1_000L, 1_001L, 1_001L, 1_002L, 1_002L, 1_003L, 1_003L), times)
+    assertEquals(3, pages)
+  }
+
+  @Test
+  fun floorFilterUsesOnlyMatchingRows() {
+    store.insertBatch(listOf(row(1, "L1"), row(2, "L2"), row(3, "L1"), row(4, null)))
+
+    @Suppress("UNCHECKED_CAST")
+    val fixes = store.readPage(0, 10, "L1", -1, -1, 10)["fixes"] as List<Map<String, Any?>>
+
+    assertEquals(listOf(1L, 3L), fixes.map { it["timestamp"] })
+    assertNull(store.readPage(0, 10, "L1", -1, -1, 10)["next"])
+  }
+
+  @Test
+  fun compactionAppliesRetentionThenRowCap() {
+    store.configure(TrajectoryStore.Config(false, 1, 0, 10_000, 2))
+    store.insertBatch((0L until 8L).map { row(time = it * 2_000, floor = "L1") })
+
+    store.compact(20_000)
+
+    @Suppress("UNCHECKED_CAST")
+    val fixes = store.readPage(0, Long.MAX_VALUE, null, -1, -1, 10)["fixes"] as List<Map<String, Any?>>
+    // Retention keeps 10 000..14 000; the cap then drops the oldest of those.
+    assertEquals(listOf(12_000L, 14_000L), fixes.map { it["timestamp"] })
+    assertNotNull(fixes[0]["id"])
+  }
+
+  private fun row(time: Long, floor: String?) =
+    TrajectoryStore.Row(time, 22.3, 114.1, 3.0, "venue", "building", floor)
+}
@@ -1,12 +1,32 @@
+import 'dart:typed_data';
 import 'dart:ui';
 
 import 'package:flutter/services.dart';
 import 'package:flutter/widgets.dart';
 
 import 'mapxus_positioning_flutter_platform_interface.dart';
+import 'models/mapxus_background_engine_stats_model.dart';
+import 'models/mapxus_buffer_stats_model.dart';
+import 'models/mapxus_duty_cycle_options.dart';
+import 'models/mapxus_event_format.dart';
 import 'models/mapxus_event_model.dart';
+import 'models/mapxus_geofence.dart';
+import 'models/mapxus_latency_options.dart';
+import 'models/mapxus_live_notification_options.dart';
+import 'models/mapxus_location_filter_options.dart';
+import 'models/mapxus_location_filter_stats_model.dart';
 import 'models/mapxus_method_response_model.dart';
+import 'models/mapxus_metrics_model.dart';
+import 'models/mapxus_orientation_options.dart';
+import 'models/mapxus_pending_replay_options.dart';
 import 'models/mapxus_sensor_result_model.dart';
+import 'models/mapxus_smoothing_options.dart';
+import 'models/mapxus_subscription_options.dart';
+import 'models/mapxus_subscription_stats_model.dart';
+import 'models/mapxus_trace_options.dart';
+import 'models/mapxus_trajectory.dart';
+import 'models/mapxus_trajectory_file.dart';
+import 'models/mapxus_upload_options.dart';
 
 // ─────────────────────────────────────────────────────────────────────────────
 // Background handler type
@@ -51,19 +71,26 @@ Future<void> _mapxusBackgroundMain() async {
   // The native side flushes queued events immediately after receiving 'ready',
   // so if the handler were registered after the await it could miss those events.
   _bgChannel.setMethodCallHandler((MethodCall call) async {
-    if (call.method == 'onBackgroundEvent') {
-      final dynamic rawHandle = call.arguments['handle'];
+    if (call.method == 'onBackgroundEvents') {
+      // Batched delivery: the handle is sent once for a list of events, which
+      // are passed to the callback one at a time, in order.
+      final dynamic rawEvents = call.arguments['events'];
+      final callback = _lookupBackgroundHandler(call.arguments['handle']);
+      if (callback != null && rawEvents is List) {
+        for (final dynamic rawEvent in rawEvents) {
+          if (rawEvent is Map || rawEvent is Uint8List) {
+            await callback(MapxusEvent.decode(rawEvent));
+          }
+        }
+      }
+    } else if (call.method == 'onBackgroundEvent') {
       final dynamic rawEvent = call.arguments['event'];
 
-      if (rawEvent is Map) {
-        final int handle = (rawHandle as num).toInt();
-        final callback = PluginUtilities.getCallbackFromHandle(
-            CallbackHandle.fromRawHandle(handle));
-
+      if (rawEvent is Map || rawEvent is Uint8List) {
+        final callback = _lookupBackgroundHandler(call.arguments['handle']);
         if (callback != null) {
-          final event =
-              MapxusEvent.fromMap(rawEvent.cast<dynamic, dynamic>());
-          await (callback as MapxusBackgroundHandler)(event);
+          final event = MapxusEvent.decode(rawEvent);
+          await callback(event);
         }
       }
     }
@@ -73,6 +100,14 @@ Future<void> _mapxusBackgroundMain() async {
   await _bgChannel.invokeMethod<void>('ready');
 }
 
+/// Resolves the developer's background callback from its raw handle.
+MapxusBackgroundHandler? _lookupBackgroundHandler(dynamic rawHandle) {
+  if (rawHandle is! num) return null;
+  final callback = PluginUtilities.getCallbackFromHandle(
+      CallbackHandle.fromRawHandle(rawHandle.toInt()));
+  return callback as MapxusBackgroundHandler?;
+}
+
 // ─────────────────────────────────────────────────────────────────────────────
 // Public API
 // ─────────────────────────────────────────────────────────────────────────────
@@ -86,9 +121,58 @@ class MapxusPositioningFlutter {
 
   final _platform = MapxusPositioningFlutterPlatform.instance;
 
-  Future<MapxusMethodResponse> init(String appId, String secret) =>
-      _platform.init(appId, secret);
+  /// Initializes the Mapxus positioning client.
+  ///
+  /// Pass [MapxusEventFormat.binary] as [eventFormat] to receive location and
+  /// orientation events as packed binary records instead of Maps. The
+  /// [events] stream decodes both formats into the same event types.
+  ///
+  /// [orientationOptions] thins out compass samples natively (rate limit,
+  /// dead-band, batching) before they reach the [events] stream.
+  ///
+  /// [locationFilter] drops duplicate and near-identical location fixes
+  /// natively; floor, building and venue changes are always delivered.
+  ///
+  /// [smoothingOptions] runs a Kalman filter over the delivered fixes and
+  /// adds the smoothed position to each [MapxusLocationEvent].
+  ///
+  /// [traceOptions] records the raw SDK callbacks to a trace file, or plays
+  /// a recorded trace instead of the SDK so the pipeline can be exercised
+  /// off-site (see [getReplayStats]).
+  ///
+  /// [latencyOptions] samples the age of events at hand-over into the
+  /// `latency*Us` histograms of [getMetrics] and can add per-stage trace
+  /// marks to location events.
+  Future<MapxusMethodResponse> init(
+    String appId,
+    String secret, {
+    MapxusEventFormat eventFormat = MapxusEventFormat.map,
+    MapxusOrientationOptions orientationOptions =
+        const MapxusOrientationOptions(),
+    MapxusLocationFilterOptions locationFilter =
+        const MapxusLocationFilterOptions(),
+    MapxusSmoothingOptions smoothingOptions = const MapxusSmoothingOptions(),
+    MapxusTraceOptions traceOptions = const MapxusTraceOptions(),
+    MapxusLatencyOptions latencyOptions = const MapxusLatencyOptions(),
+  }) =>
+      _platform.init(
+        appId,
+        secret,
+        eventFormat: eventFormat,
+        orientationOptions: orientationOptions,
+        locationFilter: locationFilter,
+        smoothingOptions: smoothingOptions,
+        traceOptions: traceOptions,
+        latencyOptions: latencyOptions,
+      );
 
+  /// Starts the client created by [init].
+  ///
+  /// The client and the foreground service share one native positioning
+  /// session: while both run, fixes are produced once and reach [events]
+  /// through the service's pipeline (with its filter and smoothing
+  /// settings). [pause] and [stop] only pause or stop the SDK when the
+  /// service does not need it.
   Future<MapxusMethodResponse> start() => _platform.start();
 
   Future<MapxusMethodResponse> pause() => _platform.pause();
@@ -150,17 +234,113 @@ class MapxusPositioningFlutter {
   /// app is closed. Events are delivered through the same [events] stream
   /// while the app is open, and through the [setBackgroundHandler] callback
   /// while the app is closed.
+  ///
+  /// While the app is closed without a background handler, events are kept in
+  /// a native ring buffer of [bufferCapacity] entries (default 512) that
+  /// overwrites the oldest event when full.
+  ///
+  /// Set [persistEvents] to also write location fixes to a memory-mapped
+  /// on-disk journal (at most [journalMaxBytes], default 8 MB). Journaled
+  /// fixes survive the app process being killed and are replayed on the
+  /// [events] stream, oldest first, the next time it is listened to.
+  ///
+  /// Set [warmBackgroundEngine] to start the headless engine for
+  /// [setBackgroundHandler] together with the service and keep it cached, so
+  /// the first event after the app closes does not wait for engine startup.
+  /// Register the background handler before calling this.
+  ///
+  /// Events for the background handler are sent to its isolate in batches of
+  /// at most [backgroundBatchSize] (default 64). With [backgroundLingerMs]
+  /// greater than 0, a partial batch waits that long for more events before
+  /// it is sent, trading latency for fewer channel calls.
+  ///
+  /// [dutyCycleOptions] pauses positioning while the device is stationary
+  /// and resumes it on motion; transitions arrive as [MapxusDutyCycleEvent]s
+  /// with the time spent in each state.
+  ///
+  /// [locationFilter] drops redundant fixes of the service's client and
+  /// [smoothingOptions] smooths them, as in [init].
+  ///
+  /// [trajectoryOptions] records every fix into a native SQLite history that
+  /// is read back with [queryTrajectory] / [readTrajectory].
+  ///
+  /// [traceOptions] records or replays the service's SDK callbacks, as in
+  /// [init]; they are kept for restarts of the service. [latencyOptions]
+  /// configures latency sampling, as in [init].
+  ///
+  /// [pendingReplayOptions] controls how the events buffered while the app
+  /// was closed are delivered when [events] is listened to again: in small
+  /// chunks after the first frames, optionally newest fix first or collapsed
+  /// into one [MapxusBacklogEvent].
+  ///
+  /// [uploadOptions] sends every fix to your backend natively, in
+  /// gzip-compressed batches that are kept on disk until they are accepted,
+  /// with the app closed and without starting the background handler.
+  ///
+  /// [liveNotificationOptions] shows the floor, building, accuracy and age of
+  /// the last fix in the notification, updated at a limited rate.
+  ///
+  /// [separateProcess] runs the service in its own Android process, so UI
+  /// work and garbage collection in the app cannot delay positioning. Events
+  /// then reach the app through shared memory and are delivered exactly as
+  /// before; those produced while the app process is gone wait in that
+  /// memory (oldest dropped once it is full) until the app opens. The
+  /// background handler only runs while the app process is alive, and
+  /// [getMetrics] and the replay statistics cover the app process only. The
+  /// service keeps its own positioning client, separate from [init] /
+  /// [start]. Requires Android 8.1; older versions run the service in the
+  /// app process.
   Future<MapxusMethodResponse> startForegroundService({
     required String appId,
     required String secret,
     String notificationTitle = 'Mapxus Positioning',
     String notificationContent = 'Location tracking is active',
+    MapxusEventFormat eventFormat = MapxusEventFormat.map,
+    MapxusOrientationOptions orientationOptions =
+        const MapxusOrientationOptions(),
+    int? bufferCapacity,
+    bool persistEvents = false,
+    int? journalMaxBytes,
+    bool warmBackgroundEngine = false,
+    int? backgroundBatchSize,
+    int? backgroundLingerMs,
+    MapxusDutyCycleOptions dutyCycleOptions = const MapxusDutyCycleOptions(),
+    MapxusLocationFilterOptions locationFilter =
+        const MapxusLocationFilterOptions(),
+    MapxusSmoothingOptions smoothingOptions = const MapxusSmoothingOptions(),
+    MapxusTrajectoryOptions trajectoryOptions = const MapxusTrajectoryOptions(),
+    MapxusTraceOptions traceOptions = const MapxusTraceOptions(),
+    MapxusLatencyOptions latencyOptions = const MapxusLatencyOptions(),
+    MapxusPendingReplayOptions pendingReplayOptions =
+        const MapxusPendingReplayOptions(),
+    MapxusUploadOptions uploadOptions = const MapxusUploadOptions(),
+    MapxusLiveNotificationOptions liveNotificationOptions =
+        const MapxusLiveNotificationOptions(),
+    bool separateProcess = false,
   }) =>
       _platform.startForegroundService(
         appId: appId,
         secret: secret,
         notificationTitle: notificationTitle,
         notificationContent: notificationContent,
+        eventFormat: eventFormat,
+        orientationOptions: orientationOptions,
+        bufferCapacity: bufferCapacity,
+        persistEvents: persistEvents,
+        journalMaxBytes: journalMaxBytes,
+        warmBackgroundEngine: warmBackgroundEngine,
+        backgroundBatchSize: backgroundBatchSize,
+        backgroundLingerMs: backgroundLingerMs,
+        dutyCycleOptions: dutyCycleOptions,
+        locationFilter: locationFilter,
+        smoothingOptions: smoothingOptions,
+        trajectoryOptions: trajectoryOptions,
+        traceOptions: traceOptions,
+        latencyOptions: latencyOptions,
+        pendingReplayOptions: pendingReplayOptions,
+        uploadOptions: uploadOptions,
+        liveNotificationOptions: liveNotificationOptions,
+        separateProcess: separateProcess,
       );
 
   /// Stops the foreground service and removes the persistent notification.
@@ -174,5 +354,165 @@ class MapxusPositioningFlutter {
   Future<bool> isForegroundServiceRunning() =>
       _platform.isForegroundServiceRunning();
 
+  /// Returns fill level and overwrite / drop counters of the native buffers
+  /// that hold events while the app is closed.
+  Future<MapxusBufferStats> getBufferStats() => _platform.getBufferStats();
+
+  /// Returns how long the background handler waited for its first event
+  /// after the app closed, for cold and warm engine starts.
+  Future<MapxusBackgroundEngineStats> getBackgroundEngineStats() =>
+      _platform.getBackgroundEngineStats();
+
+  /// Returns how many location fixes were received, delivered and suppressed
+  /// by the native filters of the app's client and of the foreground service.
+  Future<MapxusLocationFilterStats> getLocationFilterStats() =>
+      _platform.getLocationFilterStats();
+
+  /// Returns native counters and histograms for event routing, flushes,
+  /// listener callbacks and foreground service lifecycle.
+  ///
+  /// Pass [reset] to read deltas: the next call then only covers what
+  /// happened after this one.
+  Future<MapxusMetrics> getMetrics({bool reset = false}) =>
+      _platform.getMetrics(reset: reset);
+
+  /// Returns a stream of only the events selected by [options], filtered and
+  /// throttled on the native side.
+  ///
+  /// Each [name] is one native subscription; use different names for
+  /// consumers with different needs, e.g.:
+  ///
+  /// ```dart
+  /// final heading = MapxusPositioningFlutter.instance.subscribe('map',
+  ///     options: const MapxusSubscriptionOptions(
+  ///       types: {MapxusEventType.orientation},
+  ///       throttle: Duration(milliseconds: 100),
+  ///     ));
+  /// ```
+  ///
+  /// The subscription is registered when the stream is first listened to and
+  /// removed when it is cancelled. Subscribing again with the same name
+  /// updates the options of the existing subscription.
+  Stream<MapxusEvent> subscribe(
+    String name, {
+    MapxusSubscriptionOptions options = const MapxusSubscriptionOptions(),
+  }) =>
+      _platform.subscribe(name, options: options);
+
+  /// Removes a named subscription and closes its stream.
+  Future<MapxusMethodResponse> unsubscribe(String name) =>
+      _platform.unsubscribe(name);
+
+  /// Returns how many events each named subscription received, filtered,
+  /// throttled and buffered.
+  Future<MapxusSubscriptionStats> getSubscriptionStats() =>
+      _platform.getSubscriptionStats();
+
+  /// Replaces the zones the foreground service checks every fix against.
+  ///
+  /// Evaluation runs natively; only enter / exit / dwell transitions are
+  /// delivered, as [MapxusGeofenceEvent]s on [events] (or to the background
+  /// handler while the app is closed). Zones are saved: they survive service
+  /// restarts and [stopForegroundService], and apply again on the next
+  /// [startForegroundService], until replaced or removed with
+  /// [clearGeofences].
+  ///
+  /// [exitMarginMeters] is how far outside a zone a fix must be before
+  /// `exit` fires, to ignore jitter on the boundary.
+  ///
+  /// With [backgroundGeofenceOnly], only transitions start or reach the
+  /// background handler; locations and other events are kept for the next
+  /// app open instead.
+  Future<MapxusMethodResponse> setGeofences(
+    List<MapxusGeofence> zones, {
+    double exitMarginMeters = 0,
+    bool backgroundGeofenceOnly = false,
+  }) =>
+      _platform.setGeofences(zones,
+          exitMarginMeters: exitMarginMeters,
+          backgroundGeofenceOnly: backgroundGeofenceOnly);
+
+  /// Removes every zone.
+  Future<MapxusMethodResponse> clearGeofences() => _platform.setGeofences([]);
+
+  /// Returns how many fixes were evaluated and transitions fired.
+  Future<MapxusGeofenceStats> getGeofenceStats() =>
+      _platform.getGeofenceStats();
+
+  /// Reads one page of at most [pageSize] stored fixes with
+  /// [from] <= timestamp < [to], oldest first, optionally only on [floor].
+  ///
+  /// Pass the previous page's [MapxusTrajectoryPage.next] as [after] to
+  /// continue; it is `null` on the last page. Fixes not yet written by the
+  /// current batch are written first, so they are included — except with
+  /// `separateProcess`, where the service writes its batches in its own
+  /// process and fixes of its current batch only appear once it is written
+  /// (after [MapxusTrajectoryOptions.batchSize] fixes or
+  /// [MapxusTrajectoryOptions.flushInterval]).
+  Future<MapxusTrajectoryPage> queryTrajectory({
+    required DateTime from,
+    required DateTime to,
+    String? floor,
+    int pageSize = 500,
+    MapxusTrajectoryCursor? after,
+  }) =>
+      _platform.queryTrajectory(
+          from: from, to: to, floor: floor, pageSize: pageSize, after: after);
+
+  /// Streams every stored fix in the range page by page, so hours of history
+  /// never have to be held in memory at once. The next page is only read
+  /// after the previous one was consumed.
+  Stream<List<MapxusLocationEvent>> readTrajectory({
+    required DateTime from,
+    required DateTime to,
+    String? floor,
+    int pageSize = 500,
+  }) async* {
+    MapxusTrajectoryCursor? after;
+    do {
+      final page = await _platform.queryTrajectory(
+          from: from, to: to, floor: floor, pageSize: pageSize, after: after);
+      if (page.fixes.isNotEmpty) yield page.fixes;
+      after = page.next;
+    } while (after != null);
+  }
+
+  /// Writes the stored fixes with [from] <= timestamp < [to] (optionally
+  /// only on [floor]) to a compact `.mxt` file and returns its path; read it
+  /// back with [MapxusTrajectoryFileReader.read].
+  ///
+  /// The file is written natively in a streaming fashion and the fixes never
+  /// cross the platform channel, so this suits long sessions far better than
+  /// [readTrajectory]. Timestamps and coordinates are delta / varint encoded,
+  /// place strings dictionary encoded, and the file is gzip-compressed
+  /// unless [gzip] is false. Without [path] the file is created in the app's
+  /// cache directory. Like [queryTrajectory], it leaves out the service's
+  /// current batch with `separateProcess`.
+  Future<MapxusTrajectoryExport> exportTrajectory({
+    required DateTime from,
+    required DateTime to,
+    String? floor,
+    bool gzip = true,
+    String? path,
+  }) =>
+      _platform.exportTrajectory(
+          from: from, to: to, floor: floor, gzip: gzip, path: path);
+
+  /// Deletes every stored fix and returns how many were deleted. With
+  /// `separateProcess`, fixes of the service's current batch are written
+  /// afterwards.
+  Future<int> clearTrajectory() => _platform.clearTrajectory();
+
+  /// Returns size and write counters of the trajectory store. With
+  /// `separateProcess` the row count and file size cover every written fix,
+  /// but `enabled`, `pending` and the write counters describe the app
+  /// process, which does not record.
+  Future<MapxusTrajectoryStats> getTrajectoryStats() =>
+      _platform.getTrajectoryStats();
+
+  /// Returns played callbacks, throughput and lag of the trace replays
+  /// started with [MapxusTraceOptions.replayPath].
+  Future<MapxusReplayStats> getReplayStats() => _platform.getReplayStats();
+
   Stream<MapxusEvent> get events => _platform.events;
 }
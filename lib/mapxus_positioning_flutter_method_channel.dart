@@ -1,9 +1,30 @@
+import 'dart:async';
+
 import 'package:flutter/services.dart';
 
 import 'mapxus_positioning_flutter_platform_interface.dart';
+import 'models/mapxus_background_engine_stats_model.dart';
+import 'models/mapxus_buffer_stats_model.dart';
+import 'models/mapxus_duty_cycle_options.dart';
+import 'models/mapxus_event_format.dart';
 import 'models/mapxus_event_model.dart';
+import 'models/mapxus_geofence.dart';
+import 'models/mapxus_latency_options.dart';
+import 'models/mapxus_live_notification_options.dart';
+import 'models/mapxus_location_filter_options.dart';
+import 'models/mapxus_location_filter_stats_model.dart';
 import 'models/mapxus_method_response_model.dart';
+import 'models/mapxus_metrics_model.dart';
+import 'models/mapxus_orientation_options.dart';
+import 'models/mapxus_pending_replay_options.dart';
 import 'models/mapxus_sensor_result_model.dart';
+import 'models/mapxus_smoothing_options.dart';
+import 'models/mapxus_subscription_options.dart';
+import 'models/mapxus_subscription_stats_model.dart';
+import 'models/mapxus_trace_options.dart';
+import 'models/mapxus_trajectory.dart';
+import 'models/mapxus_trajectory_file.dart';
+import 'models/mapxus_upload_options.dart';
 
 /// The Android (and default) implementation of the plugin
 /// using Flutter’s [MethodChannel] and [EventChannel].
@@ -22,14 +43,39 @@ class MethodChannelMapxusPositioningFlutter extends MapxusPositioningFlutterPlat
 
   /// Initializes the Mapxus Positioning SDK with the given [appId] and [secret].
   ///
+  /// [eventFormat] selects the wire format for location and orientation events.
+  /// [orientationOptions] configures native rate limiting / batching of
+  /// compass samples.
+  /// [locationFilter] drops redundant location fixes natively.
+  /// [smoothingOptions] adds Kalman-smoothed coordinates to location events.
+  /// [traceOptions] records the SDK callbacks or replays a recorded trace.
+  /// [latencyOptions] samples event latency into the metrics histograms.
+  ///
   /// Returns a [MapxusMethodResponse] indicating whether initialization succeeded.
   @override
-  Future<MapxusMethodResponse> init(String appId, String secret) async {
+  Future<MapxusMethodResponse> init(
+    String appId,
+    String secret, {
+    MapxusEventFormat eventFormat = MapxusEventFormat.map,
+    MapxusOrientationOptions orientationOptions =
+        const MapxusOrientationOptions(),
+    MapxusLocationFilterOptions locationFilter =
+        const MapxusLocationFilterOptions(),
+    MapxusSmoothingOptions smoothingOptions = const MapxusSmoothingOptions(),
+    MapxusTraceOptions traceOptions = const MapxusTraceOptions(),
+    MapxusLatencyOptions latencyOptions = const MapxusLatencyOptions(),
+  }) async {
     try {
       final result =
       await _channel.invokeMethod<Map<dynamic, dynamic>>('init', {
         'appId': appId,
         'secret': secret,
+        'eventFormat': eventFormat.name,
+        ...orientationOptions.toMap(),
+        ...locationFilter.toMap(),
+        ...smoothingOptions.toMap(),
+        ...traceOptions.toMap(),
+        ...latencyOptions.toMap(),
       });
       return MapxusMethodResponse.fromMap({
         "success": result?['success'] ?? false,
@@ -141,12 +187,55 @@ class MethodChannelMapxusPositioningFlutter extends MapxusPositioningFlutterPlat
   ///
   /// [appId] and [secret] are your Mapxus credentials.
   /// [notificationTitle] and [notificationContent] customise the persistent notification.
+  /// [eventFormat] selects the wire format for location and orientation events.
+  /// [orientationOptions] configures native rate limiting / batching of
+  /// compass samples.
+  /// [bufferCapacity] sets how many events are kept while the app is closed.
+  /// [persistEvents] keeps location fixes in an on-disk journal of at most
+  /// [journalMaxBytes] so they survive process death.
+  /// [warmBackgroundEngine] starts the background engine with the service and
+  /// keeps it cached across app open/close cycles.
+  /// [backgroundBatchSize] and [backgroundLingerMs] control how events are
+  /// batched into calls to the background isolate.
+  /// [dutyCycleOptions] pauses positioning while the device is stationary.
+  /// [locationFilter] drops redundant location fixes natively.
+  /// [smoothingOptions] adds Kalman-smoothed coordinates to location events.
+  /// [trajectoryOptions] records fixes into the native SQLite history.
+  /// [traceOptions] records the SDK callbacks or replays a recorded trace.
+  /// [latencyOptions] samples event latency into the metrics histograms.
+  /// [pendingReplayOptions] paces the delivery of events buffered while the
+  /// app was closed.
+  /// [uploadOptions] sends fixes to an HTTP endpoint natively, in batches.
+  /// [liveNotificationOptions] shows the last fix in the notification.
+  /// [separateProcess] runs the service in its own Android process.
   @override
   Future<MapxusMethodResponse> startForegroundService({
     required String appId,
     required String secret,
     String notificationTitle = 'Mapxus Positioning',
     String notificationContent = 'Location tracking is active',
+    MapxusEventFormat eventFormat = MapxusEventFormat.map,
+    MapxusOrientationOptions orientationOptions =
+        const MapxusOrientationOptions(),
+    int? bufferCapacity,
+    bool persistEvents = false,
+    int? journalMaxBytes,
+    bool warmBackgroundEngine = false,
+    int? backgroundBatchSize,
+    int? backgroundLingerMs,
+    MapxusDutyCycleOptions dutyCycleOptions = const MapxusDutyCycleOptions(),
+    MapxusLocationFilterOptions locationFilter =
+        const MapxusLocationFilterOptions(),
+    MapxusSmoothingOptions smoothingOptions = const MapxusSmoothingOptions(),
+    MapxusTrajectoryOptions trajectoryOptions = const MapxusTrajectoryOptions(),
+    MapxusTraceOptions traceOptions = const MapxusTraceOptions(),
+    MapxusLatencyOptions latencyOptions = const MapxusLatencyOptions(),
+    MapxusPendingReplayOptions pendingReplayOptions =
+        const MapxusPendingReplayOptions(),
+    MapxusUploadOptions uploadOptions = const MapxusUploadOptions(),
+    MapxusLiveNotificationOptions liveNotificationOptions =
+        const MapxusLiveNotificationOptions(),
+    bool separateProcess = false,
   }) async {
     try {
       final result = await _channel.invokeMethod<Map<dynamic, dynamic>>(
@@ -156,6 +245,26 @@ class MethodChannelMapxusPositioningFlutter extends MapxusPositioningFlutterPlat
           'secret': secret,
           'notificationTitle': notificationTitle,
           'notificationContent': notificationContent,
+          'eventFormat': eventFormat.name,
+          ...orientationOptions.toMap(),
+          if (bufferCapacity != null) 'bufferCapacity': bufferCapacity,
+          'persistEvents': persistEvents,
+          if (journalMaxBytes != null) 'journalMaxBytes': journalMaxBytes,
+          'warmBackgroundEngine': warmBackgroundEngine,
+          if (backgroundBatchSize != null)
+            'backgroundBatchSize': backgroundBatchSize,
+          if (backgroundLingerMs != null)
+            'backgroundLingerMs': backgroundLingerMs,
+          ...dutyCycleOptions.toMap(),
+          ...locationFilter.toMap(),
+          ...smoothingOptions.toMap(),
+          ...trajectoryOptions.toMap(),
+          ...traceOptions.toMap(),
+          ...latencyOptions.toMap(),
+          ...pendingReplayOptions.toMap(),
+          ...uploadOptions.toMap(),
+          ...liveNotificationOptions.toMap(),
+          'separateProcess': separateProcess,
         },
       );
       return MapxusMethodResponse.fromMap({
@@ -219,6 +328,203 @@ class MethodChannelMapxusPositioningFlutter extends MapxusPositioningFlutterPlat
     return await _channel.invokeMethod<bool>('isForegroundServiceRunning') ?? false;
   }
 
+  @override
+  Future<MapxusBufferStats> getBufferStats() async {
+    final result = await _channel.invokeMethod<Map<dynamic, dynamic>>('getBufferStats');
+    return MapxusBufferStats.fromMap(result ?? const {});
+  }
+
+  /// Returns startup metrics of the background Flutter engine.
+  @override
+  Future<MapxusBackgroundEngineStats> getBackgroundEngineStats() async {
+    final result = await _channel
+        .invokeMethod<Map<dynamic, dynamic>>('getBackgroundEngineStats');
+    return MapxusBackgroundEngineStats.fromMap(result ?? const {});
+  }
+
+  /// Returns the counters of the native location filters.
+  @override
+  Future<MapxusLocationFilterStats> getLocationFilterStats() async {
+    final result = await _channel
+        .invokeMethod<Map<dynamic, dynamic>>('getLocationFilterStats');
+    return MapxusLocationFilterStats.fromMap(result ?? const {});
+  }
+
+  /// Returns the native hot-path counters and histograms.
+  @override
+  Future<MapxusMetrics> getMetrics({bool reset = false}) async {
+    final result = await _channel.invokeMethod<Map<dynamic, dynamic>>(
+        'getMetrics', {'reset': reset});
+    return MapxusMetrics.fromMap(result ?? const {});
+  }
+
+  /// Opens a named stream served on `mapxus_positioning_stream/<name>`.
+  ///
+  /// The returned broadcast stream registers the native subscription when
+  /// its first listener attaches and unregisters it when the last one
+  /// cancels, so an unused subscription costs nothing natively.
+  @override
+  Stream<MapxusEvent> subscribe(
+    String name, {
+    MapxusSubscriptionOptions options = const MapxusSubscriptionOptions(),
+  }) {
+    late final StreamController<MapxusEvent> controller;
+    StreamSubscription<dynamic>? source;
+    controller = StreamController<MapxusEvent>.broadcast(
+      onListen: () async {
+        try {
+          await _channel.invokeMethod<Map<dynamic, dynamic>>(
+              'subscribe', {'name': name, ...options.toMap()});
+        } catch (e) {
+          controller.addError(e);
+          return;
+        }
+        // Cancelled while the subscribe call was in flight.
+        if (!controller.hasListener) return;
+        source = EventChannel('mapxus_positioning_stream/$name')
+            .receiveBroadcastStream()
+            .map((dynamic raw) => MapxusEvent.decode(raw))
+            .listen(controller.add,
+                onError: controller.addError, onDone: controller.close);
+      },
+      onCancel: () async {
+        await source?.cancel();
+        source = null;
+        await unsubscribe(name);
+      },
+    );
+    return controller.stream;
+  }
+
+  /// Removes a named subscription and closes its stream.
+  @override
+  Future<MapxusMethodResponse> unsubscribe(String name) async {
+    try {
+      final result = await _channel
+          .invokeMethod<Map<dynamic, dynamic>>('unsubscribe', {'name': name});
+      return MapxusMethodResponse.fromMap({
+        "success": result?['success'] ?? false,
+        "message": result?['message'] ?? 'Unknown error'
+      });
+    } catch (e) {
+      return MapxusMethodResponse.fromMap({
+        "success": false,
+        "message": e.toString(),
+      });
+    }
+  }
+
+  /// Returns delivery counters of the named subscriptions.
+  @override
+  Future<MapxusSubscriptionStats> getSubscriptionStats() async {
+    final result = await _channel
+        .invokeMethod<Map<dynamic, dynamic>>('getSubscriptionStats');
+    return MapxusSubscriptionStats.fromMap(result ?? const {});
+  }
+
+  /// Replaces the zones evaluated natively by the foreground service.
+  @override
+  Future<MapxusMethodResponse> setGeofences(
+    List<MapxusGeofence> zones, {
+    double exitMarginMeters = 0,
+    bool backgroundGeofenceOnly = false,
+  }) async {
+    try {
+      final result = await _channel.invokeMethod<Map<dynamic, dynamic>>(
+        'setGeofences',
+        {
+          'zones': zones.map((zone) => zone.toMap()).toList(),
+          'exitMarginMeters': exitMarginMeters,
+          'backgroundGeofenceOnly': backgroundGeofenceOnly,
+        },
+      );
+      return MapxusMethodResponse.fromMap({
+        "success": result?['success'] ?? false,
+        "message": result?['message'] ?? 'Unknown error'
+      });
+    } catch (e) {
+      return MapxusMethodResponse.fromMap({
+        "success": false,
+        "message": e.toString(),
+      });
+    }
+  }
+
+  /// Returns counters of the native geofence engine.
+  @override
+  Future<MapxusGeofenceStats> getGeofenceStats() async {
+    final result =
+        await _channel.invokeMethod<Map<dynamic, dynamic>>('getGeofenceStats');
+    return MapxusGeofenceStats.fromMap(result ?? const {});
+  }
+
+  /// Reads one page of fixes from the native trajectory store.
+  @override
+  Future<MapxusTrajectoryPage> queryTrajectory({
+    required DateTime from,
+    required DateTime to,
+    String? floor,
+    int pageSize = 500,
+    MapxusTrajectoryCursor? after,
+  }) async {
+    final result = await _channel.invokeMethod<Map<dynamic, dynamic>>(
+      'queryTrajectory',
+      {
+        'fromMs': from.millisecondsSinceEpoch,
+        'toMs': to.millisecondsSinceEpoch,
+        'floor': floor,
+        'pageSize': pageSize,
+        ...?after?.toMap(),
+      },
+    );
+    return MapxusTrajectoryPage.fromMap(result ?? const {});
+  }
+
+  /// Exports fixes from the native trajectory store to a `.mxt` file.
+  @override
+  Future<MapxusTrajectoryExport> exportTrajectory({
+    required DateTime from,
+    required DateTime to,
+    String? floor,
+    bool gzip = true,
+    String? path,
+  }) async {
+    final result = await _channel.invokeMethod<Map<dynamic, dynamic>>(
+      'exportTrajectory',
+      {
+        'fromMs': from.millisecondsSinceEpoch,
+        'toMs': to.millisecondsSinceEpoch,
+        'floor': floor,
+        'gzip': gzip,
+        if (path != null) 'path': path,
+      },
+    );
+    return MapxusTrajectoryExport.fromMap(result ?? const {});
+  }
+
+  /// Deletes every fix from the native trajectory store.
+  @override
+  Future<int> clearTrajectory() async {
+    final result =
+        await _channel.invokeMethod<Map<dynamic, dynamic>>('clearTrajectory');
+    return result?['deleted'] ?? 0;
+  }
+
+  /// Returns size and write counters of the native trajectory store.
+  @override
+  Future<MapxusTrajectoryStats> getTrajectoryStats() async {
+    final result = await _channel
+        .invokeMethod<Map<dynamic, dynamic>>('getTrajectoryStats');
+    return MapxusTrajectoryStats.fromMap(result ?? const {});
+  }
+
+  @override
+  Future<MapxusReplayStats> getReplayStats() async {
+    final result =
+        await _channel.invokeMethod<Map<dynamic, dynamic>>('getReplayStats');
+    return MapxusReplayStats.fromMap(result ?? const {});
+  }
+
   /// Listens to event streams from the native side.
   ///
   /// Provides continuous updates, such as location changes,
@@ -226,5 +532,5 @@ class MethodChannelMapxusPositioningFlutter extends MapxusPositioningFlutterPlat
   @override
   Stream<MapxusEvent> get events => _eventChannel
       .receiveBroadcastStream()
-      .map((dynamic map) => MapxusEvent.fromMap(map));
+      .map((dynamic raw) => MapxusEvent.decode(raw));
 }
@@ -1,8 +1,27 @@
 import 'package:plugin_platform_interface/plugin_platform_interface.dart';
 import 'mapxus_positioning_flutter_method_channel.dart';
+import 'models/mapxus_background_engine_stats_model.dart';
+import 'models/mapxus_buffer_stats_model.dart';
+import 'models/mapxus_duty_cycle_options.dart';
+import 'models/mapxus_event_format.dart';
 import 'models/mapxus_event_model.dart';
+import 'models/mapxus_geofence.dart';
+import 'models/mapxus_latency_options.dart';
+import 'models/mapxus_live_notification_options.dart';
+import 'models/mapxus_location_filter_options.dart';
+import 'models/mapxus_location_filter_stats_model.dart';
 import 'models/mapxus_method_response_model.dart';
+import 'models/mapxus_metrics_model.dart';
+import 'models/mapxus_orientation_options.dart';
+import 'models/mapxus_pending_replay_options.dart';
 import 'models/mapxus_sensor_result_model.dart';
+import 'models/mapxus_smoothing_options.dart';
+import 'models/mapxus_subscription_options.dart';
+import 'models/mapxus_subscription_stats_model.dart';
+import 'models/mapxus_trace_options.dart';
+import 'models/mapxus_trajectory.dart';
+import 'models/mapxus_trajectory_file.dart';
+import 'models/mapxus_upload_options.dart';
 
 /// Platform interface for MapxusPositioningFlutter.
 ///
@@ -26,7 +45,16 @@ abstract class MapxusPositioningFlutterPlatform extends PlatformInterface {
     _instance = instance;
   }
 
-  Future<MapxusMethodResponse> init(String appId, String secret);
+  Future<MapxusMethodResponse> init(
+    String appId,
+    String secret, {
+    MapxusEventFormat eventFormat,
+    MapxusOrientationOptions orientationOptions,
+    MapxusLocationFilterOptions locationFilter,
+    MapxusSmoothingOptions smoothingOptions,
+    MapxusTraceOptions traceOptions,
+    MapxusLatencyOptions latencyOptions,
+  });
   Future<MapxusMethodResponse> start();
   Future<MapxusMethodResponse> pause();
   Future<MapxusMethodResponse> resume();
@@ -38,6 +66,24 @@ abstract class MapxusPositioningFlutterPlatform extends PlatformInterface {
     required String secret,
     String notificationTitle,
     String notificationContent,
+    MapxusEventFormat eventFormat,
+    MapxusOrientationOptions orientationOptions,
+    int? bufferCapacity,
+    bool persistEvents,
+    int? journalMaxBytes,
+    bool warmBackgroundEngine,
+    int? backgroundBatchSize,
+    int? backgroundLingerMs,
+    MapxusDutyCycleOptions dutyCycleOptions,
+    MapxusLocationFilterOptions locationFilter,
+    MapxusSmoothingOptions smoothingOptions,
+    MapxusTrajectoryOptions trajectoryOptions,
+    MapxusTraceOptions traceOptions,
+    MapxusLatencyOptions latencyOptions,
+    MapxusPendingReplayOptions pendingReplayOptions,
+    MapxusUploadOptions uploadOptions,
+    MapxusLiveNotificationOptions liveNotificationOptions,
+    bool separateProcess,
   });
   Future<MapxusMethodResponse> stopForegroundService();
 
@@ -52,5 +98,73 @@ abstract class MapxusPositioningFlutterPlatform extends PlatformInterface {
     required int userCallbackHandle,
   });
 
+  /// Returns capacity, fill level and overwrite / drop counters of the native
+  /// buffers used while the app is closed.
+  Future<MapxusBufferStats> getBufferStats();
+
+  /// Returns cold / warm startup-to-first-event latencies of the background
+  /// Flutter engine.
+  Future<MapxusBackgroundEngineStats> getBackgroundEngineStats();
+
+  /// Returns how many location fixes the native filters received, delivered
+  /// and suppressed.
+  Future<MapxusLocationFilterStats> getLocationFilterStats();
+
+  /// Returns the native hot-path counters and histograms. With [reset] the
+  /// native metrics start over after this snapshot.
+  Future<MapxusMetrics> getMetrics({bool reset = false});
+
+  /// Opens a named event stream filtered natively by [options]. The native
+  /// subscription is registered on listen and removed on cancel.
+  Stream<MapxusEvent> subscribe(
+    String name, {
+    MapxusSubscriptionOptions options,
+  });
+
+  /// Removes a named subscription and closes its stream.
+  Future<MapxusMethodResponse> unsubscribe(String name);
+
+  /// Returns delivery counters of the named subscriptions.
+  Future<MapxusSubscriptionStats> getSubscriptionStats();
+
+  /// Replaces the zones evaluated natively by the foreground service.
+  Future<MapxusMethodResponse> setGeofences(
+    List<MapxusGeofence> zones, {
+    double exitMarginMeters,
+    bool backgroundGeofenceOnly,
+  });
+
+  /// Returns counters of the native geofence engine.
+  Future<MapxusGeofenceStats> getGeofenceStats();
+
+  /// Reads one page of stored fixes with [from] <= timestamp < [to].
+  Future<MapxusTrajectoryPage> queryTrajectory({
+    required DateTime from,
+    required DateTime to,
+    String? floor,
+    int pageSize,
+    MapxusTrajectoryCursor? after,
+  });
+
+  /// Writes stored fixes with [from] <= timestamp < [to] to a `.mxt` file
+  /// natively and returns its path.
+  Future<MapxusTrajectoryExport> exportTrajectory({
+    required DateTime from,
+    required DateTime to,
+    String? floor,
+    bool gzip,
+    String? path,
+  });
+
+  /// Deletes every stored fix and returns how many were deleted.
+  Future<int> clearTrajectory();
+
+  /// Returns size and write counters of the native trajectory store.
+  Future<MapxusTrajectoryStats> getTrajectoryStats();
+
+  /// Returns the progress of the trace replays of the client and the
+  /// foreground service.
+  Future<MapxusReplayStats> getReplayStats();
+
   Stream<MapxusEvent> get events;
 }
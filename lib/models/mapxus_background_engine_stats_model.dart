@@ -0,0 +1,76 @@
+/// Startup metrics of the headless Flutter engine used while the app is closed.
+///
+/// Latencies are measured from the first event routed to the background
+/// handler after the app closed, to its hand-off to the Dart isolate. A cold
+/// start includes starting the engine; a warm start reuses the cached engine.
+/// Values are `-1` until the corresponding start has happened.
+class MapxusBackgroundEngineStats {
+  /// Whether warm-start mode (`warmBackgroundEngine`) is enabled.
+  final bool warmMode;
+
+  /// Whether a background engine currently exists.
+  final bool engineRunning;
+
+  /// Whether the background Dart dispatcher has signalled it is ready.
+  final bool engineReady;
+
+  /// Time from engine creation to the Dart "ready" signal, in milliseconds.
+  final int engineStartupMs;
+
+  /// Startup-to-first-event latency of the last cold start, in milliseconds.
+  final int lastColdLatencyMs;
+
+  /// Startup-to-first-event latency of the last warm start, in milliseconds.
+  final int lastWarmLatencyMs;
+
+  /// Number of closed-app sessions that needed a cold engine start.
+  final int coldStarts;
+
+  /// Number of closed-app sessions served by an already running engine.
+  final int warmStarts;
+
+  MapxusBackgroundEngineStats({
+    required this.warmMode,
+    required this.engineRunning,
+    required this.engineReady,
+    required this.engineStartupMs,
+    required this.lastColdLatencyMs,
+    required this.lastWarmLatencyMs,
+    required this.coldStarts,
+    required this.warmStarts,
+  });
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusBackgroundEngineStats.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusBackgroundEngineStats(
+      warmMode: map['warmMode'] ?? false,
+      engineRunning: map['engineRunning'] ?? false,
+      engineReady: map['engineReady'] ?? false,
+      engineStartupMs: map['engineStartupMs'] ?? -1,
+      lastColdLatencyMs: map['lastColdLatencyMs'] ?? -1,
+      lastWarmLatencyMs: map['lastWarmLatencyMs'] ?? -1,
+      coldStarts: map['coldStarts'] ?? 0,
+      warmStarts: map['warmStarts'] ?? 0,
+    );
+  }
+
+  Map<String, dynamic> toMap() {
+    return {
+      'warmMode': warmMode,
+      'engineRunning': engineRunning,
+      'engineReady': engineReady,
+      'engineStartupMs': engineStartupMs,
+      'lastColdLatencyMs': lastColdLatencyMs,
+      'lastWarmLatencyMs': lastWarmLatencyMs,
+      'coldStarts': coldStarts,
+      'warmStarts': warmStarts,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusBackgroundEngineStats(warmMode: $warmMode, engineRunning: $engineRunning, '
+      'engineReady: $engineReady, engineStartupMs: $engineStartupMs, '
+      'lastColdLatencyMs: $lastColdLatencyMs, lastWarmLatencyMs: $lastWarmLatencyMs, '
+      'coldStarts: $coldStarts, warmStarts: $warmStarts)';
+}
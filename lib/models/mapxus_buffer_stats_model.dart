@@ -0,0 +1,70 @@
+/// Counters for one native event buffer.
+class MapxusRingBufferStats {
+  /// Maximum number of events the buffer holds (rounded up to a power of two).
+  final int capacity;
+
+  /// Events currently buffered.
+  final int size;
+
+  /// Oldest events evicted because the buffer was full.
+  final int overwritten;
+
+  /// Events discarded without delivery (e.g. the buffer was cleared).
+  final int dropped;
+
+  MapxusRingBufferStats({
+    required this.capacity,
+    required this.size,
+    required this.overwritten,
+    required this.dropped,
+  });
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusRingBufferStats.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusRingBufferStats(
+      capacity: map['capacity'] ?? 0,
+      size: map['size'] ?? 0,
+      overwritten: map['overwritten'] ?? 0,
+      dropped: map['dropped'] ?? 0,
+    );
+  }
+
+  Map<String, dynamic> toMap() {
+    return {
+      'capacity': capacity,
+      'size': size,
+      'overwritten': overwritten,
+      'dropped': dropped,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusRingBufferStats(capacity: $capacity, size: $size, overwritten: $overwritten, dropped: $dropped)';
+}
+
+/// Snapshot of the native buffers used while the app is closed.
+class MapxusBufferStats {
+  /// Events held for delivery on the next app open (no background handler).
+  final MapxusRingBufferStats pending;
+
+  /// Events queued while the background Flutter engine starts.
+  final MapxusRingBufferStats background;
+
+  MapxusBufferStats({
+    required this.pending,
+    required this.background,
+  });
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusBufferStats.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusBufferStats(
+      pending: MapxusRingBufferStats.fromMap(map['pending'] ?? const {}),
+      background: MapxusRingBufferStats.fromMap(map['background'] ?? const {}),
+    );
+  }
+
+  @override
+  String toString() =>
+      'MapxusBufferStats(pending: $pending, background: $background)';
+}
@@ -0,0 +1,42 @@
+/// Adaptive duty-cycling of the foreground service: positioning is paused
+/// while the device is stationary and resumed when the user moves again.
+///
+/// Requires a step detector sensor and, on Android 10+, the
+/// `ACTIVITY_RECOGNITION` runtime permission. Without either, the option has
+/// no effect and positioning runs continuously. Transitions are reported as
+/// `MapxusDutyCycleEvent`s.
+class MapxusDutyCycleOptions {
+  /// Enables adaptive duty-cycling. Disabled by default.
+  final bool enabled;
+
+  /// How long no step may be detected before positioning is paused.
+  final Duration stationaryDelay;
+
+  /// Number of consecutive steps needed to resume positioning. A
+  /// significant-motion trigger resumes immediately.
+  final int resumeSteps;
+
+  /// Maximum gap between two steps that still counts as consecutive.
+  final Duration resumeWindow;
+
+  const MapxusDutyCycleOptions({
+    this.enabled = false,
+    this.stationaryDelay = const Duration(minutes: 1),
+    this.resumeSteps = 3,
+    this.resumeWindow = const Duration(seconds: 5),
+  });
+
+  /// Convert to the argument map understood by the native side.
+  Map<String, dynamic> toMap() {
+    return {
+      'adaptiveDutyCycle': enabled,
+      'stationaryDelayMs': stationaryDelay.inMilliseconds,
+      'resumeSteps': resumeSteps,
+      'resumeWindowMs': resumeWindow.inMilliseconds,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusDutyCycleOptions(enabled: $enabled, stationaryDelay: $stationaryDelay, resumeSteps: $resumeSteps, resumeWindow: $resumeWindow)';
+}
@@ -0,0 +1,10 @@
+/// Wire format used by the native side for location and orientation events.
+///
+/// [map] is the default and matches every previous release. [binary] sends
+/// each event as a compact little-endian record, which avoids building and
+/// serialising a Map per event on the native main thread. Both formats are
+/// decoded into the same `MapxusEvent` types, so listeners don't change.
+enum MapxusEventFormat {
+  map,
+  binary,
+}
@@ -1,7 +1,110 @@
+import 'dart:convert';
+import 'dart:typed_data';
+
 abstract class MapxusEvent {
   final String type;
   MapxusEvent(this.type);
 
+  /// Decodes an event received from the native side in either wire format:
+  /// a Map (default) or a packed binary record (`MapxusEventFormat.binary`).
+  factory MapxusEvent.decode(dynamic raw) {
+    if (raw is Uint8List) {
+      return MapxusEvent.fromBytes(raw);
+    }
+    return MapxusEvent.fromMap(raw as Map<dynamic, dynamic>);
+  }
+
+  /// Decodes a little-endian record written by the native MapxusEventCodec.
+  ///
+  /// Location record: 4-byte header (type, version, flags, reserved),
+  /// latitude / longitude / accuracy as float64, timestamp as int64, then
+  /// venueId, buildingId and floor as uint16-length-prefixed UTF-8 strings
+  /// (only those whose flag bit is set), then — if flag bit 3 is set — the
+  /// smoothed latitude / longitude / accuracy as float64, then — if flag
+  /// bit 4 is set — elapsedRealtimeNanos as int64.
+  ///
+  /// Orientation record: 4-byte header, orientation as float32, sensor
+  /// accuracy, dropped and merged counts as int32, then — if flag bit 0 is
+  /// set — timestamp and elapsedRealtimeNanos as int64.
+  ///
+  /// Orientation batch record: 4-byte header, sample count, dropped and
+  /// merged as int32, then per sample orientation (float32), accuracy (int32)
+  /// and timestamp (int64).
+  factory MapxusEvent.fromBytes(Uint8List bytes) {
+    final data = ByteData.sublistView(bytes);
+    switch (data.getUint8(0)) {
+      case _binaryTypeLocation:
+        final flags = data.getUint8(2);
+        var offset = 36;
+        String? readString(int flag) {
+          if (flags & flag == 0) return null;
+          final length = data.getUint16(offset, Endian.little);
+          final value = utf8.decode(
+              Uint8List.sublistView(bytes, offset + 2, offset + 2 + length));
+          offset += 2 + length;
+          return value;
+        }
+
+        final latitude = data.getFloat64(4, Endian.little);
+        final longitude = data.getFloat64(12, Endian.little);
+        final accuracy = data.getFloat64(20, Endian.little);
+        final timestamp = data.getInt64(28, Endian.little);
+        final venueId = readString(0x01);
+        final buildingId = readString(0x02);
+        final floor = readString(0x04);
+        final smoothed = flags & 0x08 != 0 && bytes.length >= offset + 24;
+        final elapsed = flags & 0x10 != 0 && bytes.length >= offset + 8;
+        return MapxusLocationEvent(
+          latitude: latitude,
+          longitude: longitude,
+          accuracy: accuracy,
+          venueId: venueId,
+          buildingId: buildingId,
+          floor: floor,
+          timestamp: timestamp,
+          smoothedLatitude:
+              smoothed ? data.getFloat64(offset, Endian.little) : null,
+          smoothedLongitude:
+              smoothed ? data.getFloat64(offset + 8, Endian.little) : null,
+          smoothedAccuracy:
+              smoothed ? data.getFloat64(offset + 16, Endian.little) : null,
+          elapsedRealtimeNanos:
+              elapsed ? data.getInt64(bytes.length - 8, Endian.little) : null,
+        );
+      case _binaryTypeOrientation:
+        final timed = data.getUint8(2) & 0x01 != 0 && bytes.length >= 36;
+        return PositioningOrientationEvent(
+          orientation: data.getFloat32(4, Endian.little),
+          accuracy: data.getInt32(8, Endian.little),
+          dropped: data.getInt32(12, Endian.little),
+          merged: data.getInt32(16, Endian.little),
+          timestamp: timed ? data.getInt64(20, Endian.little) : null,
+          elapsedRealtimeNanos: timed ? data.getInt64(28, Endian.little) : null,
+        );
+      case _binaryTypeOrientationBatch:
+        final count = data.getInt32(4, Endian.little);
+        final samples = <PositioningOrientationEvent>[];
+        for (var i = 0, offset = 16; i < count; i++, offset += 16) {
+          samples.add(PositioningOrientationEvent(
+            orientation: data.getFloat32(offset, Endian.little),
+            accuracy: data.getInt32(offset + 4, Endian.little),
+            timestamp: data.getInt64(offset + 8, Endian.little),
+          ));
+        }
+        return PositioningOrientationBatchEvent(
+          samples: samples,
+          dropped: data.getInt32(8, Endian.little),
+          merged: data.getInt32(12, Endian.little),
+        );
+      default:
+        return MapxusUnknownEvent({'type': 'binary', 'bytes': bytes});
+    }
+  }
+
+  static const int _binaryTypeLocation = 1;
+  static const int _binaryTypeOrientation = 2;
+  static const int _binaryTypeOrientationBatch = 3;
+
   factory MapxusEvent.fromMap(Map<dynamic, dynamic> map) {
     switch (map['type']) {
       case 'locationChange':
@@ -12,6 +115,14 @@ abstract class MapxusEvent {
         return MapxusErrorEvent.fromMap(map);
       case 'onOrientationChange':
         return PositioningOrientationEvent.fromMap(map);
+      case 'orientationBatch':
+        return PositioningOrientationBatchEvent.fromMap(map);
+      case 'dutyCycle':
+        return MapxusDutyCycleEvent.fromMap(map);
+      case 'geofence':
+        return MapxusGeofenceEvent.fromMap(map);
+      case 'backlog':
+        return MapxusBacklogEvent.fromMap(map);
       default:
         return MapxusUnknownEvent(map);
     }
@@ -25,7 +136,25 @@ class MapxusLocationEvent extends MapxusEvent {
   final String? venueId;
   final String? buildingId;
   final String? floor;
+
+  /// Time the SDK delivered the fix, in epoch milliseconds.
   final int timestamp;
+
+  /// Monotonic time (Android `SystemClock.elapsedRealtimeNanos`) the SDK
+  /// delivered the fix; comparable with the [trace] marks.
+  final int? elapsedRealtimeNanos;
+
+  /// Per-stage `elapsedRealtimeNanos` marks (`listener`, `dispatch`, `sink`)
+  /// when `MapxusLatencyOptions.traceMarks` is enabled.
+  final Map<String, int>? trace;
+
+  /// Kalman-smoothed position, set when smoothing is enabled natively (see
+  /// MapxusSmoothingOptions).
+  final double? smoothedLatitude;
+  final double? smoothedLongitude;
+
+  /// One-sigma uncertainty of the smoothed position, in metres.
+  final double? smoothedAccuracy;
   final Map<dynamic, dynamic>? rawData;
 
   MapxusLocationEvent({
@@ -36,9 +165,22 @@ class MapxusLocationEvent extends MapxusEvent {
     this.buildingId,
     this.floor,
     required this.timestamp,
+    this.elapsedRealtimeNanos,
+    this.trace,
+    this.smoothedLatitude,
+    this.smoothedLongitude,
+    this.smoothedAccuracy,
     this.rawData,
   }) : super('location');
 
+  /// Time between two [trace] marks, or null if either is missing.
+  Duration? traceDuration(String from, String to) {
+    final start = trace?[from];
+    final end = trace?[to];
+    if (start == null || end == null) return null;
+    return Duration(microseconds: (end - start) ~/ 1000);
+  }
+
   factory MapxusLocationEvent.fromMap(Map<dynamic, dynamic> map) {
     return MapxusLocationEvent(
       latitude: (map['latitude'] ?? 0).toDouble(),
@@ -48,6 +190,12 @@ class MapxusLocationEvent extends MapxusEvent {
       buildingId: map['buildingId'],
       floor: map['floor'],
       timestamp: map['timestamp'] ?? DateTime.now().millisecondsSinceEpoch,
+      elapsedRealtimeNanos: map['elapsedRealtimeNanos'],
+      trace: (map['trace'] as Map<dynamic, dynamic>?)
+          ?.map((key, value) => MapEntry(key as String, value as int)),
+      smoothedLatitude: (map['smoothedLatitude'] as num?)?.toDouble(),
+      smoothedLongitude: (map['smoothedLongitude'] as num?)?.toDouble(),
+      smoothedAccuracy: (map['smoothedAccuracy'] as num?)?.toDouble(),
       rawData: map
     );
   }
@@ -61,6 +209,11 @@ class MapxusLocationEvent extends MapxusEvent {
       'buildingId': buildingId,
       'floor': floor,
       'timestamp': timestamp,
+      'elapsedRealtimeNanos': elapsedRealtimeNanos,
+      'trace': trace,
+      'smoothedLatitude': smoothedLatitude,
+      'smoothedLongitude': smoothedLongitude,
+      'smoothedAccuracy': smoothedAccuracy,
       'rawData': rawData,
     };
   }
@@ -80,15 +233,196 @@ class PositioningOrientationEvent extends MapxusEvent {
   final double? orientation;
   final int? accuracy;
 
+  /// Time the SDK delivered the sample, in epoch milliseconds.
+  final int? timestamp;
+
+  /// Monotonic time (Android `SystemClock.elapsedRealtimeNanos`) the SDK
+  /// delivered the sample. Not set for samples inside a
+  /// [PositioningOrientationBatchEvent].
+  final int? elapsedRealtimeNanos;
+
+  /// Samples dropped by the native dead-band since the previous emission.
+  final int dropped;
+
+  /// Samples merged by the native rate limit since the previous emission.
+  final int merged;
+
   PositioningOrientationEvent({
     this.orientation,
-    this.accuracy
+    this.accuracy,
+    this.timestamp,
+    this.elapsedRealtimeNanos,
+    this.dropped = 0,
+    this.merged = 0,
   }) : super('orientation');
 
   factory PositioningOrientationEvent.fromMap(Map<dynamic, dynamic> map) {
     return PositioningOrientationEvent(
         orientation: map['orientation'] ?? '',
-        accuracy: map['accuracy'] ?? ''
+        accuracy: map['accuracy'] ?? '',
+        timestamp: map['timestamp'],
+        elapsedRealtimeNanos: map['elapsedRealtimeNanos'],
+        dropped: map['dropped'] ?? 0,
+        merged: map['merged'] ?? 0
+    );
+  }
+}
+
+/// Several compass samples collected natively over one batch window
+/// (see `MapxusOrientationOptions.batchWindow`) and delivered in one message.
+class PositioningOrientationBatchEvent extends MapxusEvent {
+  final List<PositioningOrientationEvent> samples;
+
+  /// Samples dropped by the native dead-band during this window.
+  final int dropped;
+
+  /// Samples merged by the native rate limit during this window.
+  final int merged;
+
+  PositioningOrientationBatchEvent({
+    required this.samples,
+    this.dropped = 0,
+    this.merged = 0,
+  }) : super('orientationBatch');
+
+  /// The newest sample of the batch, or null for an empty batch.
+  PositioningOrientationEvent? get latest =>
+      samples.isEmpty ? null : samples.last;
+
+  factory PositioningOrientationBatchEvent.fromMap(Map<dynamic, dynamic> map) {
+    final List<dynamic> orientations = map['orientations'] ?? const [];
+    final List<dynamic> accuracies = map['accuracies'] ?? const [];
+    final List<dynamic> timestamps = map['timestamps'] ?? const [];
+    return PositioningOrientationBatchEvent(
+      samples: [
+        for (var i = 0; i < orientations.length; i++)
+          PositioningOrientationEvent(
+            orientation: (orientations[i] as num).toDouble(),
+            accuracy: accuracies[i] as int,
+            timestamp: timestamps[i] as int,
+          ),
+      ],
+      dropped: map['dropped'] ?? 0,
+      merged: map['merged'] ?? 0,
+    );
+  }
+}
+
+/// Emitted by the foreground service when adaptive duty-cycling pauses
+/// (`stationary`) or resumes (`moving`) positioning.
+class MapxusDutyCycleEvent extends MapxusEvent {
+  /// The state just entered: `moving` or `stationary`.
+  final String state;
+
+  /// What caused the transition: `idle`, `steps` or `significant_motion`.
+  final String reason;
+
+  /// The state just left.
+  final String previousState;
+
+  /// Time spent in [previousState], in milliseconds.
+  final int previousStateMs;
+
+  /// Total time spent moving (positioning running) since the service started.
+  final int movingMs;
+
+  /// Total time spent stationary (positioning paused) since the service started.
+  final int stationaryMs;
+
+  final int timestamp;
+
+  MapxusDutyCycleEvent({
+    required this.state,
+    required this.reason,
+    required this.previousState,
+    required this.previousStateMs,
+    required this.movingMs,
+    required this.stationaryMs,
+    required this.timestamp,
+  }) : super('dutyCycle');
+
+  factory MapxusDutyCycleEvent.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusDutyCycleEvent(
+      state: map['state'] ?? '',
+      reason: map['reason'] ?? '',
+      previousState: map['previousState'] ?? '',
+      previousStateMs: map['previousStateMs'] ?? 0,
+      movingMs: map['movingMs'] ?? 0,
+      stationaryMs: map['stationaryMs'] ?? 0,
+      timestamp: map['timestamp'] ?? DateTime.now().millisecondsSinceEpoch,
+    );
+  }
+}
+
+/// A zone transition detected natively by the foreground service (see
+/// `MapxusGeofence`).
+class MapxusGeofenceEvent extends MapxusEvent {
+  /// `enter`, `exit` or `dwell`.
+  final String transition;
+
+  final String zoneId;
+  final String? venueId;
+  final String? buildingId;
+  final String? floor;
+
+  /// Position that triggered the transition. For a dwell fired while no
+  /// fixes arrive (device stationary) this is the last known position.
+  final double latitude;
+  final double longitude;
+  final int timestamp;
+
+  MapxusGeofenceEvent({
+    required this.transition,
+    required this.zoneId,
+    this.venueId,
+    this.buildingId,
+    this.floor,
+    required this.latitude,
+    required this.longitude,
+    required this.timestamp,
+  }) : super('geofence');
+
+  factory MapxusGeofenceEvent.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusGeofenceEvent(
+      transition: map['transition'] ?? '',
+      zoneId: map['zoneId'] ?? '',
+      venueId: map['venueId'],
+      buildingId: map['buildingId'],
+      floor: map['floor'],
+      latitude: (map['latitude'] ?? 0).toDouble(),
+      longitude: (map['longitude'] ?? 0).toDouble(),
+      timestamp: map['timestamp'] ?? DateTime.now().millisecondsSinceEpoch,
+    );
+  }
+
+  Map<String, dynamic> toMap() {
+    return {
+      'transition': transition,
+      'zoneId': zoneId,
+      'venueId': venueId,
+      'buildingId': buildingId,
+      'floor': floor,
+      'latitude': latitude,
+      'longitude': longitude,
+      'timestamp': timestamp,
+    };
+  }
+}
+
+/// Events buffered natively while the app was closed, delivered in one
+/// message when the app opens (`MapxusPendingReplayOptions.collapse`).
+class MapxusBacklogEvent extends MapxusEvent {
+  /// The buffered events, oldest first.
+  final List<MapxusEvent> events;
+
+  MapxusBacklogEvent({required this.events}) : super('backlog');
+
+  int get count => events.length;
+
+  factory MapxusBacklogEvent.fromMap(Map<dynamic, dynamic> map) {
+    final List<dynamic> events = map['events'] ?? const [];
+    return MapxusBacklogEvent(
+      events: [for (final event in events) MapxusEvent.decode(event)],
     );
   }
 }
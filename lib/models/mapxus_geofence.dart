@@ -0,0 +1,111 @@
+/// A zone evaluated natively by the foreground service.
+///
+/// A zone belongs to exactly one venue / building / floor: a fix only enters
+/// it when its venueId, buildingId and floor code all match (a `null` field
+/// only matches fixes where the SDK reports `null` too). Transitions arrive
+/// as `MapxusGeofenceEvent`s.
+class MapxusGeofence {
+  /// Unique id, reported back in every `MapxusGeofenceEvent`.
+  final String id;
+
+  final String? venueId;
+  final String? buildingId;
+
+  /// Floor code, as in `MapxusLocationEvent.floor`.
+  final String? floor;
+
+  /// Fires a `dwell` transition once the user has stayed inside this long.
+  /// [Duration.zero] disables dwell for this zone.
+  final Duration dwell;
+
+  /// Circle centre and radius in metres; unused for polygons.
+  final double? latitude;
+  final double? longitude;
+  final double? radiusMeters;
+
+  /// Polygon corners as (latitude, longitude) pairs; null for circles.
+  final List<(double, double)>? vertices;
+
+  /// A circular zone around [latitude] / [longitude].
+  const MapxusGeofence.circle({
+    required this.id,
+    this.venueId,
+    this.buildingId,
+    this.floor,
+    required double this.latitude,
+    required double this.longitude,
+    required double this.radiusMeters,
+    this.dwell = Duration.zero,
+  }) : vertices = null;
+
+  /// A polygon zone with at least three [vertices]; it is closed implicitly.
+  const MapxusGeofence.polygon({
+    required this.id,
+    this.venueId,
+    this.buildingId,
+    this.floor,
+    required List<(double, double)> this.vertices,
+    this.dwell = Duration.zero,
+  })  : latitude = null,
+        longitude = null,
+        radiusMeters = null;
+
+  /// Convert to the argument map understood by the native side.
+  Map<String, dynamic> toMap() {
+    return {
+      'id': id,
+      'venueId': venueId,
+      'buildingId': buildingId,
+      'floor': floor,
+      'dwellMs': dwell.inMilliseconds,
+      if (vertices != null)
+        'vertices': [for (final (lat, lon) in vertices!) ...[lat, lon]]
+      else ...{
+        'latitude': latitude,
+        'longitude': longitude,
+        'radius': radiusMeters,
+      },
+    };
+  }
+
+  @override
+  String toString() => vertices != null
+      ? 'MapxusGeofence.polygon(id: $id, floor: $floor, vertices: ${vertices!.length}, dwell: $dwell)'
+      : 'MapxusGeofence.circle(id: $id, floor: $floor, latitude: $latitude, longitude: $longitude, radiusMeters: $radiusMeters, dwell: $dwell)';
+}
+
+/// Counters of the native geofence engine.
+class MapxusGeofenceStats {
+  /// Zones currently evaluated.
+  final int zones;
+
+  /// Fixes evaluated against the zones.
+  final int evaluated;
+
+  final int enters;
+  final int exits;
+  final int dwells;
+
+  MapxusGeofenceStats({
+    required this.zones,
+    required this.evaluated,
+    required this.enters,
+    required this.exits,
+    required this.dwells,
+  });
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusGeofenceStats.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusGeofenceStats(
+      zones: map['zones'] ?? 0,
+      evaluated: map['evaluated'] ?? 0,
+      enters: map['enters'] ?? 0,
+      exits: map['exits'] ?? 0,
+      dwells: map['dwells'] ?? 0,
+    );
+  }
+
+  @override
+  String toString() =>
+      'MapxusGeofenceStats(zones: $zones, evaluated: $evaluated, enters: $enters, exits: $exits, dwells: $dwells)';
+}
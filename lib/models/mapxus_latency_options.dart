@@ -0,0 +1,34 @@
+/// Native latency measurement between the SDK callback and the hand-over of
+/// an event to Dart.
+///
+/// Location and orientation events always carry `elapsedRealtimeNanos`, the
+/// monotonic time of the SDK callback that produced them. One in
+/// [sampleEvery] events records its age when it is handed over into the
+/// `latency*Us` histograms of `getMetrics` — per route: the plugin's own
+/// client, the foreground service's live stream, events buffered while the
+/// app was closed, and the background isolate.
+class MapxusLatencyOptions {
+  /// Records one in this many events; `0` disables recording.
+  final int sampleEvery;
+
+  /// Adds per-stage marks (`listener`, `dispatch`, `sink`) to every location
+  /// event in the Map format, available as [MapxusLocationEvent.trace].
+  final bool traceMarks;
+
+  const MapxusLatencyOptions({
+    this.sampleEvery = 16,
+    this.traceMarks = false,
+  });
+
+  /// Convert to the argument map understood by the native side.
+  Map<String, dynamic> toMap() {
+    return {
+      'latencySampleEvery': sampleEvery,
+      'latencyTraceMarks': traceMarks,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusLatencyOptions(sampleEvery: $sampleEvery, traceMarks: $traceMarks)';
+}
@@ -0,0 +1,34 @@
+/// Live status in the foreground service's notification.
+///
+/// When [enabled], the notification text is replaced by the floor, building,
+/// accuracy and age of the last fix once the first fix arrives, e.g.
+/// `L2 · building 4f1c8e3b · ±3 m · 20 s ago` (ids are shown in full). The
+/// notification title stays `notificationTitle`.
+///
+/// The notification is updated at most once per [minInterval], and only when
+/// its text changes. The age is shown in coarse steps (10 s, then minutes),
+/// so a device standing still causes few updates.
+class MapxusLiveNotificationOptions {
+  /// Show the live status in the notification.
+  final bool enabled;
+
+  /// Shortest time between two notification updates (at least 1 second).
+  final Duration minInterval;
+
+  const MapxusLiveNotificationOptions({
+    this.enabled = false,
+    this.minInterval = const Duration(seconds: 5),
+  });
+
+  /// Convert to the argument map understood by the native side.
+  Map<String, dynamic> toMap() {
+    return {
+      'liveNotification': enabled,
+      'liveNotificationIntervalMs': minInterval.inMilliseconds,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusLiveNotificationOptions(enabled: $enabled, minInterval: $minInterval)';
+}
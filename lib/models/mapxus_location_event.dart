@@ -7,6 +7,9 @@ class MapxusLocationEvent {
   final String? buildingId;
   final String? floor;
   final int timestamp;
+  final double? smoothedLatitude;
+  final double? smoothedLongitude;
+  final double? smoothedAccuracy;
 
   MapxusLocationEvent({
     required this.type,
@@ -17,6 +20,9 @@ class MapxusLocationEvent {
     this.buildingId,
     this.floor,
     required this.timestamp,
+    this.smoothedLatitude,
+    this.smoothedLongitude,
+    this.smoothedAccuracy,
   });
 
   /// Factory constructor to parse from Map received from EventChannel
@@ -30,6 +36,9 @@ class MapxusLocationEvent {
       buildingId: map['buildingId'],
       floor: map['floor'],
       timestamp: map['timestamp'] ?? DateTime.now().millisecondsSinceEpoch,
+      smoothedLatitude: map['smoothedLatitude']?.toDouble(),
+      smoothedLongitude: map['smoothedLongitude']?.toDouble(),
+      smoothedAccuracy: map['smoothedAccuracy']?.toDouble(),
     );
   }
 
@@ -44,11 +53,14 @@ class MapxusLocationEvent {
       'buildingId': buildingId,
       'floor': floor,
       'timestamp': timestamp,
+      'smoothedLatitude': smoothedLatitude,
+      'smoothedLongitude': smoothedLongitude,
+      'smoothedAccuracy': smoothedAccuracy,
     };
   }
 
   @override
   String toString() {
-    return 'MapxusLocationEvent(type: $type, latitude: $latitude, longitude: $longitude, accuracy: $accuracy, venueId: $venueId, buildingId: $buildingId, floor: $floor, timestamp: $timestamp)';
+    return 'MapxusLocationEvent(type: $type, latitude: $latitude, longitude: $longitude, accuracy: $accuracy, venueId: $venueId, buildingId: $buildingId, floor: $floor, timestamp: $timestamp, smoothedLatitude: $smoothedLatitude, smoothedLongitude: $smoothedLongitude, smoothedAccuracy: $smoothedAccuracy)';
   }
 }
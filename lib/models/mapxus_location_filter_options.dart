@@ -0,0 +1,46 @@
+/// Native-side suppression of redundant location fixes before they are sent
+/// over the platform channel.
+///
+/// When [enabled], a fix is always delivered if it is the first one or its
+/// venue, building or floor differs from the last delivered fix. Otherwise
+/// exact duplicates are dropped, and so are fixes that arrive sooner than
+/// [minTime] or move less than [minDistanceMeters] (unless accuracy improved
+/// by at least [accuracyImprovementMeters]).
+class MapxusLocationFilterOptions {
+  /// Enables the filter. Disabled by default: every fix is delivered.
+  final bool enabled;
+
+  /// Minimum movement from the last delivered fix, in metres. `0` disables
+  /// the distance check.
+  final double minDistanceMeters;
+
+  /// Minimum time since the last delivered fix. [Duration.zero] disables the
+  /// time check.
+  final Duration minTime;
+
+  /// A fix that moved less than [minDistanceMeters] is still delivered when
+  /// its accuracy is better by at least this many metres. `0` disables the
+  /// override.
+  final double accuracyImprovementMeters;
+
+  const MapxusLocationFilterOptions({
+    this.enabled = false,
+    this.minDistanceMeters = 0,
+    this.minTime = Duration.zero,
+    this.accuracyImprovementMeters = 0,
+  });
+
+  /// Convert to the argument map understood by the native side.
+  Map<String, dynamic> toMap() {
+    return {
+      'locationFilterEnabled': enabled,
+      'locationMinDistanceMeters': minDistanceMeters,
+      'locationMinTimeMs': minTime.inMilliseconds,
+      'locationAccuracyImprovementMeters': accuracyImprovementMeters,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusLocationFilterOptions(enabled: $enabled, minDistanceMeters: $minDistanceMeters, minTime: $minTime, accuracyImprovementMeters: $accuracyImprovementMeters)';
+}
@@ -0,0 +1,97 @@
+/// Counters of one native location filter.
+class MapxusLocationFilterCounters {
+  /// Whether the filter is currently enabled.
+  final bool enabled;
+
+  /// Fixes received from the SDK.
+  final int received;
+
+  /// Fixes passed on as events.
+  final int emitted;
+
+  /// Fixes dropped for any reason.
+  final int suppressed;
+
+  /// Fixes identical to the last delivered one.
+  final int suppressedDuplicate;
+
+  /// Fixes dropped by the minimum time.
+  final int suppressedTime;
+
+  /// Fixes dropped by the minimum distance.
+  final int suppressedDistance;
+
+  /// Fixes delivered because venue, building or floor changed.
+  final int forcedPlaceChange;
+
+  MapxusLocationFilterCounters({
+    required this.enabled,
+    required this.received,
+    required this.emitted,
+    required this.suppressed,
+    required this.suppressedDuplicate,
+    required this.suppressedTime,
+    required this.suppressedDistance,
+    required this.forcedPlaceChange,
+  });
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusLocationFilterCounters.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusLocationFilterCounters(
+      enabled: map['enabled'] ?? false,
+      received: map['received'] ?? 0,
+      emitted: map['emitted'] ?? 0,
+      suppressed: map['suppressed'] ?? 0,
+      suppressedDuplicate: map['suppressedDuplicate'] ?? 0,
+      suppressedTime: map['suppressedTime'] ?? 0,
+      suppressedDistance: map['suppressedDistance'] ?? 0,
+      forcedPlaceChange: map['forcedPlaceChange'] ?? 0,
+    );
+  }
+
+  Map<String, dynamic> toMap() {
+    return {
+      'enabled': enabled,
+      'received': received,
+      'emitted': emitted,
+      'suppressed': suppressed,
+      'suppressedDuplicate': suppressedDuplicate,
+      'suppressedTime': suppressedTime,
+      'suppressedDistance': suppressedDistance,
+      'forcedPlaceChange': forcedPlaceChange,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusLocationFilterCounters(enabled: $enabled, received: $received, emitted: $emitted, suppressed: $suppressed, '
+      'suppressedDuplicate: $suppressedDuplicate, suppressedTime: $suppressedTime, '
+      'suppressedDistance: $suppressedDistance, forcedPlaceChange: $forcedPlaceChange)';
+}
+
+/// Snapshot of the native location filters.
+class MapxusLocationFilterStats {
+  /// Filter of the client started with `init` / `start`.
+  final MapxusLocationFilterCounters foreground;
+
+  /// Filter of the foreground service's client.
+  final MapxusLocationFilterCounters service;
+
+  MapxusLocationFilterStats({
+    required this.foreground,
+    required this.service,
+  });
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusLocationFilterStats.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusLocationFilterStats(
+      foreground:
+          MapxusLocationFilterCounters.fromMap(map['foreground'] ?? const {}),
+      service: MapxusLocationFilterCounters.fromMap(map['service'] ?? const {}),
+    );
+  }
+
+  @override
+  String toString() =>
+      'MapxusLocationFilterStats(foreground: $foreground, service: $service)';
+}
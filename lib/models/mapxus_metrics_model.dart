@@ -0,0 +1,133 @@
+/// Distribution of one native histogram.
+///
+/// Values are grouped in power-of-two buckets, so percentiles are the upper
+/// bound of the bucket they fall in rather than exact values.
+class MapxusHistogramSnapshot {
+  /// Number of recorded values.
+  final int count;
+
+  /// Sum of all recorded values.
+  final int sum;
+
+  /// Largest recorded value.
+  final int max;
+
+  /// Average of the recorded values (0 when empty).
+  final double mean;
+
+  final int p50;
+  final int p90;
+  final int p99;
+
+  /// Non-empty buckets as bucket upper bound → number of values.
+  final Map<int, int> buckets;
+
+  MapxusHistogramSnapshot({
+    required this.count,
+    required this.sum,
+    required this.max,
+    required this.mean,
+    required this.p50,
+    required this.p90,
+    required this.p99,
+    required this.buckets,
+  });
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusHistogramSnapshot.fromMap(Map<dynamic, dynamic> map) {
+    final buckets = <int, int>{};
+    for (final dynamic bucket in (map['buckets'] as List<dynamic>? ?? const [])) {
+      final pair = bucket as List<dynamic>;
+      buckets[pair[0] as int] = pair[1] as int;
+    }
+    return MapxusHistogramSnapshot(
+      count: map['count'] ?? 0,
+      sum: map['sum'] ?? 0,
+      max: map['max'] ?? 0,
+      mean: (map['mean'] as num?)?.toDouble() ?? 0.0,
+      p50: map['p50'] ?? 0,
+      p90: map['p90'] ?? 0,
+      p99: map['p99'] ?? 0,
+      buckets: buckets,
+    );
+  }
+
+  Map<String, dynamic> toMap() {
+    return {
+      'count': count,
+      'sum': sum,
+      'max': max,
+      'mean': mean,
+      'p50': p50,
+      'p90': p90,
+      'p99': p99,
+      'buckets': buckets.entries.map((e) => [e.key, e.value]).toList(),
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusHistogramSnapshot(count: $count, mean: ${mean.toStringAsFixed(1)}, '
+      'p50: $p50, p90: $p90, p99: $p99, max: $max)';
+}
+
+/// Snapshot of the native hot-path metrics returned by `getMetrics`.
+///
+/// Counter and histogram names are the camelCase form of the native enum
+/// constants, e.g. `eventsDispatched`, `routedLive`, `mainFlushBatchSize`,
+/// `backgroundFirstEventColdMs`.
+class MapxusMetrics {
+  /// Monotonic counters since process start or the last reset.
+  final Map<String, int> counters;
+
+  /// Value distributions since process start or the last reset.
+  final Map<String, MapxusHistogramSnapshot> histograms;
+
+  /// Current buffer levels and engine state; never reset.
+  final Map<String, dynamic> gauges;
+
+  /// Milliseconds covered by this snapshot.
+  final int periodMs;
+
+  MapxusMetrics({
+    required this.counters,
+    required this.histograms,
+    required this.gauges,
+    required this.periodMs,
+  });
+
+  /// Value of a counter, 0 if unknown.
+  int counter(String name) => counters[name] ?? 0;
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusMetrics.fromMap(Map<dynamic, dynamic> map) {
+    final counters = <String, int>{};
+    (map['counters'] as Map<dynamic, dynamic>? ?? const {})
+        .forEach((key, value) => counters[key as String] = value as int);
+
+    final histograms = <String, MapxusHistogramSnapshot>{};
+    (map['histograms'] as Map<dynamic, dynamic>? ?? const {}).forEach(
+        (key, value) => histograms[key as String] =
+            MapxusHistogramSnapshot.fromMap(value as Map<dynamic, dynamic>));
+
+    return MapxusMetrics(
+      counters: counters,
+      histograms: histograms,
+      gauges: Map<String, dynamic>.from(map['gauges'] ?? const {}),
+      periodMs: map['periodMs'] ?? 0,
+    );
+  }
+
+  Map<String, dynamic> toMap() {
+    return {
+      'counters': counters,
+      'histograms': histograms.map((key, value) => MapEntry(key, value.toMap())),
+      'gauges': gauges,
+      'periodMs': periodMs,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusMetrics(periodMs: $periodMs, counters: $counters, histograms: $histograms, gauges: $gauges)';
+}
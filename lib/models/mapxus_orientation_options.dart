@@ -0,0 +1,39 @@
+/// Native-side thinning of compass samples before they cross the platform
+/// channel.
+///
+/// All stages are disabled by default, which keeps the previous behaviour of
+/// one event per sensor sample.
+class MapxusOrientationOptions {
+  /// Maximum number of orientation emissions per second. `0` disables the
+  /// limit. Samples arriving faster are merged and only the newest one is
+  /// delivered when the interval elapses.
+  final double maxRateHz;
+
+  /// Samples that differ from the last delivered heading by less than this
+  /// many degrees (with the same sensor accuracy) are dropped. `0` disables
+  /// the dead-band.
+  final double deadBandDegrees;
+
+  /// When non-zero, samples are collected for this long and delivered as one
+  /// `PositioningOrientationBatchEvent` instead of individual events.
+  final Duration batchWindow;
+
+  const MapxusOrientationOptions({
+    this.maxRateHz = 0,
+    this.deadBandDegrees = 0,
+    this.batchWindow = Duration.zero,
+  });
+
+  /// Convert to the argument map understood by the native side.
+  Map<String, dynamic> toMap() {
+    return {
+      'orientationMaxRateHz': maxRateHz,
+      'orientationDeadBandDegrees': deadBandDegrees,
+      'orientationBatchWindowMs': batchWindow.inMilliseconds,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusOrientationOptions(maxRateHz: $maxRateHz, deadBandDegrees: $deadBandDegrees, batchWindow: $batchWindow)';
+}
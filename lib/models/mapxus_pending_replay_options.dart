@@ -0,0 +1,39 @@
+/// How the events buffered natively while the app was closed (see
+/// `bufferCapacity` of `startForegroundService`) reach the [events] stream
+/// when the app opens again.
+///
+/// The backlog is sent after `listen` returns, [chunkSize] events per
+/// main-thread message, so the app's first frames are not held up by it.
+/// Live events keep arriving meanwhile and can interleave with the backlog;
+/// use each event's `timestamp` for ordering.
+class MapxusPendingReplayOptions {
+  /// Events sent per main-thread message.
+  final int chunkSize;
+
+  /// Sends the newest location fix before the rest, so the current position
+  /// shows immediately and the history backfills afterwards, oldest first.
+  final bool latestFirst;
+
+  /// Sends the history as a single [MapxusBacklogEvent] instead of one event
+  /// each.
+  final bool collapse;
+
+  const MapxusPendingReplayOptions({
+    this.chunkSize = 32,
+    this.latestFirst = false,
+    this.collapse = false,
+  });
+
+  /// Convert to the argument map understood by the native side.
+  Map<String, dynamic> toMap() {
+    return {
+      'pendingChunkSize': chunkSize,
+      'pendingLatestFirst': latestFirst,
+      'pendingCollapse': collapse,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusPendingReplayOptions(chunkSize: $chunkSize, latestFirst: $latestFirst, collapse: $collapse)';
+}
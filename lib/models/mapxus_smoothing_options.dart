@@ -0,0 +1,39 @@
+/// Native-side smoothing of location fixes with a constant-velocity Kalman
+/// filter.
+///
+/// When [enabled], every delivered [MapxusLocationEvent] carries
+/// `smoothedLatitude`, `smoothedLongitude` and `smoothedAccuracy` next to the
+/// raw values. The filter restarts whenever the venue, building or floor
+/// changes, so positions from different floors are never blended.
+class MapxusSmoothingOptions {
+  /// Enables smoothing. Disabled by default: events only carry raw values.
+  final bool enabled;
+
+  /// Expected acceleration noise in m/s². Higher values follow turns and
+  /// speed changes faster; lower values smooth more. Defaults to `1.0`,
+  /// which suits walking.
+  final double processNoise;
+
+  /// Uses the compass heading to constrain the direction of travel while
+  /// the user is moving.
+  final bool fuseHeading;
+
+  const MapxusSmoothingOptions({
+    this.enabled = false,
+    this.processNoise = 1.0,
+    this.fuseHeading = true,
+  });
+
+  /// Convert to the argument map understood by the native side.
+  Map<String, dynamic> toMap() {
+    return {
+      'smoothingEnabled': enabled,
+      'smoothingProcessNoise': processNoise,
+      'smoothingFuseHeading': fuseHeading,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusSmoothingOptions(enabled: $enabled, processNoise: $processNoise, fuseHeading: $fuseHeading)';
+}
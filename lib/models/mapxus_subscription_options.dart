@@ -0,0 +1,76 @@
+/// Event categories a named subscription can select.
+enum MapxusEventType {
+  /// `MapxusLocationEvent`.
+  location,
+
+  /// `PositioningOrientationEvent` and `PositioningOrientationBatchEvent`.
+  orientation,
+
+  /// State changes, including duty-cycle pause / resume.
+  state,
+
+  /// `PositioningErrorEvent`.
+  error,
+
+  /// `MapxusGeofenceEvent`.
+  geofence,
+}
+
+/// What a subscription does with a new event while its buffer is full.
+enum MapxusOverflowPolicy {
+  /// Evict the oldest buffered event (keeps the most recent ones).
+  dropOldest,
+
+  /// Discard the new event (keeps the first ones).
+  dropNewest,
+}
+
+/// Native-side filtering for one named subscription stream.
+///
+/// Events that don't match are dropped before they cross the platform
+/// channel, so e.g. a map widget that only needs orientation never receives
+/// location traffic.
+class MapxusSubscriptionOptions {
+  /// Event types delivered to this subscription.
+  final Set<MapxusEventType> types;
+
+  /// Minimum interval between two delivered location events, and separately
+  /// between two orientation events. Events arriving sooner are dropped.
+  /// State, error and geofence events are never throttled. [Duration.zero]
+  /// disables throttling.
+  final Duration throttle;
+
+  /// Events kept natively while the subscription is registered but its
+  /// stream is not (yet) listened to. `0` drops them instead.
+  final int bufferCapacity;
+
+  /// Applies when the buffer is full.
+  final MapxusOverflowPolicy overflow;
+
+  const MapxusSubscriptionOptions({
+    this.types = const {
+      MapxusEventType.location,
+      MapxusEventType.orientation,
+      MapxusEventType.state,
+      MapxusEventType.error,
+      MapxusEventType.geofence,
+    },
+    this.throttle = Duration.zero,
+    this.bufferCapacity = 64,
+    this.overflow = MapxusOverflowPolicy.dropOldest,
+  });
+
+  /// Convert to the argument map understood by the native side.
+  Map<String, dynamic> toMap() {
+    return {
+      'types': types.map((type) => type.name).toList(),
+      'throttleMs': throttle.inMilliseconds,
+      'bufferCapacity': bufferCapacity,
+      'overflow': overflow.name,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusSubscriptionOptions(types: $types, throttle: $throttle, bufferCapacity: $bufferCapacity, overflow: $overflow)';
+}
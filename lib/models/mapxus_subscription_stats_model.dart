@@ -0,0 +1,90 @@
+/// Counters of one named subscription.
+class MapxusSubscriptionCounters {
+  final String name;
+
+  /// Whether the subscription's stream is currently listened to.
+  final bool listening;
+
+  /// Events sent to the stream.
+  final int delivered;
+
+  /// Events whose type is not selected by the subscription.
+  final int filtered;
+
+  /// Events dropped by the throttle.
+  final int throttled;
+
+  /// Events currently held while the stream is not listened to.
+  final int buffered;
+
+  /// Events lost because the buffer was full or disabled.
+  final int bufferDropped;
+
+  MapxusSubscriptionCounters({
+    required this.name,
+    required this.listening,
+    required this.delivered,
+    required this.filtered,
+    required this.throttled,
+    required this.buffered,
+    required this.bufferDropped,
+  });
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusSubscriptionCounters.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusSubscriptionCounters(
+      name: map['name'] ?? '',
+      listening: map['listening'] ?? false,
+      delivered: map['delivered'] ?? 0,
+      filtered: map['filtered'] ?? 0,
+      throttled: map['throttled'] ?? 0,
+      buffered: map['buffered'] ?? 0,
+      bufferDropped: map['bufferDropped'] ?? 0,
+    );
+  }
+
+  Map<String, dynamic> toMap() {
+    return {
+      'name': name,
+      'listening': listening,
+      'delivered': delivered,
+      'filtered': filtered,
+      'throttled': throttled,
+      'buffered': buffered,
+      'bufferDropped': bufferDropped,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusSubscriptionCounters(name: $name, listening: $listening, delivered: $delivered, '
+      'filtered: $filtered, throttled: $throttled, buffered: $buffered, bufferDropped: $bufferDropped)';
+}
+
+/// Snapshot of the native fan-out hub.
+class MapxusSubscriptionStats {
+  /// Whether the main `events` stream is listened to.
+  final bool primaryListening;
+
+  /// Named subscriptions in registration order.
+  final List<MapxusSubscriptionCounters> subscriptions;
+
+  MapxusSubscriptionStats({
+    required this.primaryListening,
+    required this.subscriptions,
+  });
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusSubscriptionStats.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusSubscriptionStats(
+      primaryListening: map['primaryListening'] ?? false,
+      subscriptions: (map['subscriptions'] as List<dynamic>? ?? const [])
+          .map((s) => MapxusSubscriptionCounters.fromMap(s as Map<dynamic, dynamic>))
+          .toList(),
+    );
+  }
+
+  @override
+  String toString() =>
+      'MapxusSubscriptionStats(primaryListening: $primaryListening, subscriptions: $subscriptions)';
+}
@@ -0,0 +1,118 @@
+/// Record / replay of raw positioning SDK callbacks.
+///
+/// With [recordPath] every callback of the SDK client (state, errors,
+/// orientation and location, before any native filtering) is appended to a
+/// trace file. With [replayPath] a recorded trace is played instead of
+/// starting the SDK, so the whole native event pipeline — filters,
+/// smoothing, geofences, trajectory store, channels — runs on captured data,
+/// off-site and without the SDK.
+class MapxusTraceOptions {
+  /// Trace file to append the SDK callbacks to, or null to not record.
+  final String? recordPath;
+
+  /// Trace file to play instead of starting the SDK, or null to use the SDK.
+  final String? replayPath;
+
+  /// Playback speed: `1` is real time, `N` is N times faster and `0` plays
+  /// as fast as the native pipeline accepts callbacks.
+  final double replaySpeed;
+
+  /// Starts over at the end of the trace instead of reporting `STOPPED`.
+  final bool replayLoop;
+
+  const MapxusTraceOptions({
+    this.recordPath,
+    this.replayPath,
+    this.replaySpeed = 1.0,
+    this.replayLoop = false,
+  });
+
+  /// Convert to the argument map understood by the native side.
+  Map<String, dynamic> toMap() {
+    return {
+      if (recordPath != null) 'recordTracePath': recordPath,
+      if (replayPath != null) 'replayTracePath': replayPath,
+      'replaySpeed': replaySpeed,
+      'replayLoop': replayLoop,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusTraceOptions(recordPath: $recordPath, replayPath: $replayPath, replaySpeed: $replaySpeed, replayLoop: $replayLoop)';
+}
+
+/// Progress of one trace replay.
+class MapxusReplayProgress {
+  final String path;
+  final double speed;
+  final bool loop;
+  final bool running;
+
+  /// True once the end of the trace was reached (never when looping).
+  final bool finished;
+
+  /// Callbacks handed to the pipeline so far.
+  final int played;
+  final int elapsedMs;
+  final double callbacksPerSecond;
+
+  /// Largest delay between a callback's due time and its posting; grows
+  /// when the pipeline cannot keep up with the replay speed.
+  final double maxLagMs;
+
+  MapxusReplayProgress({
+    required this.path,
+    required this.speed,
+    required this.loop,
+    required this.running,
+    required this.finished,
+    required this.played,
+    required this.elapsedMs,
+    required this.callbacksPerSecond,
+    required this.maxLagMs,
+  });
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusReplayProgress.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusReplayProgress(
+      path: map['path'] ?? '',
+      speed: (map['speed'] ?? 1.0).toDouble(),
+      loop: map['loop'] ?? false,
+      running: map['running'] ?? false,
+      finished: map['finished'] ?? false,
+      played: map['played'] ?? 0,
+      elapsedMs: map['elapsedMs'] ?? 0,
+      callbacksPerSecond: (map['callbacksPerSecond'] ?? 0.0).toDouble(),
+      maxLagMs: (map['maxLagMs'] ?? 0.0).toDouble(),
+    );
+  }
+
+  @override
+  String toString() =>
+      'MapxusReplayProgress(path: $path, speed: $speed, loop: $loop, running: $running, finished: $finished, played: $played, elapsedMs: $elapsedMs, callbacksPerSecond: $callbacksPerSecond, maxLagMs: $maxLagMs)';
+}
+
+/// Replays of the app's client ([init]) and of the foreground service;
+/// null where no trace is being replayed.
+class MapxusReplayStats {
+  final MapxusReplayProgress? client;
+  final MapxusReplayProgress? service;
+
+  MapxusReplayStats({this.client, this.service});
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusReplayStats.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusReplayStats(
+      client: map['client'] != null
+          ? MapxusReplayProgress.fromMap(map['client'])
+          : null,
+      service: map['service'] != null
+          ? MapxusReplayProgress.fromMap(map['service'])
+          : null,
+    );
+  }
+
+  @override
+  String toString() => 'MapxusReplayStats(client: $client, service: $service)';
+}
@@ -0,0 +1,177 @@
+import 'mapxus_event_model.dart';
+
+/// Settings of the native trajectory store, a SQLite history of the
+/// foreground service's location fixes kept for post-processing.
+///
+/// Every raw fix (before the location filter) is stored, whether or not the
+/// app is open. Fixes are written in one transaction per batch of
+/// [batchSize] fixes, or [flushInterval] after the first unwritten fix,
+/// whichever comes first.
+class MapxusTrajectoryOptions {
+  /// Enables recording. Disabled by default; stored fixes stay queryable
+  /// after recording is disabled.
+  final bool enabled;
+
+  /// Fixes written per transaction.
+  final int batchSize;
+
+  /// Longest time a fix waits in memory before it is written.
+  final Duration flushInterval;
+
+  /// Fixes older than this are deleted. [Duration.zero] keeps them
+  /// regardless of age.
+  final Duration retention;
+
+  /// Oldest fixes beyond this count are deleted. `0` removes the limit.
+  final int maxFixes;
+
+  const MapxusTrajectoryOptions({
+    this.enabled = false,
+    this.batchSize = 32,
+    this.flushInterval = const Duration(seconds: 5),
+    this.retention = const Duration(hours: 24),
+    this.maxFixes = 200000,
+  });
+
+  /// Convert to the argument map understood by the native side.
+  Map<String, dynamic> toMap() {
+    return {
+      'trajectoryEnabled': enabled,
+      'trajectoryBatchSize': batchSize,
+      'trajectoryFlushIntervalMs': flushInterval.inMilliseconds,
+      'trajectoryRetentionMs': retention.inMilliseconds,
+      'trajectoryMaxFixes': maxFixes,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusTrajectoryOptions(enabled: $enabled, batchSize: $batchSize, flushInterval: $flushInterval, retention: $retention, maxFixes: $maxFixes)';
+}
+
+/// Position after the last fix of a page; pass it to the next query.
+class MapxusTrajectoryCursor {
+  final int afterTime;
+  final int afterId;
+
+  const MapxusTrajectoryCursor({
+    required this.afterTime,
+    required this.afterId,
+  });
+
+  factory MapxusTrajectoryCursor.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusTrajectoryCursor(
+      afterTime: map['afterTime'] ?? 0,
+      afterId: map['afterId'] ?? 0,
+    );
+  }
+
+  Map<String, dynamic> toMap() {
+    return {
+      'afterTime': afterTime,
+      'afterId': afterId,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusTrajectoryCursor(afterTime: $afterTime, afterId: $afterId)';
+}
+
+/// One page of stored fixes, oldest first.
+class MapxusTrajectoryPage {
+  final List<MapxusLocationEvent> fixes;
+
+  /// Cursor of the following page, or `null` if this is the last one.
+  final MapxusTrajectoryCursor? next;
+
+  MapxusTrajectoryPage({required this.fixes, this.next});
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusTrajectoryPage.fromMap(Map<dynamic, dynamic> map) {
+    final fixes = (map['fixes'] as List<dynamic>?) ?? const [];
+    final next = map['next'];
+    return MapxusTrajectoryPage(
+      fixes: fixes
+          .map((fix) =>
+              MapxusLocationEvent.fromMap(fix as Map<dynamic, dynamic>))
+          .toList(),
+      next: next is Map ? MapxusTrajectoryCursor.fromMap(next) : null,
+    );
+  }
+
+  @override
+  String toString() =>
+      'MapxusTrajectoryPage(fixes: ${fixes.length}, next: $next)';
+}
+
+/// Size and write counters of the native trajectory store.
+class MapxusTrajectoryStats {
+  /// Whether new fixes are being recorded.
+  final bool enabled;
+
+  /// Fixes stored in the database.
+  final int fixes;
+
+  /// Timestamps of the oldest and newest stored fix; null when empty.
+  final int? oldest;
+  final int? newest;
+
+  /// Fixes waiting for the next batch.
+  final int pending;
+
+  /// Fixes written since the process started.
+  final int inserted;
+
+  /// Transactions committed since the process started.
+  final int batches;
+
+  /// Batches lost to a database error.
+  final int failedBatches;
+
+  /// Fixes deleted by the retention policy since the process started.
+  final int compacted;
+
+  /// Duration of the last batch write, in microseconds.
+  final int lastBatchMicros;
+
+  /// Size of the database file in bytes (excluding the WAL).
+  final int fileBytes;
+
+  MapxusTrajectoryStats({
+    required this.enabled,
+    required this.fixes,
+    this.oldest,
+    this.newest,
+    required this.pending,
+    required this.inserted,
+    required this.batches,
+    required this.failedBatches,
+    required this.compacted,
+    required this.lastBatchMicros,
+    required this.fileBytes,
+  });
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusTrajectoryStats.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusTrajectoryStats(
+      enabled: map['enabled'] ?? false,
+      fixes: map['fixes'] ?? 0,
+      oldest: map['oldest'],
+      newest: map['newest'],
+      pending: map['pending'] ?? 0,
+      inserted: map['inserted'] ?? 0,
+      batches: map['batches'] ?? 0,
+      failedBatches: map['failedBatches'] ?? 0,
+      compacted: map['compacted'] ?? 0,
+      lastBatchMicros: map['lastBatchMicros'] ?? 0,
+      fileBytes: map['fileBytes'] ?? 0,
+    );
+  }
+
+  @override
+  String toString() =>
+      'MapxusTrajectoryStats(enabled: $enabled, fixes: $fixes, oldest: $oldest, newest: $newest, pending: $pending, '
+      'inserted: $inserted, batches: $batches, failedBatches: $failedBatches, compacted: $compacted, '
+      'lastBatchMicros: $lastBatchMicros, fileBytes: $fileBytes)';
+}
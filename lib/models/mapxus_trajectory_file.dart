@@ -0,0 +1,232 @@
+import 'dart:convert';
+import 'dart:io';
+import 'dart:typed_data';
+
+import 'mapxus_event_model.dart';
+
+/// Result of `exportTrajectory`: a `.mxt` file written natively.
+class MapxusTrajectoryExport {
+  /// Absolute path of the exported file.
+  final String path;
+
+  /// Fixes in the file.
+  final int fixes;
+
+  /// File size in bytes.
+  final int bytes;
+
+  MapxusTrajectoryExport({
+    required this.path,
+    required this.fixes,
+    required this.bytes,
+  });
+
+  /// Factory constructor to create from Map (from platform channel)
+  factory MapxusTrajectoryExport.fromMap(Map<dynamic, dynamic> map) {
+    return MapxusTrajectoryExport(
+      path: map['path'] ?? '',
+      fixes: map['fixes'] ?? 0,
+      bytes: map['bytes'] ?? 0,
+    );
+  }
+
+  @override
+  String toString() =>
+      'MapxusTrajectoryExport(path: $path, fixes: $fixes, bytes: $bytes)';
+}
+
+/// Streaming reader for `.mxt` / `.mxt.gz` trajectory exports.
+///
+/// The file is read in chunks and decoded one block (up to 1024 fixes) at a
+/// time, so memory use does not grow with the length of the trace:
+///
+/// ```dart
+/// final export = await MapxusPositioningFlutter.instance.exportTrajectory(
+///     from: start, to: end);
+/// await for (final fixes in MapxusTrajectoryFileReader.read(export.path)) {
+///   // process up to 1024 fixes
+/// }
+/// ```
+///
+/// Format (see TrajectoryFileWriter on Android): `"MXT1"`, varint version,
+/// then blocks of `varint count`, new dictionary strings and one column per
+/// field — zigzag-varint deltas of time (ms) and latitude / longitude
+/// (1e-7°), accuracy in centimetres, and venue / building / floor dictionary
+/// references (0 = null). A block count of 0 ends the file.
+class MapxusTrajectoryFileReader {
+  MapxusTrajectoryFileReader._();
+
+  static const int _version = 1;
+
+  /// Streams the fixes of the file at [path], one block per list. Gzip
+  /// compression is detected from the file content.
+  static Stream<List<MapxusLocationEvent>> read(String path) async* {
+    final file = File(path);
+    final handle = await file.open();
+    final head = await handle.read(2);
+    await handle.close();
+
+    Stream<List<int>> bytes = file.openRead();
+    if (head.length == 2 && head[0] == 0x1f && head[1] == 0x8b) {
+      bytes = bytes.transform(gzip.decoder);
+    }
+    yield* decode(bytes, source: path);
+  }
+
+  /// Streams the fixes of uncompressed `.mxt` [bytes], one block per list.
+  /// Chunk boundaries may fall anywhere, including inside the header.
+  static Stream<List<MapxusLocationEvent>> decode(
+    Stream<List<int>> bytes, {
+    String? source,
+  }) async* {
+    final decoder = _MxtDecoder();
+    await for (final chunk in bytes) {
+      decoder.add(chunk);
+      for (var block = decoder.next(); block != null; block = decoder.next()) {
+        yield block;
+      }
+      if (decoder.done) return;
+    }
+    throw FormatException('Truncated trajectory file', source);
+  }
+}
+
+/// Thrown internally when a block is not fully buffered yet.
+class _NeedMore implements Exception {
+  const _NeedMore();
+}
+
+class _MxtDecoder {
+  Uint8List _data = Uint8List(0);
+  int _pos = 0;
+
+  bool _headerRead = false;
+  bool done = false;
+
+  final List<String> _dictionary = [];
+  int _lastTime = 0;
+  int _lastLatitude = 0;
+  int _lastLongitude = 0;
+
+  /// Appends [chunk] after the bytes not consumed yet.
+  void add(List<int> chunk) {
+    final remaining = _data.length - _pos;
+    final data = Uint8List(remaining + chunk.length)
+      ..setRange(0, remaining, _data, _pos)
+      ..setRange(remaining, remaining + chunk.length, chunk);
+    _data = data;
+    _pos = 0;
+  }
+
+  /// Decodes the next complete block, or returns null if more bytes are
+  /// needed or the end marker was reached (then [done] is set).
+  List<MapxusLocationEvent>? next() {
+    if (done) return null;
+    if (!_headerRead) {
+      final start = _pos;
+      try {
+        _readHeader();
+      } on _NeedMore {
+        _pos = start;
+        return null;
+      }
+      _headerRead = true;
+    }
+    // Taken after the header, so a partial first block rewinds to its own
+    // start and not into the header bytes.
+    final start = _pos;
+    try {
+      return _readBlock();
+    } on _NeedMore {
+      _pos = start;
+      return null;
+    }
+  }
+
+  void _readHeader() {
+    const magic = [0x4D, 0x58, 0x54, 0x31]; // "MXT1"
+    for (final byte in magic) {
+      if (_pos >= _data.length) throw const _NeedMore();
+      if (_data[_pos++] != byte) {
+        throw const FormatException('Not a Mapxus trajectory file');
+      }
+    }
+    final version = _varint();
+    if (version != MapxusTrajectoryFileReader._version) {
+      throw FormatException('Unsupported trajectory file version $version');
+    }
+  }
+
+  List<MapxusLocationEvent>? _readBlock() {
+    final count = _varint();
+    if (count == 0) {
+      done = true;
+      return null;
+    }
+
+    // Parsed into locals first: state only changes once the whole block is
+    // buffered, so a partial block can be retried after the next chunk.
+    final newStrings = List<String>.generate(_varint(), (_) {
+      final length = _varint();
+      if (_pos + length > _data.length) throw const _NeedMore();
+      final value =
+          utf8.decode(Uint8List.sublistView(_data, _pos, _pos + length));
+      _pos += length;
+      return value;
+    });
+    final times = _deltaColumn(count, _lastTime);
+    final latitudes = _deltaColumn(count, _lastLatitude);
+    final longitudes = _deltaColumn(count, _lastLongitude);
+    final accuracies = _column(count);
+    final venues = _column(count);
+    final buildings = _column(count);
+    final floors = _column(count);
+
+    _dictionary.addAll(newStrings);
+    _lastTime = times.last;
+    _lastLatitude = latitudes.last;
+    _lastLongitude = longitudes.last;
+
+    String? lookup(int reference) =>
+        reference == 0 ? null : _dictionary[reference - 1];
+
+    return List<MapxusLocationEvent>.generate(
+      count,
+      (i) => MapxusLocationEvent(
+        latitude: latitudes[i] / 1e7,
+        longitude: longitudes[i] / 1e7,
+        accuracy: accuracies[i] / 100,
+        venueId: lookup(venues[i]),
+        buildingId: lookup(buildings[i]),
+        floor: lookup(floors[i]),
+        timestamp: times[i],
+      ),
+    );
+  }
+
+  List<int> _deltaColumn(int count, int previous) {
+    final values = List<int>.filled(count, 0);
+    for (var i = 0; i < count; i++) {
+      final raw = _varint();
+      previous += (raw >>> 1) ^ -(raw & 1);
+      values[i] = previous;
+    }
+    return values;
+  }
+
+  List<int> _column(int count) =>
+      List<int>.generate(count, (_) => _varint(), growable: false);
+
+  int _varint() {
+    var result = 0;
+    var shift = 0;
+    while (true) {
+      if (_pos >= _data.length) throw const _NeedMore();
+      final byte = _data[_pos++];
+      result |= (byte & 0x7F) << shift;
+      if (byte & 0x80 == 0) return result;
+      shift += 7;
+      if (shift > 63) throw const FormatException('Malformed varint');
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/// Settings of the native fix uploader, which sends the foreground
+/// service's location fixes to an HTTP endpoint without going through Dart.
+///
+/// Every raw fix (before the location filter) is collected into batches of
+/// [batchSize] fixes, or whatever arrived within [maxBatchDelay] of the
+/// first one. Each batch is saved to disk as a gzip-compressed JSON array,
+/// then POSTed to [url] with `Content-Encoding: gzip` and [headers]:
+///
+/// ```json
+/// [{"timestamp": 1700000000000, "latitude": 22.3, "longitude": 114.1,
+///   "accuracy": 3.2, "venueId": "…", "buildingId": "…", "floor": "L1"}, …]
+/// ```
+///
+/// Batches stay on disk until the server answers with 2xx, across app and
+/// service restarts. Failed requests (5xx, 408, 429, no connection) are
+/// retried with exponential backoff. Other 4xx responses drop the batch.
+/// This works while the app is closed and does not start the background
+/// handler.
+class MapxusUploadOptions {
+  /// Endpoint that receives the batches. `null` disables the uploader.
+  final String? url;
+
+  /// Extra request headers, e.g. `Authorization`.
+  final Map<String, String> headers;
+
+  /// Fixes per batch.
+  final int batchSize;
+
+  /// Longest time a fix waits before its batch is sealed.
+  final Duration maxBatchDelay;
+
+  /// Upload only on an unmetered network (e.g. Wi-Fi).
+  final bool requireUnmetered;
+
+  /// Upload only while the device is charging.
+  final bool requireCharging;
+
+  /// Disk budget for unsent batches; the oldest are dropped beyond it.
+  final int maxSpoolBytes;
+
+  const MapxusUploadOptions({
+    this.url,
+    this.headers = const {},
+    this.batchSize = 100,
+    this.maxBatchDelay = const Duration(minutes: 1),
+    this.requireUnmetered = false,
+    this.requireCharging = false,
+    this.maxSpoolBytes = 4 * 1024 * 1024,
+  });
+
+  /// Convert to the argument map understood by the native side.
+  Map<String, dynamic> toMap() {
+    return {
+      if (url != null) 'uploadUrl': url,
+      'uploadHeaders': headers,
+      'uploadBatchSize': batchSize,
+      'uploadMaxBatchDelayMs': maxBatchDelay.inMilliseconds,
+      'uploadRequireUnmetered': requireUnmetered,
+      'uploadRequireCharging': requireCharging,
+      'uploadMaxSpoolBytes': maxSpoolBytes,
+    };
+  }
+
+  @override
+  String toString() =>
+      'MapxusUploadOptions(url: $url, headers: ${headers.keys.toList()}, batchSize: $batchSize, maxBatchDelay: $maxBatchDelay, requireUnmetered: $requireUnmetered, requireCharging: $requireCharging, maxSpoolBytes: $maxSpoolBytes)';
+}
@@ -0,0 +1,134 @@
+import 'dart:convert';
+
+import 'package:fi_mapxus_positioning_flutter/models/mapxus_event_model.dart';
+import 'package:fi_mapxus_positioning_flutter/models/mapxus_trajectory_file.dart';
+import 'package:flutter_test/flutter_test.dart';
+
+/// Encodes [blocks] in the `.mxt` format written by TrajectoryFileWriter.
+List<int> encode(List<List<MapxusLocationEvent>> blocks) {
+  final out = <int>[];
+  void varint(int value) {
+    while (value >= 0x80) {
+      out.add((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.add(value);
+  }
+
+  int zigzag(int value) => (value << 1) ^ (value >> 63);
+
+  out.addAll(ascii.encode('MXT1'));
+  varint(1);
+  final dictionary = <String>[];
+  var time = 0, lat = 0, lon = 0;
+  for (final block in blocks) {
+    varint(block.length);
+    final added = <String>[];
+    int ref(String? value) {
+      if (value == null) return 0;
+      if (!dictionary.contains(value)) {
+        dictionary.add(value);
+        added.add(value);
+      }
+      return dictionary.indexOf(value) + 1;
+    }
+
+    final venues = block.map((f) => ref(f.venueId)).toList();
+    final buildings = block.map((f) => ref(f.buildingId)).toList();
+    final floors = block.map((f) => ref(f.floor)).toList();
+    varint(added.length);
+    for (final value in added) {
+      final bytes = utf8.encode(value);
+      varint(bytes.length);
+      out.addAll(bytes);
+    }
+    for (final f in block) {
+      varint(zigzag(f.timestamp - time));
+      time = f.timestamp;
+    }
+    for (final f in block) {
+      final value = (f.latitude * 1e7).round();
+      varint(zigzag(value - lat));
+      lat = value;
+    }
+    for (final f in block) {
+      final value = (f.longitude * 1e7).round();
+      varint(zigzag(value - lon));
+      lon = value;
+    }
+    for (final f in block) {
+      varint((f.accuracy * 100).round());
+    }
+    venues.forEach(varint);
+    buildings.forEach(varint);
+    floors.forEach(varint);
+  }
+  varint(0);
+  return out;
+}
+
+MapxusLocationEvent fix(int i) => MapxusLocationEvent(
+      latitude: 22.3 + i / 1e5,
+      longitude: 114.1 - i / 1e5,
+      accuracy: 2.5,
+      venueId: 'venue',
+      buildingId: 'building',
+      floor: i.isEven ? 'L1' : null,
+      timestamp: 1700000000000 + i * 1000,
+    );
+
+void main() {
+  final blocks = [
+    List.generate(3, fix),
+    List.generate(2, (i) => fix(i + 3)),
+  ];
+  final bytes = encode(blocks);
+
+  Future<List<List<MapxusLocationEvent>>> decodeInChunks(int size) {
+    final chunks = [
+      for (var i = 0; i < bytes.length; i += size)
+        bytes.sublist(i, i + size > bytes.length ? bytes.length : i + size),
+    ];
+    return MapxusTrajectoryFileReader.decode(Stream.fromIterable(chunks))
+        .toList();
+  }
+
+  void expectFixes(List<List<MapxusLocationEvent>> decoded) {
+    expect(decoded.map((b) => b.length), [3, 2]);
+    final all = decoded.expand((b) => b).toList();
+    for (var i = 0; i < all.length; i++) {
+      expect(all[i].timestamp, fix(i).timestamp);
+      expect(all[i].latitude, closeTo(fix(i).latitude, 1e-7));
+      expect(all[i].longitude, closeTo(fix(i).longitude, 1e-7));
+      expect(all[i].accuracy, 2.5);
+      expect(all[i].buildingId, 'building');
+      expect(all[i].floor, fix(i).floor);
+    }
+  }
+
+  test('decodes a file delivered in one chunk', () async {
+    expectFixes(await decodeInChunks(bytes.length));
+  });
+
+  test('decodes a file delivered one byte at a time', () async {
+    expectFixes(await decodeInChunks(1));
+  });
+
+  test('chunk ending inside the first block after a complete header',
+      () async {
+    // Header is "MXT1" + 1 varint byte; split two bytes into block 1.
+    final decoded = await MapxusTrajectoryFileReader.decode(
+      Stream.fromIterable([bytes.sublist(0, 7), bytes.sublist(7)]),
+    ).toList();
+    expectFixes(decoded);
+  });
+
+  test('truncated file is reported', () async {
+    expect(
+      MapxusTrajectoryFileReader.decode(
+        Stream.value(bytes.sublist(0, bytes.length - 1)),
+      ).toList(),
+      throwsFormatException,
+    );
+  });
+}